@@ -38,6 +38,7 @@ import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
 import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
 import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
 import de.lmu.ifi.dbs.elki.database.relation.MaterializedDoubleRelation;
@@ -45,6 +46,12 @@ import de.lmu.ifi.dbs.elki.database.relation.Relation;
 import de.lmu.ifi.dbs.elki.database.relation.RelationUtil;
 import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
+import de.lmu.ifi.dbs.elki.parallel.Executor;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
+import de.lmu.ifi.dbs.elki.parallel.processor.AbstractDoubleProcessor;
+import de.lmu.ifi.dbs.elki.parallel.processor.DoubleMinMaxProcessor;
+import de.lmu.ifi.dbs.elki.parallel.processor.WriteDoubleDataStoreProcessor;
+import de.lmu.ifi.dbs.elki.parallel.variables.SharedDouble;
 import de.lmu.ifi.dbs.elki.result.outlier.BasicOutlierScoreMeta;
 import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
 import de.lmu.ifi.dbs.elki.result.outlier.OutlierScoreMeta;
@@ -71,6 +78,8 @@ import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.EnumParameter;
  * 
  * @author Erich Schubert
  * 
+ * @apiviz.has DecisionProcessor
+ * 
  * @param V vector type
  */
 @Reference(authors = "B. Schölkopf, J. C. Platt, J. Shawe-Taylor, A. J. Smola, R. C. Williamson", //
@@ -121,7 +130,59 @@ public class LibSVMOneClassOutlierDetection<V extends NumberVector> extends Abst
     final ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
 
     svm.svm_set_print_string_function(LOG_HELPER);
+    svm_parameter param = makeParameters(dim);
+
+    // Transform data:
+    svm_problem prob = new svm_problem();
+    prob.l = relation.size();
+    prob.x = new svm_node[prob.l][];
+    prob.y = new double[prob.l];
+    {
+      DBIDIter iter = ids.iter();
+      for(int i = 0; i < prob.l && iter.valid(); iter.advance(), i++) {
+        prob.x[i] = toNodes(relation.get(iter), dim);
+        prob.y[i] = +1;
+      }
+    }
+
+    if(LOG.isVerbose()) {
+      LOG.verbose("Training one-class SVM...");
+    }
+    String err = svm.svm_check_parameter(prob, param);
+    if(err != null) {
+      LOG.warning("svm_check_parameter: " + err);
+    }
+    svm_model model = svm.svm_train(prob, param);
 
+    if(LOG.isVerbose()) {
+      LOG.verbose("Predicting...");
+    }
+    WritableDoubleDataStore scores = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_DB);
+    {
+      DecisionProcessor<V> decm = new DecisionProcessor<>(relation, model, dim);
+      SharedDouble decv = new SharedDouble();
+      DoubleMinMaxProcessor mmm = new DoubleMinMaxProcessor();
+      WriteDoubleDataStoreProcessor stored = new WriteDoubleDataStoreProcessor(scores);
+
+      decm.connectOutput(decv);
+      mmm.connectInput(decv);
+      stored.connectInput(decv);
+      ParallelExecutor.run(ids, decm, stored, mmm);
+
+      DoubleMinMax mm = mmm.getMinMax();
+      DoubleRelation scoreResult = new MaterializedDoubleRelation("One-Class SVM Decision", "svm-outlier", scores, ids);
+      OutlierScoreMeta scoreMeta = new BasicOutlierScoreMeta(mm.getMin(), mm.getMax(), Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, 0.);
+      return new OutlierResult(scoreMeta, scoreResult);
+    }
+  }
+
+  /**
+   * Make the libsvm parameters.
+   * 
+   * @param dim Dimensionality
+   * @return Parameters
+   */
+  svm_parameter makeParameters(int dim) {
     svm_parameter param = new svm_parameter();
     param.svm_type = svm_parameter.ONE_CLASS;
     param.kernel_type = svm_parameter.LINEAR;
@@ -160,63 +221,35 @@ public class LibSVMOneClassOutlierDetection<V extends NumberVector> extends Abst
     param.weight_label = new int[0];
     param.weight = new double[0];
     param.gamma = 1e-4 / dim;
+    return param;
+  }
 
-    // Transform data:
-    svm_problem prob = new svm_problem();
-    prob.l = relation.size();
-    prob.x = new svm_node[prob.l][];
-    prob.y = new double[prob.l];
-    {
-      DBIDIter iter = ids.iter();
-      for(int i = 0; i < prob.l && iter.valid(); iter.advance(), i++) {
-        V vec = relation.get(iter);
-        // TODO: support compact sparse vectors, too!
-        svm_node[] x = new svm_node[dim];
-        for(int d = 0; d < dim; d++) {
-          x[d] = new svm_node();
-          x[d].index = d + 1;
-          x[d].value = vec.doubleValue(d);
-        }
-        prob.x[i] = x;
-        prob.y[i] = +1;
+  /**
+   * Convert a vector to libsvm nodes. Zero values are omitted, as libsvm
+   * treats missing indexes as zero.
+   * 
+   * @param vec Vector
+   * @param dim Dimensionality
+   * @return libsvm representation
+   */
+  protected static svm_node[] toNodes(NumberVector vec, int dim) {
+    int nnz = 0;
+    for(int d = 0; d < dim; d++) {
+      if(vec.doubleValue(d) != 0.) {
+        ++nnz;
       }
     }
-
-    if(LOG.isVerbose()) {
-      LOG.verbose("Training one-class SVM...");
-    }
-    String err = svm.svm_check_parameter(prob, param);
-    if(err != null) {
-      LOG.warning("svm_check_parameter: " + err);
-    }
-    svm_model model = svm.svm_train(prob, param);
-
-    if(LOG.isVerbose()) {
-      LOG.verbose("Predicting...");
-    }
-    WritableDoubleDataStore scores = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_DB);
-    DoubleMinMax mm = new DoubleMinMax();
-    {
-      DBIDIter iter = ids.iter();
-      double[] buf = new double[svm.svm_get_nr_class(model)];
-      for(int i = 0; i < prob.l && iter.valid(); iter.advance(), i++) {
-        V vec = relation.get(iter);
-        svm_node[] x = new svm_node[dim];
-        for(int d = 0; d < dim; d++) {
-          x[d] = new svm_node();
-          x[d].index = d + 1;
-          x[d].value = vec.doubleValue(d);
-        }
-        svm.svm_predict_values(model, x, buf);
-        double score = -buf[0] / param.gamma; // Heuristic rescaling, sorry.
-        // Unfortunately, libsvm one-class currently yields a binary decision.
-        scores.putDouble(iter, score);
-        mm.put(score);
+    svm_node[] x = new svm_node[nnz];
+    for(int d = 0, i = 0; d < dim; d++) {
+      final double v = vec.doubleValue(d);
+      if(v != 0.) {
+        x[i] = new svm_node();
+        x[i].index = d + 1;
+        x[i].value = v;
+        ++i;
       }
     }
-    DoubleRelation scoreResult = new MaterializedDoubleRelation("One-Class SVM Decision", "svm-outlier", scores, ids);
-    OutlierScoreMeta scoreMeta = new BasicOutlierScoreMeta(mm.getMin(), mm.getMax(), Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, 0.);
-    return new OutlierResult(scoreMeta, scoreResult);
+    return x;
   }
 
   @Override
@@ -241,6 +274,170 @@ public class LibSVMOneClassOutlierDetection<V extends NumberVector> extends Abst
     }
   };
 
+  /**
+   * Processor to evaluate the one-class decision function for each object.
+   * 
+   * The support vectors are copied into a dense array once, and the decision
+   * function is evaluated directly on the data vectors, without converting
+   * them to libsvm nodes. This is the same function as computed by
+   * {@code svm.svm_predict_values}.
+   * 
+   * @author Erich Schubert
+   * 
+   * @apiviz.has Instance
+   * 
+   * @param <V> Vector type
+   */
+  protected static class DecisionProcessor<V extends NumberVector> extends AbstractDoubleProcessor {
+    /**
+     * Data relation.
+     */
+    private Relation<V> relation;
+
+    /**
+     * Kernel parameters.
+     */
+    private svm_parameter param;
+
+    /**
+     * Dimensionality.
+     */
+    private int dim;
+
+    /**
+     * Support vectors, row-major.
+     */
+    private double[] sv;
+
+    /**
+     * Support vector coefficients.
+     */
+    private double[] coef;
+
+    /**
+     * Decision function offset.
+     */
+    private double rho;
+
+    /**
+     * Constructor.
+     * 
+     * @param relation Data relation
+     * @param model Trained model
+     * @param dim Dimensionality
+     */
+    protected DecisionProcessor(Relation<V> relation, svm_model model, int dim) {
+      super();
+      this.relation = relation;
+      this.param = model.param;
+      this.dim = dim;
+      this.coef = model.sv_coef[0];
+      this.rho = model.rho[0];
+      this.sv = new double[model.l * dim];
+      for(int i = 0, off = 0; i < model.l; i++, off += dim) {
+        for(svm_node n : model.SV[i]) {
+          if(n.index >= 1 && n.index <= dim) {
+            sv[off + n.index - 1] = n.value;
+          }
+        }
+      }
+    }
+
+    /**
+     * Evaluate the decision function.
+     * 
+     * @param x Dense vector
+     * @return Decision value
+     */
+    protected double decision(double[] x) {
+      double sum = 0.;
+      for(int i = 0, off = 0; i < coef.length; i++, off += dim) {
+        sum += coef[i] * kernel(x, off);
+      }
+      return sum - rho;
+    }
+
+    /**
+     * Kernel function, as in libsvm.
+     * 
+     * @param x Dense vector
+     * @param off Offset of the support vector
+     * @return Kernel value
+     */
+    private double kernel(double[] x, int off) {
+      switch(param.kernel_type){
+      case svm_parameter.LINEAR:
+        return dot(x, off);
+      case svm_parameter.POLY:
+        return Math.pow(param.gamma * dot(x, off) + param.coef0, param.degree);
+      case svm_parameter.RBF: {
+        double sum = 0.;
+        for(int d = 0; d < dim; d++) {
+          final double v = x[d] - sv[off + d];
+          sum += v * v;
+        }
+        return Math.exp(-param.gamma * sum);
+      }
+      case svm_parameter.SIGMOID:
+        return Math.tanh(param.gamma * dot(x, off) + param.coef0);
+      default:
+        throw new AbortException("Unsupported kernel type: " + param.kernel_type);
+      }
+    }
+
+    /**
+     * Dot product with a support vector.
+     * 
+     * @param x Dense vector
+     * @param off Offset of the support vector
+     * @return Dot product
+     */
+    private double dot(double[] x, int off) {
+      double sum = 0.;
+      for(int d = 0; d < dim; d++) {
+        sum += x[d] * sv[off + d];
+      }
+      return sum;
+    }
+
+    @Override
+    public Instance instantiate(Executor master) {
+      return new Instance(master.getInstance(output));
+    }
+
+    /**
+     * Instance
+     * 
+     * @author Erich Schubert
+     */
+    private class Instance extends AbstractDoubleProcessor.Instance {
+      /**
+       * Buffer for the current vector.
+       */
+      private double[] buf = new double[dim];
+
+      /**
+       * Constructor.
+       * 
+       * @param output Output variable
+       */
+      protected Instance(SharedDouble.Instance output) {
+        super(output);
+      }
+
+      @Override
+      public void map(DBIDRef id) {
+        V vec = relation.get(id);
+        for(int d = 0; d < dim; d++) {
+          buf[d] = vec.doubleValue(d);
+        }
+        // Heuristic rescaling, sorry.
+        // Unfortunately, libsvm one-class currently yields a binary decision.
+        output.set(-decision(buf) / param.gamma);
+      }
+    }
+  }
+
   /**
    * Parameterization class.
    * 
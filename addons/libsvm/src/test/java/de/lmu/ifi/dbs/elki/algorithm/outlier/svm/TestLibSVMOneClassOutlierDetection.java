@@ -0,0 +1,84 @@
+package de.lmu.ifi.dbs.elki.algorithm.outlier.svm;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import libsvm.svm;
+import libsvm.svm_model;
+import libsvm.svm_node;
+import libsvm.svm_parameter;
+import libsvm.svm_problem;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.algorithm.outlier.svm.LibSVMOneClassOutlierDetection.DecisionProcessor;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.svm.LibSVMOneClassOutlierDetection.SVMKernel;
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+
+/**
+ * Test the dense decision function of the one-class SVM against libsvm.
+ * 
+ * @author Erich Schubert
+ */
+public class TestLibSVMOneClassOutlierDetection {
+  /**
+   * Compare the decision values with {@code svm.svm_predict_values}, for every
+   * kernel.
+   */
+  @Test
+  public void testDecisionFunction() {
+    final int dim = 3, size = 200;
+    Random rnd = new Random(0L);
+    double[][] data = new double[size][dim];
+    svm_problem prob = new svm_problem();
+    prob.l = size;
+    prob.x = new svm_node[size][];
+    prob.y = new double[size];
+    for(int i = 0; i < size; i++) {
+      for(int d = 0; d < dim; d++) {
+        // Include some zeros, which are omitted in the sparse representation.
+        data[i][d] = rnd.nextInt(5) == 0 ? 0. : rnd.nextGaussian() + 1.;
+      }
+      prob.x[i] = LibSVMOneClassOutlierDetection.toNodes(new DoubleVector(data[i]), dim);
+      prob.y[i] = +1;
+    }
+    svm.svm_set_print_string_function(LibSVMOneClassOutlierDetection.LOG_HELPER);
+
+    double[] dec = new double[1];
+    for(SVMKernel kernel : SVMKernel.values()) {
+      svm_parameter param = new LibSVMOneClassOutlierDetection<DoubleVector>(kernel).makeParameters(dim);
+      svm_model model = svm.svm_train(prob, param);
+      assertTrue("No support vectors for kernel " + kernel, model.l > 0);
+      DecisionProcessor<DoubleVector> decm = new DecisionProcessor<>(null, model, dim);
+      for(int i = 0; i < size; i++) {
+        svm.svm_predict_values(model, prob.x[i], dec);
+        assertEquals("Decision value differs for kernel " + kernel, dec[0], decm.decision(data[i]), 1e-10);
+      }
+    }
+  }
+}
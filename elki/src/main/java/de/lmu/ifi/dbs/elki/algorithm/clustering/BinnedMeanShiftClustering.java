@@ -0,0 +1,737 @@
+package de.lmu.ifi.dbs.elki.algorithm.clustering;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.lmu.ifi.dbs.elki.algorithm.AbstractDistanceBasedAlgorithm;
+import de.lmu.ifi.dbs.elki.data.Cluster;
+import de.lmu.ifi.dbs.elki.data.Clustering;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.model.MeanModel;
+import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableIntegerDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDList;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
+import de.lmu.ifi.dbs.elki.database.ids.ModifiableDBIDs;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.range.RangeQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.database.relation.RelationUtil;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
+import de.lmu.ifi.dbs.elki.math.linearalgebra.Vector;
+import de.lmu.ifi.dbs.elki.math.statistics.kernelfunctions.EpanechnikovKernelDensityFunction;
+import de.lmu.ifi.dbs.elki.math.statistics.kernelfunctions.KernelDensityFunction;
+import de.lmu.ifi.dbs.elki.parallel.Executor;
+import de.lmu.ifi.dbs.elki.parallel.ParallelBlocks;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
+import de.lmu.ifi.dbs.elki.parallel.processor.Processor;
+import de.lmu.ifi.dbs.elki.parallel.processor.WriteIntegerDataStoreProcessor;
+import de.lmu.ifi.dbs.elki.parallel.variables.SharedInteger;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.DoubleParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
+
+/**
+ * Mean-shift clustering with binned seeding and parallel seed updates.
+ *
+ * Contrary to {@link NaiveMeanShiftClustering}, mean-shift is not started from
+ * every object. Instead, the data is discretized into a grid of bins (by
+ * default as wide as the kernel bandwidth), and the mean of each sufficiently
+ * populated bin is used as seed. Seeds are shifted independently of each other
+ * in parallel, using the range queries of the relation (and thus benefiting
+ * from index structures), and each seed stops as soon as it has converged.
+ *
+ * The resulting modes are then merged: modes are processed by decreasing
+ * support, and a mode is discarded if a stronger mode is within the kernel
+ * bandwidth. For this lookup, the modes are organized in a grid of bandwidth
+ * width. Finally, every object is assigned to its nearest mode.
+ *
+ * Binning and the merging grid assume that coordinate differences are a lower
+ * bound of the distance, as is the case for Minkowski distances.
+ *
+ * <p>
+ * Reference:<br />
+ * Y. Cheng<br />
+ * Mean shift, mode seeking, and clustering<br />
+ * IEEE Transactions on Pattern Analysis and Machine Intelligence 17-8
+ * </p>
+ *
+ * @author Erich Schubert
+ *
+ * @apiviz.has SeedShiftRunner
+ * @apiviz.has NearestModeProcessor
+ *
+ * @param <V> Vector type
+ */
+@Reference(authors = "Y. Cheng", title = "Mean shift, mode seeking, and clustering", booktitle = "IEEE Transactions on Pattern Analysis and Machine Intelligence 17-8", url = "http://dx.doi.org/10.1109/34.400568")
+public class BinnedMeanShiftClustering<V extends NumberVector> extends AbstractDistanceBasedAlgorithm<V, Clustering<MeanModel>> implements ClusteringAlgorithm<Clustering<MeanModel>> {
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(BinnedMeanShiftClustering.class);
+
+  /**
+   * Density estimation kernel.
+   */
+  KernelDensityFunction kernel = EpanechnikovKernelDensityFunction.KERNEL;
+
+  /**
+   * Range of the kernel.
+   */
+  double bandwidth;
+
+  /**
+   * Width of the seeding bins.
+   */
+  double binsize;
+
+  /**
+   * Minimum number of objects in a bin to become a seed.
+   */
+  int minbinfreq;
+
+  /**
+   * Maximum number of iterations.
+   */
+  static final int MAXITER = 1000;
+
+  /**
+   * Constructor.
+   *
+   * @param distanceFunction Distance function
+   * @param kernel Kernel function
+   * @param range Kernel radius
+   * @param binsize Width of the seeding bins, {@code <= 0} to use the
+   *        bandwidth.
+   * @param minbinfreq Minimum number of objects in a seeding bin
+   */
+  public BinnedMeanShiftClustering(DistanceFunction<? super V> distanceFunction, KernelDensityFunction kernel, double range, double binsize, int minbinfreq) {
+    super(distanceFunction);
+    this.kernel = kernel;
+    this.bandwidth = range;
+    this.binsize = binsize > 0 ? binsize : range;
+    this.minbinfreq = minbinfreq;
+  }
+
+  /**
+   * Run the mean-shift clustering algorithm.
+   *
+   * @param database Database
+   * @param relation Data relation
+   * @return Clustering result
+   */
+  public Clustering<MeanModel> run(Database database, Relation<V> relation) {
+    final DistanceQuery<V> distq = database.getDistanceQuery(relation, getDistanceFunction());
+    final RangeQuery<V> rangeq = database.getRangeQuery(distq, bandwidth);
+    final NumberVector.Factory<V> factory = RelationUtil.getNumberVectorFactory(relation);
+    final int dim = RelationUtil.dimensionality(relation);
+
+    // Phase one: binned seeding.
+    List<double[]> seeds = computeSeeds(relation, dim);
+    if(LOG.isVerbose()) {
+      LOG.verbose("Number of mean-shift seeds: " + seeds.size());
+    }
+
+    // Phase two: shift all seeds in parallel, until convergence.
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    Mode<V>[] shifted = new Mode[seeds.size()];
+    FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Mean-shift seeds", seeds.size(), LOG) : null;
+    ParallelBlocks.run(seeds.size(), new SeedShiftRunner(seeds, shifted, rangeq, distq, factory, relation, prog));
+    LOG.ensureCompleted(prog);
+
+    // Phase three: merge modes, strongest first.
+    List<Mode<V>> modes = mergeModes(shifted, distq, factory);
+    if(LOG.isVerbose()) {
+      LOG.verbose("Number of mean-shift modes: " + modes.size());
+    }
+
+    // Phase four: assign objects to the nearest mode.
+    WritableIntegerDataStore assignment = DataStoreUtil.makeIntegerStorage(relation.getDBIDs(), DataStoreFactory.HINT_TEMP, -1);
+    {
+      NearestModeProcessor<V> nearm = new NearestModeProcessor<>(modes, distq);
+      SharedInteger nearv = new SharedInteger();
+      WriteIntegerDataStoreProcessor storem = new WriteIntegerDataStoreProcessor(assignment);
+      nearm.connectOutput(nearv);
+      storem.connectInput(nearv);
+      ParallelExecutor.run(relation.getDBIDs(), nearm, storem);
+    }
+
+    ArrayList<ModifiableDBIDs> members = new ArrayList<>(modes.size());
+    for(int i = 0; i < modes.size(); i++) {
+      members.add(DBIDUtil.newArray());
+    }
+    ModifiableDBIDs noise = DBIDUtil.newArray();
+    for(DBIDIter iter = relation.iterDBIDs(); iter.valid(); iter.advance()) {
+      final int c = assignment.intValue(iter);
+      (c >= 0 ? members.get(c) : noise).add(iter);
+    }
+    assignment.destroy();
+
+    ArrayList<Cluster<MeanModel>> cs = new ArrayList<>(modes.size() + 1);
+    for(int i = 0; i < modes.size(); i++) {
+      if(members.get(i).size() > 0) {
+        cs.add(new Cluster<>(members.get(i), new MeanModel(new Vector(modes.get(i).center))));
+      }
+    }
+    if(noise.size() > 0) {
+      cs.add(new Cluster<MeanModel>(noise, true));
+    }
+    return new Clustering<>("Mean-shift Clustering", "mean-shift-clustering", cs);
+  }
+
+  /**
+   * Discretize the data set into bins, and use the mean of each bin with at
+   * least {@link #minbinfreq} members as seed.
+   *
+   * @param relation Data relation
+   * @param dim Dimensionality
+   * @return Seed positions
+   */
+  protected List<double[]> computeSeeds(Relation<V> relation, int dim) {
+    Map<BinKey, double[]> bins = new HashMap<>();
+    for(DBIDIter iter = relation.iterDBIDs(); iter.valid(); iter.advance()) {
+      V vec = relation.get(iter);
+      BinKey key = new BinKey(vec, binsize, dim);
+      double[] sum = bins.get(key);
+      if(sum == null) {
+        // Last entry is the count.
+        sum = new double[dim + 1];
+        bins.put(key, sum);
+      }
+      for(int d = 0; d < dim; d++) {
+        sum[d] += vec.doubleValue(d);
+      }
+      sum[dim] += 1;
+    }
+    List<double[]> seeds = new ArrayList<>(bins.size());
+    for(double[] sum : bins.values()) {
+      if(sum[dim] < minbinfreq) {
+        continue;
+      }
+      double[] seed = new double[dim];
+      for(int d = 0; d < dim; d++) {
+        seed[d] = sum[d] / sum[dim];
+      }
+      seeds.add(seed);
+    }
+    return seeds;
+  }
+
+  /**
+   * Merge the modes found: process by decreasing support, and keep only modes
+   * that are not within the bandwidth of a stronger mode.
+   *
+   * @param shifted Converged seeds
+   * @param distq Distance query
+   * @param factory Vector factory
+   * @return Remaining modes
+   */
+  protected List<Mode<V>> mergeModes(Mode<V>[] shifted, DistanceQuery<V> distq, NumberVector.Factory<V> factory) {
+    List<Mode<V>> sorted = new ArrayList<>(shifted.length);
+    for(Mode<V> m : shifted) {
+      if(m != null) {
+        sorted.add(m);
+      }
+    }
+    Collections.sort(sorted, Mode.BY_SUPPORT);
+
+    List<Mode<V>> accepted = new ArrayList<>();
+    Map<BinKey, List<Mode<V>>> grid = new HashMap<>();
+    for(Mode<V> cand : sorted) {
+      final BinKey key = new BinKey(cand.center, bandwidth);
+      final V cvec = factory.newNumberVector(cand.center);
+      boolean duplicate = false;
+      // Enumerating the 3^d neighbor cells only pays off in low dimensionality.
+      final int dim = cand.center.length;
+      final boolean scanall = dim >= 20 || Math.pow(3, dim) > accepted.size();
+      if(scanall) {
+        for(Mode<V> other : accepted) {
+          if(distq.distance(cvec, other.vec) <= bandwidth) {
+            duplicate = true;
+            break;
+          }
+        }
+      }
+      else {
+        int[] off = new int[dim];
+        Arrays.fill(off, -1);
+        cells: while(true) {
+          List<Mode<V>> cell = grid.get(key.offset(off));
+          if(cell != null) {
+            for(Mode<V> other : cell) {
+              if(distq.distance(cvec, other.vec) <= bandwidth) {
+                duplicate = true;
+                break cells;
+              }
+            }
+          }
+          // Advance to next neighbor cell.
+          int d = 0;
+          while(d < dim && off[d] == 1) {
+            off[d++] = -1;
+          }
+          if(d == dim) {
+            break;
+          }
+          off[d]++;
+        }
+      }
+      if(duplicate) {
+        continue;
+      }
+      cand.vec = cvec;
+      accepted.add(cand);
+      List<Mode<V>> cell = grid.get(key);
+      if(cell == null) {
+        cell = new ArrayList<>();
+        grid.put(key, cell);
+      }
+      cell.add(cand);
+    }
+    return accepted;
+  }
+
+  @Override
+  public TypeInformation[] getInputTypeRestriction() {
+    return TypeUtil.array(TypeUtil.NUMBER_VECTOR_FIELD);
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * A converged mean-shift seed.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   *
+   * @param <V> Vector type
+   */
+  protected static class Mode<V> {
+    /**
+     * Sort comparator, by decreasing support.
+     */
+    static final Comparator<Mode<?>> BY_SUPPORT = new Comparator<Mode<?>>() {
+      @Override
+      public int compare(Mode<?> o1, Mode<?> o2) {
+        return Integer.compare(o2.support, o1.support);
+      }
+    };
+
+    /**
+     * Mode position.
+     */
+    double[] center;
+
+    /**
+     * Number of objects within the bandwidth.
+     */
+    int support;
+
+    /**
+     * Vector representation, for distance computations.
+     */
+    V vec;
+
+    /**
+     * Constructor.
+     *
+     * @param center Mode position
+     * @param support Number of objects within the bandwidth
+     */
+    protected Mode(double[] center, int support) {
+      super();
+      this.center = center;
+      this.support = support;
+    }
+  }
+
+  /**
+   * Grid cell key.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  protected static class BinKey {
+    /**
+     * Cell coordinates.
+     */
+    final int[] cell;
+
+    /**
+     * Hash code cache.
+     */
+    final int hash;
+
+    /**
+     * Constructor.
+     *
+     * @param vec Vector
+     * @param width Bin width
+     * @param dim Dimensionality
+     */
+    protected BinKey(NumberVector vec, double width, int dim) {
+      this.cell = new int[dim];
+      for(int d = 0; d < dim; d++) {
+        cell[d] = (int) Math.floor(vec.doubleValue(d) / width);
+      }
+      this.hash = Arrays.hashCode(cell);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param vec Vector
+     * @param width Bin width
+     */
+    protected BinKey(double[] vec, double width) {
+      this.cell = new int[vec.length];
+      for(int d = 0; d < vec.length; d++) {
+        cell[d] = (int) Math.floor(vec[d] / width);
+      }
+      this.hash = Arrays.hashCode(cell);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param cell Cell coordinates
+     */
+    private BinKey(int[] cell) {
+      this.cell = cell;
+      this.hash = Arrays.hashCode(cell);
+    }
+
+    /**
+     * Get a neighbor cell key.
+     *
+     * @param off Offsets
+     * @return Key of the neighbor cell
+     */
+    protected BinKey offset(int[] off) {
+      int[] ncell = new int[cell.length];
+      for(int d = 0; d < cell.length; d++) {
+        ncell[d] = cell[d] + off[d];
+      }
+      return new BinKey(ncell);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if(this == obj) {
+        return true;
+      }
+      if(!(obj instanceof BinKey)) {
+        return false;
+      }
+      BinKey other = (BinKey) obj;
+      return hash == other.hash && Arrays.equals(cell, other.cell);
+    }
+  }
+
+  /**
+   * Shift a block of seeds until convergence.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  protected class SeedShiftRunner implements ParallelBlocks.Task<Integer> {
+    /**
+     * Seed positions.
+     */
+    private List<double[]> seeds;
+
+    /**
+     * Output array.
+     */
+    private Mode<V>[] out;
+
+    /**
+     * Range query.
+     */
+    private RangeQuery<V> rangeq;
+
+    /**
+     * Distance query.
+     */
+    private DistanceQuery<V> distq;
+
+    /**
+     * Vector factory.
+     */
+    private NumberVector.Factory<V> factory;
+
+    /**
+     * Data relation.
+     */
+    private Relation<V> relation;
+
+    /**
+     * Progress, may be {@code null}.
+     */
+    private FiniteProgress prog;
+
+    /**
+     * Constructor.
+     *
+     * @param seeds Seed positions
+     * @param out Output array
+     * @param rangeq Range query
+     * @param distq Distance query
+     * @param factory Vector factory
+     * @param relation Data relation
+     * @param prog Progress, may be {@code null}
+     */
+    protected SeedShiftRunner(List<double[]> seeds, Mode<V>[] out, RangeQuery<V> rangeq, DistanceQuery<V> distq, NumberVector.Factory<V> factory, Relation<V> relation, FiniteProgress prog) {
+      super();
+      this.seeds = seeds;
+      this.out = out;
+      this.rangeq = rangeq;
+      this.distq = distq;
+      this.factory = factory;
+      this.relation = relation;
+      this.prog = prog;
+    }
+
+    @Override
+    public Integer run(int block, int start, int end) {
+      final double threshold = bandwidth * 1E-10;
+      int converged = 0;
+      for(int i = start; i < end; i++) {
+        double[] pos = seeds.get(i);
+        V position = factory.newNumberVector(pos);
+        final int dim = pos.length;
+        for(int j = 1; j <= MAXITER; j++) {
+          DoubleDBIDList neigh = rangeq.getRangeForObject(position, bandwidth);
+          double[] sum = new double[dim];
+          double wsum = 0.;
+          for(DoubleDBIDListIter niter = neigh.iter(); niter.valid(); niter.advance()) {
+            final double weight = kernel.density(niter.doubleValue() / bandwidth);
+            V vec = relation.get(niter);
+            for(int d = 0; d < dim; d++) {
+              sum[d] += weight * vec.doubleValue(d);
+            }
+            wsum += weight;
+          }
+          if(!(wsum > 0.)) {
+            // Seed ran dry; drop.
+            break;
+          }
+          for(int d = 0; d < dim; d++) {
+            sum[d] /= wsum;
+          }
+          V newvec = factory.newNumberVector(sum);
+          final double delta = distq.distance(position, newvec);
+          if(Double.isNaN(delta)) {
+            LOG.warning("Encountered NaN distance. Invalid center vector? " + newvec.toString());
+            break;
+          }
+          if(delta < threshold || j == MAXITER) {
+            if(j == MAXITER) {
+              LOG.warning("No convergence after " + MAXITER + " iterations. Distance: " + delta);
+            }
+            out[i] = new Mode<>(sum, neigh.size());
+            ++converged;
+            break;
+          }
+          position = newvec;
+        }
+        LOG.incrementProcessed(prog);
+      }
+      return converged;
+    }
+  }
+
+  /**
+   * Processor to find the nearest mode of each object.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   *
+   * @param <V> Vector type
+   */
+  protected static class NearestModeProcessor<V extends NumberVector> implements Processor {
+    /**
+     * Modes.
+     */
+    List<Mode<V>> modes;
+
+    /**
+     * Distance query.
+     */
+    DistanceQuery<V> distq;
+
+    /**
+     * Output channel.
+     */
+    SharedInteger output;
+
+    /**
+     * Constructor.
+     *
+     * @param modes Modes
+     * @param distq Distance query
+     */
+    protected NearestModeProcessor(List<Mode<V>> modes, DistanceQuery<V> distq) {
+      super();
+      this.modes = modes;
+      this.distq = distq;
+    }
+
+    /**
+     * Connect the output channel.
+     *
+     * @param output Output channel
+     */
+    public void connectOutput(SharedInteger output) {
+      this.output = output;
+    }
+
+    @Override
+    public Processor.Instance instantiate(Executor executor) {
+      final SharedInteger.Instance out = executor.getInstance(output);
+      return new Processor.Instance() {
+        @Override
+        public void map(DBIDRef id) {
+          double bestd = Double.POSITIVE_INFINITY;
+          int best = -1;
+          for(int i = 0; i < modes.size(); i++) {
+            final double d = distq.distance(id, modes.get(i).vec);
+            if(d < bestd) {
+              bestd = d;
+              best = i;
+            }
+          }
+          out.set(best);
+        }
+      };
+    }
+
+    @Override
+    public void cleanup(Processor.Instance inst) {
+      // Nothing to do.
+    }
+  }
+
+  /**
+   * Parameterizer.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   *
+   * @param <V> Vector type
+   */
+  public static class Parameterizer<V extends NumberVector> extends AbstractDistanceBasedAlgorithm.Parameterizer<V> {
+    /**
+     * Parameter for the width of the seeding bins.
+     */
+    public static final OptionID BINSIZE_ID = new OptionID("meanshift.binsize", "Width of the grid bins used for seeding. Defaults to the kernel bandwidth.");
+
+    /**
+     * Parameter for the minimum number of objects in a seeding bin.
+     */
+    public static final OptionID MINBINFREQ_ID = new OptionID("meanshift.minbinfreq", "Minimum number of objects in a grid bin to use it as seed.");
+
+    /**
+     * Kernel function.
+     */
+    KernelDensityFunction kernel = EpanechnikovKernelDensityFunction.KERNEL;
+
+    /**
+     * Kernel radius.
+     */
+    double range;
+
+    /**
+     * Bin width.
+     */
+    double binsize = -1;
+
+    /**
+     * Minimum bin frequency.
+     */
+    int minbinfreq = 1;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      super.makeOptions(config);
+      ObjectParameter<KernelDensityFunction> kernelP = new ObjectParameter<>(NaiveMeanShiftClustering.Parameterizer.KERNEL_ID, KernelDensityFunction.class, EpanechnikovKernelDensityFunction.class);
+      if(config.grab(kernelP)) {
+        kernel = kernelP.instantiateClass(config);
+      }
+      DoubleParameter rangeP = new DoubleParameter(NaiveMeanShiftClustering.Parameterizer.RANGE_ID) //
+      .addConstraint(CommonConstraints.GREATER_THAN_ZERO_DOUBLE);
+      if(config.grab(rangeP)) {
+        range = rangeP.getValue();
+      }
+      DoubleParameter binsizeP = new DoubleParameter(BINSIZE_ID) //
+      .addConstraint(CommonConstraints.GREATER_THAN_ZERO_DOUBLE) //
+      .setOptional(true);
+      if(config.grab(binsizeP)) {
+        binsize = binsizeP.getValue();
+      }
+      IntParameter minbinfreqP = new IntParameter(MINBINFREQ_ID, 1) //
+      .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(minbinfreqP)) {
+        minbinfreq = minbinfreqP.intValue();
+      }
+    }
+
+    @Override
+    protected BinnedMeanShiftClustering<V> makeInstance() {
+      return new BinnedMeanShiftClustering<>(distanceFunction, kernel, range, binsize, minbinfreq);
+    }
+  }
+}
@@ -76,12 +76,12 @@ public class GaussianModel<V extends NumberVector> extends AbstractAlgorithm<Out
    * Small value to increment diagonally of a matrix in order to avoid
    * singularity before building the inverse.
    */
-  private static final double SINGULARITY_CHEAT = 1E-9;
+  protected static final double SINGULARITY_CHEAT = 1E-9;
 
   /**
    * Invert the result
    */
-  private boolean invert = false;
+  protected boolean invert = false;
 
   /**
    * Constructor with actual parameters.
@@ -125,7 +125,18 @@ public class GaussianModel<V extends NumberVector> extends AbstractAlgorithm<Out
       mm.put(prob);
       oscores.putDouble(iditer, prob);
     }
+    return makeResult(relation, oscores, mm);
+  }
 
+  /**
+   * Build the outlier result, inverting the scores if requested.
+   * 
+   * @param relation Data relation
+   * @param oscores Gaussian densities
+   * @param mm Minimum and maximum density
+   * @return Outlier result
+   */
+  protected OutlierResult makeResult(Relation<V> relation, WritableDoubleDataStore oscores, DoubleMinMax mm) {
     final OutlierScoreMeta meta;
     if(invert) {
       double max = mm.getMax() != 0 ? mm.getMax() : 1.;
@@ -99,22 +99,22 @@ public class GaussianUniformMixture<V extends NumberVector> extends AbstractAlgo
    * Small value to increment diagonally of a matrix in order to avoid
    * singularity before building the inverse.
    */
-  private static final double SINGULARITY_CHEAT = 1E-9;
+  protected static final double SINGULARITY_CHEAT = 1E-9;
 
   /**
    * Holds the value of {@link #C_ID}.
    */
-  private double c;
+  protected double c;
 
   /**
    * log(l) precomputed
    */
-  private double logl;
+  protected double logl;
 
   /**
    * log(1-l) precomputed
    */
-  private double logml;
+  protected double logml;
 
   /**
    * Constructor with parameters.
@@ -0,0 +1,185 @@
+package de.lmu.ifi.dbs.elki.algorithm.outlier.anglebased.parallel;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.query.similarity.SimilarityQuery;
+import de.lmu.ifi.dbs.elki.math.MeanVariance;
+import de.lmu.ifi.dbs.elki.parallel.Executor;
+import de.lmu.ifi.dbs.elki.parallel.processor.AbstractDoubleProcessor;
+import de.lmu.ifi.dbs.elki.parallel.variables.SharedDouble;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.DoubleIntegerHeap;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.DoubleIntegerMaxHeap;
+
+/**
+ * Processor to compute the approximate angle-based outlier factor of each
+ * object, from its k nearest neighbors in kernel space.
+ *
+ * Kernel similarities are computed on demand, so no kernel matrix is needed;
+ * only the self-similarities of all objects are precomputed. Each instance
+ * reuses its buffers, so no objects are allocated per query object.
+ *
+ * @author Erich Schubert
+ *
+ * @apiviz.has Instance
+ */
+public class ABOFProcessor extends AbstractDoubleProcessor {
+  /**
+   * Object ids.
+   */
+  private ArrayDBIDs ids;
+
+  /**
+   * Kernel similarity query.
+   */
+  private SimilarityQuery<?> sq;
+
+  /**
+   * Self-similarities, by offset in {@link #ids}.
+   */
+  private double[] selfsim;
+
+  /**
+   * Number of neighbors.
+   */
+  private int k;
+
+  /**
+   * Constructor.
+   *
+   * @param ids Object ids
+   * @param sq Kernel similarity query
+   * @param selfsim Self-similarities, by offset
+   * @param k Number of neighbors
+   */
+  public ABOFProcessor(ArrayDBIDs ids, SimilarityQuery<?> sq, double[] selfsim, int k) {
+    super();
+    this.ids = ids;
+    this.sq = sq;
+    this.selfsim = selfsim;
+    this.k = k;
+  }
+
+  @Override
+  public Instance instantiate(Executor master) {
+    return new Instance(master.getInstance(output));
+  }
+
+  /**
+   * Instance
+   *
+   * @author Erich Schubert
+   */
+  private class Instance extends AbstractDoubleProcessor.Instance {
+    /**
+     * Iterators for the candidates.
+     */
+    private DBIDArrayIter iB = ids.iter(), iC = ids.iter();
+
+    /**
+     * Nearest neighbor heap.
+     */
+    private DoubleIntegerMaxHeap nn = new DoubleIntegerMaxHeap(k);
+
+    /**
+     * Neighbor offsets.
+     */
+    private int[] noff = new int[k];
+
+    /**
+     * Squared distances and similarities to the neighbors.
+     */
+    private double[] nsqd = new double[k], nsim = new double[k];
+
+    /**
+     * Similarities of the current object to all other objects, by offset.
+     */
+    private double[] simA = new double[ids.size()];
+
+    /**
+     * Variance accumulator.
+     */
+    private MeanVariance s = new MeanVariance();
+
+    /**
+     * Constructor.
+     *
+     * @param output Output variable
+     */
+    protected Instance(SharedDouble.Instance output) {
+      super(output);
+    }
+
+    @Override
+    public void map(DBIDRef pA) {
+      // Similarities to all other objects, and the offset of the object.
+      int offA = -1;
+      for(iB.seek(0); iB.valid(); iB.advance()) {
+        if(DBIDUtil.equal(iB, pA)) {
+          offA = iB.getOffset();
+          continue;
+        }
+        simA[iB.getOffset()] = sq.similarity(pA, iB);
+      }
+      final double simAA = offA >= 0 ? selfsim[offA] : sq.similarity(pA, pA);
+      // Choose the k nearest, in kernel space.
+      nn.clear();
+      for(int b = 0; b < simA.length; b++) {
+        if(b == offA) {
+          continue;
+        }
+        final double sqdAB = simAA + selfsim[b] - simA[b] - simA[b];
+        if(!(sqdAB > 0.)) {
+          continue;
+        }
+        nn.add(sqdAB, b, k);
+      }
+      int size = 0;
+      for(DoubleIntegerHeap.UnsortedIter it = nn.unsortedIter(); it.valid(); it.advance(), size++) {
+        noff[size] = it.getValue();
+        nsqd[size] = it.getKey();
+        nsim[size] = simA[it.getValue()];
+      }
+      s.reset();
+      for(int b = 0; b < size; b++) {
+        final double sqdAB = nsqd[b], simAB = nsim[b];
+        iB.seek(noff[b]);
+        for(int c = b; c < size; c++) {
+          final double sqdAC = nsqd[c];
+          // Exploit bilinearity of scalar product:
+          // <B-A, C-A> = <B,C> - <B,A> - <A,C> + <A,A>
+          // For computing variance, AA is a constant and can be ignored.
+          final double simBC = c == b ? selfsim[noff[b]] : sq.similarity(iB, iC.seek(noff[c]));
+          final double numerator = simBC - simAB - nsim[c]; // + simAA;
+          s.put(numerator / (sqdAB * sqdAC), 1. / Math.sqrt(sqdAB * sqdAC));
+        }
+      }
+      // The ABOD publication uses the naive variance.
+      output.set(s.getNaiveVariance());
+    }
+  }
+}
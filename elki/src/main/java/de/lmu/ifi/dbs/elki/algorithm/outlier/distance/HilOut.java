@@ -140,9 +140,9 @@ public class HilOut<O extends NumberVector> extends AbstractDistanceBasedAlgorit
   private int capital_n, n_star, capital_n_star, d;
 
   /**
-   * Outlier threshold
+   * Outlier threshold. Only increases, may be raised concurrently.
    */
-  private double omega_star;
+  private volatile double omega_star;
 
   /**
    * Type of output: all scores (upper bounds) or top n only
@@ -290,7 +290,36 @@ public class HilOut<O extends NumberVector> extends AbstractDistanceBasedAlgorit
     if(LOG.isDebuggingFine()) {
       LOG.debugFine("Scanning with k0=" + k0 + " (" + mink0 + ")" + " N*=" + capital_n_star);
     }
-    for(int i = 0; i < hf.pf.length; i++) {
+    scanSegments(hf, capital_n, mink0);
+  }
+
+  /**
+   * Scan all segments of the curve. The serial version scans the whole curve
+   * as a single segment.
+   * 
+   * @param hf the hilbert features
+   * @param size Number of objects on the curve
+   * @param mink0 Maximum neighborhood size for non-top candidates
+   */
+  protected void scanSegments(HilbertFeatures hf, int size, int mink0) {
+    scanSegment(hf, 0, size, mink0, hf.out, hf.wlb);
+  }
+
+  /**
+   * Scan a segment of the curve, refining the bounds of the candidates.
+   * 
+   * The candidate heaps may be local to the segment; segments of the same
+   * scan must be disjoint.
+   * 
+   * @param hf the hilbert features
+   * @param start First position (inclusive)
+   * @param end Last position (exclusive)
+   * @param mink0 Maximum neighborhood size for non-top candidates
+   * @param out Heap of the candidates with the largest upper bounds
+   * @param wlb Heap of the candidates with the largest lower bounds
+   */
+  protected void scanSegment(HilbertFeatures hf, int start, int end, int mink0, ObjectHeap<HilFeature> out, ObjectHeap<HilFeature> wlb) {
+    for(int i = start; i < end; i++) {
       if(hf.pf[i].ubound < omega_star) {
         continue;
       }
@@ -312,17 +341,72 @@ public class HilOut<O extends NumberVector> extends AbstractDistanceBasedAlgorit
         }
       }
       if(hf.pf[i].ubound > 0) {
-        hf.updateOUT(i);
+        hf.updateOUT(out, i);
       }
       if(hf.pf[i].lbound > 0) {
-        hf.updateWLB(i);
+        hf.updateWLB(wlb, i);
       }
-      if(hf.wlb.size() >= n) {
-        omega_star = Math.max(omega_star, hf.wlb.peek().lbound);
+      if(wlb.size() >= n) {
+        raiseThreshold(wlb.peek().lbound);
       }
     }
   }
 
+  /**
+   * Merge the candidates of a segment into the global candidate heaps.
+   * 
+   * @param hf the hilbert features
+   * @param out Heap of the candidates with the largest upper bounds
+   * @param wlb Heap of the candidates with the largest lower bounds
+   */
+  protected void mergeSegment(HilbertFeatures hf, ObjectHeap<HilFeature> out, ObjectHeap<HilFeature> wlb) {
+    for(ObjectHeap.UnsortedIter<HilFeature> iter = out.unsortedIter(); iter.valid(); iter.advance()) {
+      hf.updateOUT(hf.out, iter.get());
+    }
+    for(ObjectHeap.UnsortedIter<HilFeature> iter = wlb.unsortedIter(); iter.valid(); iter.advance()) {
+      hf.updateWLB(hf.wlb, iter.get());
+    }
+  }
+
+  /**
+   * Raise the outlier threshold omega*.
+   * 
+   * @param omega New lower bound for the outlier threshold
+   */
+  protected void raiseThreshold(double omega) {
+    if(omega > omega_star) {
+      omega_star = omega;
+    }
+  }
+
+  /**
+   * Make a heap for the candidates with the largest upper bounds ("OUT").
+   * 
+   * @return New heap
+   */
+  protected ObjectHeap<HilFeature> makeOutHeap() {
+    return new ComparatorMinHeap<>(n, new Comparator<HilFeature>() {
+      @Override
+      public int compare(HilFeature o1, HilFeature o2) {
+        return Double.compare(o1.ubound, o2.ubound);
+      }
+    });
+  }
+
+  /**
+   * Make a heap for the candidates with the largest lower bounds ("WLB").
+   * 
+   * @return New heap
+   */
+  protected ObjectHeap<HilFeature> makeWLBHeap() {
+    return new ComparatorMinHeap<>(n, new Comparator<HilFeature>() {
+      @Override
+      public int compare(HilFeature o1, HilFeature o2) {
+        return Double.compare(o1.lbound, o2.lbound);
+      }
+    });
+  }
+
   /**
    * innerScan function calculates new upper and lower bounds and inserts the
    * points of the neighborhood the bounds are based on in the NN Set
@@ -431,7 +515,7 @@ public class HilOut<O extends NumberVector> extends AbstractDistanceBasedAlgorit
    * 
    * @apiviz.composedOf HilFeature
    */
-  class HilbertFeatures {
+  protected class HilbertFeatures {
     // public int distcomp = 1;
 
     /**
@@ -492,18 +576,8 @@ public class HilOut<O extends NumberVector> extends AbstractDistanceBasedAlgorit
       for(DBIDIter iditer = relation.iterDBIDs(); iditer.valid(); iditer.advance()) {
         pf[pos++] = new HilFeature(DBIDUtil.deref(iditer), new ComparableMaxHeap<DoubleDBIDPair>(k));
       }
-      this.out = new ComparatorMinHeap<>(n, new Comparator<HilFeature>() {
-        @Override
-        public int compare(HilFeature o1, HilFeature o2) {
-          return Double.compare(o1.ubound, o2.ubound);
-        }
-      });
-      this.wlb = new ComparatorMinHeap<>(n, new Comparator<HilFeature>() {
-        @Override
-        public int compare(HilFeature o1, HilFeature o2) {
-          return Double.compare(o1.lbound, o2.lbound);
-        }
-      });
+      this.out = makeOutHeap();
+      this.wlb = makeWLBHeap();
       this.top = new HashSet<>(2 * n);
     }
 
@@ -579,17 +653,28 @@ public class HilOut<O extends NumberVector> extends AbstractDistanceBasedAlgorit
     /**
      * updateOUT function inserts pf[i] in out.
      * 
+     * @param out heap to update
      * @param i position in pf of the feature to be inserted
      */
-    private void updateOUT(int i) {
+    private void updateOUT(ObjectHeap<HilFeature> out, int i) {
+      updateOUT(out, pf[i]);
+    }
+
+    /**
+     * updateOUT function inserts a feature in out.
+     * 
+     * @param out heap to update
+     * @param f feature to be inserted
+     */
+    private void updateOUT(ObjectHeap<HilFeature> out, HilFeature f) {
       if(out.size() < n) {
-        out.add(pf[i]);
+        out.add(f);
       }
       else {
         HilFeature head = out.peek();
-        if(pf[i].ubound > head.ubound) {
+        if(f.ubound > head.ubound) {
           // replace smallest
-          out.replaceTopElement(pf[i]);
+          out.replaceTopElement(f);
         }
       }
     }
@@ -597,17 +682,28 @@ public class HilOut<O extends NumberVector> extends AbstractDistanceBasedAlgorit
     /**
      * updateWLB function inserts pf[i] in wlb.
      * 
+     * @param wlb heap to update
      * @param i position in pf of the feature to be inserted
      */
-    private void updateWLB(int i) {
+    private void updateWLB(ObjectHeap<HilFeature> wlb, int i) {
+      updateWLB(wlb, pf[i]);
+    }
+
+    /**
+     * updateWLB function inserts a feature in wlb.
+     * 
+     * @param wlb heap to update
+     * @param f feature to be inserted
+     */
+    private void updateWLB(ObjectHeap<HilFeature> wlb, HilFeature f) {
       if(wlb.size() < n) {
-        wlb.add(pf[i]);
+        wlb.add(f);
       }
       else {
         HilFeature head = wlb.peek();
-        if(pf[i].lbound > head.lbound) {
+        if(f.lbound > head.lbound) {
           // replace smallest
-          wlb.replaceTopElement(pf[i]);
+          wlb.replaceTopElement(f);
         }
       }
     }
@@ -797,7 +893,7 @@ public class HilOut<O extends NumberVector> extends AbstractDistanceBasedAlgorit
    * 
    * @author Jonathan von Brünken
    */
-  final static class HilFeature implements Comparable<HilFeature> {
+  protected final static class HilFeature implements Comparable<HilFeature> {
     /**
      * Object ID
      */
@@ -0,0 +1,472 @@
+package de.lmu.ifi.dbs.elki.algorithm.outlier.distance;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.lmu.ifi.dbs.elki.algorithm.AbstractDistanceBasedAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.OutlierAlgorithm;
+import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayModifiableDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDList;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDPair;
+import de.lmu.ifi.dbs.elki.database.query.DatabaseQuery;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
+import de.lmu.ifi.dbs.elki.database.query.range.RangeQuery;
+import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.MaterializedDoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
+import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
+import de.lmu.ifi.dbs.elki.math.random.RandomFactory;
+import de.lmu.ifi.dbs.elki.result.outlier.BasicOutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.utilities.Alias;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.ComparableMinHeap;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.DoubleHeap;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.DoubleMaxHeap;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Description;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Title;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.Flag;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.RandomParameter;
+
+/**
+ * ORCA: top-n distance-based outlier detection using a randomized nested loop
+ * with a simple pruning rule.
+ *
+ * The objects are processed in random order, in blocks. For each block, the
+ * data set is scanned (also in random order), maintaining the k nearest
+ * neighbors of each candidate. As soon as the score of a candidate (the
+ * distance to the k nearest neighbor as in {@link KNNOutlier}, or the sum of
+ * the k nearest neighbor distances as in {@link KNNWeightOutlier}) drops below
+ * the score of the weakest of the current top-n outliers, the candidate cannot
+ * be a top-n outlier anymore and is not processed further.
+ *
+ * If the database has an index for kNN queries, the nested loop is not used.
+ * Instead, a range query with the current cutoff is used to quickly discard
+ * objects whose neighborhood is dense; the kNN are taken from the range result
+ * whenever it contains at least k neighbors, and only the other objects need a
+ * kNN query.
+ *
+ * The top-n outliers receive their exact scores. For all other objects, the
+ * reported score is only an upper bound (never above the final cutoff), so the
+ * ranking of the top-n outliers is correct, but the ranking of the remaining
+ * objects is not meaningful.
+ *
+ * Reference:
+ * <p>
+ * S. D. Bay, M. Schwabacher<br />
+ * Mining distance-based outliers in near linear time with randomization and a
+ * simple pruning rule<br />
+ * In: Proc. 9th ACM SIGKDD Int. Conf. on Knowledge Discovery and Data Mining,
+ * 2003
+ * </p>
+ *
+ * @author Erich Schubert
+ *
+ * @apiviz.has KNNQuery
+ * @apiviz.has RangeQuery
+ *
+ * @param <O> the type of objects handled by this algorithm
+ */
+@Title("ORCA: Top-n distance-based outliers with randomization and pruning")
+@Description("Top-n kNN outlier detection using a randomized nested loop with a running cutoff.")
+@Reference(authors = "S. D. Bay, M. Schwabacher", //
+title = "Mining distance-based outliers in near linear time with randomization and a simple pruning rule", //
+booktitle = "Proc. 9th ACM SIGKDD Int. Conf. on Knowledge Discovery and Data Mining", //
+url = "http://dx.doi.org/10.1145/956750.956758")
+@Alias({ "orca" })
+public class ORCA<O> extends AbstractDistanceBasedAlgorithm<O, OutlierResult> implements OutlierAlgorithm {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ORCA.class);
+
+  /**
+   * Number of neighbors (not including the query point).
+   */
+  private int k;
+
+  /**
+   * Number of outliers to find.
+   */
+  private int n;
+
+  /**
+   * Use the sum of the kNN distances instead of the k-distance.
+   */
+  private boolean weighted;
+
+  /**
+   * Block size of the nested loop.
+   */
+  private int blocksize;
+
+  /**
+   * Random generator for the processing order.
+   */
+  private RandomFactory rnd;
+
+  /**
+   * Constructor.
+   *
+   * @param distanceFunction Distance function
+   * @param k Number of neighbors (not including the query point)
+   * @param n Number of outliers to find
+   * @param weighted Use the sum of kNN distances (kNN weight)
+   * @param blocksize Block size of the nested loop
+   * @param rnd Random generator for the processing order
+   */
+  public ORCA(DistanceFunction<? super O> distanceFunction, int k, int n, boolean weighted, int blocksize, RandomFactory rnd) {
+    super(distanceFunction);
+    this.k = k;
+    this.n = n;
+    this.weighted = weighted;
+    this.blocksize = blocksize;
+    this.rnd = rnd;
+  }
+
+  /**
+   * Run the algorithm.
+   *
+   * @param database Database context
+   * @param relation Data relation
+   * @return Outlier result
+   */
+  public OutlierResult run(Database database, Relation<O> relation) {
+    final DistanceQuery<O> distanceQuery = database.getDistanceQuery(relation, getDistanceFunction());
+    final KNNQuery<O> knnQuery = database.getKNNQuery(distanceQuery, k + 1, DatabaseQuery.HINT_OPTIMIZED_ONLY);
+
+    ArrayModifiableDBIDs order = DBIDUtil.newArray(relation.getDBIDs());
+    DBIDUtil.randomShuffle(order, rnd);
+
+    WritableDoubleDataStore scores = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_STATIC);
+    ComparableMinHeap<DoubleDBIDPair> topn = new ComparableMinHeap<>(n + 1);
+    final int pruned;
+    if(knnQuery != null) {
+      final RangeQuery<O> rangeQuery = database.getRangeQuery(distanceQuery, DatabaseQuery.HINT_OPTIMIZED_ONLY);
+      pruned = runIndexed(order, knnQuery, rangeQuery, scores, topn);
+    }
+    else {
+      pruned = runNestedLoop(order, distanceQuery, scores, topn);
+    }
+    if(LOG.isStatistics()) {
+      LOG.statistics(new LongStatistic(this.getClass().getName() + ".pruned", pruned));
+    }
+
+    DoubleMinMax minmax = new DoubleMinMax();
+    for(DBIDArrayIter iter = order.iter(); iter.valid(); iter.advance()) {
+      minmax.put(scores.doubleValue(iter));
+    }
+    DoubleRelation scoreres = new MaterializedDoubleRelation("ORCA top-n outlier score", "orca-outlier", scores, relation.getDBIDs());
+    OutlierScoreMeta meta = new BasicOutlierScoreMeta(minmax.getMin(), minmax.getMax(), 0.0, Double.POSITIVE_INFINITY, 0.0);
+    return new OutlierResult(meta, scoreres);
+  }
+
+  /**
+   * Randomized nested loop with pruning.
+   *
+   * @param order Processing order
+   * @param distanceQuery Distance query
+   * @param scores Score output
+   * @param topn Heap of the current top-n outliers
+   * @return Number of pruned objects
+   */
+  protected int runNestedLoop(ArrayModifiableDBIDs order, DistanceQuery<O> distanceQuery, WritableDoubleDataStore scores, ComparableMinHeap<DoubleDBIDPair> topn) {
+    final int size = order.size(), bsize = Math.min(blocksize, size);
+    FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("ORCA blocks", (size + bsize - 1) / bsize, LOG) : null;
+    DoubleMaxHeap[] heaps = new DoubleMaxHeap[bsize];
+    for(int i = 0; i < bsize; i++) {
+      heaps[i] = new DoubleMaxHeap(k + 1);
+    }
+    double[] sums = new double[bsize];
+    boolean[] active = new boolean[bsize];
+    DBIDArrayIter cand = order.iter(), data = order.iter();
+    int pruned = 0;
+    for(int start = 0; start < size; start += bsize) {
+      final int end = Math.min(start + bsize, size);
+      final double cutoff = topn.size() >= n ? topn.peek().doubleValue() : Double.NEGATIVE_INFINITY;
+      int nactive = end - start;
+      for(int i = 0; i < nactive; i++) {
+        heaps[i].clear();
+        sums[i] = 0.;
+        active[i] = true;
+      }
+      for(data.seek(0); data.valid() && nactive > 0; data.advance()) {
+        final int doff = data.getOffset();
+        for(int i = 0; i < end - start; i++) {
+          if(!active[i] || start + i == doff) {
+            continue;
+          }
+          final double d = distanceQuery.distance(cand.seek(start + i), data);
+          final DoubleMaxHeap heap = heaps[i];
+          if(heap.size() < k) {
+            heap.add(d);
+            sums[i] += d;
+            if(heap.size() < k) {
+              continue;
+            }
+          }
+          else if(d < heap.peek()) {
+            sums[i] += d - heap.replaceTopElement(d);
+          }
+          else {
+            continue;
+          }
+          // Pruning rule: the score can only decrease further.
+          final double bound = weighted ? sums[i] : heap.peek();
+          if(bound <= cutoff) {
+            scores.putDouble(cand, bound);
+            active[i] = false;
+            --nactive;
+            ++pruned;
+          }
+        }
+      }
+      // Remaining candidates have exact scores.
+      for(int i = 0; i < end - start; i++) {
+        if(active[i]) {
+          // With fewer than k neighbors, the k-distance is infinite.
+          final double score = heaps[i].size() < k ? Double.POSITIVE_INFINITY : weighted ? sum(heaps[i]) : heaps[i].peek();
+          cand.seek(start + i);
+          scores.putDouble(cand, score);
+          updateTopN(topn, cand, score);
+        }
+      }
+      LOG.incrementProcessed(prog);
+    }
+    LOG.ensureCompleted(prog);
+    return pruned;
+  }
+
+  /**
+   * Index-based processing: range queries with the current cutoff to discard
+   * dense objects, kNN queries only where the range has less than k neighbors.
+   *
+   * @param order Processing order
+   * @param knnQuery kNN query
+   * @param rangeQuery Range query, may be {@code null}
+   * @param scores Score output
+   * @param topn Heap of the current top-n outliers
+   * @return Number of pruned objects
+   */
+  protected int runIndexed(ArrayModifiableDBIDs order, KNNQuery<O> knnQuery, RangeQuery<O> rangeQuery, WritableDoubleDataStore scores, ComparableMinHeap<DoubleDBIDPair> topn) {
+    FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("ORCA objects", order.size(), LOG) : null;
+    int pruned = 0;
+    for(DBIDArrayIter iter = order.iter(); iter.valid(); iter.advance()) {
+      DoubleDBIDList neighbors = null;
+      if(rangeQuery != null && topn.size() >= n) {
+        // Objects with a neighbor beyond the cutoff score above the cutoff.
+        DoubleDBIDList range = rangeQuery.getRangeForDBID(iter, topn.peek().doubleValue());
+        // All k nearest neighbors are in the range (besides the query object).
+        neighbors = range.size() > k ? range : null;
+      }
+      if(neighbors == null) {
+        neighbors = knnQuery.getKNNForDBID(iter, k + 1);
+      }
+      final double score = score(iter, neighbors);
+      scores.putDouble(iter, score);
+      if(topn.size() >= n && score <= topn.peek().doubleValue()) {
+        ++pruned;
+      }
+      else {
+        updateTopN(topn, iter, score);
+      }
+      LOG.incrementProcessed(prog);
+    }
+    LOG.ensureCompleted(prog);
+    return pruned;
+  }
+
+  /**
+   * Compute the score from a sorted neighbor list.
+   *
+   * @param id Query object
+   * @param neighbors Sorted neighbors, including the query object
+   * @return Score, infinite if there are fewer than k neighbors
+   */
+  private double score(DBIDRef id, DoubleDBIDList neighbors) {
+    double score = 0.;
+    int i = 0; // number of neighbors so far
+    for(DoubleDBIDListIter neighbor = neighbors.iter(); i < k && neighbor.valid(); neighbor.advance()) {
+      if(DBIDUtil.equal(id, neighbor)) {
+        continue;
+      }
+      score = weighted ? score + neighbor.doubleValue() : neighbor.doubleValue();
+      ++i;
+    }
+    return i < k ? Double.POSITIVE_INFINITY : score;
+  }
+
+  /**
+   * Sum the values of a heap.
+   *
+   * @param heap Heap
+   * @return Sum
+   */
+  private static double sum(DoubleMaxHeap heap) {
+    double sum = 0.;
+    for(DoubleHeap.UnsortedIter it = heap.unsortedIter(); it.valid(); it.advance()) {
+      sum += it.get();
+    }
+    return sum;
+  }
+
+  /**
+   * Update the top-n heap.
+   *
+   * @param topn Heap
+   * @param id Object
+   * @param score Score
+   */
+  private void updateTopN(ComparableMinHeap<DoubleDBIDPair> topn, DBIDRef id, double score) {
+    if(topn.size() < n) {
+      topn.add(DBIDUtil.newPair(score, id));
+    }
+    else if(score > topn.peek().doubleValue()) {
+      topn.replaceTopElement(DBIDUtil.newPair(score, id));
+    }
+  }
+
+  @Override
+  public TypeInformation[] getInputTypeRestriction() {
+    return TypeUtil.array(getDistanceFunction().getInputTypeRestriction());
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  public static class Parameterizer<O> extends AbstractDistanceBasedAlgorithm.Parameterizer<O> {
+    /**
+     * Parameter for the number of neighbors.
+     */
+    public static final OptionID K_ID = new OptionID("orca.k", //
+    "The k nearest neighbor, excluding the query point " //
+        + "(i.e. query point is the 0-nearest-neighbor)");
+
+    /**
+     * Parameter for the number of outliers to find.
+     */
+    public static final OptionID N_ID = new OptionID("orca.n", "Number of top outliers to find.");
+
+    /**
+     * Flag to use the sum of the kNN distances.
+     */
+    public static final OptionID WEIGHTED_ID = new OptionID("orca.weighted", "Use the sum of the k nearest neighbor distances (kNN weight) instead of the k-distance.");
+
+    /**
+     * Parameter for the block size.
+     */
+    public static final OptionID BLOCKSIZE_ID = new OptionID("orca.blocksize", "Number of candidates processed together in the nested loop.");
+
+    /**
+     * Random generator seed.
+     */
+    public static final OptionID SEED_ID = new OptionID("orca.seed", "Random generator seed for the processing order.");
+
+    /**
+     * Number of neighbors.
+     */
+    protected int k = 0;
+
+    /**
+     * Number of outliers.
+     */
+    protected int n = 0;
+
+    /**
+     * Use kNN weight.
+     */
+    protected boolean weighted = false;
+
+    /**
+     * Block size.
+     */
+    protected int blocksize = 1000;
+
+    /**
+     * Random generator.
+     */
+    protected RandomFactory rnd;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      super.makeOptions(config);
+      final IntParameter kP = new IntParameter(K_ID) //
+      .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(kP)) {
+        k = kP.getValue();
+      }
+      final IntParameter nP = new IntParameter(N_ID) //
+      .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(nP)) {
+        n = nP.getValue();
+      }
+      final Flag weightedF = new Flag(WEIGHTED_ID);
+      if(config.grab(weightedF)) {
+        weighted = weightedF.isTrue();
+      }
+      final IntParameter blocksizeP = new IntParameter(BLOCKSIZE_ID, 1000) //
+      .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(blocksizeP)) {
+        blocksize = blocksizeP.getValue();
+      }
+      final RandomParameter rndP = new RandomParameter(SEED_ID);
+      if(config.grab(rndP)) {
+        rnd = rndP.getValue();
+      }
+    }
+
+    @Override
+    protected ORCA<O> makeInstance() {
+      return new ORCA<>(distanceFunction, k, n, weighted, blocksize, rnd);
+    }
+  }
+}
@@ -100,12 +100,12 @@ public class ReferenceBasedOutlierDetection extends AbstractPrimitiveDistanceBas
   /**
    * Holds the number of neighbors to use for density estimation.
    */
-  private int k;
+  protected int k;
 
   /**
    * Stores the reference point strategy.
    */
-  private ReferencePointsHeuristic refp;
+  protected ReferencePointsHeuristic refp;
 
   /**
    * Constructor with parameters.
@@ -147,6 +147,18 @@ public class ReferenceBasedOutlierDetection extends AbstractPrimitiveDistanceBas
       DoubleDBIDList referenceDists = computeDistanceVector(refPoint, relation, distq);
       updateDensities(rbod_score, referenceDists);
     }
+    return computeScores(relation, rbod_score, refPoints);
+  }
+
+  /**
+   * Convert the (minimum) densities to outlier scores, and build the result.
+   * 
+   * @param relation Relation to process
+   * @param rbod_score Density storage, will be replaced with the scores
+   * @param refPoints Reference points used
+   * @return Outlier result
+   */
+  protected OutlierResult computeScores(Relation<? extends NumberVector> relation, WritableDoubleDataStore rbod_score, Collection<? extends NumberVector> refPoints) {
     // compute maximum density
     DoubleMinMax mm = new DoubleMinMax();
     for(DBIDIter iditer = relation.iterDBIDs(); iditer.valid(); iditer.advance()) {
@@ -296,12 +308,12 @@ public class ReferenceBasedOutlierDetection extends AbstractPrimitiveDistanceBas
     /**
      * Holds the value of {@link #K_ID}.
      */
-    private int k;
+    protected int k;
 
     /**
      * Stores the reference point strategy
      */
-    private ReferencePointsHeuristic refp;
+    protected ReferencePointsHeuristic refp;
 
     @Override
     protected void makeOptions(Parameterization config) {
@@ -0,0 +1,163 @@
+package de.lmu.ifi.dbs.elki.algorithm.outlier.distance.parallel;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.util.List;
+
+import de.lmu.ifi.dbs.elki.algorithm.outlier.distance.HilOut;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.LPNormDistanceFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.parallel.ParallelBlocks;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.ObjectHeap;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Description;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Title;
+
+/**
+ * Parallel version of HilOut.
+ * 
+ * In each scan, the Hilbert curve is split into contiguous segments, which are
+ * scanned in parallel. Each segment collects its top-n candidates in local
+ * heaps, which are merged once all segments have completed, so that no bounds
+ * change while the global heaps are ordered. The outlier threshold
+ * used for pruning is shared across all segments: any n lower bounds found in
+ * a single segment already give a valid threshold for the whole data set.
+ * 
+ * As the pruning depends on the order in which the threshold is raised, the
+ * bounds reported for objects other than the top-n may differ from the serial
+ * implementation.
+ * 
+ * Reference:
+ * <p>
+ * F. Angiulli, C. Pizzuti:<br />
+ * Fast Outlier Detection in High Dimensional Spaces.<br />
+ * In: Proc. European Conference on Principles of Knowledge Discovery and Data
+ * Mining (PKDD'02), Helsinki, Finland, 2002.
+ * </p>
+ * 
+ * @author Erich Schubert
+ * 
+ * @apiviz.uses ParallelBlocks
+ * 
+ * @param <O> Object type
+ */
+@Title("Fast Outlier Detection in High Dimensional Spaces")
+@Description("Algorithm to compute outliers using Hilbert space filling curves, scanning curve segments in parallel")
+@Reference(authors = "F. Angiulli, C. Pizzuti", //
+title = "Fast Outlier Detection in High Dimensional Spaces", //
+booktitle = "Proc. European Conference on Principles of Knowledge Discovery and Data Mining (PKDD'02)", //
+url = "http://dx.doi.org/10.1145/375663.375668")
+public class ParallelHilOut<O extends NumberVector> extends HilOut<O> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelHilOut.class);
+
+  /**
+   * Minimum number of objects per segment.
+   */
+  private static final int MIN_SEGMENT_SIZE = 64;
+
+  /**
+   * Constructor.
+   * 
+   * @param distfunc Distance function
+   * @param k Number of Next Neighbors
+   * @param n Number of Outlier
+   * @param h Number of Bits for precision to use - max 32
+   * @param tn TopN or All Outlier Rank to return
+   */
+  public ParallelHilOut(LPNormDistanceFunction distfunc, int k, int n, int h, Enum<ScoreType> tn) {
+    super(distfunc, k, n, h, tn);
+  }
+
+  @Override
+  protected void scanSegments(final HilbertFeatures hf, int size, final int mink0) {
+    final int nblocks = Math.max(1, Math.min(ParallelBlocks.numBlocks(size), size / MIN_SEGMENT_SIZE));
+    List<SegmentHeaps> segments = ParallelBlocks.run(size, nblocks, new ParallelBlocks.Task<SegmentHeaps>() {
+      @Override
+      public SegmentHeaps run(int block, int start, int end) {
+        SegmentHeaps heaps = new SegmentHeaps(makeOutHeap(), makeWLBHeap());
+        scanSegment(hf, start, end, mink0, heaps.out, heaps.wlb);
+        return heaps;
+      }
+    });
+    // Merge only after all bounds of this scan are final.
+    for(SegmentHeaps heaps : segments) {
+      mergeSegment(hf, heaps.out, heaps.wlb);
+    }
+  }
+
+  @Override
+  protected synchronized void raiseThreshold(double omega) {
+    super.raiseThreshold(omega);
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Heaps of a scanned segment, to be merged.
+   * 
+   * @author Erich Schubert
+   * 
+   * @apiviz.exclude
+   */
+  private static class SegmentHeaps {
+    /**
+     * Candidate outliers and lower bounds of the segment.
+     */
+    final ObjectHeap<HilFeature> out, wlb;
+
+    /**
+     * Constructor.
+     * 
+     * @param out Candidate outliers
+     * @param wlb Lower bounds
+     */
+    SegmentHeaps(ObjectHeap<HilFeature> out, ObjectHeap<HilFeature> wlb) {
+      this.out = out;
+      this.wlb = wlb;
+    }
+  }
+
+  /**
+   * Parameterization class
+   * 
+   * @author Erich Schubert
+   * 
+   * @apiviz.exclude
+   * 
+   * @param <O> Vector type
+   */
+  public static class Parameterizer<O extends NumberVector> extends HilOut.Parameterizer<O> {
+    @Override
+    protected ParallelHilOut<O> makeInstance() {
+      return new ParallelHilOut<>(distfunc, k, n, h, tn);
+    }
+  }
+}
@@ -0,0 +1,276 @@
+package de.lmu.ifi.dbs.elki.algorithm.outlier.distance.parallel;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import de.lmu.ifi.dbs.elki.algorithm.outlier.distance.ReferenceBasedOutlierDetection;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.PrimitiveDistanceFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
+import de.lmu.ifi.dbs.elki.parallel.ParallelBlocks;
+import de.lmu.ifi.dbs.elki.parallel.ParallelCore;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.arrays.DoubleIntegerArrayQuickSort;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Description;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Title;
+import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
+import de.lmu.ifi.dbs.elki.utilities.referencepoints.ReferencePointsHeuristic;
+
+/**
+ * Parallel version of the Reference-Based Outlier Detection algorithm.
+ * 
+ * The reference points are processed in batches. For each batch, the distances
+ * of all objects to the reference points are computed in a single parallel
+ * pass into primitive columns, one per reference point. The columns are then
+ * sorted and turned into densities in parallel (one reference point per task),
+ * and the densities are merged into the minimum density in a final parallel
+ * pass over the objects. Memory use is bounded by the batch size (the number
+ * of processors), not by the number of reference points, so that large numbers
+ * of reference points can be used on large data sets.
+ * 
+ * Reference:
+ * <p>
+ * Y. Pei, O. R. Zaiane, Y. Gao<br />
+ * An Efficient Reference-Based Approach to Outlier Detection in Large Datasets<br />
+ * In: Proc. IEEE Int. Conf. on Data Mining (ICDM'06), Hong Kong, China, 2006
+ * </p>
+ * 
+ * @author Erich Schubert
+ * 
+ * @apiviz.uses ParallelBlocks
+ */
+@Title("An Efficient Reference-based Approach to Outlier Detection in Large Datasets")
+@Description("Computes kNN distances approximately, using reference points with various reference point strategies, in parallel.")
+@Reference(authors = "Y. Pei, O.R. Zaiane, Y. Gao", //
+title = "An Efficient Reference-based Approach to Outlier Detection in Large Datasets", //
+booktitle = "Proc. 6th IEEE Int. Conf. on Data Mining (ICDM '06)", //
+url = "http://dx.doi.org/10.1109/ICDM.2006.17")
+public class ParallelReferenceBasedOutlierDetection extends ReferenceBasedOutlierDetection {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelReferenceBasedOutlierDetection.class);
+
+  /**
+   * Constructor with parameters.
+   * 
+   * @param k k Parameter
+   * @param distanceFunction distance function
+   * @param refp Reference points heuristic
+   */
+  public ParallelReferenceBasedOutlierDetection(int k, PrimitiveDistanceFunction<? super NumberVector> distanceFunction, ReferencePointsHeuristic refp) {
+    super(k, distanceFunction, refp);
+  }
+
+  @Override
+  public OutlierResult run(Database database, Relation<? extends NumberVector> relation) {
+    Collection<? extends NumberVector> refPoints = refp.getReferencePoints(relation);
+    if(refPoints.size() < 1) {
+      throw new AbortException("Cannot compute ROS without reference points!");
+    }
+    final ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    final int size = ids.size();
+    if(k >= size) {
+      throw new AbortException("k must not be chosen larger than the database size!");
+    }
+    final List<NumberVector> refs = new ArrayList<>(refPoints);
+    final int nblocks = ParallelBlocks.numBlocks(size);
+    // Number of reference points processed at the same time:
+    final int batchsize = Math.min(refs.size(), ParallelCore.getCore().getParallelism());
+
+    // Minimum density of each object, by offset.
+    final double[] dens = new double[size];
+    Arrays.fill(dens, Double.POSITIVE_INFINITY);
+
+    FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Reference points", refs.size(), LOG) : null;
+    // Columns are sorted in place, and the sort permutation is kept.
+    final double[][] cols = new double[batchsize][size];
+    final int[][] order = new int[batchsize][size];
+    for(int bstart = 0; bstart < refs.size(); bstart += batchsize) {
+      final List<NumberVector> batch = refs.subList(bstart, Math.min(bstart + batchsize, refs.size()));
+      final int bsize = batch.size();
+      computeDistances(relation, ids, batch, cols, nblocks);
+      // Sort each column, and replace the distances with densities.
+      ParallelBlocks.run(bsize, bsize, new ParallelBlocks.Task<Void>() {
+        @Override
+        public Void run(int block, int start, int end) {
+          for(int r = start; r < end; r++) {
+            computeDensities(cols[r], order[r]);
+          }
+          return null;
+        }
+      });
+      // Merge into the minimum densities. Each permutation is processed on its
+      // own, so the blocks write to disjoint objects.
+      for(int r = 0; r < bsize; r++) {
+        final double[] col = cols[r];
+        final int[] ord = order[r];
+        ParallelBlocks.run(size, nblocks, new ParallelBlocks.Task<Void>() {
+          @Override
+          public Void run(int block, int start, int end) {
+            for(int l = start; l < end; l++) {
+              final int i = ord[l];
+              if(col[l] < dens[i]) {
+                dens[i] = col[l];
+              }
+            }
+            return null;
+          }
+        });
+      }
+      if(prog != null) {
+        prog.setProcessed(bstart + bsize, LOG);
+      }
+    }
+    LOG.ensureCompleted(prog);
+
+    WritableDoubleDataStore rbod_score = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_STATIC | DataStoreFactory.HINT_HOT);
+    int i = 0;
+    for(DBIDArrayIter iter = ids.iter(); iter.valid(); iter.advance(), i++) {
+      rbod_score.putDouble(iter, dens[i]);
+    }
+    return computeScores(relation, rbod_score, refPoints);
+  }
+
+  /**
+   * Compute the distances of all objects to a batch of reference points, in a
+   * single parallel pass over the data.
+   * 
+   * @param relation Data relation
+   * @param ids Object IDs
+   * @param batch Reference points
+   * @param cols Output columns, one per reference point
+   * @param nblocks Number of blocks
+   */
+  private void computeDistances(final Relation<? extends NumberVector> relation, final ArrayDBIDs ids, final List<NumberVector> batch, final double[][] cols, int nblocks) {
+    final NumberVector[] refs = batch.toArray(new NumberVector[batch.size()]);
+    ParallelBlocks.run(ids.size(), nblocks, new ParallelBlocks.Task<Void>() {
+      @Override
+      public Void run(int block, int start, int end) {
+        DBIDArrayIter iter = ids.iter().seek(start);
+        for(int i = start; i < end; i++, iter.advance()) {
+          final NumberVector obj = relation.get(iter);
+          for(int r = 0; r < refs.length; r++) {
+            cols[r][i] = distanceFunction.distance(obj, refs[r]);
+          }
+        }
+        return null;
+      }
+    });
+  }
+
+  /**
+   * Replace the distances to a reference point with the density estimates.
+   * 
+   * The approximate kNN of an object are the objects closest to it in the
+   * order of the reference distances, so the column is sorted in place. The
+   * density of position l only needs the distances at l-k to l+k, so each
+   * density is written back k positions late, using a small ring buffer.
+   * 
+   * @param col Distances to the reference point; on return, the densities in
+   *        sorted order
+   * @param order Output: the sort permutation (object offsets)
+   */
+  private void computeDensities(double[] col, int[] order) {
+    final int size = col.length;
+    for(int i = 0; i < size; i++) {
+      order[i] = i;
+    }
+    DoubleIntegerArrayQuickSort.sort(col, order, size);
+    final double[] pending = new double[k + 1];
+    for(int l = 0; l < size; l++) {
+      pending[l % (k + 1)] = computeDensity(col, size, l);
+      // Position l-k is not used by any later density.
+      if(l >= k) {
+        col[l - k] = pending[(l - k) % (k + 1)];
+      }
+    }
+    for(int l = Math.max(0, size - k); l < size; l++) {
+      col[l] = pending[l % (k + 1)];
+    }
+  }
+
+  /**
+   * Computes the density of an object, as the inverse mean distance to the k
+   * closest objects in the sorted reference distances.
+   * 
+   * @param keys Sorted reference distances
+   * @param size Number of objects
+   * @param index Index of the current object
+   * @return density for one object and reference point
+   */
+  private double computeDensity(double[] keys, int size, int index) {
+    final double xDist = keys[index];
+    int lef = index - 1, rig = index + 1;
+    double sum = 0.;
+    double lef_d = (lef >= 0) ? xDist - keys[lef] : Double.POSITIVE_INFINITY;
+    double rig_d = (rig < size) ? keys[rig] - xDist : Double.POSITIVE_INFINITY;
+    for(int i = 0; i < k; ++i) {
+      // Both are infinite only if we ran out of objects, which is prevented by
+      // the k < size check.
+      if(lef_d < rig_d) {
+        sum += lef_d;
+        lef_d = (--lef >= 0) ? xDist - keys[lef] : Double.POSITIVE_INFINITY;
+      }
+      else {
+        sum += rig_d;
+        rig_d = (++rig < size) ? keys[rig] - xDist : Double.POSITIVE_INFINITY;
+      }
+    }
+    return k / sum;
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   * 
+   * @author Erich Schubert
+   * 
+   * @apiviz.exclude
+   */
+  public static class Parameterizer extends ReferenceBasedOutlierDetection.Parameterizer {
+    @Override
+    protected ParallelReferenceBasedOutlierDetection makeInstance() {
+      return new ParallelReferenceBasedOutlierDetection(k, distanceFunction, refp);
+    }
+  }
+}
@@ -32,6 +32,7 @@ import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
 import de.lmu.ifi.dbs.elki.database.datastore.DoubleDataStore;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
 import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
@@ -150,48 +151,60 @@ public class COF<O> extends AbstractDistanceBasedAlgorithm<O, OutlierResult> imp
     // Compute the chaining distances.
     // We do <i>not</i> bother to materialize the chaining order.
     for(DBIDIter iter = ids.iter(); iter.valid(); iter.advance()) {
-      final KNNList neighbors = knnq.getKNNForDBID(iter, k);
-      final int r = neighbors.size();
-      DoubleDBIDListIter it1 = neighbors.iter(), it2 = neighbors.iter();
-      // Store the current lowest reachability.
-      final double[] mindists = new double[r];
-      for(int i = 0; it1.valid(); it1.advance(), ++i) {
-        mindists[i] = DBIDUtil.equal(it1, iter) ? Double.NaN : it1.doubleValue();
-      }
+      acds.putDouble(iter, computeAverageChainingDistance(dq, iter, knnq.getKNNForDBID(iter, k), k));
+      LOG.incrementProcessed(lrdsProgress);
+    }
+    LOG.ensureCompleted(lrdsProgress);
+  }
+
+  /**
+   * Compute the average chaining distance of a single object.
+   * 
+   * @param dq Distance query
+   * @param iter Object
+   * @param neighbors Neighbors of the object
+   * @param k Number of neighbors (including the query point)
+   * @return Average chaining distance
+   */
+  public static <O> double computeAverageChainingDistance(DistanceQuery<O> dq, DBIDRef iter, KNNList neighbors, int k) {
+    final int r = neighbors.size();
+    DoubleDBIDListIter it1 = neighbors.iter(), it2 = neighbors.iter();
+    // Store the current lowest reachability.
+    final double[] mindists = new double[r];
+    for(int i = 0; it1.valid(); it1.advance(), ++i) {
+      mindists[i] = DBIDUtil.equal(it1, iter) ? Double.NaN : it1.doubleValue();
+    }
 
-      double acsum = 0.;
-      for(int j = ((r < k) ? r : k) - 1; j > 0; --j) {
-        // Find the minimum:
-        int minpos = -1;
-        double mindist = Double.NaN;
-        for(int i = 0; i < mindists.length; ++i) {
-          double curdist = mindists[i];
-          // Both values could be NaN, deliberately.
-          if(curdist == curdist && !(curdist > mindist)) {
-            minpos = i;
-            mindist = curdist;
-          }
+    double acsum = 0.;
+    for(int j = ((r < k) ? r : k) - 1; j > 0; --j) {
+      // Find the minimum:
+      int minpos = -1;
+      double mindist = Double.NaN;
+      for(int i = 0; i < mindists.length; ++i) {
+        double curdist = mindists[i];
+        // Both values could be NaN, deliberately.
+        if(curdist == curdist && !(curdist > mindist)) {
+          minpos = i;
+          mindist = curdist;
         }
-        acsum += mindist * j; // Weighted sum, decreasing weights
-        mindists[minpos] = Double.NaN;
-        it1.seek(minpos);
-        // Update distances
-        it2.seek(0);
-        for(int i = 0; it2.valid(); it2.advance(), ++i) {
-          final double curdist = mindists[i];
-          if(curdist != curdist) {
-            continue; // NaN = processed!
-          }
-          double newdist = dq.distance(it1, it2);
-          if(newdist < curdist) {
-            mindists[i] = newdist;
-          }
+      }
+      acsum += mindist * j; // Weighted sum, decreasing weights
+      mindists[minpos] = Double.NaN;
+      it1.seek(minpos);
+      // Update distances
+      it2.seek(0);
+      for(int i = 0; it2.valid(); it2.advance(), ++i) {
+        final double curdist = mindists[i];
+        if(curdist != curdist) {
+          continue; // NaN = processed!
+        }
+        double newdist = dq.distance(it1, it2);
+        if(newdist < curdist) {
+          mindists[i] = newdist;
         }
       }
-      acds.putDouble(iter, acsum / (r * 0.5 * (r - 1.)));
-      LOG.incrementProcessed(lrdsProgress);
     }
-    LOG.ensureCompleted(lrdsProgress);
+    return acsum / (r * 0.5 * (r - 1.));
   }
 
   /**
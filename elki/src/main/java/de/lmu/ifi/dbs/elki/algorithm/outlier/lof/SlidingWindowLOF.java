@@ -0,0 +1,848 @@
+package de.lmu.ifi.dbs.elki.algorithm.outlier.lof;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import gnu.trove.iterator.TIntIterator;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.map.hash.TLongIntHashMap;
+import gnu.trove.set.hash.TIntHashSet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import de.lmu.ifi.dbs.elki.algorithm.AbstractPrimitiveDistanceBasedAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.OutlierAlgorithm;
+import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.MaterializedDoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.PrimitiveDistanceFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
+import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.result.outlier.QuotientOutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.GreaterEqualConstraint;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.DoubleParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.LongParameter;
+
+/**
+ * Incremental {@link LOF} over a sliding window of a data stream.
+ *
+ * The window is bounded by the number of objects, by a time horizon, or both.
+ * Updates are applied in batches: all insertions and expirations of a batch
+ * are processed together, and only the objects whose k nearest neighbors,
+ * local reachability density or LOF are affected by the batch are
+ * recomputed, following the update propagation of incremental LOF:
+ * <ol>
+ * <li>objects with a changed kNN set (new objects, objects that received a new
+ * neighbor, objects that lost a neighbor),</li>
+ * <li>their reverse neighbors, if the k-distance changed (lrd update),</li>
+ * <li>the reverse neighbors of all objects with changed lrd (LOF update).</li>
+ * </ol>
+ * A relative tolerance can be set to stop the propagation of insignificant lrd
+ * changes, which bounds the update cost on dense streams. Score changes are
+ * only reported when they exceed this tolerance; with a tolerance of 0 the
+ * scores are exactly those of {@link LOF} on the window contents (for data
+ * without distance ties, as exactly k neighbors are kept).
+ *
+ * When used as a regular algorithm, the relation is replayed as a stream in
+ * database order, and each object receives the score it had when it was
+ * inserted into the window (i.e. the score is based only on the preceding
+ * objects of the window).
+ *
+ * For continuous scoring, use {@link #newWindow} and feed the objects into the
+ * returned {@link Window}, with a {@link ScoreListener} to receive the score
+ * changes.
+ *
+ * Reference:
+ * <p>
+ * D. Pokrajac, A. Lazarevic, L. J. Latecki<br />
+ * Incremental Local Outlier Detection for Data Streams<br />
+ * IEEE Symposium on Computational Intelligence and Data Mining, 2007
+ * </p>
+ *
+ * @author Erich Schubert
+ *
+ * @apiviz.has Window
+ * @apiviz.uses ScoreListener
+ *
+ * @param <O> Object type
+ */
+public class SlidingWindowLOF<O> extends AbstractPrimitiveDistanceBasedAlgorithm<O, OutlierResult> implements OutlierAlgorithm {
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(SlidingWindowLOF.class);
+
+  /**
+   * Number of neighbors (not including the query object).
+   */
+  protected int k;
+
+  /**
+   * Maximum number of objects in the window.
+   */
+  protected int window;
+
+  /**
+   * Time horizon of the window.
+   */
+  protected long horizon;
+
+  /**
+   * Number of objects per update batch.
+   */
+  protected int batch;
+
+  /**
+   * Relative tolerance for propagating and reporting changes.
+   */
+  protected double tolerance;
+
+  /**
+   * Constructor.
+   *
+   * @param distanceFunction Distance function
+   * @param k Number of neighbors (not including the query object)
+   * @param window Maximum number of objects in the window
+   * @param horizon Time horizon of the window
+   * @param batch Number of objects per update batch (when run on a relation)
+   * @param tolerance Relative tolerance for propagating and reporting changes
+   */
+  public SlidingWindowLOF(PrimitiveDistanceFunction<? super O> distanceFunction, int k, int window, long horizon, int batch, double tolerance) {
+    super(distanceFunction);
+    this.k = k;
+    this.window = window;
+    this.horizon = horizon;
+    this.batch = batch;
+    this.tolerance = tolerance;
+  }
+
+  /**
+   * Replay a relation as stream, in database order.
+   *
+   * @param relation Relation
+   * @return Outlier result
+   */
+  public OutlierResult run(Relation<O> relation) {
+    ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    WritableDoubleDataStore scores = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_DB);
+    DoubleMinMax minmax = new DoubleMinMax();
+    Window win = newWindow(null);
+    FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Streaming LOF", ids.size(), LOG) : null;
+    long affected = 0;
+    // Larger batches would expire objects before they are scored.
+    final int bsize = (int) Math.min(Math.min(batch, window), horizon), last = ids.size() - 1;
+    DBIDArrayIter it = ids.iter(), out = ids.iter();
+    for(long time = 0; it.valid(); it.advance(), time++) {
+      win.insert(relation.get(it), time);
+      if(win.getPendingCount() >= bsize || it.getOffset() == last) {
+        win.flush();
+        affected += win.getLastAffected();
+        // Record the score of the new objects at insertion.
+        for(; out.getOffset() <= it.getOffset(); out.advance()) {
+          final double score = win.getScore(out.getOffset());
+          scores.putDouble(out, score);
+          minmax.put(score);
+          LOG.incrementProcessed(prog);
+        }
+      }
+    }
+    LOG.ensureCompleted(prog);
+    if(LOG.isStatistics()) {
+      LOG.statistics(new LongStatistic(SlidingWindowLOF.class.getName() + ".recomputed-scores", affected));
+    }
+    DoubleRelation scoreres = new MaterializedDoubleRelation("Sliding Window LOF", "sliding-window-lof-outlier", scores, ids);
+    OutlierScoreMeta meta = new QuotientOutlierScoreMeta(minmax.getMin(), minmax.getMax(), 0., Double.POSITIVE_INFINITY, 1.);
+    return new OutlierResult(meta, scoreres);
+  }
+
+  /**
+   * Create a new, empty window.
+   *
+   * @param listener Listener to notify of score changes, may be {@code null}.
+   * @return New window
+   */
+  public Window newWindow(ScoreListener listener) {
+    return new Window(listener);
+  }
+
+  @Override
+  public TypeInformation[] getInputTypeRestriction() {
+    return TypeUtil.array(getDistanceFunction().getInputTypeRestriction());
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Listener interface for score changes.
+   *
+   * @author Erich Schubert
+   */
+  public static interface ScoreListener {
+    /**
+     * Called when the score of an object changed, or a new object was scored.
+     *
+     * @param id Object id (as returned by {@link Window#insert})
+     * @param oldscore Previous score, {@code NaN} for new objects
+     * @param newscore New score
+     */
+    void scoreChanged(long id, double oldscore, double newscore);
+
+    /**
+     * Called when an object leaves the window.
+     *
+     * @param id Object id (as returned by {@link Window#insert})
+     * @param score Last score of the object
+     */
+    void removed(long id, double score);
+  }
+
+  /**
+   * Sliding window state.
+   *
+   * Objects are identified by the sequence number returned by
+   * {@link #insert}, internally they are stored in reusable slots. Time stamps
+   * must be non-decreasing.
+   *
+   * @author Erich Schubert
+   */
+  public class Window {
+    /**
+     * Listener to notify.
+     */
+    private ScoreListener listener;
+
+    /**
+     * Objects, by slot.
+     */
+    private ArrayList<O> objs = new ArrayList<>();
+
+    /**
+     * Sequence numbers by slot, -1 for free slots.
+     */
+    private long[] seqs = new long[0];
+
+    /**
+     * Time stamps by slot.
+     */
+    private long[] times = new long[0];
+
+    /**
+     * Neighbor slots, sorted by distance.
+     */
+    private int[][] nn = new int[0][];
+
+    /**
+     * Neighbor distances, sorted.
+     */
+    private double[][] nd = new double[0][];
+
+    /**
+     * Number of neighbors currently known.
+     */
+    private int[] nnsize = new int[0];
+
+    /**
+     * Reverse neighbors.
+     */
+    private TIntArrayList[] rev = new TIntArrayList[0];
+
+    /**
+     * Local reachability densities.
+     */
+    private double[] lrds = new double[0];
+
+    /**
+     * LOF scores.
+     */
+    private double[] lofs = new double[0];
+
+    /**
+     * Free slots.
+     */
+    private TIntArrayList free = new TIntArrayList();
+
+    /**
+     * Map from sequence number to slot.
+     */
+    private TLongIntHashMap slots = new TLongIntHashMap();
+
+    /**
+     * Pending insertions.
+     */
+    private ArrayList<O> pending = new ArrayList<>();
+
+    /**
+     * Time stamps of pending insertions.
+     */
+    private TLongArrayList pendingTimes = new TLongArrayList();
+
+    /**
+     * Next sequence number, oldest sequence number in the window.
+     */
+    private long nextseq = 0, headseq = 0;
+
+    /**
+     * Latest time stamp.
+     */
+    private long now = Long.MIN_VALUE;
+
+    /**
+     * Number of LOF recomputations in the last batch.
+     */
+    private int lastAffected = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param listener Listener to notify, may be {@code null}
+     */
+    protected Window(ScoreListener listener) {
+      super();
+      this.listener = listener;
+    }
+
+    /**
+     * Queue an object for insertion. It will be added to the window on the
+     * next call of {@link #flush}.
+     *
+     * @param obj Object
+     * @param time Time stamp, must be non-decreasing
+     * @return Sequence number to identify the object
+     */
+    public long insert(O obj, long time) {
+      if(time < now) {
+        throw new IllegalArgumentException("Time stamps must be non-decreasing.");
+      }
+      now = time;
+      pending.add(obj);
+      pendingTimes.add(time);
+      return nextseq++;
+    }
+
+    /**
+     * Get the number of pending insertions.
+     *
+     * @return Number of pending insertions
+     */
+    public int getPendingCount() {
+      return pending.size();
+    }
+
+    /**
+     * Get the number of objects in the window.
+     *
+     * @return Window size
+     */
+    public int size() {
+      return slots.size();
+    }
+
+    /**
+     * Get the number of LOF scores recomputed by the last flush.
+     *
+     * @return Number of affected objects
+     */
+    public int getLastAffected() {
+      return lastAffected;
+    }
+
+    /**
+     * Get the current score of an object.
+     *
+     * @param id Object id
+     * @return Score, or {@code NaN} if the object is not in the window.
+     */
+    public double getScore(long id) {
+      return slots.containsKey(id) ? lofs[slots.get(id)] : Double.NaN;
+    }
+
+    /**
+     * Advance the time without inserting, expiring objects that left the time
+     * horizon on the next {@link #flush}.
+     *
+     * @param time New time stamp, must be non-decreasing
+     */
+    public void advanceTime(long time) {
+      if(time < now) {
+        throw new IllegalArgumentException("Time stamps must be non-decreasing.");
+      }
+      now = time;
+    }
+
+    /**
+     * Apply all pending insertions and expirations, and update the scores.
+     */
+    public void flush() {
+      final long pendseq = nextseq - pending.size();
+      // Find the first object to keep:
+      long keep = Math.max(headseq, nextseq - window);
+      if(horizon < Long.MAX_VALUE) {
+        final long threshold = now - horizon;
+        for(; keep < nextseq; keep++) {
+          final long t = keep < pendseq ? times[slots.get(keep)] : pendingTimes.get((int) (keep - pendseq));
+          if(t > threshold) {
+            break;
+          }
+        }
+      }
+      // Expire old objects:
+      TIntHashSet rescan = new TIntHashSet();
+      for(; headseq < keep && headseq < pendseq; headseq++) {
+        remove(slots.remove(headseq), rescan);
+      }
+      headseq = keep;
+      // Insert new objects:
+      TIntArrayList inserted = new TIntArrayList(pending.size());
+      for(int i = (int) Math.max(0, keep - pendseq); i < pending.size(); i++) {
+        inserted.add(allocate(pendseq + i, pending.get(i), pendingTimes.get(i)));
+      }
+      pending.clear();
+      pendingTimes.clear();
+      update(inserted, rescan);
+    }
+
+    /**
+     * Remove an object from the window.
+     *
+     * @param slot Slot
+     * @param rescan Objects that need a new kNN search
+     */
+    private void remove(int slot, TIntHashSet rescan) {
+      rescan.remove(slot);
+      TIntArrayList r = rev[slot];
+      for(int i = 0; i < r.size(); i++) {
+        rescan.add(r.get(i));
+      }
+      r.clear();
+      final int[] n = nn[slot];
+      for(int i = 0; i < nnsize[slot]; i++) {
+        rev[n[i]].remove(slot);
+      }
+      nnsize[slot] = 0;
+      if(listener != null) {
+        listener.removed(seqs[slot], lofs[slot]);
+      }
+      seqs[slot] = -1;
+      objs.set(slot, null);
+      free.add(slot);
+    }
+
+    /**
+     * Allocate a slot for a new object.
+     *
+     * @param seq Sequence number
+     * @param obj Object
+     * @param time Time stamp
+     * @return Slot
+     */
+    private int allocate(long seq, O obj, long time) {
+      final int slot;
+      if(free.size() > 0) {
+        slot = free.removeAt(free.size() - 1);
+        objs.set(slot, obj);
+      }
+      else {
+        slot = objs.size();
+        objs.add(obj);
+        if(slot >= seqs.length) {
+          grow(Math.max(16, seqs.length << 1));
+        }
+      }
+      seqs[slot] = seq;
+      times[slot] = time;
+      nnsize[slot] = 0;
+      lrds[slot] = Double.NaN;
+      lofs[slot] = Double.NaN;
+      slots.put(seq, slot);
+      return slot;
+    }
+
+    /**
+     * Grow the slot arrays.
+     *
+     * @param size New size
+     */
+    private void grow(int size) {
+      final int old = seqs.length;
+      seqs = Arrays.copyOf(seqs, size);
+      times = Arrays.copyOf(times, size);
+      nn = Arrays.copyOf(nn, size);
+      nd = Arrays.copyOf(nd, size);
+      nnsize = Arrays.copyOf(nnsize, size);
+      rev = Arrays.copyOf(rev, size);
+      lrds = Arrays.copyOf(lrds, size);
+      lofs = Arrays.copyOf(lofs, size);
+      for(int i = old; i < size; i++) {
+        seqs[i] = -1;
+        nn[i] = new int[k];
+        nd[i] = new double[k];
+        rev[i] = new TIntArrayList();
+      }
+    }
+
+    /**
+     * Update neighborhoods and scores after a batch.
+     *
+     * @param inserted Inserted slots
+     * @param rescan Objects that lost a neighbor
+     */
+    private void update(TIntArrayList inserted, TIntHashSet rescan) {
+      final int cap = objs.size(), ins = inserted.size();
+      // Distances from the new objects to all objects.
+      double[][] rows = new double[ins][];
+      for(int i = 0; i < ins; i++) {
+        final int p = inserted.get(i);
+        final O po = objs.get(p);
+        double[] row = rows[i] = new double[cap];
+        for(int q = 0; q < cap; q++) {
+          row[q] = (seqs[q] < 0 || q == p) ? Double.NaN : distanceFunction.distance(po, objs.get(q));
+        }
+      }
+      TIntHashSet isNew = new TIntHashSet(inserted);
+      TIntHashSet knnChanged = new TIntHashSet(), kdistChanged = new TIntHashSet();
+      // Existing objects:
+      for(int q = 0; q < cap; q++) {
+        if(seqs[q] < 0 || isNew.contains(q)) {
+          continue; // Free, or new object.
+        }
+        final double oldkdist = kdist(q);
+        if(rescan.contains(q)) {
+          search(q, null);
+          knnChanged.add(q);
+        }
+        else {
+          for(int i = 0; i < ins; i++) {
+            if(add(q, inserted.get(i), rows[i][q])) {
+              knnChanged.add(q);
+            }
+          }
+        }
+        if(kdist(q) != oldkdist) {
+          kdistChanged.add(q);
+        }
+      }
+      // New objects:
+      for(int i = 0; i < ins; i++) {
+        final int p = inserted.get(i);
+        search(p, rows[i]);
+        knnChanged.add(p);
+        kdistChanged.add(p);
+      }
+      // Objects with changed lrd:
+      TIntHashSet lrdDirty = new TIntHashSet(knnChanged);
+      addReverse(kdistChanged, lrdDirty);
+      TIntHashSet lrdChanged = new TIntHashSet();
+      for(TIntIterator it = lrdDirty.iterator(); it.hasNext();) {
+        final int p = it.next();
+        final double lrd = computeLRD(p);
+        if(changed(lrds[p], lrd)) {
+          lrds[p] = lrd;
+          lrdChanged.add(p);
+        }
+      }
+      // Objects with changed LOF:
+      TIntHashSet lofDirty = new TIntHashSet(knnChanged);
+      lofDirty.addAll(lrdChanged);
+      addReverse(lrdChanged, lofDirty);
+      for(TIntIterator it = lofDirty.iterator(); it.hasNext();) {
+        final int p = it.next();
+        final double lof = computeLOF(p);
+        final double old = lofs[p];
+        if(changed(old, lof)) {
+          lofs[p] = lof;
+          if(listener != null) {
+            listener.scoreChanged(seqs[p], old, lof);
+          }
+        }
+      }
+      lastAffected = lofDirty.size();
+    }
+
+    /**
+     * Test whether a value changed significantly.
+     *
+     * @param old Old value
+     * @param cur New value
+     * @return {@code true} when changed by more than the tolerance.
+     */
+    private boolean changed(double old, double cur) {
+      return old != cur && !(Math.abs(cur - old) <= tolerance * Math.abs(old));
+    }
+
+    /**
+     * Add the reverse neighbors of all objects to a set.
+     *
+     * @param objs Objects
+     * @param out Output set
+     */
+    private void addReverse(TIntHashSet objs, TIntHashSet out) {
+      for(TIntIterator it = objs.iterator(); it.hasNext();) {
+        out.addAll(rev[it.next()]);
+      }
+    }
+
+    /**
+     * Current k-distance of an object.
+     *
+     * @param p Slot
+     * @return k-distance
+     */
+    private double kdist(int p) {
+      return nnsize[p] > 0 ? nd[p][nnsize[p] - 1] : 0.;
+    }
+
+    /**
+     * Recompute the kNN of an object by a linear scan.
+     *
+     * @param p Slot
+     * @param row Precomputed distances, may be {@code null}
+     */
+    private void search(int p, double[] row) {
+      // Remove from the old neighbors' reverse lists:
+      for(int i = 0; i < nnsize[p]; i++) {
+        rev[nn[p][i]].remove(p);
+      }
+      nnsize[p] = 0;
+      final O po = objs.get(p);
+      final int[] n = nn[p];
+      final double[] d = nd[p];
+      for(int q = 0; q < objs.size(); q++) {
+        if(seqs[q] < 0 || q == p) {
+          continue;
+        }
+        final double dist = row != null ? row[q] : distanceFunction.distance(po, objs.get(q));
+        if(nnsize[p] < k || dist < d[k - 1]) {
+          insertSorted(n, d, nnsize[p] < k ? nnsize[p]++ : k - 1, q, dist);
+        }
+      }
+      for(int i = 0; i < nnsize[p]; i++) {
+        rev[n[i]].add(p);
+      }
+    }
+
+    /**
+     * Offer a new neighbor to an object.
+     *
+     * @param p Slot of object
+     * @param q Slot of candidate
+     * @param dist Distance
+     * @return {@code true} if the kNN changed
+     */
+    private boolean add(int p, int q, double dist) {
+      final int[] n = nn[p];
+      final double[] d = nd[p];
+      if(nnsize[p] < k) {
+        insertSorted(n, d, nnsize[p]++, q, dist);
+      }
+      else if(dist < d[k - 1]) {
+        rev[n[k - 1]].remove(p);
+        insertSorted(n, d, k - 1, q, dist);
+      }
+      else {
+        return false;
+      }
+      rev[q].add(p);
+      return true;
+    }
+
+    /**
+     * Insert into a sorted neighbor list, overwriting position {@code pos}.
+     *
+     * @param n Neighbor slots
+     * @param d Neighbor distances
+     * @param pos Position to overwrite (last valid position)
+     * @param q New neighbor
+     * @param dist New distance
+     */
+    private void insertSorted(int[] n, double[] d, int pos, int q, double dist) {
+      for(; pos > 0 && d[pos - 1] > dist; pos--) {
+        n[pos] = n[pos - 1];
+        d[pos] = d[pos - 1];
+      }
+      n[pos] = q;
+      d[pos] = dist;
+    }
+
+    /**
+     * Compute the local reachability density of an object.
+     *
+     * @param p Slot
+     * @return lrd
+     */
+    private double computeLRD(int p) {
+      final int[] n = nn[p];
+      final double[] d = nd[p];
+      final int size = nnsize[p];
+      double sum = 0.;
+      for(int i = 0; i < size; i++) {
+        sum += Math.max(d[i], kdist(n[i]));
+      }
+      // Avoid division by 0
+      return (sum > 0) ? (size / sum) : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Compute the LOF of an object.
+     *
+     * @param p Slot
+     * @return LOF
+     */
+    private double computeLOF(int p) {
+      final double lrdp = lrds[p];
+      if(Double.isInfinite(lrdp)) {
+        return 1.;
+      }
+      final int[] n = nn[p];
+      final int size = nnsize[p];
+      double sum = 0.;
+      int count = 0;
+      for(int i = 0; i < size; i++) {
+        final double val = lrds[n[i]];
+        sum += val;
+        count++;
+        if(Double.isInfinite(val)) {
+          break;
+        }
+      }
+      return count > 0 ? sum / (lrdp * count) : 1.;
+    }
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   *
+   * @param <O> Object type
+   */
+  public static class Parameterizer<O> extends AbstractPrimitiveDistanceBasedAlgorithm.Parameterizer<O> {
+    /**
+     * Number of neighbors.
+     */
+    public static final OptionID K_ID = new OptionID("swlof.k", "The number of nearest neighbors of an object to be considered for computing its LOF score.");
+
+    /**
+     * Window size.
+     */
+    public static final OptionID WINDOW_ID = new OptionID("swlof.window", "Maximum number of objects in the sliding window.");
+
+    /**
+     * Time horizon.
+     */
+    public static final OptionID HORIZON_ID = new OptionID("swlof.horizon", "Time horizon of the sliding window. When run on a relation, the time is the position in the relation.");
+
+    /**
+     * Batch size.
+     */
+    public static final OptionID BATCH_ID = new OptionID("swlof.batch", "Number of objects to insert at once.");
+
+    /**
+     * Tolerance.
+     */
+    public static final OptionID TOLERANCE_ID = new OptionID("swlof.tolerance", "Relative tolerance: smaller changes of the density and score are not propagated and reported.");
+
+    /**
+     * Number of neighbors.
+     */
+    protected int k;
+
+    /**
+     * Window size.
+     */
+    protected int window;
+
+    /**
+     * Time horizon.
+     */
+    protected long horizon = Long.MAX_VALUE;
+
+    /**
+     * Batch size.
+     */
+    protected int batch;
+
+    /**
+     * Tolerance.
+     */
+    protected double tolerance;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      super.makeOptions(config);
+      IntParameter kP = new IntParameter(K_ID) //
+      .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(kP)) {
+        k = kP.intValue();
+      }
+      IntParameter windowP = new IntParameter(WINDOW_ID, 1000) //
+      .addConstraint(CommonConstraints.GREATER_THAN_ONE_INT);
+      if(config.grab(windowP)) {
+        window = windowP.intValue();
+      }
+      LongParameter horizonP = new LongParameter(HORIZON_ID) //
+      .addConstraint(new GreaterEqualConstraint(1)) //
+      .setOptional(true);
+      if(config.grab(horizonP)) {
+        horizon = horizonP.getValue().longValue();
+      }
+      IntParameter batchP = new IntParameter(BATCH_ID, 1) //
+      .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(batchP)) {
+        batch = batchP.intValue();
+      }
+      DoubleParameter toleranceP = new DoubleParameter(TOLERANCE_ID, 0.) //
+      .addConstraint(CommonConstraints.GREATER_EQUAL_ZERO_DOUBLE);
+      if(config.grab(toleranceP)) {
+        tolerance = toleranceP.doubleValue();
+      }
+    }
+
+    @Override
+    protected SlidingWindowLOF<O> makeInstance() {
+      return new SlidingWindowLOF<>(distanceFunction, k, window, horizon, batch, tolerance);
+    }
+  }
+}
@@ -0,0 +1,113 @@
+package de.lmu.ifi.dbs.elki.algorithm.outlier.lof.parallel;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.COF;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.parallel.Executor;
+import de.lmu.ifi.dbs.elki.parallel.processor.AbstractDoubleProcessor;
+import de.lmu.ifi.dbs.elki.parallel.variables.SharedDouble;
+import de.lmu.ifi.dbs.elki.parallel.variables.SharedObject;
+
+/**
+ * Processor for the average chaining distance of COF.
+ *
+ * @author Erich Schubert
+ *
+ * @apiviz.has Instance
+ *
+ * @param <O> Object type
+ */
+public class AverageChainingDistanceProcessor<O> extends AbstractDoubleProcessor {
+  /**
+   * Distance query
+   */
+  private DistanceQuery<O> dq;
+
+  /**
+   * Number of neighbors (including the query point).
+   */
+  private int k;
+
+  /**
+   * kNN input channel.
+   */
+  private SharedObject<? extends KNNList> input;
+
+  /**
+   * Constructor.
+   *
+   * @param dq Distance query
+   * @param k Number of neighbors (including the query point)
+   */
+  public AverageChainingDistanceProcessor(DistanceQuery<O> dq, int k) {
+    super();
+    this.dq = dq;
+    this.k = k;
+  }
+
+  /**
+   * Connect the input channel.
+   *
+   * @param input Input channel
+   */
+  public void connectKNNInput(SharedObject<? extends KNNList> input) {
+    this.input = input;
+  }
+
+  @Override
+  public Instance instantiate(Executor master) {
+    return new Instance(master.getInstance(input), master.getInstance(output));
+  }
+
+  /**
+   * Instance
+   *
+   * @author Erich Schubert
+   */
+  private class Instance extends AbstractDoubleProcessor.Instance {
+    /**
+     * kNN input.
+     */
+    private SharedObject.Instance<? extends KNNList> input;
+
+    /**
+     * Constructor.
+     *
+     * @param input kNN input
+     * @param output Output variable
+     */
+    protected Instance(SharedObject.Instance<? extends KNNList> input, SharedDouble.Instance output) {
+      super(output);
+      this.input = input;
+    }
+
+    @Override
+    public void map(DBIDRef id) {
+      output.set(COF.computeAverageChainingDistance(dq, id, input.get(), k));
+    }
+  }
+}
@@ -0,0 +1,175 @@
+package de.lmu.ifi.dbs.elki.algorithm.outlier.lof.parallel;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.util.Arrays;
+
+import de.lmu.ifi.dbs.elki.database.datastore.DataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.IntegerDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.math.Mean;
+import de.lmu.ifi.dbs.elki.parallel.Executor;
+import de.lmu.ifi.dbs.elki.parallel.processor.AbstractDoubleProcessor;
+import de.lmu.ifi.dbs.elki.parallel.variables.SharedDouble;
+
+/**
+ * Processor for computing the INFLO score from the kNN, the mutual neighbors
+ * and the densities of all objects.
+ *
+ * The serial INFLO algorithm visits the objects in database order, and both
+ * the pruning decision and the order in which the densities of the influence
+ * space are averaged depend on this order. This processor reproduces both,
+ * using the position of each object in the processing order: the reverse
+ * neighbors visited earlier are averaged first, then the mutual neighbors in
+ * kNN order, then the reverse neighbors visited later.
+ *
+ * @author Erich Schubert
+ *
+ * @apiviz.has Instance
+ */
+public class INFLOProcessor extends AbstractDoubleProcessor {
+  /**
+   * KNN store
+   */
+  private DataStore<? extends KNNList> knns;
+
+  /**
+   * Mutual neighbors
+   */
+  private DataStore<? extends ArrayDBIDs> mutual;
+
+  /**
+   * Position of each object in the processing order.
+   */
+  private IntegerDataStore positions;
+
+  /**
+   * Densities, indexed by position.
+   */
+  private double[] densities;
+
+  /**
+   * Pruning threshold m.
+   */
+  private double m;
+
+  /**
+   * Constructor.
+   *
+   * @param knns k nearest neighbors
+   * @param mutual Mutual neighbors
+   * @param positions Position of each object in the processing order
+   * @param densities Densities, indexed by position
+   * @param m Pruning threshold
+   */
+  public INFLOProcessor(DataStore<? extends KNNList> knns, DataStore<? extends ArrayDBIDs> mutual, IntegerDataStore positions, double[] densities, double m) {
+    super();
+    this.knns = knns;
+    this.mutual = mutual;
+    this.positions = positions;
+    this.densities = densities;
+    this.m = m;
+  }
+
+  @Override
+  public Instance instantiate(Executor master) {
+    return new Instance(master.getInstance(output));
+  }
+
+  /**
+   * Instance
+   *
+   * @author Erich Schubert
+   */
+  private class Instance extends AbstractDoubleProcessor.Instance {
+    /**
+     * Mean accumulator.
+     */
+    private Mean mean = new Mean();
+
+    /**
+     * Scratch buffer for positions of reverse neighbors.
+     */
+    private int[] buf = new int[16];
+
+    /**
+     * Constructor.
+     *
+     * @param output Output variable
+     */
+    protected Instance(SharedDouble.Instance output) {
+      super(output);
+    }
+
+    @Override
+    public void map(DBIDRef id) {
+      final KNNList knn = knns.get(id);
+      final ArrayDBIDs mut = mutual.get(id);
+      final int pos = positions.intValue(id), size = mut.size();
+      // Positions of the mutual neighbors, and number of earlier ones.
+      if(buf.length < size) {
+        buf = new int[size];
+      }
+      int earlier = 0, i = 0;
+      for(DBIDIter n = mut.iter(); n.valid(); n.advance(), i++) {
+        final int p = positions.intValue(n);
+        earlier += p < pos ? 1 : 0;
+        buf[i] = p;
+      }
+      if(earlier + size >= knn.size() * m) {
+        output.set(1.);
+        return;
+      }
+      Arrays.sort(buf, 0, size);
+      // Compute mean density of NN \cup RNN
+      mean.reset();
+      for(DBIDIter n = knn.iter(); n.valid(); n.advance()) {
+        if(DBIDUtil.equal(id, n)) {
+          continue;
+        }
+        mean.put(densities[positions.intValue(n)]);
+      }
+      for(i = 0; i < earlier; i++) {
+        mean.put(densities[buf[i]]);
+      }
+      for(DBIDIter n = mut.iter(); n.valid(); n.advance()) {
+        mean.put(densities[positions.intValue(n)]);
+      }
+      for(i = earlier; i < size; i++) {
+        mean.put(densities[buf[i]]);
+      }
+      final double denP = densities[pos];
+      if(denP > 0.) {
+        output.set(mean.getMean() / denP);
+      }
+      else {
+        output.set(mean.getMean() == 0 ? 1. : Double.POSITIVE_INFINITY);
+      }
+    }
+  }
+}
@@ -0,0 +1,228 @@
+package de.lmu.ifi.dbs.elki.algorithm.outlier.lof.parallel;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.KDEOS;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.math.MathUtil;
+import de.lmu.ifi.dbs.elki.math.statistics.kernelfunctions.KernelDensityFunction;
+import de.lmu.ifi.dbs.elki.parallel.Executor;
+import de.lmu.ifi.dbs.elki.parallel.processor.Processor;
+import de.lmu.ifi.dbs.elki.parallel.variables.SharedObject;
+
+/**
+ * Processor for the kernel bandwidths of KDEOS.
+ *
+ * For each value of k, this computes the inverse kernel bandwidth of the
+ * object, and the number of neighbors the kernel contributes to before the
+ * density falls below {@link KDEOS#CUTOFF}. This allows computing the density
+ * contributions later by neighbor, instead of distributing them to the
+ * neighbors (which would require synchronization).
+ *
+ * @author Erich Schubert
+ *
+ * @apiviz.has Instance
+ */
+public class KDEOSBandwidthProcessor implements Processor {
+  /**
+   * Kernel function to use for density estimation.
+   */
+  private KernelDensityFunction kernel;
+
+  /**
+   * Minimum and maximum number of neighbors to use.
+   */
+  private int kmin, kmax;
+
+  /**
+   * Kernel scaling parameter.
+   */
+  private double scale;
+
+  /**
+   * Inverse of the minimum bandwidth.
+   */
+  private double iminbw;
+
+  /**
+   * Dimensionality.
+   */
+  private int dim;
+
+  /**
+   * kNN input channel.
+   */
+  private SharedObject<? extends KNNList> input;
+
+  /**
+   * Inverse bandwidth output channel.
+   */
+  private SharedObject<double[]> bwout;
+
+  /**
+   * Neighbor count output channel.
+   */
+  private SharedObject<int[]> cntout;
+
+  /**
+   * Constructor.
+   *
+   * @param kernel Kernel function
+   * @param kmin Minimum number of neighbors
+   * @param kmax Maximum number of neighbors
+   * @param scale Kernel scaling parameter
+   * @param iminbw Inverse of the minimum bandwidth
+   * @param dim Dimensionality
+   */
+  public KDEOSBandwidthProcessor(KernelDensityFunction kernel, int kmin, int kmax, double scale, double iminbw, int dim) {
+    super();
+    this.kernel = kernel;
+    this.kmin = kmin;
+    this.kmax = kmax;
+    this.scale = scale;
+    this.iminbw = iminbw;
+    this.dim = dim;
+  }
+
+  /**
+   * Connect the input channel.
+   *
+   * @param input Input channel
+   */
+  public void connectKNNInput(SharedObject<? extends KNNList> input) {
+    this.input = input;
+  }
+
+  /**
+   * Connect the inverse bandwidth output channel.
+   *
+   * @param output Output channel
+   */
+  public void connectBandwidthOutput(SharedObject<double[]> output) {
+    this.bwout = output;
+  }
+
+  /**
+   * Connect the neighbor count output channel.
+   *
+   * @param output Output channel
+   */
+  public void connectCountOutput(SharedObject<int[]> output) {
+    this.cntout = output;
+  }
+
+  @Override
+  public Instance instantiate(Executor executor) {
+    return new Instance(executor.getInstance(input), executor.getInstance(bwout), executor.getInstance(cntout));
+  }
+
+  @Override
+  public void cleanup(Processor.Instance inst) {
+    // Nothing to do.
+  }
+
+  /**
+   * Instance
+   *
+   * @author Erich Schubert
+   */
+  private class Instance implements Processor.Instance {
+    /**
+     * kNN input.
+     */
+    private SharedObject.Instance<? extends KNNList> input;
+
+    /**
+     * Inverse bandwidth output.
+     */
+    private SharedObject.Instance<double[]> bwout;
+
+    /**
+     * Neighbor count output.
+     */
+    private SharedObject.Instance<int[]> cntout;
+
+    /**
+     * Constructor.
+     *
+     * @param input kNN input
+     * @param bwout Inverse bandwidth output
+     * @param cntout Neighbor count output
+     */
+    protected Instance(SharedObject.Instance<? extends KNNList> input, SharedObject.Instance<double[]> bwout, SharedObject.Instance<int[]> cntout) {
+      super();
+      this.input = input;
+      this.bwout = bwout;
+      this.cntout = cntout;
+    }
+
+    @Override
+    public void map(DBIDRef id) {
+      final KNNList neighbors = input.get();
+      final int knum = kmax + 1 - kmin;
+      double[] ibws = new double[knum];
+      int[] cnts = new int[knum];
+      int k = 1, idx = 0;
+      double sum = 0.;
+      for(DoubleDBIDListIter kneighbor = neighbors.iter(); k <= kmax && kneighbor.valid(); kneighbor.advance(), k++) {
+        sum += kneighbor.doubleValue();
+        if(k < kmin) {
+          continue;
+        }
+        final double ibw = Math.min(k / (sum * scale), iminbw);
+        final double sca = MathUtil.powi(ibw, dim);
+        int cnt = 0;
+        for(DoubleDBIDListIter neighbor = neighbors.iter(); neighbor.valid(); neighbor.advance()) {
+          ++cnt;
+          if(density(kernel, ibw, sca, neighbor.doubleValue()) < KDEOS.CUTOFF) {
+            break;
+          }
+        }
+        ibws[idx] = ibw;
+        cnts[idx] = cnt;
+        ++idx; // Only if k >= kmin
+      }
+      bwout.set(ibws);
+      cntout.set(cnts);
+    }
+  }
+
+  /**
+   * Kernel density contribution, as in {@link KDEOS}.
+   *
+   * @param kernel Kernel function
+   * @param ibw Inverse bandwidth
+   * @param sca Scaling factor, {@code ibw^dim}
+   * @param dist Distance
+   * @return Density contribution
+   */
+  protected static double density(KernelDensityFunction kernel, double ibw, double sca, double dist) {
+    if(sca < Double.POSITIVE_INFINITY) { // NaNs with duplicate points!
+      return sca * kernel.density(dist * ibw);
+    }
+    return dist == 0. ? 1. : 0.;
+  }
+}
@@ -0,0 +1,169 @@
+package de.lmu.ifi.dbs.elki.algorithm.outlier.lof.parallel;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.lmu.ifi.dbs.elki.database.datastore.DataStore;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDList;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.math.MathUtil;
+import de.lmu.ifi.dbs.elki.math.statistics.kernelfunctions.KernelDensityFunction;
+import de.lmu.ifi.dbs.elki.parallel.Executor;
+import de.lmu.ifi.dbs.elki.parallel.processor.Processor;
+import de.lmu.ifi.dbs.elki.parallel.variables.SharedObject;
+
+/**
+ * Processor for the kernel density estimates of KDEOS.
+ *
+ * The serial implementation distributes the kernel density of each object to
+ * its neighbors. Here, each object instead collects the contributions of the
+ * objects that have it as neighbor (the reverse neighbors), in the same order,
+ * so that no synchronization is needed and the sums are identical.
+ *
+ * @author Erich Schubert
+ *
+ * @apiviz.has Instance
+ */
+public class KDEOSDensityProcessor implements Processor {
+  /**
+   * KNN store
+   */
+  private DataStore<? extends KNNList> knns;
+
+  /**
+   * Reverse neighbors, with the position in the neighbor's kNN list as value.
+   */
+  private DataStore<? extends DoubleDBIDList> rnns;
+
+  /**
+   * Inverse bandwidths.
+   */
+  private DataStore<double[]> ibws;
+
+  /**
+   * Number of neighbors with a density contribution.
+   */
+  private DataStore<int[]> cnts;
+
+  /**
+   * Kernel function to use for density estimation.
+   */
+  private KernelDensityFunction kernel;
+
+  /**
+   * Number of values of k.
+   */
+  private int knum;
+
+  /**
+   * Dimensionality.
+   */
+  private int dim;
+
+  /**
+   * Output channel
+   */
+  private SharedObject<double[]> out;
+
+  /**
+   * Constructor.
+   *
+   * @param knns k nearest neighbors
+   * @param rnns Reverse neighbors, with the kNN position as value
+   * @param ibws Inverse bandwidths
+   * @param cnts Number of neighbors with a density contribution
+   * @param kernel Kernel function
+   * @param knum Number of values of k
+   * @param dim Dimensionality
+   */
+  public KDEOSDensityProcessor(DataStore<? extends KNNList> knns, DataStore<? extends DoubleDBIDList> rnns, DataStore<double[]> ibws, DataStore<int[]> cnts, KernelDensityFunction kernel, int knum, int dim) {
+    super();
+    this.knns = knns;
+    this.rnns = rnns;
+    this.ibws = ibws;
+    this.cnts = cnts;
+    this.kernel = kernel;
+    this.knum = knum;
+    this.dim = dim;
+  }
+
+  /**
+   * Connect the output channel.
+   *
+   * @param output Output channel
+   */
+  public void connectOutput(SharedObject<double[]> output) {
+    this.out = output;
+  }
+
+  @Override
+  public Instance instantiate(Executor executor) {
+    return new Instance(executor.getInstance(out));
+  }
+
+  @Override
+  public void cleanup(Processor.Instance inst) {
+    // Nothing to do.
+  }
+
+  /**
+   * Instance
+   *
+   * @author Erich Schubert
+   */
+  private class Instance implements Processor.Instance {
+    /**
+     * Output channel
+     */
+    private SharedObject.Instance<double[]> out;
+
+    /**
+     * Constructor.
+     *
+     * @param out Output channel to write to
+     */
+    protected Instance(SharedObject.Instance<double[]> out) {
+      super();
+      this.out = out;
+    }
+
+    @Override
+    public void map(DBIDRef id) {
+      double[] dens = new double[knum];
+      for(DoubleDBIDListIter rev = rnns.get(id).iter(); rev.valid(); rev.advance()) {
+        final int pos = (int) rev.doubleValue();
+        final double dist = knns.get(rev).get(pos).doubleValue();
+        final double[] ibw = ibws.get(rev);
+        final int[] cnt = cnts.get(rev);
+        for(int idx = 0; idx < knum; idx++) {
+          if(pos < cnt[idx]) {
+            dens[idx] += KDEOSBandwidthProcessor.density(kernel, ibw[idx], MathUtil.powi(ibw[idx], dim), dist);
+          }
+        }
+      }
+      out.set(dens);
+    }
+  }
+}
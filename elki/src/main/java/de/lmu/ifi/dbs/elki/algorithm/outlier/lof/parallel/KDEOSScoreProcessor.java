@@ -0,0 +1,145 @@
+package de.lmu.ifi.dbs.elki.algorithm.outlier.lof.parallel;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.lmu.ifi.dbs.elki.database.datastore.DataStore;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.math.MeanVariance;
+import de.lmu.ifi.dbs.elki.math.statistics.distribution.NormalDistribution;
+import de.lmu.ifi.dbs.elki.parallel.Executor;
+import de.lmu.ifi.dbs.elki.parallel.processor.AbstractDoubleProcessor;
+import de.lmu.ifi.dbs.elki.parallel.variables.SharedDouble;
+
+/**
+ * Processor for the final KDEOS scores, comparing the density estimates of an
+ * object to those of its neighbors.
+ *
+ * @author Erich Schubert
+ *
+ * @apiviz.has Instance
+ */
+public class KDEOSScoreProcessor extends AbstractDoubleProcessor {
+  /**
+   * KNN store
+   */
+  private DataStore<? extends KNNList> knns;
+
+  /**
+   * Density estimates.
+   */
+  private DataStore<double[]> densities;
+
+  /**
+   * Maximum number of neighbors.
+   */
+  private int kmax;
+
+  /**
+   * Number of values of k.
+   */
+  private int knum;
+
+  /**
+   * Constructor.
+   *
+   * @param knns k nearest neighbors
+   * @param densities Density estimates
+   * @param kmax Maximum number of neighbors
+   * @param knum Number of values of k
+   */
+  public KDEOSScoreProcessor(DataStore<? extends KNNList> knns, DataStore<double[]> densities, int kmax, int knum) {
+    super();
+    this.knns = knns;
+    this.densities = densities;
+    this.kmax = kmax;
+    this.knum = knum;
+  }
+
+  @Override
+  public Instance instantiate(Executor master) {
+    return new Instance(master.getInstance(output));
+  }
+
+  /**
+   * Instance
+   *
+   * @author Erich Schubert
+   */
+  private class Instance extends AbstractDoubleProcessor.Instance {
+    /**
+     * Scratch buffer for the neighbor densities.
+     */
+    private double[][] scratch = new double[knum][kmax + 5];
+
+    /**
+     * Mean and variance accumulator.
+     */
+    private MeanVariance mv = new MeanVariance();
+
+    /**
+     * Constructor.
+     *
+     * @param output Output variable
+     */
+    protected Instance(SharedDouble.Instance output) {
+      super(output);
+    }
+
+    @Override
+    public void map(DBIDRef id) {
+      final double[] dens = densities.get(id);
+      final KNNList neighbors = DBIDUtil.subList(knns.get(id), kmax);
+      if(scratch[0].length < neighbors.size()) {
+        // Resize scratch. Add some extra margin again.
+        scratch = new double[knum][neighbors.size() + 5];
+      }
+      { // Store density matrix of neighbors
+        int i = 0;
+        for(DoubleDBIDListIter neighbor = neighbors.iter(); neighbor.valid(); neighbor.advance(), i++) {
+          double[] ndens = densities.get(neighbor);
+          for(int k = 0; k < knum; k++) {
+            scratch[k][i] = ndens[k];
+          }
+        }
+      }
+      // Compute means and stddevs for each k
+      double score = 0.;
+      for(int i = 0; i < knum; i++) {
+        mv.reset();
+        for(int j = 0; j < neighbors.size(); j++) {
+          mv.put(scratch[i][j]);
+        }
+        final double mean = mv.getMean(), stddev = mv.getSampleStddev();
+        if(stddev > 0.) {
+          score += (mean - dens[i]) / stddev;
+        }
+      }
+      score /= knum; // average
+      output.set(NormalDistribution.standardNormalCDF(score));
+    }
+  }
+}
@@ -0,0 +1,392 @@
+package de.lmu.ifi.dbs.elki.algorithm.outlier.lof.parallel;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.MaterializedDoubleRelation;
+import de.lmu.ifi.dbs.elki.index.preprocessed.knn.KNNGraph;
+import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
+import de.lmu.ifi.dbs.elki.math.Mean;
+import de.lmu.ifi.dbs.elki.math.MathUtil;
+import de.lmu.ifi.dbs.elki.math.statistics.distribution.NormalDistribution;
+import de.lmu.ifi.dbs.elki.parallel.ParallelBlocks;
+import de.lmu.ifi.dbs.elki.result.outlier.BasicOutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.result.outlier.ProbabilisticOutlierScore;
+import de.lmu.ifi.dbs.elki.result.outlier.QuotientOutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
+
+/**
+ * Compute the scores of several kNN-based outlier detection methods, for many
+ * values of k at once, from a shared {@link KNNGraph}.
+ *
+ * Every method sweeps over the graph a constant number of times (one sweep per
+ * phase of the algorithm, e.g. two for LOF), and each sweep computes the
+ * values for all requested k simultaneously. The sweeps are parallelized over
+ * blocks of objects. The results are identical to running
+ * {@link de.lmu.ifi.dbs.elki.algorithm.outlier.distance.KNNOutlier},
+ * {@link de.lmu.ifi.dbs.elki.algorithm.outlier.distance.KNNWeightOutlier},
+ * {@link de.lmu.ifi.dbs.elki.algorithm.outlier.lof.LOF},
+ * {@link de.lmu.ifi.dbs.elki.algorithm.outlier.lof.SimplifiedLOF} and
+ * {@link de.lmu.ifi.dbs.elki.algorithm.outlier.lof.LoOP} once per value of k,
+ * but avoid all repeated kNN queries.
+ *
+ * @author Erich Schubert
+ *
+ * @apiviz.uses KNNGraph
+ */
+public class KNNGraphOutlierScores {
+  /**
+   * kNN graph, must contain at least {@code max(ks) + 1} neighbors.
+   */
+  private final KNNGraph graph;
+
+  /**
+   * Values of k to compute.
+   */
+  private final int[] ks;
+
+  /**
+   * Constructor.
+   *
+   * @param graph kNN graph (including the query object itself)
+   * @param ks Values of k (excluding the query object itself)
+   */
+  public KNNGraphOutlierScores(KNNGraph graph, int[] ks) {
+    super();
+    this.graph = graph;
+    this.ks = ks;
+    for(int k : ks) {
+      if(k + 1 > graph.getK()) {
+        throw new AbortException("kNN graph was computed for k=" + graph.getK() + ", but k=" + (k + 1) + " is needed.");
+      }
+    }
+  }
+
+  /**
+   * kNN outlier scores (distance to the k-th nearest neighbor).
+   *
+   * @return One result per value of k
+   */
+  public OutlierResult[] knn() {
+    final double[][] scores = new double[ks.length][graph.size()];
+    run(new RowTask() {
+      @Override
+      public void process(int row) {
+        for(int t = 0; t < ks.length; t++) {
+          scores[t][row] = graph.kDistance(row, ks[t] + 1);
+        }
+      }
+    });
+    OutlierResult[] res = new OutlierResult[ks.length];
+    for(int t = 0; t < ks.length; t++) {
+      DoubleMinMax minmax = new DoubleMinMax();
+      DoubleRelation rel = wrap("kNN Outlier Score", "knn-outlier", scores[t], minmax);
+      res[t] = new OutlierResult(new BasicOutlierScoreMeta(minmax.getMin(), minmax.getMax(), 0.0, Double.POSITIVE_INFINITY, 0.0), rel);
+    }
+    return res;
+  }
+
+  /**
+   * kNN weight outlier scores (sum of the distances to the k nearest
+   * neighbors).
+   *
+   * @return One result per value of k
+   */
+  public OutlierResult[] knnWeight() {
+    final double[][] scores = new double[ks.length][graph.size()];
+    run(new RowTask() {
+      @Override
+      public void process(int row) {
+        for(int t = 0; t < ks.length; t++) {
+          final int k = ks[t];
+          final int end = graph.rowEnd(row, k + 1);
+          double skn = 0;
+          int i = 0;
+          for(int pos = graph.rowStart(row); i < k && pos < end; pos++) {
+            if(graph.neighbor(pos) == row) {
+              continue;
+            }
+            skn += graph.distance(pos);
+            ++i;
+          }
+          scores[t][row] = (i < k) ? Double.POSITIVE_INFINITY : skn;
+        }
+      }
+    });
+    OutlierResult[] res = new OutlierResult[ks.length];
+    for(int t = 0; t < ks.length; t++) {
+      DoubleMinMax minmax = new DoubleMinMax();
+      DoubleRelation rel = wrap("kNN weight Outlier Score", "knnw-outlier", scores[t], minmax);
+      res[t] = new OutlierResult(new BasicOutlierScoreMeta(minmax.getMin(), minmax.getMax(), 0., Double.POSITIVE_INFINITY, 0.), rel);
+    }
+    return res;
+  }
+
+  /**
+   * Local Outlier Factor scores.
+   *
+   * @return One result per value of k
+   */
+  public OutlierResult[] lof() {
+    final double[][] lrds = new double[ks.length][graph.size()];
+    run(new RowTask() {
+      @Override
+      public void process(int row) {
+        for(int t = 0; t < ks.length; t++) {
+          final int kq = ks[t] + 1;
+          final int end = graph.rowEnd(row, kq);
+          double sum = 0.;
+          int count = 0;
+          for(int pos = graph.rowStart(row); pos < end; pos++) {
+            final int nei = graph.neighbor(pos);
+            if(nei == row) {
+              continue;
+            }
+            sum += MathUtil.max(graph.distance(pos), graph.kDistance(nei, kq));
+            count++;
+          }
+          lrds[t][row] = (sum > 0) ? (count / sum) : Double.POSITIVE_INFINITY;
+        }
+      }
+    });
+    final double[][] lofs = ratios(lrds);
+    OutlierResult[] res = new OutlierResult[ks.length];
+    for(int t = 0; t < ks.length; t++) {
+      DoubleMinMax minmax = new DoubleMinMax();
+      DoubleRelation rel = wrap("Local Outlier Factor", "lof-outlier", lofs[t], minmax);
+      res[t] = new OutlierResult(new QuotientOutlierScoreMeta(minmax.getMin(), minmax.getMax(), 0.0, Double.POSITIVE_INFINITY, 1.0), rel);
+    }
+    return res;
+  }
+
+  /**
+   * Simplified Local Outlier Factor scores.
+   *
+   * @return One result per value of k
+   */
+  public OutlierResult[] simplifiedLOF() {
+    final double[][] dens = new double[ks.length][graph.size()];
+    run(new RowTask() {
+      @Override
+      public void process(int row) {
+        for(int t = 0; t < ks.length; t++) {
+          final int end = graph.rowEnd(row, ks[t] + 1);
+          double sum = 0.;
+          int count = 0;
+          for(int pos = graph.rowStart(row); pos < end; pos++) {
+            if(graph.neighbor(pos) == row) {
+              continue;
+            }
+            sum += graph.distance(pos);
+            count++;
+          }
+          dens[t][row] = (sum > 0) ? (count / sum) : Double.POSITIVE_INFINITY;
+        }
+      }
+    });
+    final double[][] lofs = ratios(dens);
+    OutlierResult[] res = new OutlierResult[ks.length];
+    for(int t = 0; t < ks.length; t++) {
+      DoubleMinMax minmax = new DoubleMinMax();
+      DoubleRelation rel = wrap("Simplified Local Outlier Factor", "simplified-lof-outlier", lofs[t], minmax);
+      res[t] = new OutlierResult(new QuotientOutlierScoreMeta(minmax.getMin(), minmax.getMax(), 0., Double.POSITIVE_INFINITY, 1.), rel);
+    }
+    return res;
+  }
+
+  /**
+   * Local Outlier Probabilities, using the same k for the reference and the
+   * comparison set.
+   *
+   * @param lambda Lambda parameter
+   * @return One result per value of k
+   */
+  public OutlierResult[] loop(double lambda) {
+    final double[][] pdists = new double[ks.length][graph.size()];
+    run(new RowTask() {
+      @Override
+      public void process(int row) {
+        for(int t = 0; t < ks.length; t++) {
+          final int k = ks[t];
+          final int end = graph.rowEnd(row, k + 1);
+          int c = 0;
+          double ssum = 0.;
+          for(int pos = graph.rowStart(row); pos < end && c < k; pos++) {
+            if(graph.neighbor(pos) == row) {
+              continue;
+            }
+            final double d = graph.distance(pos);
+            ssum += d * d;
+            c++;
+          }
+          pdists[t][row] = c > 0 ? Math.sqrt(ssum / c) : 0.;
+        }
+      }
+    });
+    final double[][] plofs = new double[ks.length][graph.size()];
+    run(new RowTask() {
+      @Override
+      public void process(int row) {
+        for(int t = 0; t < ks.length; t++) {
+          final int k = ks[t];
+          final double[] pdist = pdists[t];
+          final int end = graph.rowEnd(row, k + 1);
+          int c = 0;
+          double sum = 0.;
+          for(int pos = graph.rowStart(row); pos < end && c < k; pos++) {
+            final int nei = graph.neighbor(pos);
+            if(nei == row) {
+              continue;
+            }
+            sum += pdist[nei];
+            c++;
+          }
+          double plof = MathUtil.max(pdist[row] * c / sum, 1.0);
+          if(Double.isNaN(plof) || Double.isInfinite(plof)) {
+            plof = 1.0;
+          }
+          plofs[t][row] = plof;
+        }
+      }
+    });
+    OutlierResult[] res = new OutlierResult[ks.length];
+    for(int t = 0; t < ks.length; t++) {
+      final double[] plof = plofs[t];
+      Mean mvplof = new Mean();
+      for(int row = 0; row < plof.length; row++) {
+        mvplof.put((plof[row] - 1.0) * (plof[row] - 1.0));
+      }
+      final double norm = 1. / (lambda * Math.sqrt(mvplof.getMean()) * MathUtil.SQRT2);
+      for(int row = 0; row < plof.length; row++) {
+        plof[row] = NormalDistribution.erf((plof[row] - 1.) * norm);
+      }
+      DoubleMinMax minmax = new DoubleMinMax();
+      DoubleRelation rel = wrap("Local Outlier Probabilities", "loop-outlier", plof, minmax);
+      OutlierScoreMeta meta = new ProbabilisticOutlierScore(minmax.getMin(), minmax.getMax(), 0.);
+      res[t] = new OutlierResult(meta, rel);
+    }
+    return res;
+  }
+
+  /**
+   * Compute the LOF-style ratio of the average neighbor density and the object
+   * density, for all k.
+   *
+   * @param dens Densities
+   * @return Density ratios
+   */
+  private double[][] ratios(final double[][] dens) {
+    final double[][] lofs = new double[ks.length][graph.size()];
+    run(new RowTask() {
+      @Override
+      public void process(int row) {
+        for(int t = 0; t < ks.length; t++) {
+          final double[] den = dens[t];
+          final double lrdp = den[row];
+          if(Double.isInfinite(lrdp)) {
+            lofs[t][row] = 1.0;
+            continue;
+          }
+          final int end = graph.rowEnd(row, ks[t] + 1);
+          double sum = 0.;
+          int count = 0;
+          for(int pos = graph.rowStart(row); pos < end; pos++) {
+            final int nei = graph.neighbor(pos);
+            if(nei == row) {
+              continue;
+            }
+            final double val = den[nei];
+            sum += val;
+            count++;
+            if(Double.isInfinite(val)) {
+              break;
+            }
+          }
+          lofs[t][row] = sum / (lrdp * count);
+        }
+      }
+    });
+    return lofs;
+  }
+
+  /**
+   * Wrap a score array as relation.
+   *
+   * @param name Relation name
+   * @param shortname Short name
+   * @param scores Scores, in row order
+   * @param minmax Minimum and maximum tracker (output)
+   * @return Score relation
+   */
+  private DoubleRelation wrap(String name, String shortname, double[] scores, DoubleMinMax minmax) {
+    final ArrayDBIDs ids = graph.getDBIDs();
+    WritableDoubleDataStore store = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_STATIC);
+    int row = 0;
+    for(DBIDArrayIter iter = ids.iter(); iter.valid(); iter.advance(), row++) {
+      store.putDouble(iter, scores[row]);
+      minmax.put(scores[row]);
+    }
+    return new MaterializedDoubleRelation(name, shortname, store, ids);
+  }
+
+  /**
+   * Run a task for every row of the graph, in parallel.
+   *
+   * @param task Task to run
+   */
+  private void run(final RowTask task) {
+    ParallelBlocks.run(graph.size(), new ParallelBlocks.Task<Void>() {
+      @Override
+      public Void run(int block, int start, int end) {
+        for(int row = start; row < end; row++) {
+          task.process(row);
+        }
+        return null;
+      }
+    });
+  }
+
+  /**
+   * Task to run for each row.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  private interface RowTask {
+    /**
+     * Process a single row.
+     *
+     * @param row Row number
+     */
+    void process(int row);
+  }
+}
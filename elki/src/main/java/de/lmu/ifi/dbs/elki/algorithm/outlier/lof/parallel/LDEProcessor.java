@@ -0,0 +1,130 @@
+package de.lmu.ifi.dbs.elki.algorithm.outlier.lof.parallel;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.lmu.ifi.dbs.elki.database.datastore.DataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.DoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.math.MathUtil;
+import de.lmu.ifi.dbs.elki.math.statistics.kernelfunctions.KernelDensityFunction;
+import de.lmu.ifi.dbs.elki.parallel.Executor;
+import de.lmu.ifi.dbs.elki.parallel.processor.AbstractDoubleProcessor;
+import de.lmu.ifi.dbs.elki.parallel.variables.SharedDouble;
+
+/**
+ * Processor for computing the local density estimate (LDE) of LDF.
+ *
+ * @author Erich Schubert
+ *
+ * @apiviz.has Instance
+ */
+public class LDEProcessor extends AbstractDoubleProcessor {
+  /**
+   * KNN store
+   */
+  private DataStore<? extends KNNList> knns;
+
+  /**
+   * k-distance store
+   */
+  private DoubleDataStore kdists;
+
+  /**
+   * Kernel density function
+   */
+  private KernelDensityFunction kernel;
+
+  /**
+   * Bandwidth scaling factor.
+   */
+  private double h;
+
+  /**
+   * Data dimensionality.
+   */
+  private int dim;
+
+  /**
+   * Constructor.
+   *
+   * @param knns k nearest neighbors
+   * @param kdists k-distances
+   * @param kernel Kernel density function
+   * @param h Bandwidth scaling factor
+   * @param dim Data dimensionality
+   */
+  public LDEProcessor(DataStore<? extends KNNList> knns, DoubleDataStore kdists, KernelDensityFunction kernel, double h, int dim) {
+    super();
+    this.knns = knns;
+    this.kdists = kdists;
+    this.kernel = kernel;
+    this.h = h;
+    this.dim = dim;
+  }
+
+  @Override
+  public Instance instantiate(Executor master) {
+    return new Instance(master.getInstance(output));
+  }
+
+  /**
+   * Instance
+   *
+   * @author Erich Schubert
+   */
+  private class Instance extends AbstractDoubleProcessor.Instance {
+    /**
+     * Constructor.
+     *
+     * @param output Output variable
+     */
+    protected Instance(SharedDouble.Instance output) {
+      super(output);
+    }
+
+    @Override
+    public void map(DBIDRef id) {
+      double sum = 0.0;
+      int count = 0;
+      for(DoubleDBIDListIter n = knns.get(id).iter(); n.valid(); n.advance()) {
+        if(DBIDUtil.equal(n, id)) {
+          continue;
+        }
+        final double nkdist = kdists.doubleValue(n);
+        if(!(nkdist > 0.)) {
+          sum = Double.POSITIVE_INFINITY;
+          count++;
+          break;
+        }
+        final double v = MathUtil.max(nkdist, n.doubleValue()) / (h * nkdist);
+        sum += kernel.density(v) / MathUtil.powi(h * nkdist, dim);
+        count++;
+      }
+      output.set(sum / count);
+    }
+  }
+}
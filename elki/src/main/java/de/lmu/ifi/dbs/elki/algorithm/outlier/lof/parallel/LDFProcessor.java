@@ -0,0 +1,111 @@
+package de.lmu.ifi.dbs.elki.algorithm.outlier.lof.parallel;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.lmu.ifi.dbs.elki.database.datastore.DataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.DoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.parallel.Executor;
+import de.lmu.ifi.dbs.elki.parallel.processor.AbstractDoubleProcessor;
+import de.lmu.ifi.dbs.elki.parallel.variables.SharedDouble;
+
+/**
+ * Processor for computing the local density factor (LDF) from the local
+ * density estimates.
+ *
+ * @author Erich Schubert
+ *
+ * @apiviz.has Instance
+ */
+public class LDFProcessor extends AbstractDoubleProcessor {
+  /**
+   * KNN store
+   */
+  private DataStore<? extends KNNList> knns;
+
+  /**
+   * Local density estimates
+   */
+  private DoubleDataStore ldes;
+
+  /**
+   * Scaling constant, to limit value range to 1/c
+   */
+  private double c;
+
+  /**
+   * Constructor.
+   *
+   * @param knns k nearest neighbors
+   * @param ldes Local density estimates
+   * @param c Score scaling constant
+   */
+  public LDFProcessor(DataStore<? extends KNNList> knns, DoubleDataStore ldes, double c) {
+    super();
+    this.knns = knns;
+    this.ldes = ldes;
+    this.c = c;
+  }
+
+  @Override
+  public Instance instantiate(Executor master) {
+    return new Instance(master.getInstance(output));
+  }
+
+  /**
+   * Instance
+   *
+   * @author Erich Schubert
+   */
+  private class Instance extends AbstractDoubleProcessor.Instance {
+    /**
+     * Constructor.
+     *
+     * @param output Output variable
+     */
+    protected Instance(SharedDouble.Instance output) {
+      super(output);
+    }
+
+    @Override
+    public void map(DBIDRef id) {
+      double sum = 0.0;
+      int count = 0;
+      for(DBIDIter n = knns.get(id).iter(); n.valid(); n.advance()) {
+        // skip the point itself
+        if(DBIDUtil.equal(n, id)) {
+          continue;
+        }
+        sum += ldes.doubleValue(n);
+        count++;
+      }
+      sum /= count;
+      final double div = ldes.doubleValue(id) + c * sum;
+      output.set((div > 0) ? sum / div : 0);
+    }
+  }
+}
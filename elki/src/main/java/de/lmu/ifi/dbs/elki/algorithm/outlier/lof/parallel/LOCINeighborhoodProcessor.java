@@ -0,0 +1,124 @@
+package de.lmu.ifi.dbs.elki.algorithm.outlier.lof.parallel;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.util.Arrays;
+
+import de.lmu.ifi.dbs.elki.database.datastore.IntegerDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDList;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
+import de.lmu.ifi.dbs.elki.database.query.range.RangeQuery;
+import de.lmu.ifi.dbs.elki.parallel.Executor;
+import de.lmu.ifi.dbs.elki.parallel.processor.Processor;
+
+/**
+ * Processor to materialize the sorted neighbor distances of each object for
+ * LOCI, in compact form.
+ *
+ * Only the counting neighborhoods are needed for all objects, so the range is
+ * the maximum counting radius {@code alpha * rmax}, which is much smaller than
+ * the sampling neighborhood for the usual {@code alpha < 1}. The neighbor
+ * counts at any radius up to this range can be derived from the sorted
+ * distances by binary search.
+ *
+ * @author Erich Schubert
+ *
+ * @apiviz.has Instance
+ * @apiviz.uses RangeQuery
+ *
+ * @param <O> Object type
+ */
+public class LOCINeighborhoodProcessor<O> implements Processor {
+  /**
+   * Range query.
+   */
+  private RangeQuery<O> rq;
+
+  /**
+   * Query radius.
+   */
+  private double radius;
+
+  /**
+   * Offsets of the objects.
+   */
+  private IntegerDataStore offsets;
+
+  /**
+   * Output: sorted neighbor distances, by object offset.
+   */
+  private double[][] dists;
+
+  /**
+   * Constructor.
+   *
+   * @param rq Range query
+   * @param radius Query radius
+   * @param offsets Offsets of the objects
+   * @param dists Output array for neighbor distances
+   */
+  public LOCINeighborhoodProcessor(RangeQuery<O> rq, double radius, IntegerDataStore offsets, double[][] dists) {
+    super();
+    this.rq = rq;
+    this.radius = radius;
+    this.offsets = offsets;
+    this.dists = dists;
+  }
+
+  @Override
+  public Instance instantiate(Executor executor) {
+    return new Instance();
+  }
+
+  @Override
+  public void cleanup(Processor.Instance inst) {
+    // Nothing to do.
+  }
+
+  /**
+   * Instance
+   *
+   * @author Erich Schubert
+   */
+  private class Instance implements Processor.Instance {
+    @Override
+    public void map(DBIDRef id) {
+      DoubleDBIDList range = rq.getRangeForDBID(id, radius);
+      double[] d = new double[range.size()];
+      int i = 0;
+      boolean sorted = true;
+      for(DoubleDBIDListIter it = range.iter(); it.valid(); it.advance(), i++) {
+        d[i] = it.doubleValue();
+        sorted &= (i == 0 || d[i - 1] <= d[i]);
+      }
+      // The MDEF computation uses binary search on the distances, but range
+      // queries do not guarantee sorted results.
+      if(!sorted) {
+        Arrays.sort(d);
+      }
+      dists[offsets.intValue(id)] = d;
+    }
+  }
+}
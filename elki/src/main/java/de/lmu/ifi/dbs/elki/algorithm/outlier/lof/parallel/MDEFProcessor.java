@@ -0,0 +1,278 @@
+package de.lmu.ifi.dbs.elki.algorithm.outlier.lof.parallel;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.lmu.ifi.dbs.elki.database.datastore.IntegerDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDList;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
+import de.lmu.ifi.dbs.elki.database.query.range.RangeQuery;
+import de.lmu.ifi.dbs.elki.math.MeanVariance;
+import de.lmu.ifi.dbs.elki.parallel.Executor;
+import de.lmu.ifi.dbs.elki.parallel.processor.AbstractDoubleProcessor;
+import de.lmu.ifi.dbs.elki.parallel.variables.SharedDouble;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.arrays.DoubleIntegerArrayQuickSort;
+
+/**
+ * Processor to compute the maximum normalized multi-granularity deviation
+ * factor (MDEF) of LOCI, and the radius at which it is attained.
+ *
+ * The sampling neighborhood of each object is obtained by a range query with
+ * radius rmax, and discarded after the object is processed. Its critical radii
+ * are enumerated on the fly by merging the sorted neighbor distances with their
+ * 1/alpha-scaled copies, so they are never materialized. The counting
+ * neighborhoods of the neighbors are obtained by binary search in the sorted
+ * distance arrays of {@link LOCINeighborhoodProcessor}.
+ *
+ * @author Erich Schubert
+ *
+ * @apiviz.has Instance
+ * @apiviz.uses RangeQuery
+ *
+ * @param <O> Object type
+ */
+public class MDEFProcessor<O> extends AbstractDoubleProcessor {
+  /**
+   * Range query.
+   */
+  private RangeQuery<O> rq;
+
+  /**
+   * Offsets of the objects.
+   */
+  private IntegerDataStore offsets;
+
+  /**
+   * Sorted distances of the counting neighborhoods, by object offset.
+   */
+  private double[][] dists;
+
+  /**
+   * Maximum radius.
+   */
+  private double rmax;
+
+  /**
+   * Minimum neighborhood size.
+   */
+  private int nmin;
+
+  /**
+   * Alpha value.
+   */
+  private double alpha;
+
+  /**
+   * Output variable for the critical radius.
+   */
+  private SharedDouble radius;
+
+  /**
+   * Constructor.
+   *
+   * @param rq Range query
+   * @param offsets Offsets of the objects
+   * @param dists Sorted distances of the counting neighborhoods
+   * @param rmax Maximum radius
+   * @param nmin Minimum neighborhood size
+   * @param alpha Alpha value
+   */
+  public MDEFProcessor(RangeQuery<O> rq, IntegerDataStore offsets, double[][] dists, double rmax, int nmin, double alpha) {
+    super();
+    this.rq = rq;
+    this.offsets = offsets;
+    this.dists = dists;
+    this.rmax = rmax;
+    this.nmin = nmin;
+    this.alpha = alpha;
+  }
+
+  /**
+   * Connect the output variable for the radius.
+   *
+   * @param radius Output variable
+   */
+  public void connectRadiusOutput(SharedDouble radius) {
+    this.radius = radius;
+  }
+
+  @Override
+  public Instance instantiate(Executor master) {
+    return new Instance(master.getInstance(output), radius != null ? master.getInstance(radius) : null);
+  }
+
+  /**
+   * Count the number of distances less or equal to the given radius.
+   *
+   * @param d Sorted distances
+   * @param r Radius
+   * @return Number of neighbors
+   */
+  protected static int count(double[] d, double r) {
+    int a = 0, b = d.length - 1;
+    while(a <= b) {
+      final int mid = (a + b) >>> 1;
+      if(d[mid] > r) {
+        b = mid - 1;
+      }
+      else { // less or equal!
+        a = mid + 1;
+      }
+    }
+    return a;
+  }
+
+  /**
+   * Instance
+   *
+   * @author Erich Schubert
+   */
+  private class Instance extends AbstractDoubleProcessor.Instance {
+    /**
+     * Output variable for the radius.
+     */
+    private SharedDouble.Instance radius;
+
+    /**
+     * Reused accumulator.
+     */
+    private MeanVariance mv_n_r_alpha = new MeanVariance();
+
+    /**
+     * Current maximum and its radius.
+     */
+    private double maxmdefnorm, maxnormr;
+
+    /**
+     * Constructor.
+     *
+     * @param output Output variable
+     * @param radius Output variable for the radius
+     */
+    protected Instance(SharedDouble.Instance output, SharedDouble.Instance radius) {
+      super(output);
+      this.radius = radius;
+    }
+
+    @Override
+    public void map(DBIDRef id) {
+      // Sorted sampling neighborhood:
+      DoubleDBIDList range = rq.getRangeForDBID(id, rmax);
+      final int size = range.size();
+      final double[] d = new double[size];
+      final int[] n = new int[size];
+      int p = 0;
+      boolean sorted = true;
+      for(DoubleDBIDListIter it = range.iter(); it.valid(); it.advance(), p++) {
+        d[p] = it.doubleValue();
+        n[p] = offsets.intValue(it);
+        sorted &= (p == 0 || d[p - 1] <= d[p]);
+      }
+      if(!sorted) {
+        DoubleIntegerArrayQuickSort.sort(d, n, size);
+      }
+      maxmdefnorm = 0.;
+      maxnormr = 0.;
+      if(size >= nmin) {
+        // Merge the distinct distances with the scaled radii, in ascending
+        // order. Scaled radii beyond rmax are not critical.
+        final boolean scaled = alpha != 1.;
+        int j = 0;
+        for(int i = 0; i < size; i++) {
+          if(i + 1 < size && d[i] == d[i + 1]) {
+            continue; // Tied to the next object.
+          }
+          for(; scaled && j < size; j++) {
+            if(j + 1 < size && d[j] == d[j + 1]) {
+              continue;
+            }
+            final double rj = d[j] / alpha;
+            if(rj >= d[i] || rj > rmax) {
+              break;
+            }
+            evaluate(d, n, rj, count(d, rj));
+          }
+          evaluate(d, n, d[i], i + 1);
+        }
+        for(; scaled && j < size; j++) {
+          if(j + 1 < size && d[j] == d[j + 1]) {
+            continue;
+          }
+          final double rj = d[j] / alpha;
+          if(rj > rmax) {
+            break;
+          }
+          evaluate(d, n, rj, count(d, rj));
+        }
+      }
+      else {
+        // Fewer than nmin neighbors within rmax: the MDEF is not defined at
+        // any radius. As in LOCI, report the object as maximally outlying.
+        maxmdefnorm = Double.POSITIVE_INFINITY;
+        maxnormr = d[size - 1];
+        if(alpha != 1.) {
+          for(int j = 0; j < size; j++) {
+            final double rj = d[j] / alpha;
+            if(rj <= rmax && rj > maxnormr) {
+              maxnormr = rj;
+            }
+          }
+        }
+      }
+      output.set(maxmdefnorm);
+      if(radius != null) {
+        radius.set(maxnormr);
+      }
+    }
+
+    /**
+     * Evaluate the normalized MDEF at a single critical radius.
+     *
+     * @param d Sorted neighbor distances
+     * @param n Neighbor offsets
+     * @param r Radius
+     * @param n_r Number of neighbors within r
+     */
+    private void evaluate(double[] d, int[] n, double r, int n_r) {
+      // Only start when minimum size is fulfilled
+      if(n_r < nmin) {
+        return;
+      }
+      final double alpha_r = alpha * r;
+      final int n_alphar = count(d, alpha_r);
+      // The neighbors within r are a prefix of the sorted neighborhood.
+      mv_n_r_alpha.reset();
+      for(int k = 0; k < n_r; k++) {
+        mv_n_r_alpha.put(count(dists[n[k]], alpha_r));
+      }
+      // Redundant divisions by nhat_r_alpha removed.
+      final double mdef = mv_n_r_alpha.getMean() - n_alphar;
+      final double mdefnorm = mdef / mv_n_r_alpha.getNaiveStddev();
+      if(mdefnorm > maxmdefnorm) {
+        maxmdefnorm = mdefnorm;
+        maxnormr = r;
+      }
+    }
+  }
+}
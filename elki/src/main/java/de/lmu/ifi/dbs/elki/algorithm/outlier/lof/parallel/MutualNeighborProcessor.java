@@ -0,0 +1,140 @@
+package de.lmu.ifi.dbs.elki.algorithm.outlier.lof.parallel;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.lmu.ifi.dbs.elki.database.datastore.DataStore;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayModifiableDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.parallel.Executor;
+import de.lmu.ifi.dbs.elki.parallel.processor.Processor;
+import de.lmu.ifi.dbs.elki.parallel.variables.SharedObject;
+
+/**
+ * Processor to compute the mutual (symmetric) k nearest neighbors of each
+ * object, i.e. the neighbors that also have the object in their kNN.
+ *
+ * The output lists are in kNN order, and do not include the query object.
+ *
+ * @author Erich Schubert
+ *
+ * @apiviz.has Instance
+ */
+public class MutualNeighborProcessor implements Processor {
+  /**
+   * KNN store
+   */
+  private DataStore<? extends KNNList> knns;
+
+  /**
+   * Output channel to write to
+   */
+  private SharedObject<ArrayDBIDs> out;
+
+  /**
+   * Constructor.
+   *
+   * @param knns k nearest neighbors
+   */
+  public MutualNeighborProcessor(DataStore<? extends KNNList> knns) {
+    super();
+    this.knns = knns;
+  }
+
+  /**
+   * Connect the output channel.
+   *
+   * @param output Output channel
+   */
+  public void connectOutput(SharedObject<ArrayDBIDs> output) {
+    this.out = output;
+  }
+
+  @Override
+  public Instance instantiate(Executor executor) {
+    return new Instance(executor.getInstance(out));
+  }
+
+  @Override
+  public void cleanup(Processor.Instance inst) {
+    // Nothing to do.
+  }
+
+  /**
+   * Instance
+   *
+   * @author Erich Schubert
+   */
+  private class Instance implements Processor.Instance {
+    /**
+     * Output channel
+     */
+    private SharedObject.Instance<ArrayDBIDs> out;
+
+    /**
+     * Constructor.
+     *
+     * @param out Output channel to write to
+     */
+    protected Instance(SharedObject.Instance<ArrayDBIDs> out) {
+      super();
+      this.out = out;
+    }
+
+    @Override
+    public void map(DBIDRef id) {
+      KNNList knn = knns.get(id);
+      ArrayModifiableDBIDs mutual = DBIDUtil.newArray(knn.size());
+      for(DBIDIter n = knn.iter(); n.valid(); n.advance()) {
+        // Ignore the query point itself.
+        if(DBIDUtil.equal(n, id)) {
+          continue;
+        }
+        if(contains(knns.get(n), id)) {
+          mutual.add(n);
+        }
+      }
+      out.set(mutual);
+    }
+
+    /**
+     * Test whether a neighbor list contains an object.
+     *
+     * @param list Neighbor list
+     * @param id Object to search
+     * @return {@code true} when contained
+     */
+    private boolean contains(KNNList list, DBIDRef id) {
+      for(DBIDIter n = list.iter(); n.valid(); n.advance()) {
+        if(DBIDUtil.equal(n, id)) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+}
@@ -0,0 +1,116 @@
+package de.lmu.ifi.dbs.elki.algorithm.outlier.lof.parallel;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.parallel.Executor;
+import de.lmu.ifi.dbs.elki.parallel.processor.AbstractDoubleProcessor;
+import de.lmu.ifi.dbs.elki.parallel.variables.SharedDouble;
+import de.lmu.ifi.dbs.elki.parallel.variables.SharedObject;
+
+/**
+ * Processor for the "probabilistic distance" of LoOP, the quadratic mean of the
+ * distances to the first k neighbors.
+ * 
+ * @author Erich Schubert
+ *
+ * @apiviz.has Instance
+ */
+public class PDistProcessor extends AbstractDoubleProcessor {
+  /**
+   * Number of neighbors to use (excluding the query object).
+   */
+  private int k;
+
+  /**
+   * kNN input channel.
+   */
+  private SharedObject<? extends KNNList> input;
+
+  /**
+   * Constructor.
+   * 
+   * @param k Number of neighbors (excluding the query object)
+   */
+  public PDistProcessor(int k) {
+    super();
+    this.k = k;
+  }
+
+  /**
+   * Connect the input channel.
+   * 
+   * @param input Input channel
+   */
+  public void connectKNNInput(SharedObject<? extends KNNList> input) {
+    this.input = input;
+  }
+
+  @Override
+  public Instance instantiate(Executor master) {
+    return new Instance(master.getInstance(input), master.getInstance(output));
+  }
+
+  /**
+   * Instance
+   * 
+   * @author Erich Schubert
+   */
+  private class Instance extends AbstractDoubleProcessor.Instance {
+    /**
+     * kNN input.
+     */
+    private SharedObject.Instance<? extends KNNList> input;
+
+    /**
+     * Constructor.
+     * 
+     * @param input kNN input
+     * @param output Output variable
+     */
+    protected Instance(SharedObject.Instance<? extends KNNList> input, SharedDouble.Instance output) {
+      super(output);
+      this.input = input;
+    }
+
+    @Override
+    public void map(DBIDRef id) {
+      int ks = 0;
+      double ssum = 0.;
+      for(DoubleDBIDListIter n = input.get().iter(); n.valid() && ks < k; n.advance()) {
+        // Do not include the query object
+        if(DBIDUtil.equal(n, id)) {
+          continue;
+        }
+        final double d = n.doubleValue();
+        ssum += d * d;
+        ks++;
+      }
+      output.set(ks > 0 ? Math.sqrt(ssum / ks) : 0.);
+    }
+  }
+}
@@ -0,0 +1,247 @@
+package de.lmu.ifi.dbs.elki.algorithm.outlier.lof.parallel;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.lmu.ifi.dbs.elki.algorithm.AbstractDistanceBasedAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.OutlierAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.INFLO;
+import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableIntegerDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
+import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.MaterializedDoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
+import de.lmu.ifi.dbs.elki.parallel.processor.DoubleMinMaxProcessor;
+import de.lmu.ifi.dbs.elki.parallel.processor.KDistanceProcessor;
+import de.lmu.ifi.dbs.elki.parallel.processor.KNNProcessor;
+import de.lmu.ifi.dbs.elki.parallel.processor.WriteDataStoreProcessor;
+import de.lmu.ifi.dbs.elki.parallel.processor.WriteDoubleDataStoreProcessor;
+import de.lmu.ifi.dbs.elki.parallel.variables.SharedDouble;
+import de.lmu.ifi.dbs.elki.parallel.variables.SharedObject;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.result.outlier.QuotientOutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.DoubleParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+
+/**
+ * Parallel implementation of INFLO (Influenced Outlierness) using processors.
+ *
+ * The results are identical to the serial {@link INFLO} implementation,
+ * including its order-dependent pruning, see {@link INFLOProcessor}.
+ *
+ * Reference:
+ * <p>
+ * W. Jin, A. Tung, J. Han, and W. Wang<br />
+ * Ranking outliers using symmetric neighborhood relationship<br />
+ * Proc. 10th Pacific-Asia conference on Advances in Knowledge Discovery and
+ * Data Mining, 2006.
+ * </p>
+ *
+ * @author Erich Schubert
+ *
+ * @apiviz.has MutualNeighborProcessor
+ * @apiviz.has INFLOProcessor
+ *
+ * @param <O> Object type
+ */
+@Reference(authors = "W. Jin, A. Tung, J. Han, and W. Wang", //
+title = "Ranking outliers using symmetric neighborhood relationship", //
+booktitle = "Proc. 10th Pacific-Asia conference on Advances in Knowledge Discovery and Data Mining", //
+url = "http://dx.doi.org/10.1007/11731139_68")
+public class ParallelINFLO<O> extends AbstractDistanceBasedAlgorithm<O, OutlierResult> implements OutlierAlgorithm {
+  /**
+   * Class logger
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelINFLO.class);
+
+  /**
+   * Pruning threshold m.
+   */
+  private double m;
+
+  /**
+   * Number of neighbors to use.
+   */
+  private int k;
+
+  /**
+   * Constructor.
+   *
+   * @param distanceFunction Distance function
+   * @param m Pruning threshold m
+   * @param k Number of neighbors
+   */
+  public ParallelINFLO(DistanceFunction<? super O> distanceFunction, double m, int k) {
+    super(distanceFunction);
+    this.m = m;
+    this.k = k;
+  }
+
+  @Override
+  public TypeInformation[] getInputTypeRestriction() {
+    return TypeUtil.array(getDistanceFunction().getInputTypeRestriction());
+  }
+
+  public OutlierResult run(Database database, Relation<O> relation) {
+    ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    DistanceQuery<O> distq = database.getDistanceQuery(relation, getDistanceFunction());
+    KNNQuery<O> knnq = database.getKNNQuery(distq, k + 1);
+
+    // Phase one: KNN and k-dist
+    WritableDoubleDataStore kdists = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_DB);
+    WritableDataStore<KNNList> knns = DataStoreUtil.makeStorage(ids, DataStoreFactory.HINT_DB, KNNList.class);
+    {
+      // Compute kNN
+      KNNProcessor<O> knnm = new KNNProcessor<>(k + 1, knnq);
+      SharedObject<KNNList> knnv = new SharedObject<>();
+      WriteDataStoreProcessor<KNNList> storek = new WriteDataStoreProcessor<>(knns);
+      knnm.connectKNNOutput(knnv);
+      storek.connectInput(knnv);
+      // Compute k-dist
+      KDistanceProcessor kdistm = new KDistanceProcessor(k + 1);
+      SharedDouble kdistv = new SharedDouble();
+      WriteDoubleDataStoreProcessor storem = new WriteDoubleDataStoreProcessor(kdists);
+      kdistm.connectKNNInput(knnv);
+      kdistm.connectOutput(kdistv);
+      storem.connectInput(kdistv);
+
+      ParallelExecutor.run(ids, knnm, storek, kdistm, storem);
+    }
+
+    // Positions in processing order, and densities by position.
+    WritableIntegerDataStore positions = DataStoreUtil.makeIntegerStorage(ids, DataStoreFactory.HINT_DB | DataStoreFactory.HINT_TEMP);
+    double[] densities = new double[ids.size()];
+    {
+      int pos = 0;
+      for(DBIDIter iter = ids.iter(); iter.valid(); iter.advance(), pos++) {
+        positions.putInt(iter, pos);
+        densities[pos] = 1. / kdists.doubleValue(iter);
+      }
+    }
+    kdists.destroy(); // No longer needed.
+    kdists = null;
+
+    // Phase two: mutual neighbors
+    WritableDataStore<ArrayDBIDs> mutual = DataStoreUtil.makeStorage(ids, DataStoreFactory.HINT_DB | DataStoreFactory.HINT_TEMP, ArrayDBIDs.class);
+    {
+      MutualNeighborProcessor mutm = new MutualNeighborProcessor(knns);
+      SharedObject<ArrayDBIDs> mutv = new SharedObject<>();
+      WriteDataStoreProcessor<ArrayDBIDs> storemut = new WriteDataStoreProcessor<>(mutual);
+
+      mutm.connectOutput(mutv);
+      storemut.connectInput(mutv);
+      ParallelExecutor.run(ids, mutm, storemut);
+    }
+
+    // Phase three: INFLO
+    WritableDoubleDataStore inflos = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_DB);
+    DoubleMinMax minmax;
+    {
+      INFLOProcessor inflom = new INFLOProcessor(knns, mutual, positions, densities, m);
+      SharedDouble inflov = new SharedDouble();
+      DoubleMinMaxProcessor mmm = new DoubleMinMaxProcessor();
+      WriteDoubleDataStoreProcessor storeinflo = new WriteDoubleDataStoreProcessor(inflos);
+
+      inflom.connectOutput(inflov);
+      mmm.connectInput(inflov);
+      storeinflo.connectInput(inflov);
+      ParallelExecutor.run(ids, inflom, storeinflo, mmm);
+
+      minmax = mmm.getMinMax();
+    }
+    knns.destroy();
+    mutual.destroy();
+    positions.destroy();
+
+    DoubleRelation scoreres = new MaterializedDoubleRelation("Influence Outlier Score", "inflo-outlier", inflos, ids);
+    OutlierScoreMeta meta = new QuotientOutlierScoreMeta(minmax.getMin(), minmax.getMax(), 0., Double.POSITIVE_INFINITY, 1.);
+    return new OutlierResult(meta, scoreres);
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   *
+   * @param <O> Object type
+   */
+  public static class Parameterizer<O> extends AbstractDistanceBasedAlgorithm.Parameterizer<O> {
+    /**
+     * M parameter
+     */
+    double m = 1.0;
+
+    /**
+     * Number of neighbors to use.
+     */
+    int k = 0;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      super.makeOptions(config);
+      final DoubleParameter mP = new DoubleParameter(INFLO.Parameterizer.M_ID, 1.0)//
+      .addConstraint(CommonConstraints.GREATER_THAN_ZERO_DOUBLE);
+      if(config.grab(mP)) {
+        m = mP.doubleValue();
+      }
+
+      final IntParameter kP = new IntParameter(INFLO.Parameterizer.K_ID) //
+      .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(kP)) {
+        k = kP.intValue();
+      }
+    }
+
+    @Override
+    protected ParallelINFLO<O> makeInstance() {
+      return new ParallelINFLO<>(distanceFunction, m, k);
+    }
+  }
+}
@@ -0,0 +1,367 @@
+package de.lmu.ifi.dbs.elki.algorithm.outlier.lof.parallel;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.lmu.ifi.dbs.elki.algorithm.AbstractDistanceBasedAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.OutlierAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.KDEOS;
+import de.lmu.ifi.dbs.elki.data.FeatureVector;
+import de.lmu.ifi.dbs.elki.data.type.CombinedTypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.database.ids.ModifiableDoubleDBIDList;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
+import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.MaterializedDoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.database.relation.RelationUtil;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
+import de.lmu.ifi.dbs.elki.math.statistics.kernelfunctions.GaussianKernelDensityFunction;
+import de.lmu.ifi.dbs.elki.math.statistics.kernelfunctions.KernelDensityFunction;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
+import de.lmu.ifi.dbs.elki.parallel.processor.DoubleMinMaxProcessor;
+import de.lmu.ifi.dbs.elki.parallel.processor.KNNProcessor;
+import de.lmu.ifi.dbs.elki.parallel.processor.WriteDataStoreProcessor;
+import de.lmu.ifi.dbs.elki.parallel.processor.WriteDoubleDataStoreProcessor;
+import de.lmu.ifi.dbs.elki.parallel.variables.SharedDouble;
+import de.lmu.ifi.dbs.elki.parallel.variables.SharedObject;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.result.outlier.ProbabilisticOutlierScore;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.LessEqualGlobalConstraint;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.DoubleParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
+
+/**
+ * Parallel implementation of KDEOS (Kernel Density Estimation Outlier Score)
+ * using processors.
+ *
+ * Contrary to {@link KDEOS}, which distributes the density of each object to
+ * its neighbors, the densities are collected from the reverse neighbors here,
+ * see {@link KDEOSDensityProcessor}. The reverse neighbor lists are built in
+ * database order, so that the results are identical to the serial version.
+ *
+ * Reference:
+ * <p>
+ * Erich Schubert, Arthur Zimek, Hans-Peter Kriegel<br />
+ * Generalized Outlier Detection with Flexible Kernel Density Estimates<br />
+ * Proc. 14th SIAM International Conference on Data Mining (SDM), Philadelphia,
+ * PA, 2014
+ * </p>
+ *
+ * @author Erich Schubert
+ *
+ * @apiviz.has KDEOSBandwidthProcessor
+ * @apiviz.has KDEOSDensityProcessor
+ * @apiviz.has KDEOSScoreProcessor
+ *
+ * @param <O> Object type
+ */
+@Reference(authors = "Erich Schubert, Arthur Zimek, Hans-Peter Kriegel", //
+title = "Generalized Outlier Detection with Flexible Kernel Density Estimates", //
+booktitle = "Proc. 14th SIAM International Conference on Data Mining (SDM), Philadelphia, PA, 2014", //
+url = "http://dx.doi.org/10.1137/1.9781611973440.63")
+public class ParallelKDEOS<O> extends AbstractDistanceBasedAlgorithm<O, OutlierResult> implements OutlierAlgorithm {
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelKDEOS.class);
+
+  /**
+   * Kernel function to use for density estimation.
+   */
+  private KernelDensityFunction kernel;
+
+  /**
+   * Minimum and maximum number of neighbors to use.
+   */
+  private int kmin, kmax;
+
+  /**
+   * Kernel scaling parameter.
+   */
+  private double scale;
+
+  /**
+   * Kernel minimum bandwidth.
+   */
+  private double minBandwidth;
+
+  /**
+   * Intrinsic dimensionality.
+   */
+  private int idim;
+
+  /**
+   * Constructor.
+   *
+   * @param distanceFunction Distance function
+   * @param kmin Minimum number of neighbors
+   * @param kmax Maximum number of neighbors
+   * @param kernel Kernel function
+   * @param minBandwidth Minimum bandwidth
+   * @param scale Kernel scaling parameter
+   * @param idim Intrinsic dimensionality (use 0 to use real dimensionality)
+   */
+  public ParallelKDEOS(DistanceFunction<? super O> distanceFunction, int kmin, int kmax, KernelDensityFunction kernel, double minBandwidth, double scale, int idim) {
+    super(distanceFunction);
+    this.kmin = kmin;
+    this.kmax = kmax;
+    this.kernel = kernel;
+    this.minBandwidth = minBandwidth;
+    this.scale = scale;
+    this.idim = idim;
+  }
+
+  /**
+   * Run the KDEOS outlier detection algorithm.
+   *
+   * @param database Database to query
+   * @param rel Relation to process
+   * @return Outlier detection result
+   */
+  public OutlierResult run(Database database, Relation<O> rel) {
+    final DBIDs ids = rel.getDBIDs();
+    final int dim = dimensionality(rel);
+    final int knum = kmax + 1 - kmin;
+    DistanceQuery<O> distq = database.getDistanceQuery(rel, getDistanceFunction());
+    KNNQuery<O> knnq = database.getKNNQuery(distq, kmax + 1);
+
+    // Phase one: KNN and kernel bandwidths
+    WritableDataStore<KNNList> knns = DataStoreUtil.makeStorage(ids, DataStoreFactory.HINT_DB, KNNList.class);
+    WritableDataStore<double[]> ibws = DataStoreUtil.makeStorage(ids, DataStoreFactory.HINT_DB | DataStoreFactory.HINT_TEMP, double[].class);
+    WritableDataStore<int[]> cnts = DataStoreUtil.makeStorage(ids, DataStoreFactory.HINT_DB | DataStoreFactory.HINT_TEMP, int[].class);
+    {
+      // Compute kNN
+      KNNProcessor<O> knnm = new KNNProcessor<>(kmax + 1, knnq);
+      SharedObject<KNNList> knnv = new SharedObject<>();
+      WriteDataStoreProcessor<KNNList> storek = new WriteDataStoreProcessor<>(knns);
+      knnm.connectKNNOutput(knnv);
+      storek.connectInput(knnv);
+      // Compute bandwidths
+      final double iminbw = (minBandwidth > 0.) ? 1. / (minBandwidth * scale) : Double.POSITIVE_INFINITY;
+      KDEOSBandwidthProcessor bwm = new KDEOSBandwidthProcessor(kernel, kmin, kmax, scale, iminbw, dim);
+      SharedObject<double[]> bwv = new SharedObject<>();
+      SharedObject<int[]> cntv = new SharedObject<>();
+      WriteDataStoreProcessor<double[]> storebw = new WriteDataStoreProcessor<>(ibws);
+      WriteDataStoreProcessor<int[]> storecnt = new WriteDataStoreProcessor<>(cnts);
+      bwm.connectKNNInput(knnv);
+      bwm.connectBandwidthOutput(bwv);
+      bwm.connectCountOutput(cntv);
+      storebw.connectInput(bwv);
+      storecnt.connectInput(cntv);
+
+      ParallelExecutor.run(ids, knnm, storek, bwm, storebw, storecnt);
+    }
+
+    // Reverse neighbors, in database order (cheap, serial).
+    WritableDataStore<ModifiableDoubleDBIDList> rnns = DataStoreUtil.makeStorage(ids, DataStoreFactory.HINT_DB | DataStoreFactory.HINT_TEMP, ModifiableDoubleDBIDList.class);
+    for(DBIDIter iter = ids.iter(); iter.valid(); iter.advance()) {
+      rnns.put(iter, DBIDUtil.newDistanceDBIDList());
+    }
+    for(DBIDIter iter = ids.iter(); iter.valid(); iter.advance()) {
+      int pos = 0;
+      for(DBIDIter neighbor = knns.get(iter).iter(); neighbor.valid(); neighbor.advance(), pos++) {
+        rnns.get(neighbor).add(pos, iter);
+      }
+    }
+
+    // Phase two: density estimates
+    WritableDataStore<double[]> densities = DataStoreUtil.makeStorage(ids, DataStoreFactory.HINT_DB | DataStoreFactory.HINT_TEMP, double[].class);
+    {
+      KDEOSDensityProcessor densm = new KDEOSDensityProcessor(knns, rnns, ibws, cnts, kernel, knum, dim);
+      SharedObject<double[]> densv = new SharedObject<>();
+      WriteDataStoreProcessor<double[]> storedens = new WriteDataStoreProcessor<>(densities);
+
+      densm.connectOutput(densv);
+      storedens.connectInput(densv);
+      ParallelExecutor.run(ids, densm, storedens);
+    }
+    rnns.destroy(); // No longer needed.
+    ibws.destroy();
+    cnts.destroy();
+
+    // Phase three: scores
+    WritableDoubleDataStore kofs = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_DB);
+    DoubleMinMax minmax;
+    {
+      KDEOSScoreProcessor scorem = new KDEOSScoreProcessor(knns, densities, kmax, knum);
+      SharedDouble scorev = new SharedDouble();
+      DoubleMinMaxProcessor mmm = new DoubleMinMaxProcessor();
+      WriteDoubleDataStoreProcessor storescore = new WriteDoubleDataStoreProcessor(kofs);
+
+      scorem.connectOutput(scorev);
+      mmm.connectInput(scorev);
+      storescore.connectInput(scorev);
+      ParallelExecutor.run(ids, scorem, storescore, mmm);
+
+      minmax = mmm.getMinMax();
+    }
+    densities.destroy();
+    knns.destroy();
+
+    DoubleRelation scoreres = new MaterializedDoubleRelation("Kernel Density Estimation Outlier Scores", "kdeos-outlier", kofs, ids);
+    OutlierScoreMeta meta = new ProbabilisticOutlierScore(minmax.getMin(), minmax.getMax());
+    return new OutlierResult(meta, scoreres);
+  }
+
+  /**
+   * Ugly hack to allow using this implementation without having a well-defined
+   * dimensionality.
+   *
+   * @param rel Data relation
+   * @return Dimensionality
+   */
+  private int dimensionality(Relation<O> rel) {
+    // Explicit:
+    if(idim >= 0) {
+      return idim;
+    }
+    // Cast to vector field relation.
+    @SuppressWarnings("unchecked")
+    final Relation<FeatureVector<?>> frel = (Relation<FeatureVector<?>>) rel;
+    int dim = RelationUtil.dimensionality(frel);
+    if(dim < 0) {
+      throw new AbortException("When using KDEOS with non-vectorspace data, the intrinsic dimensionality parameter must be set!");
+    }
+    return dim;
+  }
+
+  @Override
+  public TypeInformation[] getInputTypeRestriction() {
+    TypeInformation res = getDistanceFunction().getInputTypeRestriction();
+    if(idim < 0) {
+      res = new CombinedTypeInformation(TypeUtil.NUMBER_VECTOR_FIELD, res);
+    }
+    return TypeUtil.array(res);
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   *
+   * @param <O> Object type
+   */
+  public static class Parameterizer<O> extends AbstractDistanceBasedAlgorithm.Parameterizer<O> {
+    /**
+     * Kernel function to use for density estimation.
+     */
+    KernelDensityFunction kernel;
+
+    /**
+     * Minimum number of neighbors to use.
+     */
+    int kmin;
+
+    /**
+     * Maximum number of neighbors to use.
+     */
+    int kmax;
+
+    /**
+     * Kernel scaling parameter.
+     */
+    double scale;
+
+    /**
+     * Kernel minimum bandwidth.
+     */
+    double minBandwidth = 0.;
+
+    /**
+     * Intrinsic dimensionality.
+     */
+    int idim = -1;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      super.makeOptions(config);
+
+      ObjectParameter<KernelDensityFunction> kernelP = new ObjectParameter<>(KDEOS.Parameterizer.KERNEL_ID, KernelDensityFunction.class, GaussianKernelDensityFunction.class);
+      if(config.grab(kernelP)) {
+        kernel = kernelP.instantiateClass(config);
+      }
+
+      IntParameter kminP = new IntParameter(KDEOS.Parameterizer.KMIN_ID) //
+      .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(kminP)) {
+        kmin = kminP.intValue();
+      }
+
+      IntParameter kmaxP = new IntParameter(KDEOS.Parameterizer.KMAX_ID) //
+      .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(kmaxP)) {
+        kmax = kmaxP.intValue();
+      }
+      config.checkConstraint(new LessEqualGlobalConstraint<>(kminP, kmaxP));
+
+      DoubleParameter scaleP = new DoubleParameter(KDEOS.Parameterizer.KERNEL_SCALE_ID)//
+      .addConstraint(CommonConstraints.GREATER_THAN_ZERO_DOUBLE) //
+      .setDefaultValue(.5);
+      if(config.grab(scaleP)) {
+        scale = scaleP.doubleValue() * ((kernel != null) ? kernel.canonicalBandwidth() : 1.);
+      }
+      DoubleParameter minbwP = new DoubleParameter(KDEOS.Parameterizer.KERNEL_MIN_ID) //
+      .addConstraint(CommonConstraints.GREATER_EQUAL_ZERO_DOUBLE) //
+      .setOptional(true);
+      if(config.grab(minbwP)) {
+        minBandwidth = minbwP.doubleValue();
+      }
+      IntParameter idimP = new IntParameter(KDEOS.Parameterizer.IDIM_ID, -1);
+      if(config.grab(idimP)) {
+        idim = idimP.intValue();
+      }
+    }
+
+    @Override
+    protected ParallelKDEOS<O> makeInstance() {
+      return new ParallelKDEOS<>(distanceFunction, kmin, kmax, kernel, minBandwidth, scale, idim);
+    }
+  }
+}
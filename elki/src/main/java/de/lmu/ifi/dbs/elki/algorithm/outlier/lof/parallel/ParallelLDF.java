@@ -0,0 +1,269 @@
+package de.lmu.ifi.dbs.elki.algorithm.outlier.lof.parallel;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.lmu.ifi.dbs.elki.algorithm.AbstractDistanceBasedAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.OutlierAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.LDF;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.type.CombinedTypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
+import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.MaterializedDoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.database.relation.RelationUtil;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
+import de.lmu.ifi.dbs.elki.math.statistics.kernelfunctions.GaussianKernelDensityFunction;
+import de.lmu.ifi.dbs.elki.math.statistics.kernelfunctions.KernelDensityFunction;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
+import de.lmu.ifi.dbs.elki.parallel.processor.DoubleMinMaxProcessor;
+import de.lmu.ifi.dbs.elki.parallel.processor.KDistanceProcessor;
+import de.lmu.ifi.dbs.elki.parallel.processor.KNNProcessor;
+import de.lmu.ifi.dbs.elki.parallel.processor.WriteDataStoreProcessor;
+import de.lmu.ifi.dbs.elki.parallel.processor.WriteDoubleDataStoreProcessor;
+import de.lmu.ifi.dbs.elki.parallel.variables.SharedDouble;
+import de.lmu.ifi.dbs.elki.parallel.variables.SharedObject;
+import de.lmu.ifi.dbs.elki.result.outlier.BasicOutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.DoubleParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
+
+/**
+ * Parallel implementation of the Local Density Factor (LDF) using processors.
+ *
+ * Reference:
+ * <p>
+ * L. J. Latecki, A. Lazarevic, D. Pokrajac<br />
+ * Outlier Detection with Kernel Density Functions<br />
+ * Machine Learning and Data Mining in Pattern Recognition
+ * </p>
+ *
+ * @author Erich Schubert
+ *
+ * @apiviz.has LDEProcessor
+ * @apiviz.has LDFProcessor
+ *
+ * @param <O> vector type
+ */
+@Reference(authors = "L. J. Latecki, A. Lazarevic, D. Pokrajac", //
+title = "Outlier Detection with Kernel Density Functions", //
+booktitle = "Machine Learning and Data Mining in Pattern Recognition", //
+url = "http://dx.doi.org/10.1007/978-3-540-73499-4_6")
+public class ParallelLDF<O extends NumberVector> extends AbstractDistanceBasedAlgorithm<O, OutlierResult> implements OutlierAlgorithm {
+  /**
+   * Class logger
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelLDF.class);
+
+  /**
+   * Number of neighbors to query (including the query point).
+   */
+  private int k;
+
+  /**
+   * Kernel density function
+   */
+  private KernelDensityFunction kernel;
+
+  /**
+   * Bandwidth scaling factor.
+   */
+  private double h;
+
+  /**
+   * Scaling constant, to limit value range to 1/c
+   */
+  private double c;
+
+  /**
+   * Constructor.
+   *
+   * @param k Number of neighbors (excluding the query point)
+   * @param distanceFunction Distance function
+   * @param kernel Kernel function
+   * @param h Kernel bandwidth scaling
+   * @param c Score scaling parameter
+   */
+  public ParallelLDF(int k, DistanceFunction<? super O> distanceFunction, KernelDensityFunction kernel, double h, double c) {
+    super(distanceFunction);
+    this.k = k + 1;
+    this.kernel = kernel;
+    this.h = h;
+    this.c = c;
+  }
+
+  @Override
+  public TypeInformation[] getInputTypeRestriction() {
+    return TypeUtil.array(new CombinedTypeInformation(getDistanceFunction().getInputTypeRestriction(), TypeUtil.NUMBER_VECTOR_FIELD));
+  }
+
+  public OutlierResult run(Database database, Relation<O> relation) {
+    final int dim = RelationUtil.dimensionality(relation);
+    DBIDs ids = relation.getDBIDs();
+    DistanceQuery<O> distq = database.getDistanceQuery(relation, getDistanceFunction());
+    KNNQuery<O> knnq = database.getKNNQuery(distq, k);
+
+    // Phase one: KNN and k-dist
+    WritableDoubleDataStore kdists = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_DB);
+    WritableDataStore<KNNList> knns = DataStoreUtil.makeStorage(ids, DataStoreFactory.HINT_DB, KNNList.class);
+    {
+      // Compute kNN
+      KNNProcessor<O> knnm = new KNNProcessor<>(k, knnq);
+      SharedObject<KNNList> knnv = new SharedObject<>();
+      WriteDataStoreProcessor<KNNList> storek = new WriteDataStoreProcessor<>(knns);
+      knnm.connectKNNOutput(knnv);
+      storek.connectInput(knnv);
+      // Compute k-dist
+      KDistanceProcessor kdistm = new KDistanceProcessor(k);
+      SharedDouble kdistv = new SharedDouble();
+      WriteDoubleDataStoreProcessor storem = new WriteDoubleDataStoreProcessor(kdists);
+      kdistm.connectKNNInput(knnv);
+      kdistm.connectOutput(kdistv);
+      storem.connectInput(kdistv);
+
+      ParallelExecutor.run(ids, knnm, storek, kdistm, storem);
+    }
+
+    // Phase two: local density estimates
+    WritableDoubleDataStore ldes = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_DB);
+    {
+      LDEProcessor ldem = new LDEProcessor(knns, kdists, kernel, h, dim);
+      SharedDouble ldev = new SharedDouble();
+      WriteDoubleDataStoreProcessor storelde = new WriteDoubleDataStoreProcessor(ldes);
+
+      ldem.connectOutput(ldev);
+      storelde.connectInput(ldev);
+      ParallelExecutor.run(ids, ldem, storelde);
+    }
+    kdists.destroy(); // No longer needed.
+    kdists = null;
+
+    // Phase three: LDF
+    WritableDoubleDataStore ldfs = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_DB);
+    DoubleMinMax minmax;
+    {
+      LDFProcessor ldfm = new LDFProcessor(knns, ldes, c);
+      SharedDouble ldfv = new SharedDouble();
+      DoubleMinMaxProcessor mmm = new DoubleMinMaxProcessor();
+      WriteDoubleDataStoreProcessor storeldf = new WriteDoubleDataStoreProcessor(ldfs);
+
+      ldfm.connectOutput(ldfv);
+      mmm.connectInput(ldfv);
+      storeldf.connectInput(ldfv);
+      ParallelExecutor.run(ids, ldfm, storeldf, mmm);
+
+      minmax = mmm.getMinMax();
+    }
+    ldes.destroy();
+    knns.destroy();
+
+    DoubleRelation scoreres = new MaterializedDoubleRelation("Local Density Factor", "ldf-outlier", ldfs, ids);
+    OutlierScoreMeta meta = new BasicOutlierScoreMeta(minmax.getMin(), minmax.getMax(), 0.0, 1. / c, 1 / (1 + c));
+    return new OutlierResult(meta, scoreres);
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   *
+   * @param <O> vector type
+   */
+  public static class Parameterizer<O extends NumberVector> extends AbstractDistanceBasedAlgorithm.Parameterizer<O> {
+    /**
+     * The neighborhood size to use.
+     */
+    int k = 2;
+
+    /**
+     * Kernel density function parameter
+     */
+    KernelDensityFunction kernel;
+
+    /**
+     * Bandwidth scaling factor.
+     */
+    double h = 1;
+
+    /**
+     * Scaling constant, to limit value range to 1/c
+     */
+    double c = 0.1;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      super.makeOptions(config);
+
+      final IntParameter pK = new IntParameter(LDF.Parameterizer.K_ID);
+      pK.addConstraint(CommonConstraints.GREATER_THAN_ONE_INT);
+      if(config.grab(pK)) {
+        k = pK.getValue();
+      }
+
+      ObjectParameter<KernelDensityFunction> kernelP = new ObjectParameter<>(LDF.Parameterizer.KERNEL_ID, KernelDensityFunction.class, GaussianKernelDensityFunction.class);
+      if(config.grab(kernelP)) {
+        kernel = kernelP.instantiateClass(config);
+      }
+
+      DoubleParameter hP = new DoubleParameter(LDF.Parameterizer.H_ID);
+      if(config.grab(hP)) {
+        h = hP.doubleValue();
+      }
+
+      DoubleParameter cP = new DoubleParameter(LDF.Parameterizer.C_ID, 0.1);
+      if(config.grab(cP)) {
+        c = cP.doubleValue();
+      }
+    }
+
+    @Override
+    protected ParallelLDF<O> makeInstance() {
+      return new ParallelLDF<>(k, distanceFunction, kernel, h, c);
+    }
+  }
+}
@@ -0,0 +1,241 @@
+package de.lmu.ifi.dbs.elki.algorithm.outlier.lof.parallel;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.lmu.ifi.dbs.elki.algorithm.AbstractDistanceBasedAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.OutlierAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.LOCI;
+import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableIntegerDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.range.RangeQuery;
+import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.MaterializedDoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
+import de.lmu.ifi.dbs.elki.parallel.processor.DoubleMinMaxProcessor;
+import de.lmu.ifi.dbs.elki.parallel.processor.WriteDoubleDataStoreProcessor;
+import de.lmu.ifi.dbs.elki.parallel.variables.SharedDouble;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.result.outlier.QuotientOutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Description;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Title;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.DoubleParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+
+/**
+ * Parallel implementation of the exact "Local Correlation Integral".
+ *
+ * Contrary to {@link LOCI}, the sorted counting neighborhoods (radius
+ * alpha*rmax) of all objects are kept in compact primitive arrays, and all
+ * neighbor counts are obtained from them by binary search. The sampling
+ * neighborhood (radius rmax) of each object is queried when the object is
+ * evaluated, and discarded afterwards; its critical radii are streamed, and not
+ * stored. Both phases are run in parallel. The scores are identical to
+ * {@link LOCI}.
+ *
+ * Memory: one double per object and counting neighbor, i.e.
+ * O(n * |N(alpha*rmax)|), plus one rmax-neighborhood per thread. For alpha = 1,
+ * this is the full rmax-neighborhood of every object. Two range queries are
+ * performed per object.
+ *
+ * Reference:
+ * <p>
+ * S. Papadimitriou, H. Kitagawa, P. B. Gibbons and C. Faloutsos:<br />
+ * LOCI: Fast Outlier Detection Using the Local Correlation Integral.<br />
+ * In: Proc. 19th IEEE Int. Conf. on Data Engineering (ICDE '03), Bangalore,
+ * India, 2003.
+ * </p>
+ *
+ * @author Erich Schubert
+ *
+ * @apiviz.has LOCINeighborhoodProcessor
+ * @apiviz.has MDEFProcessor
+ *
+ * @param <O> Object type
+ */
+@Title("LOCI: Fast Outlier Detection Using the Local Correlation Integral")
+@Description("Algorithm to compute outliers based on the Local Correlation Integral")
+@Reference(authors = "S. Papadimitriou, H. Kitagawa, P. B. Gibbons, C. Faloutsos", title = "LOCI: Fast Outlier Detection Using the Local Correlation Integral", booktitle = "Proc. 19th IEEE Int. Conf. on Data Engineering (ICDE '03), Bangalore, India, 2003", url = "http://dx.doi.org/10.1109/ICDE.2003.1260802")
+public class ParallelLOCI<O> extends AbstractDistanceBasedAlgorithm<O, OutlierResult> implements OutlierAlgorithm {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelLOCI.class);
+
+  /**
+   * Maximum radius.
+   */
+  private double rmax;
+
+  /**
+   * Minimum neighborhood size.
+   */
+  private int nmin;
+
+  /**
+   * Alpha value.
+   */
+  private double alpha;
+
+  /**
+   * Constructor.
+   *
+   * @param distanceFunction Distance function
+   * @param rmax Maximum radius
+   * @param nmin Minimum neighborhood size
+   * @param alpha Alpha value
+   */
+  public ParallelLOCI(DistanceFunction<? super O> distanceFunction, double rmax, int nmin, double alpha) {
+    super(distanceFunction);
+    this.rmax = rmax;
+    this.nmin = nmin;
+    this.alpha = alpha;
+  }
+
+  /**
+   * Run the algorithm
+   *
+   * @param database Database to process
+   * @param relation Relation to process
+   * @return Outlier result
+   */
+  public OutlierResult run(Database database, Relation<O> relation) {
+    DistanceQuery<O> distFunc = database.getDistanceQuery(relation, getDistanceFunction());
+    RangeQuery<O> rangeQuery = database.getRangeQuery(distFunc);
+    ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+
+    WritableIntegerDataStore offsets = DataStoreUtil.makeIntegerStorage(ids, DataStoreFactory.HINT_TEMP);
+    for(DBIDArrayIter iter = ids.iter(); iter.valid(); iter.advance()) {
+      offsets.putInt(iter, iter.getOffset());
+    }
+
+    // Phase one: sorted counting neighborhoods (alpha-rmax). As in LOCI,
+    // counts for alpha > 1 are limited to rmax.
+    double[][] dists = new double[ids.size()][];
+    ParallelExecutor.run(ids, new LOCINeighborhoodProcessor<>(rangeQuery, Math.min(alpha, 1.) * rmax, offsets, dists));
+
+    // Phase two: maximum normalized MDEF
+    WritableDoubleDataStore mdef_norm = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_STATIC);
+    WritableDoubleDataStore mdef_radius = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_STATIC);
+    DoubleMinMax minmax;
+    {
+      MDEFProcessor<O> mdefm = new MDEFProcessor<>(rangeQuery, offsets, dists, rmax, nmin, alpha);
+      SharedDouble mdefv = new SharedDouble(), radiusv = new SharedDouble();
+      DoubleMinMaxProcessor mmm = new DoubleMinMaxProcessor();
+      WriteDoubleDataStoreProcessor storem = new WriteDoubleDataStoreProcessor(mdef_norm);
+      WriteDoubleDataStoreProcessor storer = new WriteDoubleDataStoreProcessor(mdef_radius);
+
+      mdefm.connectOutput(mdefv);
+      mdefm.connectRadiusOutput(radiusv);
+      mmm.connectInput(mdefv);
+      storem.connectInput(mdefv);
+      storer.connectInput(radiusv);
+      ParallelExecutor.run(ids, mdefm, storem, storer, mmm);
+
+      minmax = mmm.getMinMax();
+    }
+    offsets.destroy();
+
+    DoubleRelation scoreResult = new MaterializedDoubleRelation("LOCI normalized MDEF", "loci-mdef-outlier", mdef_norm, ids);
+    OutlierScoreMeta scoreMeta = new QuotientOutlierScoreMeta(minmax.getMin(), minmax.getMax(), 0.0, Double.POSITIVE_INFINITY, 0.0);
+    OutlierResult result = new OutlierResult(scoreMeta, scoreResult);
+    result.addChildResult(new MaterializedDoubleRelation("LOCI MDEF Radius", "loci-critical-radius", mdef_radius, ids));
+    return result;
+  }
+
+  @Override
+  public TypeInformation[] getInputTypeRestriction() {
+    return TypeUtil.array(getDistanceFunction().getInputTypeRestriction());
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   *
+   * @param <O> Object type
+   */
+  public static class Parameterizer<O> extends AbstractDistanceBasedAlgorithm.Parameterizer<O> {
+    /**
+     * Maximum radius.
+     */
+    protected double rmax;
+
+    /**
+     * Minimum neighborhood size.
+     */
+    protected int nmin = 0;
+
+    /**
+     * Alpha value.
+     */
+    protected double alpha = 0.5;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      super.makeOptions(config);
+      final DoubleParameter rmaxP = new DoubleParameter(LOCI.RMAX_ID);
+      if(config.grab(rmaxP)) {
+        rmax = rmaxP.doubleValue();
+      }
+
+      final IntParameter nminP = new IntParameter(LOCI.NMIN_ID, 20);
+      if(config.grab(nminP)) {
+        nmin = nminP.intValue();
+      }
+
+      final DoubleParameter alphaP = new DoubleParameter(LOCI.ALPHA_ID, 0.5);
+      if(config.grab(alphaP)) {
+        alpha = alphaP.doubleValue();
+      }
+    }
+
+    @Override
+    protected ParallelLOCI<O> makeInstance() {
+      return new ParallelLOCI<>(distanceFunction, rmax, nmin, alpha);
+    }
+  }
+}
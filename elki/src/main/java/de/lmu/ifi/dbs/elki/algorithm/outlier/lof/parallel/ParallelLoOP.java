@@ -0,0 +1,257 @@
+package de.lmu.ifi.dbs.elki.algorithm.outlier.lof.parallel;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.lmu.ifi.dbs.elki.algorithm.AbstractDistanceBasedAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.OutlierAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.LoOP;
+import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
+import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.MaterializedDoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
+import de.lmu.ifi.dbs.elki.math.MathUtil;
+import de.lmu.ifi.dbs.elki.math.Mean;
+import de.lmu.ifi.dbs.elki.math.statistics.distribution.NormalDistribution;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
+import de.lmu.ifi.dbs.elki.parallel.processor.KNNProcessor;
+import de.lmu.ifi.dbs.elki.parallel.processor.WriteDataStoreProcessor;
+import de.lmu.ifi.dbs.elki.parallel.processor.WriteDoubleDataStoreProcessor;
+import de.lmu.ifi.dbs.elki.parallel.variables.SharedDouble;
+import de.lmu.ifi.dbs.elki.parallel.variables.SharedObject;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.result.outlier.ProbabilisticOutlierScore;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.DoubleParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+
+/**
+ * Parallel implementation of Local Outlier Probabilities using processors.
+ *
+ * Contrary to {@link LoOP}, this version uses a single distance function for
+ * both the density estimation and the comparison set, so that a single kNN
+ * computation can be shared by both steps. The final normalization is
+ * computed sequentially, so that the scores are identical to {@link LoOP}.
+ *
+ * Reference:
+ * <p>
+ * Hans-Peter Kriegel, Peer Kröger, Erich Schubert, Arthur Zimek:<br />
+ * LoOP: Local Outlier Probabilities<br />
+ * In Proceedings of the 18th International Conference on Information and
+ * Knowledge Management (CIKM), Hong Kong, China, 2009
+ * </p>
+ *
+ * @author Erich Schubert
+ *
+ * @apiviz.has PDistProcessor
+ * @apiviz.has PLOFProcessor
+ *
+ * @param <O> Object type
+ */
+@Reference(authors = "H.-P. Kriegel, P. Kröger, E. Schubert, A. Zimek", //
+title = "LoOP: Local Outlier Probabilities", //
+booktitle = "Proceedings of the 18th International Conference on Information and Knowledge Management (CIKM), Hong Kong, China, 2009", //
+url = "http://dx.doi.org/10.1145/1645953.1646195")
+public class ParallelLoOP<O> extends AbstractDistanceBasedAlgorithm<O, OutlierResult> implements OutlierAlgorithm {
+  /**
+   * Class logger
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelLoOP.class);
+
+  /**
+   * Number of neighbors for the density estimation.
+   */
+  private int kreach;
+
+  /**
+   * Number of neighbors for the comparison set.
+   */
+  private int kcomp;
+
+  /**
+   * Extent parameter lambda.
+   */
+  private double lambda;
+
+  /**
+   * Constructor.
+   *
+   * @param distanceFunction Distance function
+   * @param kreach Number of neighbors for the density estimation
+   * @param kcomp Number of neighbors for the comparison set
+   * @param lambda Extent parameter lambda
+   */
+  public ParallelLoOP(DistanceFunction<? super O> distanceFunction, int kreach, int kcomp, double lambda) {
+    super(distanceFunction);
+    this.kreach = kreach;
+    this.kcomp = kcomp;
+    this.lambda = lambda;
+  }
+
+  @Override
+  public TypeInformation[] getInputTypeRestriction() {
+    return TypeUtil.array(getDistanceFunction().getInputTypeRestriction());
+  }
+
+  public OutlierResult run(Database database, Relation<O> relation) {
+    DBIDs ids = relation.getDBIDs();
+    final int kmax = Math.max(kreach, kcomp);
+    DistanceQuery<O> distq = database.getDistanceQuery(relation, getDistanceFunction());
+    KNNQuery<O> knnq = database.getKNNQuery(distq, kmax + 1);
+
+    // Phase one: KNN and probabilistic distances
+    WritableDoubleDataStore pdists = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_DB);
+    WritableDataStore<KNNList> knns = DataStoreUtil.makeStorage(ids, DataStoreFactory.HINT_DB, KNNList.class);
+    {
+      // Compute kNN
+      KNNProcessor<O> knnm = new KNNProcessor<>(kmax + 1, knnq);
+      SharedObject<KNNList> knnv = new SharedObject<>();
+      WriteDataStoreProcessor<KNNList> storek = new WriteDataStoreProcessor<>(knns);
+      knnm.connectKNNOutput(knnv);
+      storek.connectInput(knnv);
+      // Compute pdist
+      PDistProcessor pdistm = new PDistProcessor(kreach);
+      SharedDouble pdistv = new SharedDouble();
+      WriteDoubleDataStoreProcessor storep = new WriteDoubleDataStoreProcessor(pdists);
+      pdistm.connectKNNInput(knnv);
+      pdistm.connectOutput(pdistv);
+      storep.connectInput(pdistv);
+
+      ParallelExecutor.run(ids, knnm, storek, pdistm, storep);
+    }
+
+    // Phase two: PLOF
+    WritableDoubleDataStore plofs = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_DB);
+    {
+      PLOFProcessor plofm = new PLOFProcessor(knns, pdists, kcomp);
+      SharedDouble plofv = new SharedDouble();
+      WriteDoubleDataStoreProcessor storeplof = new WriteDoubleDataStoreProcessor(plofs);
+
+      plofm.connectOutput(plofv);
+      storeplof.connectInput(plofv);
+      ParallelExecutor.run(ids, plofm, storeplof);
+    }
+    pdists.destroy(); // No longer needed.
+    knns.destroy();
+
+    // Phase three: normalization. This is cheap, and done sequentially to
+    // obtain the same summation order as the serial implementation.
+    Mean mvplof = new Mean();
+    for(DBIDIter iditer = ids.iter(); iditer.valid(); iditer.advance()) {
+      final double plof = plofs.doubleValue(iditer);
+      mvplof.put((plof - 1.0) * (plof - 1.0));
+    }
+    final double nplof = lambda * Math.sqrt(mvplof.getMean());
+    final double norm = 1. / (nplof * MathUtil.SQRT2);
+    DoubleMinMax mm = new DoubleMinMax();
+    for(DBIDIter iditer = ids.iter(); iditer.valid(); iditer.advance()) {
+      double loop = NormalDistribution.erf((plofs.doubleValue(iditer) - 1.) * norm);
+      plofs.putDouble(iditer, loop);
+      mm.put(loop);
+    }
+
+    DoubleRelation scoreres = new MaterializedDoubleRelation("Local Outlier Probabilities", "loop-outlier", plofs, ids);
+    OutlierScoreMeta meta = new ProbabilisticOutlierScore(mm.getMin(), mm.getMax(), 0.);
+    return new OutlierResult(meta, scoreres);
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   *
+   * @param <O> Object type
+   */
+  public static class Parameterizer<O> extends AbstractDistanceBasedAlgorithm.Parameterizer<O> {
+    /**
+     * Number of neighbors for the density estimation.
+     */
+    int kreach = 0;
+
+    /**
+     * Number of neighbors for the comparison set.
+     */
+    int kcomp = 0;
+
+    /**
+     * Extent parameter lambda.
+     */
+    double lambda = 2.0;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      super.makeOptions(config);
+
+      final IntParameter kcompP = new IntParameter(LoOP.Parameterizer.KCOMP_ID);
+      kcompP.addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(kcompP)) {
+        kcomp = kcompP.intValue();
+      }
+
+      final IntParameter kreachP = new IntParameter(LoOP.Parameterizer.KREACH_ID);
+      kreachP.addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      kreachP.setOptional(true);
+      if(config.grab(kreachP)) {
+        kreach = kreachP.intValue();
+      }
+      else {
+        kreach = kcomp;
+      }
+
+      final DoubleParameter lambdaP = new DoubleParameter(LoOP.Parameterizer.LAMBDA_ID, 2.0);
+      lambdaP.addConstraint(CommonConstraints.GREATER_THAN_ZERO_DOUBLE);
+      if(config.grab(lambdaP)) {
+        lambda = lambdaP.doubleValue();
+      }
+    }
+
+    @Override
+    protected ParallelLoOP<O> makeInstance() {
+      return new ParallelLoOP<>(distanceFunction, kreach, kcomp, lambda);
+    }
+  }
+}
@@ -101,12 +101,12 @@ public class FeatureBagging extends AbstractAlgorithm<OutlierResult> implements
   /**
    * Random number generator for subspace choice.
    */
-  private RandomFactory rnd;
+  protected RandomFactory rnd;
 
   /**
    * The parameters k for LOF.
    */
-  private int k;
+  protected int k;
 
   /**
    * Constructor.
@@ -222,7 +222,7 @@ public class FeatureBagging extends AbstractAlgorithm<OutlierResult> implements
    * @param maxdim Maximum number to choose
    * @return Subspace as bits.
    */
-  private long[] randomSubspace(final int alldim, final int mindim, final int maxdim, final Random rand) {
+  protected long[] randomSubspace(final int alldim, final int mindim, final int maxdim, final Random rand) {
     long[] dimset = BitsUtil.zero(alldim);
     // Fill with all dimensions
     int[] dims = new int[alldim];
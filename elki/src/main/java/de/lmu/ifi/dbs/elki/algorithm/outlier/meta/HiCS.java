@@ -57,6 +57,7 @@ import de.lmu.ifi.dbs.elki.database.relation.ProjectedView;
 import de.lmu.ifi.dbs.elki.database.relation.Relation;
 import de.lmu.ifi.dbs.elki.database.relation.RelationUtil;
 import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.progress.AbstractProgress;
 import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
 import de.lmu.ifi.dbs.elki.logging.progress.IndefiniteProgress;
 import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
@@ -263,16 +264,19 @@ public class HiCS<V extends NumberVector> extends AbstractAlgorithm<OutlierResul
     TopBoundedHeap<HiCSSubspace> dDimensionalList = new TopBoundedHeap<>(cutoff, HiCSSubspace.SORT_BY_CONTRAST_ASC);
     FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Generating two-element subsets", (dbdim * (dbdim - 1)) >> 1, LOG) : null;
     // compute two-element sets of subspaces
+    ArrayList<HiCSSubspace> pairs = new ArrayList<>((dbdim * (dbdim - 1)) >> 1);
     for(int i = 0; i < dbdim; i++) {
       for(int j = i + 1; j < dbdim; j++) {
         HiCSSubspace ts = new HiCSSubspace();
         ts.set(i);
         ts.set(j);
-        calculateContrast(relation, ts, subspaceIndex, random);
-        dDimensionalList.add(ts);
-        LOG.incrementProcessed(prog);
+        pairs.add(ts);
       }
     }
+    calculateContrasts(relation, pairs, subspaceIndex, random, prog);
+    for(HiCSSubspace ts : pairs) {
+      dDimensionalList.add(ts);
+    }
     LOG.ensureCompleted(prog);
 
     IndefiniteProgress qprog = LOG.isVerbose() ? new IndefiniteProgress("Testing subspace candidates", LOG) : null;
@@ -292,6 +296,7 @@ public class HiCS<V extends NumberVector> extends AbstractAlgorithm<OutlierResul
       Collections.sort(candidateList, HiCSSubspace.SORT_BY_SUBSPACE);
 
       // TODO: optimize APRIORI style, by not even computing the bit set or?
+      ArrayList<HiCSSubspace> joinedSets = new ArrayList<>();
       for(int i = 0; i < candidateList.size() - 1; i++) {
         for(int j = i + 1; j < candidateList.size(); j++) {
           HiCSSubspace set1 = candidateList.get(i);
@@ -304,11 +309,13 @@ public class HiCS<V extends NumberVector> extends AbstractAlgorithm<OutlierResul
             continue;
           }
 
-          calculateContrast(relation, joinedSet, subspaceIndex, random);
-          dDimensionalList.add(joinedSet);
-          LOG.incrementProcessed(qprog);
+          joinedSets.add(joinedSet);
         }
       }
+      calculateContrasts(relation, joinedSets, subspaceIndex, random, qprog);
+      for(HiCSSubspace joinedSet : joinedSets) {
+        dDimensionalList.add(joinedSet);
+      }
       // Prune
       for(HiCSSubspace cand : candidateList) {
         for(Heap<HiCSSubspace>.UnorderedIter it = dDimensionalList.unorderedIter(); it.valid(); it.advance()) {
@@ -327,14 +334,31 @@ public class HiCS<V extends NumberVector> extends AbstractAlgorithm<OutlierResul
     return subspaceList;
   }
 
+  /**
+   * Calculates the contrast of each candidate subspace, in the order given.
+   * 
+   * @param relation Relation to process
+   * @param candidates Candidate subspaces
+   * @param subspaceIndex Subspace indexes
+   * @param random Random generator
+   * @param prog Progress to increment per candidate, may be {@code null}
+   */
+  protected void calculateContrasts(Relation<? extends NumberVector> relation, List<HiCSSubspace> candidates, ArrayList<ArrayDBIDs> subspaceIndex, Random random, AbstractProgress prog) {
+    for(HiCSSubspace subspace : candidates) {
+      calculateContrast(relation, subspace, subspaceIndex, random);
+      LOG.incrementProcessed(prog);
+    }
+  }
+
   /**
    * Calculates the actual contrast of a given subspace.
    * 
    * @param relation Relation to process
    * @param subspace Subspace
    * @param subspaceIndex Subspace indexes
+   * @param random Random generator
    */
-  private void calculateContrast(Relation<? extends NumberVector> relation, HiCSSubspace subspace, ArrayList<ArrayDBIDs> subspaceIndex, Random random) {
+  protected void calculateContrast(Relation<? extends NumberVector> relation, HiCSSubspace subspace, ArrayList<ArrayDBIDs> subspaceIndex, Random random) {
     final int card = subspace.cardinality();
     final double alpha1 = Math.pow(alpha, (1.0 / card));
     final int windowsize = (int) (relation.size() * alpha1);
@@ -553,32 +577,32 @@ public class HiCS<V extends NumberVector> extends AbstractAlgorithm<OutlierResul
     /**
      * Holds the value of {@link #M_ID}.
      */
-    private int m = 50;
+    protected int m = 50;
 
     /**
      * Holds the value of {@link #ALPHA_ID}.
      */
-    private double alpha = 0.1;
+    protected double alpha = 0.1;
 
     /**
      * Holds the value of {@link #ALGO_ID}.
      */
-    private OutlierAlgorithm outlierAlgorithm;
+    protected OutlierAlgorithm outlierAlgorithm;
 
     /**
      * Holds the value of {@link #TEST_ID}.
      */
-    private GoodnessOfFitTest statTest;
+    protected GoodnessOfFitTest statTest;
 
     /**
      * Holds the value of {@link #LIMIT_ID}.
      */
-    private int cutoff = 400;
+    protected int cutoff = 400;
 
     /**
      * Random generator.
      */
-    private RandomFactory rnd;
+    protected RandomFactory rnd;
 
     @Override
     protected void makeOptions(Parameterization config) {
@@ -0,0 +1,87 @@
+package de.lmu.ifi.dbs.elki.algorithm.outlier.meta.parallel;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import de.lmu.ifi.dbs.elki.parallel.ParallelCore;
+
+/**
+ * Run the members of an outlier ensemble concurrently, with a bounded number
+ * of members in flight.
+ * 
+ * Since every running member holds its own intermediate data (neighborhoods,
+ * densities, ...), the concurrency limit also bounds the memory use.
+ * 
+ * Members run on a dedicated thread pool, not on {@link ParallelCore}: a member
+ * may itself be a parallel algorithm, and waiting for its tasks from within a
+ * worker of the same fixed-size pool could deadlock.
+ * 
+ * @author Erich Schubert
+ */
+public final class EnsembleExecutor {
+  /**
+   * Fake constructor: do not instantiate.
+   */
+  private EnsembleExecutor() {
+    // Do not instantiate
+  }
+
+  /**
+   * Run all members, and wait for their completion.
+   * 
+   * @param members Ensemble members
+   * @param concurrency Maximum number of members to run at the same time
+   */
+  public static void run(List<? extends Callable<?>> members, int concurrency) {
+    if(members.isEmpty()) {
+      return;
+    }
+    ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(concurrency, members.size())));
+    try {
+      List<Future<?>> futures = new ArrayList<>(members.size());
+      for(Callable<?> member : members) {
+        futures.add(pool.submit(member));
+      }
+      for(Future<?> fut : futures) {
+        fut.get();
+      }
+    }
+    catch(ExecutionException e) {
+      throw new RuntimeException("Ensemble member failed.", e);
+    }
+    catch(InterruptedException e) {
+      throw new RuntimeException("Parallel execution interrupted.");
+    }
+    finally {
+      pool.shutdownNow();
+    }
+  }
+}
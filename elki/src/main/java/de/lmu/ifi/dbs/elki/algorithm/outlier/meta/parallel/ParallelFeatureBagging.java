@@ -0,0 +1,303 @@
+package de.lmu.ifi.dbs.elki.algorithm.outlier.meta.parallel;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+
+import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.LOF;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.meta.FeatureBagging;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.MaterializedDoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.database.relation.RelationUtil;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.subspace.SubspaceEuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
+import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
+import de.lmu.ifi.dbs.elki.math.random.RandomFactory;
+import de.lmu.ifi.dbs.elki.parallel.ParallelCore;
+import de.lmu.ifi.dbs.elki.result.outlier.BasicOutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Title;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+
+/**
+ * Feature bagging for outlier detection, running the LOF members concurrently.
+ * 
+ * The random subspaces are chosen up front, in the same order as in the serial
+ * version. At most a given number of members run at the same time. Instead of
+ * retaining the full member results, their scores are copied into primitive
+ * arrays: in cumulative sum mode, they are added to the running sum in member
+ * order as soon as all preceding members are done; in breadth-first mode, only
+ * the ranking and the ranked scores of each member are kept. The result is the
+ * same as with the serial version.
+ * 
+ * <p>
+ * Reference: <br>
+ * A. Lazarevic, V. Kumar: Feature Bagging for Outlier Detection<br />
+ * In: Proc. of the 11th ACM SIGKDD international conference on Knowledge
+ * discovery in data mining
+ * </p>
+ * 
+ * @author Erich Schubert
+ * 
+ * @apiviz.uses EnsembleExecutor
+ */
+@Title("Feature Bagging for Outlier Detection")
+@Reference(title = "Feature Bagging for Outlier Detection", authors = "A. Lazarevic, V. Kumar", booktitle = "Proc. of the 11th ACM SIGKDD international conference on Knowledge discovery in data mining", url = "http://dx.doi.org/10.1145/1081870.1081891")
+public class ParallelFeatureBagging extends FeatureBagging {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelFeatureBagging.class);
+
+  /**
+   * Maximum number of members to run at the same time.
+   */
+  private int concurrency;
+
+  /**
+   * Constructor.
+   * 
+   * @param k k Parameter for LOF
+   * @param num Number of subspaces to use
+   * @param breadth Flag for breadth-first merging
+   * @param rnd Random generator
+   * @param concurrency Maximum number of members to run at the same time
+   */
+  public ParallelFeatureBagging(int k, int num, boolean breadth, RandomFactory rnd, int concurrency) {
+    super(k, num, breadth, rnd);
+    this.concurrency = concurrency;
+  }
+
+  @Override
+  public OutlierResult run(final Database database, final Relation<NumberVector> relation) {
+    final int dbdim = RelationUtil.dimensionality(relation);
+    final int mindim = dbdim >> 1;
+    final int maxdim = dbdim - 1;
+    final Random rand = rnd.getSingleThreadedRandom();
+    final ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+
+    final CumulativeSum sum = breadth ? null : new CumulativeSum(num, ids.size());
+    final ArrayDBIDs[] rankings = breadth ? new ArrayDBIDs[num] : null;
+    final double[][] rankscores = breadth ? new double[num][] : null;
+    {
+      final FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("LOF iterations", num, LOG) : null;
+      List<Callable<Void>> members = new ArrayList<>(num);
+      for(int i = 0; i < num; i++) {
+        final int m = i;
+        final long[] dimset = randomSubspace(dbdim, mindim, maxdim, rand);
+        members.add(new Callable<Void>() {
+          @Override
+          public Void call() {
+            SubspaceEuclideanDistanceFunction df = new SubspaceEuclideanDistanceFunction(dimset);
+            OutlierResult result = new LOF<NumberVector>(k, df).run(database, relation);
+            DoubleRelation scores = result.getScores();
+            if(breadth) {
+              ArrayDBIDs ranking = DBIDUtil.ensureArray(result.getOrdering().order(ids));
+              double[] rs = new double[ranking.size()];
+              for(DBIDArrayIter iter = ranking.iter(); iter.valid(); iter.advance()) {
+                rs[iter.getOffset()] = scores.doubleValue(iter);
+              }
+              rankings[m] = ranking;
+              rankscores[m] = rs;
+            }
+            else {
+              double[] col = new double[ids.size()];
+              for(DBIDArrayIter iter = ids.iter(); iter.valid(); iter.advance()) {
+                col[iter.getOffset()] = scores.doubleValue(iter);
+              }
+              sum.add(m, col);
+            }
+            LOG.incrementProcessed(prog);
+            return null;
+          }
+        });
+      }
+      EnsembleExecutor.run(members, concurrency);
+      LOG.ensureCompleted(prog);
+    }
+
+    WritableDoubleDataStore scores = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_STATIC);
+    DoubleMinMax minmax = new DoubleMinMax();
+    if(breadth) {
+      FiniteProgress cprog = LOG.isVerbose() ? new FiniteProgress("Combining results", ids.size(), LOG) : null;
+      DBIDArrayIter[] iters = new DBIDArrayIter[num];
+      for(int m = 0; m < num; m++) {
+        iters[m] = rankings[m].iter();
+      }
+      // Iterating over the *lines* of the AS_t(i)-matrix.
+      for(int i = 0; i < ids.size(); i++) {
+        // Iterating over the elements of a line (breadth-first).
+        for(int m = 0; m < num; m++) {
+          DBIDArrayIter iter = iters[m];
+          if(iter.valid()) {
+            if(Double.isNaN(scores.doubleValue(iter))) {
+              double score = rankscores[m][iter.getOffset()];
+              scores.putDouble(iter, score);
+              minmax.put(score);
+            }
+            iter.advance();
+          }
+          else {
+            LOG.warning("Incomplete result: Iterator does not contain |DB| DBIDs");
+          }
+        }
+        LOG.incrementProcessed(cprog);
+      }
+      LOG.ensureCompleted(cprog);
+    }
+    else {
+      double[] sums = sum.getSums();
+      for(DBIDArrayIter iter = ids.iter(); iter.valid(); iter.advance()) {
+        final double s = sums[iter.getOffset()];
+        scores.putDouble(iter, s);
+        minmax.put(s);
+      }
+    }
+    OutlierScoreMeta meta = new BasicOutlierScoreMeta(minmax.getMin(), minmax.getMax());
+    DoubleRelation scoreres = new MaterializedDoubleRelation("Feature bagging", "fb-outlier", scores, ids);
+    return new OutlierResult(meta, scoreres);
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Running sum of the member scores, accumulated in member order so that the
+   * floating point result does not depend on the scheduling.
+   * 
+   * @author Erich Schubert
+   * 
+   * @apiviz.exclude
+   */
+  private static class CumulativeSum {
+    /**
+     * Sums, by object offset.
+     */
+    private double[] sums;
+
+    /**
+     * Finished members waiting for their predecessors.
+     */
+    private double[][] pending;
+
+    /**
+     * Next member to add.
+     */
+    private int next = 0;
+
+    /**
+     * Constructor.
+     * 
+     * @param num Number of members
+     * @param size Number of objects
+     */
+    public CumulativeSum(int num, int size) {
+      this.sums = new double[size];
+      this.pending = new double[num][];
+    }
+
+    /**
+     * Add the scores of a finished member.
+     * 
+     * @param m Member number
+     * @param col Scores, by object offset
+     */
+    public synchronized void add(int m, double[] col) {
+      pending[m] = col;
+      for(; next < pending.length && pending[next] != null; next++) {
+        final double[] c = pending[next];
+        for(int i = 0; i < sums.length; i++) {
+          if(!Double.isNaN(c[i])) {
+            sums[i] += c[i];
+          }
+        }
+        pending[next] = null;
+      }
+    }
+
+    /**
+     * Get the sums, after all members were added.
+     * 
+     * @return Sums, by object offset
+     */
+    public synchronized double[] getSums() {
+      assert (next == pending.length) : "Not all members were added.";
+      return sums;
+    }
+  }
+
+  /**
+   * Parameterization class.
+   * 
+   * @author Erich Schubert
+   * 
+   * @apiviz.exclude
+   */
+  public static class Parameterizer extends FeatureBagging.Parameterizer {
+    /**
+     * Maximum number of members to run at the same time.
+     */
+    public static final OptionID CONCURRENT_ID = new OptionID("fbagging.concurrent", "Maximum number of ensemble members to run at the same time, bounding the memory use.");
+
+    /**
+     * Maximum number of members to run at the same time.
+     */
+    protected int concurrency = ParallelCore.ALL_PROCESSORS;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      super.makeOptions(config);
+      IntParameter concurrentP = new IntParameter(CONCURRENT_ID, ParallelCore.ALL_PROCESSORS);
+      concurrentP.addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(concurrentP)) {
+        concurrency = concurrentP.intValue();
+      }
+    }
+
+    @Override
+    protected ParallelFeatureBagging makeInstance() {
+      return new ParallelFeatureBagging(k, num, breadth, rnd, concurrency);
+    }
+  }
+}
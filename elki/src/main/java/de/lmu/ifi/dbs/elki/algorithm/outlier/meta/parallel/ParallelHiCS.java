@@ -0,0 +1,134 @@
+package de.lmu.ifi.dbs.elki.algorithm.outlier.meta.parallel;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import de.lmu.ifi.dbs.elki.algorithm.outlier.OutlierAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.meta.HiCS;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.progress.AbstractProgress;
+import de.lmu.ifi.dbs.elki.math.random.RandomFactory;
+import de.lmu.ifi.dbs.elki.math.statistics.tests.GoodnessOfFitTest;
+import de.lmu.ifi.dbs.elki.parallel.ParallelBlocks;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Description;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Title;
+
+/**
+ * Parallel version of HiCS: High Contrast Subspaces for Density-Based Outlier
+ * Ranking.
+ * 
+ * The Monte-Carlo contrast estimation of the candidate subspaces of each level
+ * is distributed across all cores. Every candidate gets its own random
+ * generator, seeded from the shared random source in candidate order, so the
+ * result is reproducible and does not depend on the number of threads.
+ * 
+ * Reference:
+ * <p>
+ * Fabian Keller, Emmanuel Müller, Klemens Böhm:<br />
+ * HiCS: High Contrast Subspaces for Density-Based Outlier Ranking<br />
+ * in: Proc. IEEE 28th Int. Conf. on Data Engineering (ICDE 2012), Washington,
+ * DC, USA
+ * </p>
+ * 
+ * @author Erich Schubert
+ * 
+ * @apiviz.uses ParallelBlocks
+ * 
+ * @param <V> vector type
+ */
+@Title("HiCS: High Contrast Subspaces for Density-Based Outlier Ranking")
+@Description("Algorithm to compute High Contrast Subspaces in a database as a pre-processing step for for density-based outlier ranking methods, testing candidate subspaces in parallel.")
+@Reference(authors = "Fabian Keller, Emmanuel Müller, Klemens Böhm", title = "HiCS: High Contrast Subspaces for Density-Based Outlier Ranking", booktitle = "Proc. IEEE 28th International Conference on Data Engineering (ICDE 2012)", url = "http://dx.doi.org/10.1109/ICDE.2012.88")
+public class ParallelHiCS<V extends NumberVector> extends HiCS<V> {
+  /**
+   * The Logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelHiCS.class);
+
+  /**
+   * Constructor.
+   * 
+   * @param m value of m
+   * @param alpha value of alpha
+   * @param outlierAlgorithm Inner outlier detection algorithm
+   * @param statTest Test to use
+   * @param cutoff Candidate limit
+   * @param rnd Random generator
+   */
+  public ParallelHiCS(int m, double alpha, OutlierAlgorithm outlierAlgorithm, GoodnessOfFitTest statTest, int cutoff, RandomFactory rnd) {
+    super(m, alpha, outlierAlgorithm, statTest, cutoff, rnd);
+  }
+
+  @Override
+  protected void calculateContrasts(final Relation<? extends NumberVector> relation, final List<HiCSSubspace> candidates, final ArrayList<ArrayDBIDs> subspaceIndex, Random random, final AbstractProgress prog) {
+    final int size = candidates.size();
+    if(size == 0) {
+      return;
+    }
+    // Seeds are drawn in candidate order, independent of the scheduling.
+    final long[] seeds = new long[size];
+    for(int i = 0; i < size; i++) {
+      seeds[i] = random.nextLong();
+    }
+    ParallelBlocks.run(size, new ParallelBlocks.Task<Void>() {
+      @Override
+      public Void run(int block, int start, int end) {
+        for(int i = start; i < end; i++) {
+          Random crandom = RandomFactory.get(seeds[i]).getSingleThreadedRandom();
+          calculateContrast(relation, candidates.get(i), subspaceIndex, crandom);
+          LOG.incrementProcessed(prog);
+        }
+        return null;
+      }
+    });
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   * 
+   * @author Erich Schubert
+   * 
+   * @apiviz.exclude
+   * 
+   * @param <V> vector type
+   */
+  public static class Parameterizer<V extends NumberVector> extends HiCS.Parameterizer<V> {
+    @Override
+    protected ParallelHiCS<V> makeInstance() {
+      return new ParallelHiCS<>(m, alpha, outlierAlgorithm, statTest, cutoff, rnd);
+    }
+  }
+}
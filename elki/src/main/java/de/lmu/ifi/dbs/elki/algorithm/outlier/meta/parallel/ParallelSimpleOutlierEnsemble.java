@@ -0,0 +1,202 @@
+package de.lmu.ifi.dbs.elki.algorithm.outlier.meta.parallel;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import de.lmu.ifi.dbs.elki.algorithm.outlier.OutlierAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.meta.SimpleOutlierEnsemble;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.ModifiableDBIDs;
+import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.MaterializedDoubleRelation;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
+import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
+import de.lmu.ifi.dbs.elki.parallel.ParallelCore;
+import de.lmu.ifi.dbs.elki.result.Result;
+import de.lmu.ifi.dbs.elki.result.ResultUtil;
+import de.lmu.ifi.dbs.elki.result.outlier.BasicOutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.utilities.ensemble.EnsembleVoting;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+
+/**
+ * Simple outlier ensemble method, running the member algorithms concurrently.
+ * 
+ * At most a given number of members run at the same time, which bounds the
+ * memory needed for their intermediate data. Of each finished member, only the
+ * score relations are kept, not the full results. Scores are combined in the
+ * member order, so the result is the same as with the serial version.
+ * 
+ * @author Erich Schubert
+ * 
+ * @apiviz.uses EnsembleExecutor
+ */
+public class ParallelSimpleOutlierEnsemble extends SimpleOutlierEnsemble {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelSimpleOutlierEnsemble.class);
+
+  /**
+   * Maximum number of members to run at the same time.
+   */
+  private int concurrency;
+
+  /**
+   * Constructor.
+   * 
+   * @param algorithms Algorithms to run
+   * @param voting Voting method
+   * @param concurrency Maximum number of members to run at the same time
+   */
+  public ParallelSimpleOutlierEnsemble(List<OutlierAlgorithm> algorithms, EnsembleVoting voting, int concurrency) {
+    super(algorithms, voting);
+    this.concurrency = concurrency;
+  }
+
+  @Override
+  public OutlierResult run(final Database database) throws IllegalStateException {
+    final int num = algorithms.size();
+    // Score relations of each member, by member index.
+    final List<List<DoubleRelation>> memberscores = new ArrayList<>(num);
+    {
+      final FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Inner outlier algorithms", num, LOG) : null;
+      List<Callable<Void>> members = new ArrayList<>(num);
+      for(int i = 0; i < num; i++) {
+        memberscores.add(null);
+        final int m = i;
+        members.add(new Callable<Void>() {
+          @Override
+          public Void call() {
+            Result res = algorithms.get(m).run(database);
+            List<OutlierResult> ors = ResultUtil.getOutlierResults(res);
+            List<DoubleRelation> scores = new ArrayList<>(ors.size());
+            for(OutlierResult or : ors) {
+              scores.add(or.getScores());
+            }
+            // Visible to the caller after completion of the future.
+            memberscores.set(m, scores);
+            LOG.incrementProcessed(prog);
+            return null;
+          }
+        });
+      }
+      EnsembleExecutor.run(members, concurrency);
+      LOG.ensureCompleted(prog);
+    }
+    ArrayList<DoubleRelation> results = new ArrayList<>(num);
+    ModifiableDBIDs ids = DBIDUtil.newHashSet();
+    for(List<DoubleRelation> scores : memberscores) {
+      for(DoubleRelation r : scores) {
+        results.add(r);
+        ids.addDBIDs(r.getDBIDs());
+      }
+    }
+    // Combine
+    WritableDoubleDataStore sumscore = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_STATIC);
+    DoubleMinMax minmax = new DoubleMinMax();
+    {
+      FiniteProgress cprog = LOG.isVerbose() ? new FiniteProgress("Combining results", ids.size(), LOG) : null;
+      double[] scores = new double[results.size()];
+      for(DBIDIter id = ids.iter(); id.valid(); id.advance()) {
+        int i = 0;
+        for(DoubleRelation r : results) {
+          double score = r.doubleValue(id);
+          if(!Double.isNaN(score)) {
+            scores[i] = score;
+            i++;
+          }
+          else {
+            LOG.warning("DBID " + id + " was not given a score by result " + r);
+          }
+        }
+        if(i > 0) {
+          double combined = voting.combine(scores, i);
+          sumscore.putDouble(id, combined);
+          minmax.put(combined);
+        }
+        else {
+          LOG.warning("DBID " + id + " was not given any score at all.");
+        }
+        LOG.incrementProcessed(cprog);
+      }
+      LOG.ensureCompleted(cprog);
+    }
+    OutlierScoreMeta meta = new BasicOutlierScoreMeta(minmax.getMin(), minmax.getMax());
+    DoubleRelation scores = new MaterializedDoubleRelation("Simple Outlier Ensemble", "ensemble-outlier", sumscore, ids);
+    return new OutlierResult(meta, scores);
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   * 
+   * @author Erich Schubert
+   * 
+   * @apiviz.exclude
+   */
+  public static class Parameterizer extends SimpleOutlierEnsemble.Parameterizer {
+    /**
+     * Maximum number of members to run at the same time.
+     */
+    public static final OptionID CONCURRENT_ID = new OptionID("ensemble.concurrent", "Maximum number of ensemble members to run at the same time, bounding the memory use.");
+
+    /**
+     * Maximum number of members to run at the same time.
+     */
+    protected int concurrency = ParallelCore.ALL_PROCESSORS;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      super.makeOptions(config);
+      IntParameter concurrentP = new IntParameter(CONCURRENT_ID, ParallelCore.ALL_PROCESSORS);
+      concurrentP.addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(concurrentP)) {
+        concurrency = concurrentP.intValue();
+      }
+    }
+
+    @Override
+    protected ParallelSimpleOutlierEnsemble makeInstance() {
+      return new ParallelSimpleOutlierEnsemble(algorithms, voting, concurrency);
+    }
+  }
+}
@@ -0,0 +1,165 @@
+package de.lmu.ifi.dbs.elki.algorithm.outlier.parallel;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.lmu.ifi.dbs.elki.math.MathUtil;
+
+/**
+ * Multivariate Gaussian density, evaluated on flat {@code double[]} rows via
+ * the Cholesky factor of the covariance matrix.
+ * 
+ * The factor is computed once per model; the Mahalanobis distance of a
+ * (centered) row is then a single forward substitution into a caller-supplied
+ * scratch buffer, so evaluation does not allocate and instances can be shared
+ * between threads.
+ * 
+ * The constant {@code cheat} is added to the diagonal to avoid singularity, as
+ * with {@code Matrix#cheatToAvoidSingularity}. Directions that remain
+ * numerically degenerate get variance {@code cheat}. As in the serial
+ * algorithms, the normalization may use the determinant of the covariance
+ * matrix without regularization, see {@link #getLogDeterminant}.
+ * 
+ * @author Erich Schubert
+ */
+public class CholeskyGaussian {
+  /**
+   * Dimensionality.
+   */
+  private final int dim;
+
+  /**
+   * Lower triangular Cholesky factor, row-major.
+   */
+  private final double[] l;
+
+  /**
+   * Logarithm of the determinant of the regularized covariance matrix.
+   */
+  private double logdet;
+
+  /**
+   * Constructor.
+   * 
+   * @param dim Dimensionality
+   */
+  public CholeskyGaussian(int dim) {
+    super();
+    this.dim = dim;
+    this.l = new double[dim * dim];
+  }
+
+  /**
+   * Decompose a covariance matrix, replacing the previous model.
+   * 
+   * @param cov Covariance matrix, row-major {@code dim * dim}
+   * @param cheat Regularization added to the diagonal
+   */
+  public void decompose(double[] cov, double cheat) {
+    double ld = 0.;
+    for(int j = 0, rj = 0; j < dim; j++, rj += dim) {
+      for(int k = 0, rk = 0; k < j; k++, rk += dim) {
+        double s = cov[rj + k];
+        for(int m = 0; m < k; m++) {
+          s -= l[rj + m] * l[rk + m];
+        }
+        l[rj + k] = s / l[rk + k];
+      }
+      double d = cov[rj + j] + cheat;
+      for(int m = 0; m < j; m++) {
+        d -= l[rj + m] * l[rj + m];
+      }
+      if(!(d > 0.)) {
+        d = cheat > 0. ? cheat : Double.MIN_NORMAL;
+      }
+      l[rj + j] = Math.sqrt(d);
+      ld += Math.log(d);
+    }
+    logdet = ld;
+  }
+
+  /**
+   * Squared Mahalanobis distance of a centered row to the mean.
+   * 
+   * @param data Row data
+   * @param off Offset of the row in the data array
+   * @param buf Scratch buffer of length {@code dim}
+   * @return Squared Mahalanobis distance
+   */
+  public double mahalanobis(double[] data, int off, double[] buf) {
+    double sum = 0.;
+    for(int i = 0, ri = 0; i < dim; i++, ri += dim) {
+      double s = data[off + i];
+      for(int m = 0; m < i; m++) {
+        s -= l[ri + m] * buf[m];
+      }
+      s /= l[ri + i];
+      buf[i] = s;
+      sum += s * s;
+    }
+    return sum;
+  }
+
+  /**
+   * Trace of the inverse covariance matrix, i.e. the squared Frobenius norm of
+   * the inverse Cholesky factor.
+   * 
+   * @param buf Scratch buffer of length {@code dim}
+   * @return Trace of the inverse
+   */
+  public double traceInverse(double[] buf) {
+    double sum = 0.;
+    // Solve L y = e_c for each unit vector; entries above c are zero.
+    for(int c = 0; c < dim; c++) {
+      for(int i = c, ri = c * dim; i < dim; i++, ri += dim) {
+        double s = (i == c) ? 1. : 0.;
+        for(int m = c; m < i; m++) {
+          s -= l[ri + m] * buf[m];
+        }
+        s /= l[ri + i];
+        buf[i] = s;
+        sum += s * s;
+      }
+    }
+    return sum;
+  }
+
+  /**
+   * Logarithm of the determinant of the decomposed (regularized) matrix.
+   * 
+   * @return log determinant
+   */
+  public double getLogDeterminant() {
+    return logdet;
+  }
+
+  /**
+   * Logarithm of the normalization factor of the density.
+   * 
+   * @param logdet Logarithm of the covariance matrix determinant
+   * @return log(1 / sqrt((2 pi)^d det))
+   */
+  public double logNormalization(double logdet) {
+    return -.5 * (dim * Math.log(MathUtil.TWOPI) + logdet);
+  }
+}
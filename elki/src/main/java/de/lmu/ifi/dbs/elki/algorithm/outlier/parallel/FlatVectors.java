@@ -0,0 +1,205 @@
+package de.lmu.ifi.dbs.elki.algorithm.outlier.parallel;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.database.relation.RelationUtil;
+import de.lmu.ifi.dbs.elki.parallel.ParallelBlocks;
+import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
+
+/**
+ * Vectors copied into a single row-major {@code double[]}, with parallel
+ * computation of the mean and the scatter matrix over blocks of rows.
+ * 
+ * @author Erich Schubert
+ * 
+ * @apiviz.uses ParallelBlocks
+ */
+public class FlatVectors {
+  /**
+   * Number of rows.
+   */
+  private final int size;
+
+  /**
+   * Dimensionality.
+   */
+  private final int dim;
+
+  /**
+   * Row-major data.
+   */
+  private final double[] data;
+
+  /**
+   * Constructor, copying the vectors in the iteration order of the ids.
+   * 
+   * @param relation Data relation
+   * @param ids Objects to copy
+   */
+  public FlatVectors(Relation<? extends NumberVector> relation, DBIDs ids) {
+    super();
+    this.size = ids.size();
+    this.dim = RelationUtil.dimensionality(relation);
+    // All row offsets below are bounded by the array size.
+    final long len = size * (long) dim;
+    if(len > Integer.MAX_VALUE) {
+      throw new AbortException("Too many values for a flat vector array: " + size + " vectors of dimensionality " + dim + " exceed the maximum array size.");
+    }
+    this.data = new double[(int) len];
+    int off = 0;
+    for(DBIDIter iter = ids.iter(); iter.valid(); iter.advance()) {
+      NumberVector v = relation.get(iter);
+      for(int d = 0; d < dim; d++) {
+        data[off++] = v.doubleValue(d);
+      }
+    }
+  }
+
+  /**
+   * Get the number of rows.
+   * 
+   * @return Number of rows
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Get the dimensionality.
+   * 
+   * @return Dimensionality
+   */
+  public int getDimensionality() {
+    return dim;
+  }
+
+  /**
+   * Get the row-major data array; row {@code i} starts at {@code i * dim}.
+   * 
+   * @return Data array
+   */
+  public double[] getData() {
+    return data;
+  }
+
+  /**
+   * Compute the mean of all rows.
+   * 
+   * @return Mean vector
+   */
+  public double[] mean() {
+    final int nblocks = ParallelBlocks.numBlocks(size);
+    final double[][] partial = new double[nblocks][dim];
+    ParallelBlocks.run(size, nblocks, new ParallelBlocks.Task<Void>() {
+      @Override
+      public Void run(int block, int start, int end) {
+        final double[] sum = partial[block];
+        for(int i = start, off = start * dim; i < end; i++) {
+          for(int d = 0; d < dim; d++, off++) {
+            sum[d] += data[off];
+          }
+        }
+        return null;
+      }
+    });
+    double[] mean = new double[dim];
+    for(double[] sum : partial) {
+      for(int d = 0; d < dim; d++) {
+        mean[d] += sum[d];
+      }
+    }
+    for(int d = 0; d < dim; d++) {
+      mean[d] /= size;
+    }
+    return mean;
+  }
+
+  /**
+   * Subtract a vector from all rows.
+   * 
+   * @param center Vector to subtract
+   */
+  public void center(final double[] center) {
+    ParallelBlocks.run(size, new ParallelBlocks.Task<Void>() {
+      @Override
+      public Void run(int block, int start, int end) {
+        for(int i = start, off = start * dim; i < end; i++) {
+          for(int d = 0; d < dim; d++, off++) {
+            data[off] -= center[d];
+          }
+        }
+        return null;
+      }
+    });
+  }
+
+  /**
+   * Compute the (unnormalized) scatter matrix of the rows, i.e. the sum of the
+   * outer products. For centered data, this is the covariance matrix times the
+   * number of rows.
+   * 
+   * @return Scatter matrix, row-major {@code dim * dim}
+   */
+  public double[] scatter() {
+    if(dim * (long) dim > Integer.MAX_VALUE) {
+      throw new AbortException("Dimensionality " + dim + " is too high for a scatter matrix array.");
+    }
+    final int nblocks = ParallelBlocks.numBlocks(size);
+    final double[][] partial = new double[nblocks][dim * dim];
+    ParallelBlocks.run(size, nblocks, new ParallelBlocks.Task<Void>() {
+      @Override
+      public Void run(int block, int start, int end) {
+        final double[] sum = partial[block];
+        for(int i = start, off = start * dim; i < end; i++, off += dim) {
+          // Lower triangle only, mirrored below.
+          for(int j = 0, rj = 0; j < dim; j++, rj += dim) {
+            final double vj = data[off + j];
+            for(int k = 0; k <= j; k++) {
+              sum[rj + k] += vj * data[off + k];
+            }
+          }
+        }
+        return null;
+      }
+    });
+    double[] scatter = new double[dim * dim];
+    for(double[] sum : partial) {
+      for(int j = 0, rj = 0; j < dim; j++, rj += dim) {
+        for(int k = 0; k <= j; k++) {
+          scatter[rj + k] += sum[rj + k];
+        }
+      }
+    }
+    for(int j = 0, rj = 0; j < dim; j++, rj += dim) {
+      for(int k = 0; k < j; k++) {
+        scatter[k * dim + j] = scatter[rj + k];
+      }
+    }
+    return scatter;
+  }
+}
@@ -0,0 +1,134 @@
+package de.lmu.ifi.dbs.elki.algorithm.outlier.parallel;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.lmu.ifi.dbs.elki.algorithm.outlier.GaussianModel;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
+import de.lmu.ifi.dbs.elki.parallel.ParallelBlocks;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Description;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Title;
+
+/**
+ * Parallel version of {@link GaussianModel}.
+ * 
+ * The data is copied once into a flat row-major array. Mean and covariance are
+ * computed in two parallel passes, the covariance matrix is factored once, and
+ * the densities are evaluated on blocks of rows in parallel, without
+ * allocating per object.
+ * 
+ * @author Erich Schubert
+ * 
+ * @apiviz.uses FlatVectors
+ * @apiviz.uses ParallelBlocks
+ * @apiviz.uses CholeskyGaussian
+ * 
+ * @param <V> Vector type
+ */
+@Title("Gaussian Model Outlier Detection")
+@Description("Fit a multivariate gaussian model onto the data, and use the PDF to compute an outlier score, in parallel.")
+public class ParallelGaussianModel<V extends NumberVector> extends GaussianModel<V> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelGaussianModel.class);
+
+  /**
+   * Constructor with actual parameters.
+   * 
+   * @param invert inversion flag.
+   */
+  public ParallelGaussianModel(boolean invert) {
+    super(invert);
+  }
+
+  @Override
+  public OutlierResult run(Relation<V> relation) {
+    ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    final FlatVectors vecs = new FlatVectors(relation, ids);
+    final int size = vecs.size(), dim = vecs.getDimensionality();
+    vecs.center(vecs.mean());
+    double[] cov = vecs.scatter();
+    for(int i = 0; i < cov.length; i++) {
+      cov[i] /= size;
+    }
+    final CholeskyGaussian gauss = new CholeskyGaussian(dim);
+    // Determinant without regularization, as in the serial version.
+    gauss.decompose(cov, 0.);
+    final double lognorm = gauss.logNormalization(gauss.getLogDeterminant());
+    gauss.decompose(cov, SINGULARITY_CHEAT);
+
+    final double[] data = vecs.getData();
+    final double[] probs = new double[size];
+    ParallelBlocks.run(size, new ParallelBlocks.Task<Void>() {
+      @Override
+      public Void run(int block, int start, int end) {
+        double[] buf = new double[dim];
+        for(int i = start, off = start * dim; i < end; i++, off += dim) {
+          probs[i] = Math.exp(lognorm - .5 * gauss.mahalanobis(data, off, buf));
+        }
+        return null;
+      }
+    });
+
+    DoubleMinMax mm = new DoubleMinMax();
+    WritableDoubleDataStore oscores = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_TEMP | DataStoreFactory.HINT_HOT);
+    DBIDArrayIter iter = ids.iter();
+    for(int i = 0; i < size; i++, iter.advance()) {
+      mm.put(probs[i]);
+      oscores.putDouble(iter, probs[i]);
+    }
+    return makeResult(relation, oscores, mm);
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   * 
+   * @author Erich Schubert
+   * 
+   * @apiviz.exclude
+   * 
+   * @param <V> Vector type
+   */
+  public static class Parameterizer<V extends NumberVector> extends GaussianModel.Parameterizer<V> {
+    @Override
+    protected ParallelGaussianModel<V> makeInstance() {
+      return new ParallelGaussianModel<>(invert);
+    }
+  }
+}
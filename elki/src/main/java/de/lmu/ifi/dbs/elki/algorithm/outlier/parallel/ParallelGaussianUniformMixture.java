@@ -0,0 +1,209 @@
+package de.lmu.ifi.dbs.elki.algorithm.outlier.parallel;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.lmu.ifi.dbs.elki.algorithm.outlier.GaussianUniformMixture;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.MaterializedDoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
+import de.lmu.ifi.dbs.elki.result.outlier.BasicOutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Description;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Title;
+
+/**
+ * Fast version of {@link GaussianUniformMixture}.
+ * 
+ * The serial version refits the Gaussian model on all normal objects for
+ * every candidate transfer, which is quadratic in the number of objects. Here,
+ * the sum and the scatter matrix of the normal objects are maintained
+ * incrementally (on data centered in a parallel pre-pass), and the
+ * log-likelihood of the normal objects is obtained in closed form from the
+ * Cholesky factor: for the sample covariance C of the normal objects and the
+ * regularization e, the sum of the squared Mahalanobis distances is
+ * (n-1) (d - e tr((C+eI)^-1)). Each step therefore costs O(d^3), independent
+ * of the data set size, and does not touch the data.
+ * 
+ * Reference:
+ * <p>
+ * Eskin, Eleazar: Anomaly detection over noisy data using learned probability
+ * distributions. In Proc. of the Seventeenth International Conference on
+ * Machine Learning (ICML-2000).
+ * </p>
+ * 
+ * @author Erich Schubert
+ * 
+ * @apiviz.uses FlatVectors
+ * @apiviz.uses CholeskyGaussian
+ * 
+ * @param <V> Vector Type
+ */
+@Title("Gaussian-Uniform Mixture Model Outlier Detection")
+@Description("Fits a mixture model consisting of a Gaussian and a uniform distribution to the data, with incremental model updates.")
+@Reference(prefix = "Generalization using the likelihood gain as outlier score of", authors = "Eskin, Eleazar", title = "Anomaly detection over noisy data using learned probability distributions", booktitle = "Proc. of the Seventeenth International Conference on Machine Learning (ICML-2000)")
+public class ParallelGaussianUniformMixture<V extends NumberVector> extends GaussianUniformMixture<V> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelGaussianUniformMixture.class);
+
+  /**
+   * Constructor with parameters.
+   * 
+   * @param l l value
+   * @param c c value
+   */
+  public ParallelGaussianUniformMixture(double l, double c) {
+    super(l, c);
+  }
+
+  @Override
+  public OutlierResult run(Relation<V> relation) {
+    ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    FlatVectors vecs = new FlatVectors(relation, ids);
+    final int size = vecs.size(), dim = vecs.getDimensionality();
+    // Centering improves the numerical stability of the incremental updates.
+    vecs.center(vecs.mean());
+    final double[] data = vecs.getData();
+    // Sum and scatter of the normal objects; initially all objects.
+    double[] sum = new double[dim];
+    for(int i = 0, off = 0; i < size; i++) {
+      for(int d = 0; d < dim; d++, off++) {
+        sum[d] += data[off];
+      }
+    }
+    double[] scatter = vecs.scatter();
+    // Scratch space
+    double[] csum = new double[dim], cov = new double[dim * dim], buf = new double[dim];
+    CholeskyGaussian gauss = new CholeskyGaussian(dim);
+
+    WritableDoubleDataStore oscores = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_TEMP | DataStoreFactory.HINT_HOT);
+    int normal = size, anomalous = 0;
+    double logLike = size * logml + loglikelihoodNormal(normal, sum, scatter, cov, gauss, buf);
+    DoubleMinMax minmax = new DoubleMinMax();
+
+    DBIDArrayIter iter = ids.iter();
+    for(int i = 0, off = 0; i < size; i++, off += dim, iter.advance()) {
+      // Candidate model without the current object.
+      for(int d = 0; d < dim; d++) {
+        csum[d] = sum[d] - data[off + d];
+      }
+      for(int j = 0, rj = 0; j < dim; j++, rj += dim) {
+        final double vj = data[off + j];
+        for(int k = 0; k < dim; k++) {
+          cov[rj + k] = scatter[rj + k] - vj * data[off + k];
+        }
+      }
+      final int cnormal = normal - 1, canomalous = anomalous + 1;
+      final double currentLogLike = cnormal * logml + loglikelihoodNormal(cnormal, csum, cov, cov, gauss, buf) + canomalous * logl + canomalous * Math.log(1.0 / canomalous);
+
+      final double loglikeGain = currentLogLike - logLike;
+      oscores.putDouble(iter, loglikeGain);
+      minmax.put(loglikeGain);
+
+      if(loglikeGain > c) {
+        // Flag as outlier: remove from the normal model.
+        normal = cnormal;
+        anomalous = canomalous;
+        logLike = currentLogLike;
+        System.arraycopy(csum, 0, sum, 0, dim);
+        for(int j = 0, rj = 0; j < dim; j++, rj += dim) {
+          final double vj = data[off + j];
+          for(int k = 0; k < dim; k++) {
+            scatter[rj + k] -= vj * data[off + k];
+          }
+        }
+      }
+    }
+
+    OutlierScoreMeta meta = new BasicOutlierScoreMeta(minmax.getMin(), minmax.getMax(), Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, 0.0);
+    DoubleRelation res = new MaterializedDoubleRelation("Gaussian Mixture Outlier Score", "gaussian-mixture-outlier", oscores, relation.getDBIDs());
+    return new OutlierResult(meta, res);
+  }
+
+  /**
+   * Log-likelihood of the normal objects under their Gaussian model.
+   * 
+   * @param n Number of normal objects
+   * @param sum Sum of the normal objects
+   * @param scatter Scatter matrix (sum of outer products) of the normal objects
+   * @param cov Output buffer for the covariance matrix, may be the same array
+   *        as {@code scatter}
+   * @param gauss Cholesky decomposition buffer
+   * @param buf Scratch buffer
+   * @return log-likelihood
+   */
+  private double loglikelihoodNormal(int n, double[] sum, double[] scatter, double[] cov, CholeskyGaussian gauss, double[] buf) {
+    if(n <= 1) {
+      return 0;
+    }
+    final int dim = sum.length;
+    // Sample covariance matrix
+    for(int j = 0, rj = 0; j < dim; j++, rj += dim) {
+      final double mj = sum[j] / n;
+      for(int k = 0; k < dim; k++) {
+        cov[rj + k] = (scatter[rj + k] - mj * sum[k]) / (n - 1);
+      }
+    }
+    // Determinant without regularization, as in the serial version.
+    gauss.decompose(cov, 0.);
+    final double lognorm = gauss.logNormalization(gauss.getLogDeterminant());
+    gauss.decompose(cov, SINGULARITY_CHEAT);
+    // Sum of squared Mahalanobis distances, in closed form.
+    final double mdists = (n - 1) * (dim - SINGULARITY_CHEAT * gauss.traceInverse(buf));
+    return n * lognorm - .5 * mdists;
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   * 
+   * @author Erich Schubert
+   * 
+   * @apiviz.exclude
+   * 
+   * @param <V> Vector type
+   */
+  public static class Parameterizer<V extends NumberVector> extends GaussianUniformMixture.Parameterizer<V> {
+    @Override
+    protected ParallelGaussianUniformMixture<V> makeInstance() {
+      return new ParallelGaussianUniformMixture<>(l, c);
+    }
+  }
+}
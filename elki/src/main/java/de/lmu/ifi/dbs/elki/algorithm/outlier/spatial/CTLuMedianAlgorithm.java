@@ -31,6 +31,7 @@ import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
 import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
@@ -95,31 +96,57 @@ public class CTLuMedianAlgorithm<N> extends AbstractNeighborhoodOutlier<N> {
     final NeighborSetPredicate npred = getNeighborSetPredicateFactory().instantiate(nrel);
     WritableDoubleDataStore scores = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_STATIC);
 
-    MeanVariance mv = new MeanVariance();
     for (DBIDIter iditer = relation.iterDBIDs(); iditer.valid(); iditer.advance()) {
-      DBIDs neighbors = npred.getNeighborDBIDs(iditer);
-      final double median;
-      {
-        double[] fi = new double[neighbors.size()];
-        // calculate and store Median of neighborhood
-        int c = 0;
-        for (DBIDIter iter = neighbors.iter(); iter.valid(); iter.advance()) {
-          if (DBIDUtil.equal(iditer, iter)) {
-            continue;
-          }
-          fi[c] = relation.get(iter).doubleValue(0);
-          c++;
-        }
+      scores.putDouble(iditer, medianDifference(npred, relation, iditer));
+    }
+    return normalizeScores(npred, relation, scores);
+  }
 
-        if (c > 0) {
-          median = QuickSelect.median(fi, 0, c);
-        } else {
-          median = relation.get(iditer).doubleValue(0);
+  /**
+   * Compute the difference of an object to the median of its neighbors.
+   * 
+   * @param npred Neighborhood predicate
+   * @param relation Data relation (1d!)
+   * @param id Object to process
+   * @return Difference to the neighborhood median
+   */
+  protected double medianDifference(NeighborSetPredicate npred, Relation<? extends NumberVector> relation, DBIDRef id) {
+    DBIDs neighbors = npred.getNeighborDBIDs(id);
+    final double median;
+    {
+      double[] fi = new double[neighbors.size()];
+      // calculate and store Median of neighborhood
+      int c = 0;
+      for (DBIDIter iter = neighbors.iter(); iter.valid(); iter.advance()) {
+        if (DBIDUtil.equal(id, iter)) {
+          continue;
         }
+        fi[c] = relation.get(iter).doubleValue(0);
+        c++;
+      }
+
+      if (c > 0) {
+        median = QuickSelect.median(fi, 0, c);
+      } else {
+        median = relation.get(id).doubleValue(0);
       }
-      double h = relation.get(iditer).doubleValue(0) - median;
-      scores.putDouble(iditer, h);
-      mv.put(h);
+    }
+    return relation.get(id).doubleValue(0) - median;
+  }
+
+  /**
+   * Standardize the differences, and build the outlier result.
+   * 
+   * @param npred Neighborhood predicate
+   * @param relation Data relation
+   * @param scores Differences to the neighborhood medians, will be replaced
+   *        with the scores
+   * @return Outlier detection result
+   */
+  protected OutlierResult normalizeScores(NeighborSetPredicate npred, Relation<? extends NumberVector> relation, WritableDoubleDataStore scores) {
+    MeanVariance mv = new MeanVariance();
+    for (DBIDIter iditer = relation.iterDBIDs(); iditer.valid(); iditer.advance()) {
+      mv.put(scores.doubleValue(iditer));
     }
 
     // Normalize scores
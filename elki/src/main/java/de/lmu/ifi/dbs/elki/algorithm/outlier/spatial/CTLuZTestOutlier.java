@@ -32,6 +32,7 @@ import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
 import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
@@ -102,26 +103,49 @@ public class CTLuZTestOutlier<N> extends AbstractNeighborhoodOutlier<N> {
     final NeighborSetPredicate npred = getNeighborSetPredicateFactory().instantiate(nrel);
     WritableDoubleDataStore scores = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_STATIC);
 
-    MeanVariance zmv = new MeanVariance();
     for(DBIDIter iditer = relation.iterDBIDs(); iditer.valid(); iditer.advance()) {
-      DBIDs neighbors = npred.getNeighborDBIDs(iditer);
-      // Compute Mean of neighborhood
-      Mean localmean = new Mean();
-      for(DBIDIter iter = neighbors.iter(); iter.valid(); iter.advance()) {
-        if(DBIDUtil.equal(iditer, iter)) {
-          continue;
-        }
-        localmean.put(relation.get(iter).doubleValue(0));
-      }
-      final double localdiff;
-      if(localmean.getCount() > 0) {
-        localdiff = relation.get(iditer).doubleValue(0) - localmean.getMean();
-      }
-      else {
-        localdiff = 0.0;
+      scores.putDouble(iditer, localDifference(npred, relation, iditer));
+    }
+    return normalizeScores(npred, relation, scores);
+  }
+
+  /**
+   * Compute the difference of an object to the mean of its neighbors.
+   * 
+   * @param npred Neighborhood predicate
+   * @param relation Data relation (1d!)
+   * @param id Object to process
+   * @return Difference to the neighborhood mean
+   */
+  protected double localDifference(NeighborSetPredicate npred, Relation<? extends NumberVector> relation, DBIDRef id) {
+    DBIDs neighbors = npred.getNeighborDBIDs(id);
+    // Compute Mean of neighborhood
+    Mean localmean = new Mean();
+    for(DBIDIter iter = neighbors.iter(); iter.valid(); iter.advance()) {
+      if(DBIDUtil.equal(id, iter)) {
+        continue;
       }
-      scores.putDouble(iditer, localdiff);
-      zmv.put(localdiff);
+      localmean.put(relation.get(iter).doubleValue(0));
+    }
+    if(localmean.getCount() > 0) {
+      return relation.get(id).doubleValue(0) - localmean.getMean();
+    }
+    return 0.0;
+  }
+
+  /**
+   * Standardize the differences, and build the outlier result.
+   * 
+   * @param npred Neighborhood predicate
+   * @param relation Data relation
+   * @param scores Differences to the neighborhood means, will be replaced with
+   *        the scores
+   * @return Outlier detection result
+   */
+  protected OutlierResult normalizeScores(NeighborSetPredicate npred, Relation<? extends NumberVector> relation, WritableDoubleDataStore scores) {
+    MeanVariance zmv = new MeanVariance();
+    for(DBIDIter iditer = relation.iterDBIDs(); iditer.valid(); iditer.advance()) {
+      zmv.put(scores.doubleValue(iditer));
     }
 
     // Normalize scores using mean and variance
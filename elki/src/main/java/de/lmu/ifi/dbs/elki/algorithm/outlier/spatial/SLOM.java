@@ -29,8 +29,10 @@ import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
 import de.lmu.ifi.dbs.elki.database.Database;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.DoubleDataStore;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
 import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
@@ -99,28 +101,7 @@ public class SLOM<N, O> extends AbstractDistanceBasedSpatialOutlier<N, O> {
     WritableDoubleDataStore modifiedDistance = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP);
     // calculate D-Tilde
     for(DBIDIter iditer = relation.iterDBIDs(); iditer.valid(); iditer.advance()) {
-      double sum = 0;
-      double maxDist = 0;
-      int cnt = 0;
-
-      final DBIDs neighbors = npred.getNeighborDBIDs(iditer);
-      for(DBIDIter iter = neighbors.iter(); iter.valid(); iter.advance()) {
-        if(DBIDUtil.equal(iditer, iter)) {
-          continue;
-        }
-        double dist = distFunc.distance(iditer, iter);
-        sum += dist;
-        cnt++;
-        maxDist = Math.max(maxDist, dist);
-      }
-      if(cnt > 1) {
-        modifiedDistance.putDouble(iditer, ((sum - maxDist) / (cnt - 1)));
-      }
-      else {
-        // Use regular distance when the d-tilde trick is undefined.
-        // Note: this can be 0 when there were no neighbors.
-        modifiedDistance.putDouble(iditer, maxDist);
-      }
+      modifiedDistance.putDouble(iditer, modifiedDistance(npred, distFunc, iditer));
     }
 
     // Second step - compute actual SLOM values
@@ -128,69 +109,116 @@ public class SLOM<N, O> extends AbstractDistanceBasedSpatialOutlier<N, O> {
     WritableDoubleDataStore sloms = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_STATIC);
 
     for(DBIDIter iditer = relation.iterDBIDs(); iditer.valid(); iditer.advance()) {
-      double sum = 0;
-      int cnt = 0;
+      final double slom = slom(npred, modifiedDistance, iditer);
+      sloms.putDouble(iditer, slom);
+      slomminmax.put(slom);
+    }
 
-      final DBIDs neighbors = npred.getNeighborDBIDs(iditer);
-      for(DBIDIter iter = neighbors.iter(); iter.valid(); iter.advance()) {
-        if(DBIDUtil.equal(iditer, iter)) {
-          continue;
-        }
-        sum += modifiedDistance.doubleValue(iter);
-        cnt++;
+    DoubleRelation scoreResult = new MaterializedDoubleRelation("SLOM", "slom-outlier", sloms, relation.getDBIDs());
+    OutlierScoreMeta scoreMeta = new BasicOutlierScoreMeta(slomminmax.getMin(), slomminmax.getMax(), 0.0, Double.POSITIVE_INFINITY);
+    OutlierResult or = new OutlierResult(scoreMeta, scoreResult);
+    or.addChildResult(npred);
+    return or;
+  }
+
+  /**
+   * Compute the modified distance (D-tilde) of an object: the average distance
+   * to its neighbors, ignoring the largest distance.
+   * 
+   * @param npred Neighborhood predicate
+   * @param distFunc Non-spatial distance query
+   * @param id Object to process
+   * @return Modified distance
+   */
+  protected double modifiedDistance(NeighborSetPredicate npred, DistanceQuery<O> distFunc, DBIDRef id) {
+    double sum = 0;
+    double maxDist = 0;
+    int cnt = 0;
+
+    final DBIDs neighbors = npred.getNeighborDBIDs(id);
+    for(DBIDIter iter = neighbors.iter(); iter.valid(); iter.advance()) {
+      if(DBIDUtil.equal(id, iter)) {
+        continue;
       }
-      double slom;
-      if(cnt > 0) {
-        // With and without the object itself:
-        double avgPlus = (sum + modifiedDistance.doubleValue(iditer)) / (cnt + 1);
-        double avg = sum / cnt;
-
-        double beta = 0;
-        for(DBIDIter iter = neighbors.iter(); iter.valid(); iter.advance()) {
-          final double dist = modifiedDistance.doubleValue(iter);
-          if(dist > avgPlus) {
-            beta += 1;
-          }
-          else if(dist < avgPlus) {
-            beta -= 1;
-          }
+      double dist = distFunc.distance(id, iter);
+      sum += dist;
+      cnt++;
+      maxDist = Math.max(maxDist, dist);
+    }
+    if(cnt > 1) {
+      return (sum - maxDist) / (cnt - 1);
+    }
+    else {
+      // Use regular distance when the d-tilde trick is undefined.
+      // Note: this can be 0 when there were no neighbors.
+      return maxDist;
+    }
+  }
+
+  /**
+   * Compute the SLOM score of an object.
+   * 
+   * @param npred Neighborhood predicate
+   * @param modifiedDistance Modified distances of all objects
+   * @param id Object to process
+   * @return SLOM score
+   */
+  protected double slom(NeighborSetPredicate npred, DoubleDataStore modifiedDistance, DBIDRef id) {
+    double sum = 0;
+    int cnt = 0;
+
+    final DBIDs neighbors = npred.getNeighborDBIDs(id);
+    for(DBIDIter iter = neighbors.iter(); iter.valid(); iter.advance()) {
+      if(DBIDUtil.equal(id, iter)) {
+        continue;
+      }
+      sum += modifiedDistance.doubleValue(iter);
+      cnt++;
+    }
+    final double slom;
+    if(cnt > 0) {
+      // With and without the object itself:
+      double avgPlus = (sum + modifiedDistance.doubleValue(id)) / (cnt + 1);
+      double avg = sum / cnt;
+
+      double beta = 0;
+      for(DBIDIter iter = neighbors.iter(); iter.valid(); iter.advance()) {
+        final double dist = modifiedDistance.doubleValue(iter);
+        if(dist > avgPlus) {
+          beta += 1;
         }
-        // Include object itself
-        if(!neighbors.contains(iditer)) {
-          final double dist = modifiedDistance.doubleValue(iditer);
-          if(dist > avgPlus) {
-            beta += 1;
-          }
-          else if(dist < avgPlus) {
-            beta -= 1;
-          }
+        else if(dist < avgPlus) {
+          beta -= 1;
         }
-        beta = Math.abs(beta);
-        // note: cnt == size of N(x), not N+(x)
-        if(cnt > 1) {
-          beta = Math.max(beta, 1.0) / (cnt - 1);
+      }
+      // Include object itself
+      if(!neighbors.contains(id)) {
+        final double dist = modifiedDistance.doubleValue(id);
+        if(dist > avgPlus) {
+          beta += 1;
         }
-        else {
-          // Workaround insufficiency in SLOM paper - div by zero
-          beta = 1.0;
+        else if(dist < avgPlus) {
+          beta -= 1;
         }
-        beta = beta / (1 + avg);
-
-        slom = beta * modifiedDistance.doubleValue(iditer);
+      }
+      beta = Math.abs(beta);
+      // note: cnt == size of N(x), not N+(x)
+      if(cnt > 1) {
+        beta = Math.max(beta, 1.0) / (cnt - 1);
       }
       else {
-        // No neighbors to compare to - no score.
-        slom = 0.0;
+        // Workaround insufficiency in SLOM paper - div by zero
+        beta = 1.0;
       }
-      sloms.putDouble(iditer, slom);
-      slomminmax.put(slom);
-    }
+      beta = beta / (1 + avg);
 
-    DoubleRelation scoreResult = new MaterializedDoubleRelation("SLOM", "slom-outlier", sloms, relation.getDBIDs());
-    OutlierScoreMeta scoreMeta = new BasicOutlierScoreMeta(slomminmax.getMin(), slomminmax.getMax(), 0.0, Double.POSITIVE_INFINITY);
-    OutlierResult or = new OutlierResult(scoreMeta, scoreResult);
-    or.addChildResult(npred);
-    return or;
+      slom = beta * modifiedDistance.doubleValue(id);
+    }
+    else {
+      // No neighbors to compare to - no score.
+      slom = 0.0;
+    }
+    return slom;
   }
 
   @Override
@@ -28,8 +28,10 @@ import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
 import de.lmu.ifi.dbs.elki.database.Database;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.DoubleDataStore;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
 import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
 import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
@@ -107,27 +109,13 @@ public class SOF<N, O> extends AbstractDistanceBasedSpatialOutlier<N, O> {
     DoubleMinMax lofminmax = new DoubleMinMax();
 
     // Compute densities
-    for(DBIDIter iditer = relation.iterDBIDs(); iditer.valid(); iditer.advance()) {
-      DBIDs neighbors = npred.getNeighborDBIDs(iditer);
-      double avg = 0;
-      for(DBIDIter iter = neighbors.iter(); iter.valid(); iter.advance()) {
-        avg += distFunc.distance(iditer, iter);
-      }
-      double lrd = 1 / (avg / neighbors.size());
-      if (Double.isNaN(lrd)) {
-        lrd = 0;
-      }
-      lrds.putDouble(iditer, lrd);
+    for(DBIDIter iditer = relation.iterDBIDs(); iditer.valid(); iditer.advance()) {
+      lrds.putDouble(iditer, computeLRD(npred, distFunc, iditer));
     }
 
     // Compute density quotients
-    for(DBIDIter iditer = relation.iterDBIDs(); iditer.valid(); iditer.advance()) {
-      DBIDs neighbors = npred.getNeighborDBIDs(iditer);
-      double avg = 0;
-      for(DBIDIter iter = neighbors.iter(); iter.valid(); iter.advance()) {
-        avg += lrds.doubleValue(iter);
-      }
-      final double lrd = (avg / neighbors.size()) / lrds.doubleValue(iditer);
+    for(DBIDIter iditer = relation.iterDBIDs(); iditer.valid(); iditer.advance()) {
+      final double lrd = computeSOF(npred, lrds, iditer);
       if (!Double.isNaN(lrd)) {
         lofs.putDouble(iditer, lrd);
         lofminmax.put(lrd);
@@ -144,6 +132,44 @@ public class SOF<N, O> extends AbstractDistanceBasedSpatialOutlier<N, O> {
     return or;
   }
 
+  /**
+   * Compute the local reachability density of an object.
+   * 
+   * @param npred Neighborhood predicate
+   * @param distFunc Non-spatial distance query
+   * @param id Object to process
+   * @return Density, 0 if undefined
+   */
+  protected double computeLRD(NeighborSetPredicate npred, DistanceQuery<O> distFunc, DBIDRef id) {
+    DBIDs neighbors = npred.getNeighborDBIDs(id);
+    double avg = 0;
+    for(DBIDIter iter = neighbors.iter(); iter.valid(); iter.advance()) {
+      avg += distFunc.distance(id, iter);
+    }
+    double lrd = 1 / (avg / neighbors.size());
+    if (Double.isNaN(lrd)) {
+      lrd = 0;
+    }
+    return lrd;
+  }
+
+  /**
+   * Compute the spatial outlier factor of an object.
+   * 
+   * @param npred Neighborhood predicate
+   * @param lrds Densities of all objects
+   * @param id Object to process
+   * @return Outlier factor, NaN if undefined
+   */
+  protected double computeSOF(NeighborSetPredicate npred, DoubleDataStore lrds, DBIDRef id) {
+    DBIDs neighbors = npred.getNeighborDBIDs(id);
+    double avg = 0;
+    for(DBIDIter iter = neighbors.iter(); iter.valid(); iter.advance()) {
+      avg += lrds.doubleValue(iter);
+    }
+    return (avg / neighbors.size()) / lrds.doubleValue(id);
+  }
+
   @Override
   public TypeInformation[] getInputTypeRestriction() {
     return TypeUtil.array(getNeighborSetPredicateFactory().getInputTypeRestriction(), TypeUtil.NUMBER_VECTOR_FIELD);
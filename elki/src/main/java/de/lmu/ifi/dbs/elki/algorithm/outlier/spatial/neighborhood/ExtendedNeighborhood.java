@@ -29,6 +29,7 @@ import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableDataStore;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
 import de.lmu.ifi.dbs.elki.database.ids.HashSetModifiableDBIDs;
@@ -36,6 +37,9 @@ import de.lmu.ifi.dbs.elki.database.ids.ModifiableDBIDs;
 import de.lmu.ifi.dbs.elki.database.relation.Relation;
 import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
+import de.lmu.ifi.dbs.elki.parallel.Executor;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
+import de.lmu.ifi.dbs.elki.parallel.processor.Processor;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
@@ -126,43 +130,67 @@ public class ExtendedNeighborhood extends AbstractPrecomputedNeighborhood {
      * Method to load the external neighbors.
      */
     private DataStore<DBIDs> extendNeighborhood(Relation<? extends O> database) {
-      NeighborSetPredicate innerinst = inner.instantiate(database);
+      final NeighborSetPredicate innerinst = inner.instantiate(database);
 
       final WritableDataStore<DBIDs> store = DataStoreUtil.makeStorage(database.getDBIDs(), DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_STATIC | DataStoreFactory.HINT_TEMP, DBIDs.class);
 
-      // Expand multiple steps
-      FiniteProgress progress = LOG.isVerbose() ? new FiniteProgress("Expanding neighborhoods", database.size(), LOG) : null;
-      for(DBIDIter iter = database.iterDBIDs(); iter.valid(); iter.advance()) {
-        HashSetModifiableDBIDs res = DBIDUtil.newHashSet();
-        res.add(iter);
-        DBIDs todo = DBIDUtil.deref(iter);
-        for(int i = 0; i < steps; i++) {
-          ModifiableDBIDs ntodo = DBIDUtil.newHashSet();
-          for(DBIDIter iter2 = todo.iter(); iter2.valid(); iter2.advance()) {
-            DBIDs add = innerinst.getNeighborDBIDs(iter2);
-            if(add != null) {
-              for(DBIDIter iter3 = add.iter(); iter3.valid(); iter3.advance()) {
-                if(res.contains(iter3)) {
-                  continue;
-                }
-                ntodo.add(iter3);
-                res.add(iter3);
-              }
+      // Expand multiple steps, for all objects in parallel.
+      final FiniteProgress progress = LOG.isVerbose() ? new FiniteProgress("Expanding neighborhoods", database.size(), LOG) : null;
+      ParallelExecutor.run(database.getDBIDs(), new Processor() {
+        @Override
+        public Processor.Instance instantiate(Executor executor) {
+          return new Processor.Instance() {
+            @Override
+            public void map(DBIDRef id) {
+              store.put(id, expand(innerinst, id));
+              LOG.incrementProcessed(progress);
             }
-          }
-          if(ntodo.size() == 0) {
-            continue;
-          }
-          todo = ntodo;
+          };
         }
-        store.put(iter, res);
-        LOG.incrementProcessed(progress);
-      }
+
+        @Override
+        public void cleanup(Processor.Instance inst) {
+          // Nothing to do.
+        }
+      });
       LOG.ensureCompleted(progress);
 
       return store;
     }
 
+    /**
+     * Expand the neighborhood of a single object.
+     * 
+     * @param innerinst Inner neighborhood
+     * @param id Object
+     * @return Extended neighborhood
+     */
+    private DBIDs expand(NeighborSetPredicate innerinst, DBIDRef id) {
+      HashSetModifiableDBIDs res = DBIDUtil.newHashSet();
+      res.add(id);
+      DBIDs todo = DBIDUtil.deref(id);
+      for(int i = 0; i < steps; i++) {
+        ModifiableDBIDs ntodo = DBIDUtil.newHashSet();
+        for(DBIDIter iter2 = todo.iter(); iter2.valid(); iter2.advance()) {
+          DBIDs add = innerinst.getNeighborDBIDs(iter2);
+          if(add != null) {
+            for(DBIDIter iter3 = add.iter(); iter3.valid(); iter3.advance()) {
+              if(res.contains(iter3)) {
+                continue;
+              }
+              ntodo.add(iter3);
+              res.add(iter3);
+            }
+          }
+        }
+        if(ntodo.size() == 0) {
+          continue;
+        }
+        todo = ntodo;
+      }
+      return res;
+    }
+
     /**
      * Parameterization class.
      * 
@@ -31,6 +31,7 @@ import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableDataStore;
 import de.lmu.ifi.dbs.elki.database.ids.ArrayModifiableDBIDs;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
 import de.lmu.ifi.dbs.elki.database.ids.KNNList;
@@ -38,6 +39,9 @@ import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
 import de.lmu.ifi.dbs.elki.database.relation.Relation;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
 import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.parallel.Executor;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
+import de.lmu.ifi.dbs.elki.parallel.processor.Processor;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
@@ -111,18 +115,12 @@ public class PrecomputedKNearestNeighborNeighborhood extends AbstractPrecomputed
 
     @Override
     public NeighborSetPredicate instantiate(Relation<? extends O> relation) {
-      KNNQuery<?> knnQuery = QueryUtil.getKNNQuery(relation, distFunc);
+      // Pass k as hint, so that an index can be used.
+      KNNQuery<?> knnQuery = QueryUtil.getKNNQuery(relation, distFunc, k);
 
-      // TODO: use bulk?
       WritableDataStore<DBIDs> s = DataStoreUtil.makeStorage(relation.getDBIDs(), DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_STATIC, DBIDs.class);
-      for(DBIDIter iditer = relation.iterDBIDs(); iditer.valid(); iditer.advance()) {
-        KNNList neighbors = knnQuery.getKNNForDBID(iditer, k);
-        ArrayModifiableDBIDs neighbours = DBIDUtil.newArray(neighbors.size());
-        for(DBIDIter neighbor = neighbors.iter(); neighbor.valid(); neighbor.advance()) {
-          neighbours.add(neighbor);
-        }
-        s.put(iditer, neighbours);
-      }
+      // Materialize the neighborhoods on all cores.
+      ParallelExecutor.run(relation.getDBIDs(), new NeighborsProcessor(knnQuery, k, s));
       return new PrecomputedKNearestNeighborNeighborhood(s);
     }
 
@@ -131,6 +129,64 @@ public class PrecomputedKNearestNeighborNeighborhood extends AbstractPrecomputed
       return distFunc.getInputTypeRestriction();
     }
 
+    /**
+     * Processor to materialize the kNN of each object.
+     * 
+     * @author Erich Schubert
+     * 
+     * @apiviz.exclude
+     */
+    private static class NeighborsProcessor implements Processor {
+      /**
+       * kNN query
+       */
+      private KNNQuery<?> knnQuery;
+
+      /**
+       * Number of neighbors
+       */
+      private int k;
+
+      /**
+       * Output storage
+       */
+      private WritableDataStore<DBIDs> store;
+
+      /**
+       * Constructor.
+       * 
+       * @param knnQuery kNN query
+       * @param k Number of neighbors
+       * @param store Output storage
+       */
+      public NeighborsProcessor(KNNQuery<?> knnQuery, int k, WritableDataStore<DBIDs> store) {
+        super();
+        this.knnQuery = knnQuery;
+        this.k = k;
+        this.store = store;
+      }
+
+      @Override
+      public Processor.Instance instantiate(Executor executor) {
+        return new Processor.Instance() {
+          @Override
+          public void map(DBIDRef id) {
+            KNNList neighbors = knnQuery.getKNNForDBID(id, k);
+            ArrayModifiableDBIDs neighbours = DBIDUtil.newArray(neighbors.size());
+            for(DBIDIter neighbor = neighbors.iter(); neighbor.valid(); neighbor.advance()) {
+              neighbours.add(neighbor);
+            }
+            store.put(id, neighbours);
+          }
+        };
+      }
+
+      @Override
+      public void cleanup(Processor.Instance inst) {
+        // Nothing to do.
+      }
+    }
+
     /**
      * Parameterization class
      * 
@@ -0,0 +1,173 @@
+package de.lmu.ifi.dbs.elki.algorithm.outlier.spatial.parallel;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.lmu.ifi.dbs.elki.algorithm.outlier.spatial.CTLuMedianAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.spatial.neighborhood.NeighborSetPredicate;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.parallel.Executor;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
+import de.lmu.ifi.dbs.elki.parallel.processor.AbstractDoubleProcessor;
+import de.lmu.ifi.dbs.elki.parallel.processor.WriteDoubleDataStoreProcessor;
+import de.lmu.ifi.dbs.elki.parallel.variables.SharedDouble;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Title;
+
+/**
+ * Parallel version of the Median Algorithm of C.-T. Lu.
+ * 
+ * The neighborhood medians are computed for all objects in parallel; only the
+ * final standardization is done serially.
+ * 
+ * <p>
+ * Reference: <br>
+ * C.-T. Lu and D. Chen and Y. Kou<br>
+ * Algorithms for Spatial Outlier Detection <br>
+ * in Proc. 3rd IEEE International Conference on Data Mining <br>
+ * </p>
+ * 
+ * @author Erich Schubert
+ * 
+ * @apiviz.has MedianProcessor
+ * 
+ * @param <N> Neighborhood type
+ */
+@Title("Median Algorithm for Spatial Outlier Detection")
+@Reference(authors = "C.-T. Lu and D. Chen and Y. Kou", title = "Algorithms for Spatial Outlier Detection", booktitle = "Proc. 3rd IEEE International Conference on Data Mining", url = "http://dx.doi.org/10.1109/ICDM.2003.1250986")
+public class ParallelCTLuMedianAlgorithm<N> extends CTLuMedianAlgorithm<N> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelCTLuMedianAlgorithm.class);
+
+  /**
+   * Constructor.
+   * 
+   * @param npredf Neighborhood predicate
+   */
+  public ParallelCTLuMedianAlgorithm(NeighborSetPredicate.Factory<N> npredf) {
+    super(npredf);
+  }
+
+  @Override
+  public OutlierResult run(Relation<N> nrel, Relation<? extends NumberVector> relation) {
+    final NeighborSetPredicate npred = getNeighborSetPredicateFactory().instantiate(nrel);
+    WritableDoubleDataStore scores = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_STATIC);
+
+    MedianProcessor medm = new MedianProcessor(npred, relation);
+    SharedDouble medv = new SharedDouble();
+    WriteDoubleDataStoreProcessor storem = new WriteDoubleDataStoreProcessor(scores);
+
+    medm.connectOutput(medv);
+    storem.connectInput(medv);
+    ParallelExecutor.run(relation.getDBIDs(), medm, storem);
+
+    return normalizeScores(npred, relation, scores);
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Processor to compute the difference to the neighborhood median.
+   * 
+   * @author Erich Schubert
+   * 
+   * @apiviz.has Instance
+   */
+  protected class MedianProcessor extends AbstractDoubleProcessor {
+    /**
+     * Neighborhood predicate.
+     */
+    private NeighborSetPredicate npred;
+
+    /**
+     * Data relation.
+     */
+    private Relation<? extends NumberVector> relation;
+
+    /**
+     * Constructor.
+     * 
+     * @param npred Neighborhood predicate
+     * @param relation Data relation
+     */
+    protected MedianProcessor(NeighborSetPredicate npred, Relation<? extends NumberVector> relation) {
+      super();
+      this.npred = npred;
+      this.relation = relation;
+    }
+
+    @Override
+    public Instance instantiate(Executor master) {
+      return new Instance(master.getInstance(output));
+    }
+
+    /**
+     * Instance
+     * 
+     * @author Erich Schubert
+     */
+    private class Instance extends AbstractDoubleProcessor.Instance {
+      /**
+       * Constructor.
+       * 
+       * @param output Output variable
+       */
+      protected Instance(SharedDouble.Instance output) {
+        super(output);
+      }
+
+      @Override
+      public void map(DBIDRef id) {
+        output.set(medianDifference(npred, relation, id));
+      }
+    }
+  }
+
+  /**
+   * Parameterization class.
+   * 
+   * @author Erich Schubert
+   * 
+   * @apiviz.exclude
+   * 
+   * @param <N> Neighborhood object type
+   */
+  public static class Parameterizer<N> extends CTLuMedianAlgorithm.Parameterizer<N> {
+    @Override
+    protected ParallelCTLuMedianAlgorithm<N> makeInstance() {
+      return new ParallelCTLuMedianAlgorithm<>(npredf);
+    }
+  }
+}
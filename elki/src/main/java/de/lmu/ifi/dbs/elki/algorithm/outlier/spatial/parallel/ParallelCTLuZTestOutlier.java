@@ -0,0 +1,176 @@
+package de.lmu.ifi.dbs.elki.algorithm.outlier.spatial.parallel;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.lmu.ifi.dbs.elki.algorithm.outlier.spatial.CTLuZTestOutlier;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.spatial.neighborhood.NeighborSetPredicate;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.parallel.Executor;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
+import de.lmu.ifi.dbs.elki.parallel.processor.AbstractDoubleProcessor;
+import de.lmu.ifi.dbs.elki.parallel.processor.WriteDoubleDataStoreProcessor;
+import de.lmu.ifi.dbs.elki.parallel.variables.SharedDouble;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Description;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Title;
+
+/**
+ * Parallel version of the Z-Test outlier detection.
+ * 
+ * The differences to the local means are computed for all objects in
+ * parallel; only the final standardization is done serially.
+ * 
+ * <p>
+ * Reference:<br>
+ * S. Shekhar and C.-T. Lu and P. Zhang<br>
+ * A Unified Approach to Detecting Spatial Outliers<br>
+ * in GeoInformatica 7-2, 2003
+ * </p>
+ * 
+ * @author Erich Schubert
+ * 
+ * @apiviz.has DifferenceProcessor
+ * 
+ * @param <N> Neighborhood type
+ */
+@Title("Z-Test Outlier Detection")
+@Description("Outliers are detected by their z-deviation from the local mean, computed in parallel.")
+@Reference(authors = "S. Shekhar and C.-T. Lu and P. Zhang", title = "A Unified Approach to Detecting Spatial Outliers", booktitle = "GeoInformatica 7-2, 2003", url = "http://dx.doi.org/10.1023/A:1023455925009")
+public class ParallelCTLuZTestOutlier<N> extends CTLuZTestOutlier<N> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelCTLuZTestOutlier.class);
+
+  /**
+   * Constructor.
+   * 
+   * @param npredf Neighbor predicate
+   */
+  public ParallelCTLuZTestOutlier(NeighborSetPredicate.Factory<N> npredf) {
+    super(npredf);
+  }
+
+  @Override
+  public OutlierResult run(Database database, Relation<N> nrel, Relation<? extends NumberVector> relation) {
+    final NeighborSetPredicate npred = getNeighborSetPredicateFactory().instantiate(nrel);
+    WritableDoubleDataStore scores = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_STATIC);
+
+    DifferenceProcessor diffm = new DifferenceProcessor(npred, relation);
+    SharedDouble diffv = new SharedDouble();
+    WriteDoubleDataStoreProcessor stored = new WriteDoubleDataStoreProcessor(scores);
+
+    diffm.connectOutput(diffv);
+    stored.connectInput(diffv);
+    ParallelExecutor.run(relation.getDBIDs(), diffm, stored);
+
+    return normalizeScores(npred, relation, scores);
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Processor to compute the difference to the local mean.
+   * 
+   * @author Erich Schubert
+   * 
+   * @apiviz.has Instance
+   */
+  protected class DifferenceProcessor extends AbstractDoubleProcessor {
+    /**
+     * Neighborhood predicate.
+     */
+    private NeighborSetPredicate npred;
+
+    /**
+     * Data relation.
+     */
+    private Relation<? extends NumberVector> relation;
+
+    /**
+     * Constructor.
+     * 
+     * @param npred Neighborhood predicate
+     * @param relation Data relation
+     */
+    protected DifferenceProcessor(NeighborSetPredicate npred, Relation<? extends NumberVector> relation) {
+      super();
+      this.npred = npred;
+      this.relation = relation;
+    }
+
+    @Override
+    public Instance instantiate(Executor master) {
+      return new Instance(master.getInstance(output));
+    }
+
+    /**
+     * Instance
+     * 
+     * @author Erich Schubert
+     */
+    private class Instance extends AbstractDoubleProcessor.Instance {
+      /**
+       * Constructor.
+       * 
+       * @param output Output variable
+       */
+      protected Instance(SharedDouble.Instance output) {
+        super(output);
+      }
+
+      @Override
+      public void map(DBIDRef id) {
+        output.set(localDifference(npred, relation, id));
+      }
+    }
+  }
+
+  /**
+   * Parameterization class.
+   * 
+   * @author Erich Schubert
+   * 
+   * @apiviz.exclude
+   * 
+   * @param <N> Neighborhood object type
+   */
+  public static class Parameterizer<N> extends CTLuZTestOutlier.Parameterizer<N> {
+    @Override
+    protected ParallelCTLuZTestOutlier<N> makeInstance() {
+      return new ParallelCTLuZTestOutlier<>(npredf);
+    }
+  }
+}
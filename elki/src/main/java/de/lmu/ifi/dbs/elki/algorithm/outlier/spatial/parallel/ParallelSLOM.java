@@ -0,0 +1,269 @@
+package de.lmu.ifi.dbs.elki.algorithm.outlier.spatial.parallel;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.lmu.ifi.dbs.elki.algorithm.outlier.spatial.SLOM;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.spatial.neighborhood.NeighborSetPredicate;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.DoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.MaterializedDoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.PrimitiveDistanceFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
+import de.lmu.ifi.dbs.elki.parallel.Executor;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
+import de.lmu.ifi.dbs.elki.parallel.processor.AbstractDoubleProcessor;
+import de.lmu.ifi.dbs.elki.parallel.processor.DoubleMinMaxProcessor;
+import de.lmu.ifi.dbs.elki.parallel.processor.WriteDoubleDataStoreProcessor;
+import de.lmu.ifi.dbs.elki.parallel.variables.SharedDouble;
+import de.lmu.ifi.dbs.elki.result.outlier.BasicOutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Description;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Title;
+
+/**
+ * Parallel version of the Spatial Local Outlier Measure (SLOM).
+ * 
+ * Both the modified distances and the SLOM scores only depend on the previous
+ * step, and are computed in two parallel passes over the data.
+ * 
+ * <p>
+ * Reference: <br>
+ * Sanjay Chawla and Pei Sun<br>
+ * SLOM: a new measure for local spatial outliers<br>
+ * in Knowledge and Information Systems 2005
+ * </p>
+ * 
+ * @author Erich Schubert
+ * 
+ * @apiviz.has ModifiedDistanceProcessor
+ * @apiviz.has SLOMProcessor
+ * 
+ * @param <N> the type the spatial neighborhood is defined over
+ * @param <O> the type of objects handled by the algorithm
+ */
+@Title("SLOM: a new measure for local spatial outliers")
+@Description("Spatial local outlier measure (SLOM), which captures the local behaviour of datum in their spatial neighbourhood, computed in parallel")
+@Reference(authors = "Sanjay Chawla and Pei Sun", title = "SLOM: a new measure for local spatial outliers", booktitle = "Knowledge and Information Systems 9(4), 412-429, 2006", url = "http://dx.doi.org/10.1007/s10115-005-0200-2")
+public class ParallelSLOM<N, O> extends SLOM<N, O> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelSLOM.class);
+
+  /**
+   * Constructor.
+   * 
+   * @param npred Neighborhood predicate
+   * @param nonSpatialDistanceFunction Distance function to use on the
+   *        non-spatial attributes
+   */
+  public ParallelSLOM(NeighborSetPredicate.Factory<N> npred, PrimitiveDistanceFunction<O> nonSpatialDistanceFunction) {
+    super(npred, nonSpatialDistanceFunction);
+  }
+
+  @Override
+  public OutlierResult run(Database database, Relation<N> spatial, Relation<O> relation) {
+    final NeighborSetPredicate npred = getNeighborSetPredicateFactory().instantiate(spatial);
+    DistanceQuery<O> distFunc = getNonSpatialDistanceFunction().instantiate(relation);
+
+    // First pass: calculate D-Tilde
+    WritableDoubleDataStore modifiedDistance = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP);
+    {
+      ModifiedDistanceProcessor mdm = new ModifiedDistanceProcessor(npred, distFunc);
+      SharedDouble mdv = new SharedDouble();
+      WriteDoubleDataStoreProcessor storemd = new WriteDoubleDataStoreProcessor(modifiedDistance);
+
+      mdm.connectOutput(mdv);
+      storemd.connectInput(mdv);
+      ParallelExecutor.run(relation.getDBIDs(), mdm, storemd);
+    }
+
+    // Second pass: compute actual SLOM values
+    WritableDoubleDataStore sloms = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_STATIC);
+    DoubleMinMaxProcessor mmm = new DoubleMinMaxProcessor();
+    {
+      SLOMProcessor slomm = new SLOMProcessor(npred, modifiedDistance);
+      SharedDouble slomv = new SharedDouble();
+      WriteDoubleDataStoreProcessor storeslom = new WriteDoubleDataStoreProcessor(sloms);
+
+      slomm.connectOutput(slomv);
+      storeslom.connectInput(slomv);
+      mmm.connectInput(slomv);
+      ParallelExecutor.run(relation.getDBIDs(), slomm, storeslom, mmm);
+    }
+    DoubleMinMax slomminmax = mmm.getMinMax();
+
+    DoubleRelation scoreResult = new MaterializedDoubleRelation("SLOM", "slom-outlier", sloms, relation.getDBIDs());
+    OutlierScoreMeta scoreMeta = new BasicOutlierScoreMeta(slomminmax.getMin(), slomminmax.getMax(), 0.0, Double.POSITIVE_INFINITY);
+    OutlierResult or = new OutlierResult(scoreMeta, scoreResult);
+    or.addChildResult(npred);
+    return or;
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Processor to compute the modified distances (D-Tilde).
+   * 
+   * @author Erich Schubert
+   * 
+   * @apiviz.has Instance
+   */
+  protected class ModifiedDistanceProcessor extends AbstractDoubleProcessor {
+    /**
+     * Neighborhood predicate.
+     */
+    private NeighborSetPredicate npred;
+
+    /**
+     * Non-spatial distance query.
+     */
+    private DistanceQuery<O> distFunc;
+
+    /**
+     * Constructor.
+     * 
+     * @param npred Neighborhood predicate
+     * @param distFunc Non-spatial distance query
+     */
+    protected ModifiedDistanceProcessor(NeighborSetPredicate npred, DistanceQuery<O> distFunc) {
+      super();
+      this.npred = npred;
+      this.distFunc = distFunc;
+    }
+
+    @Override
+    public Instance instantiate(Executor master) {
+      return new Instance(master.getInstance(output));
+    }
+
+    /**
+     * Instance
+     * 
+     * @author Erich Schubert
+     */
+    private class Instance extends AbstractDoubleProcessor.Instance {
+      /**
+       * Constructor.
+       * 
+       * @param output Output variable
+       */
+      protected Instance(SharedDouble.Instance output) {
+        super(output);
+      }
+
+      @Override
+      public void map(DBIDRef id) {
+        output.set(modifiedDistance(npred, distFunc, id));
+      }
+    }
+  }
+
+  /**
+   * Processor to compute the SLOM scores.
+   * 
+   * @author Erich Schubert
+   * 
+   * @apiviz.has Instance
+   */
+  protected class SLOMProcessor extends AbstractDoubleProcessor {
+    /**
+     * Neighborhood predicate.
+     */
+    private NeighborSetPredicate npred;
+
+    /**
+     * Modified distances.
+     */
+    private DoubleDataStore modifiedDistance;
+
+    /**
+     * Constructor.
+     * 
+     * @param npred Neighborhood predicate
+     * @param modifiedDistance Modified distances
+     */
+    protected SLOMProcessor(NeighborSetPredicate npred, DoubleDataStore modifiedDistance) {
+      super();
+      this.npred = npred;
+      this.modifiedDistance = modifiedDistance;
+    }
+
+    @Override
+    public Instance instantiate(Executor master) {
+      return new Instance(master.getInstance(output));
+    }
+
+    /**
+     * Instance
+     * 
+     * @author Erich Schubert
+     */
+    private class Instance extends AbstractDoubleProcessor.Instance {
+      /**
+       * Constructor.
+       * 
+       * @param output Output variable
+       */
+      protected Instance(SharedDouble.Instance output) {
+        super(output);
+      }
+
+      @Override
+      public void map(DBIDRef id) {
+        output.set(slom(npred, modifiedDistance, id));
+      }
+    }
+  }
+
+  /**
+   * Parameterization class.
+   * 
+   * @author Erich Schubert
+   * 
+   * @apiviz.exclude
+   * 
+   * @param <N> Neighborhood type
+   * @param <O> Data Object type
+   */
+  public static class Parameterizer<N, O> extends SLOM.Parameterizer<N, O> {
+    @Override
+    protected ParallelSLOM<N, O> makeInstance() {
+      return new ParallelSLOM<>(npredf, distanceFunction);
+    }
+  }
+}
@@ -0,0 +1,278 @@
+package de.lmu.ifi.dbs.elki.algorithm.outlier.spatial.parallel;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.lmu.ifi.dbs.elki.algorithm.outlier.spatial.SOF;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.spatial.neighborhood.NeighborSetPredicate;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.DoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.MaterializedDoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.PrimitiveDistanceFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
+import de.lmu.ifi.dbs.elki.parallel.Executor;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
+import de.lmu.ifi.dbs.elki.parallel.processor.AbstractDoubleProcessor;
+import de.lmu.ifi.dbs.elki.parallel.processor.WriteDoubleDataStoreProcessor;
+import de.lmu.ifi.dbs.elki.parallel.variables.SharedDouble;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.result.outlier.QuotientOutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Title;
+
+/**
+ * Parallel version of the Spatial Outlier Factor (SOF).
+ * 
+ * The local densities and the density quotients are computed in two parallel
+ * passes over the data. Undefined quotients are replaced by 0 in a final
+ * serial pass, as in the serial version.
+ * 
+ * <p>
+ * Reference:<br>
+ * Huang, T., Qin, X.<br>
+ * Detecting outliers in spatial database<br>
+ * In: Proc. 3rd International Conference on Image and Graphics
+ * </p>
+ * 
+ * @author Erich Schubert
+ * 
+ * @apiviz.has LRDProcessor
+ * @apiviz.has SOFProcessor
+ * 
+ * @param <N> the type the spatial neighborhood is defined over
+ * @param <O> the type of objects handled by the algorithm
+ */
+@Title("Spatial Outlier Factor")
+@Reference(authors = "Huang, T., Qin, X.", title = "Detecting outliers in spatial database", booktitle = "Proc. 3rd International Conference on Image and Graphics", url = "http://dx.doi.org/10.1109/ICIG.2004.53")
+public class ParallelSOF<N, O> extends SOF<N, O> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelSOF.class);
+
+  /**
+   * Constructor.
+   * 
+   * @param npred Neighborhood predicate
+   * @param nonSpatialDistanceFunction Distance function on non-spatial
+   *        attributes
+   */
+  public ParallelSOF(NeighborSetPredicate.Factory<N> npred, PrimitiveDistanceFunction<O> nonSpatialDistanceFunction) {
+    super(npred, nonSpatialDistanceFunction);
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  @Override
+  public OutlierResult run(Database database, Relation<N> spatial, Relation<O> relation) {
+    final NeighborSetPredicate npred = getNeighborSetPredicateFactory().instantiate(spatial);
+    DistanceQuery<O> distFunc = getNonSpatialDistanceFunction().instantiate(relation);
+
+    // Compute densities
+    WritableDoubleDataStore lrds = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_TEMP | DataStoreFactory.HINT_HOT);
+    {
+      LRDProcessor lrdm = new LRDProcessor(npred, distFunc);
+      SharedDouble lrdv = new SharedDouble();
+      WriteDoubleDataStoreProcessor storelrd = new WriteDoubleDataStoreProcessor(lrds);
+
+      lrdm.connectOutput(lrdv);
+      storelrd.connectInput(lrdv);
+      ParallelExecutor.run(relation.getDBIDs(), lrdm, storelrd);
+    }
+
+    // Compute density quotients
+    WritableDoubleDataStore lofs = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_STATIC);
+    {
+      SOFProcessor sofm = new SOFProcessor(npred, lrds);
+      SharedDouble sofv = new SharedDouble();
+      WriteDoubleDataStoreProcessor storesof = new WriteDoubleDataStoreProcessor(lofs);
+
+      sofm.connectOutput(sofv);
+      storesof.connectInput(sofv);
+      ParallelExecutor.run(relation.getDBIDs(), sofm, storesof);
+    }
+
+    // Replace undefined values, and collect the value range.
+    DoubleMinMax lofminmax = new DoubleMinMax();
+    for(DBIDIter iditer = relation.iterDBIDs(); iditer.valid(); iditer.advance()) {
+      final double lrd = lofs.doubleValue(iditer);
+      if(!Double.isNaN(lrd)) {
+        lofminmax.put(lrd);
+      }
+      else {
+        lofs.putDouble(iditer, 0.0);
+      }
+    }
+
+    // Build result representation.
+    DoubleRelation scoreResult = new MaterializedDoubleRelation("Spatial Outlier Factor", "sof-outlier", lofs, relation.getDBIDs());
+    OutlierScoreMeta scoreMeta = new QuotientOutlierScoreMeta(lofminmax.getMin(), lofminmax.getMax(), 0.0, Double.POSITIVE_INFINITY, 1.0);
+    OutlierResult or = new OutlierResult(scoreMeta, scoreResult);
+    or.addChildResult(npred);
+    return or;
+  }
+
+  /**
+   * Processor to compute the local reachability densities.
+   * 
+   * @author Erich Schubert
+   * 
+   * @apiviz.has Instance
+   */
+  protected class LRDProcessor extends AbstractDoubleProcessor {
+    /**
+     * Neighborhood predicate.
+     */
+    private NeighborSetPredicate npred;
+
+    /**
+     * Non-spatial distance query.
+     */
+    private DistanceQuery<O> distFunc;
+
+    /**
+     * Constructor.
+     * 
+     * @param npred Neighborhood predicate
+     * @param distFunc Non-spatial distance query
+     */
+    protected LRDProcessor(NeighborSetPredicate npred, DistanceQuery<O> distFunc) {
+      super();
+      this.npred = npred;
+      this.distFunc = distFunc;
+    }
+
+    @Override
+    public Instance instantiate(Executor master) {
+      return new Instance(master.getInstance(output));
+    }
+
+    /**
+     * Instance
+     * 
+     * @author Erich Schubert
+     */
+    private class Instance extends AbstractDoubleProcessor.Instance {
+      /**
+       * Constructor.
+       * 
+       * @param output Output variable
+       */
+      protected Instance(SharedDouble.Instance output) {
+        super(output);
+      }
+
+      @Override
+      public void map(DBIDRef id) {
+        output.set(computeLRD(npred, distFunc, id));
+      }
+    }
+  }
+
+  /**
+   * Processor to compute the density quotients.
+   * 
+   * @author Erich Schubert
+   * 
+   * @apiviz.has Instance
+   */
+  protected class SOFProcessor extends AbstractDoubleProcessor {
+    /**
+     * Neighborhood predicate.
+     */
+    private NeighborSetPredicate npred;
+
+    /**
+     * Local densities.
+     */
+    private DoubleDataStore lrds;
+
+    /**
+     * Constructor.
+     * 
+     * @param npred Neighborhood predicate
+     * @param lrds Local densities
+     */
+    protected SOFProcessor(NeighborSetPredicate npred, DoubleDataStore lrds) {
+      super();
+      this.npred = npred;
+      this.lrds = lrds;
+    }
+
+    @Override
+    public Instance instantiate(Executor master) {
+      return new Instance(master.getInstance(output));
+    }
+
+    /**
+     * Instance
+     * 
+     * @author Erich Schubert
+     */
+    private class Instance extends AbstractDoubleProcessor.Instance {
+      /**
+       * Constructor.
+       * 
+       * @param output Output variable
+       */
+      protected Instance(SharedDouble.Instance output) {
+        super(output);
+      }
+
+      @Override
+      public void map(DBIDRef id) {
+        output.set(computeSOF(npred, lrds, id));
+      }
+    }
+  }
+
+  /**
+   * Parameterization class.
+   * 
+   * @author Erich Schubert
+   * 
+   * @apiviz.exclude
+   * 
+   * @param <N> Neighborhood type
+   * @param <O> Data Object type
+   */
+  public static class Parameterizer<N, O> extends SOF.Parameterizer<N, O> {
+    @Override
+    protected ParallelSOF<N, O> makeInstance() {
+      return new ParallelSOF<>(npredf, distanceFunction);
+    }
+  }
+}
@@ -322,8 +322,13 @@ public class OUTRES<V extends NumberVector> extends AbstractAlgorithm<OutlierRes
       dim = RelationUtil.dimensionality(relation);
       hopttwo = optimalBandwidth(2);
       epsilons = new double[dim + 1];
-      Arrays.fill(epsilons, Double.NEGATIVE_INFINITY);
       epsilons[2] = OUTRES.this.eps;
+      // Precompute all radii, so the estimator can be shared by threads.
+      for(int d = 1; d <= dim; d++) {
+        if(d != 2) {
+          epsilons[d] = epsilons[2] * optimalBandwidth(d) / hopttwo;
+        }
+      }
     }
 
     /**
@@ -366,13 +371,7 @@ public class OUTRES<V extends NumberVector> extends AbstractAlgorithm<OutlierRes
      * @return Query radius
      */
     protected double adjustedEps(int dim) {
-      // Cached
-      double e = epsilons[dim];
-      if(e < 0) {
-        e = epsilons[2] * optimalBandwidth(dim) / hopttwo;
-        epsilons[dim] = e;
-      }
-      return e;
+      return epsilons[dim];
     }
   }
 
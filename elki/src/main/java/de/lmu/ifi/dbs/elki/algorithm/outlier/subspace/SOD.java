@@ -103,22 +103,22 @@ public class SOD<V extends NumberVector> extends AbstractAlgorithm<OutlierResult
   /**
    * Neighborhood size.
    */
-  private int knn;
+  protected int knn;
 
   /**
    * Alpha (discriminance value).
    */
-  private double alpha;
+  protected double alpha;
 
   /**
    * Similarity function to use.
    */
-  private SimilarityFunction<V> similarityFunction;
+  protected SimilarityFunction<V> similarityFunction;
 
   /**
    * Report models.
    */
-  private boolean models;
+  protected boolean models;
 
   /**
    * Constructor with parameters.
@@ -153,37 +153,64 @@ public class SOD<V extends NumberVector> extends AbstractAlgorithm<OutlierResult
     DoubleMinMax minmax = new DoubleMinMax();
     for(DBIDIter iter = relation.iterDBIDs(); iter.valid(); iter.advance()) {
       LOG.incrementProcessed(progress);
-      DBIDs neighborhood = getNearestNeighbors(relation, snnInstance, iter);
-
-      Vector center;
-      long[] weightVector;
-      double sod;
-      if(neighborhood.size() > 0) {
-        center = Centroid.make(relation, neighborhood);
-        // Note: per-dimension variances; no covariances.
-        double[] variances = computePerDimensionVariances(relation, center, neighborhood);
-        double expectationOfVariance = Mean.of(variances);
-        weightVector = BitsUtil.zero(variances.length);
-        for(int d = 0; d < variances.length; d++) {
-          if(variances[d] < alpha * expectationOfVariance) {
-            BitsUtil.setI(weightVector, d);
-          }
-        }
-        sod = subspaceOutlierDegree(relation.get(iter), center, weightVector);
-      }
-      else {
-        center = relation.get(iter).getColumnVector();
-        weightVector = null;
-        sod = 0.;
-      }
-
-      if(sod_models != null) {
-        sod_models.put(iter, new SODModel(center, weightVector));
-      }
+      double sod = computeSOD(relation, snnInstance, iter, sod_models);
       sod_scores.putDouble(iter, sod);
       minmax.put(sod);
     }
     LOG.ensureCompleted(progress);
+    return makeResult(relation, sod_scores, sod_models, minmax);
+  }
+
+  /**
+   * Compute the subspace outlier degree of a single object.
+   * 
+   * @param relation Data relation
+   * @param snnInstance Similarity query
+   * @param id Object to score
+   * @param sod_models Storage for the models, may be {@code null}
+   * @return SOD score
+   */
+  protected double computeSOD(Relation<V> relation, SimilarityQuery<V> snnInstance, DBIDRef id, WritableDataStore<SODModel> sod_models) {
+    DBIDs neighborhood = getNearestNeighbors(relation, snnInstance, id);
+
+    Vector center;
+    long[] weightVector;
+    double sod;
+    if(neighborhood.size() > 0) {
+      center = Centroid.make(relation, neighborhood);
+      // Note: per-dimension variances; no covariances.
+      double[] variances = computePerDimensionVariances(relation, center, neighborhood);
+      double expectationOfVariance = Mean.of(variances);
+      weightVector = BitsUtil.zero(variances.length);
+      for(int d = 0; d < variances.length; d++) {
+        if(variances[d] < alpha * expectationOfVariance) {
+          BitsUtil.setI(weightVector, d);
+        }
+      }
+      sod = subspaceOutlierDegree(relation.get(id), center, weightVector);
+    }
+    else {
+      center = relation.get(id).getColumnVector();
+      weightVector = null;
+      sod = 0.;
+    }
+
+    if(sod_models != null) {
+      sod_models.put(id, new SODModel(center, weightVector));
+    }
+    return sod;
+  }
+
+  /**
+   * Build the outlier result.
+   * 
+   * @param relation Data relation
+   * @param sod_scores Scores
+   * @param sod_models Models, may be {@code null}
+   * @param minmax Score range
+   * @return Outlier result
+   */
+  protected OutlierResult makeResult(Relation<V> relation, WritableDoubleDataStore sod_scores, WritableDataStore<SODModel> sod_models, DoubleMinMax minmax) {
     // combine results.
     OutlierScoreMeta meta = new BasicOutlierScoreMeta(minmax.getMin(), minmax.getMax());
     OutlierResult sodResult = new OutlierResult(meta, new MaterializedDoubleRelation("Subspace Outlier Degree", "sod-outlier", sod_scores, relation.getDBIDs()));
@@ -351,22 +378,22 @@ public class SOD<V extends NumberVector> extends AbstractAlgorithm<OutlierResult
     /**
      * Neighborhood size
      */
-    private int knn = 1;
+    protected int knn = 1;
 
     /**
      * Alpha (discriminance value).
      */
-    private double alpha = 1.1;
+    protected double alpha = 1.1;
 
     /**
      * The similarity function.
      */
-    private SimilarityFunction<V> similarityFunction;
+    protected SimilarityFunction<V> similarityFunction;
 
     /**
      * Track models.
      */
-    private boolean models = false;
+    protected boolean models = false;
 
     @Override
     protected void makeOptions(Parameterization config) {
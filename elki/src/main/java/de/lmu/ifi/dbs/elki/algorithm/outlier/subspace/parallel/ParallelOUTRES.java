@@ -0,0 +1,190 @@
+package de.lmu.ifi.dbs.elki.algorithm.outlier.subspace.parallel;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.lmu.ifi.dbs.elki.algorithm.outlier.subspace.OUTRES;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.relation.MaterializedDoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.database.relation.RelationUtil;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
+import de.lmu.ifi.dbs.elki.parallel.Executor;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
+import de.lmu.ifi.dbs.elki.parallel.processor.AbstractDoubleProcessor;
+import de.lmu.ifi.dbs.elki.parallel.processor.DoubleMinMaxProcessor;
+import de.lmu.ifi.dbs.elki.parallel.processor.WriteDoubleDataStoreProcessor;
+import de.lmu.ifi.dbs.elki.parallel.variables.SharedDouble;
+import de.lmu.ifi.dbs.elki.result.outlier.InvertedOutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.utilities.BitsUtil;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+
+/**
+ * Parallel version of adaptive outlierness for subspace outlier ranking
+ * (OUTRES).
+ * 
+ * The recursive subspace search of each object is independent of all other
+ * objects, so objects are distributed across all cores. Each thread uses its
+ * own subspace buffer, while the kernel density estimator is shared.
+ * 
+ * Reference:
+ * <p>
+ * E. Müller, M. Schiffer, T. Seidl<br />
+ * Adaptive outlierness for subspace outlier ranking<br />
+ * in: Proc. 19th ACM International Conference on Information and knowledge
+ * management
+ * </p>
+ * 
+ * @author Erich Schubert
+ * 
+ * @apiviz.has OUTRESProcessor
+ * 
+ * @param <V> vector type
+ */
+@Reference(authors = "E. Müller, M. Schiffer, T. Seidl", title = "Adaptive outlierness for subspace outlier ranking", booktitle = "Proc. 19th ACM International Conference on Information and knowledge management")
+public class ParallelOUTRES<V extends NumberVector> extends OUTRES<V> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelOUTRES.class);
+
+  /**
+   * Constructor.
+   * 
+   * @param eps Epsilon
+   */
+  public ParallelOUTRES(double eps) {
+    super(eps);
+  }
+
+  @Override
+  public OutlierResult run(Relation<V> relation) {
+    ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    WritableDoubleDataStore ranks = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_STATIC);
+
+    OUTRESProcessor outresm = new OUTRESProcessor(new KernelDensityEstimator(relation), RelationUtil.dimensionality(relation));
+    SharedDouble outresv = new SharedDouble();
+    DoubleMinMaxProcessor mmm = new DoubleMinMaxProcessor();
+    WriteDoubleDataStoreProcessor storeoutres = new WriteDoubleDataStoreProcessor(ranks);
+
+    outresm.connectOutput(outresv);
+    mmm.connectInput(outresv);
+    storeoutres.connectInput(outresv);
+    ParallelExecutor.run(ids, outresm, storeoutres, mmm);
+
+    DoubleMinMax minmax = mmm.getMinMax();
+    OutlierScoreMeta meta = new InvertedOutlierScoreMeta(minmax.getMin(), minmax.getMax(), 0., 1., 1.);
+    return new OutlierResult(meta, new MaterializedDoubleRelation("OUTRES", "outres-score", ranks, ids));
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Processor to compute the OUTRES score of each object.
+   * 
+   * @author Erich Schubert
+   * 
+   * @apiviz.has Instance
+   */
+  protected class OUTRESProcessor extends AbstractDoubleProcessor {
+    /**
+     * Shared kernel density estimator.
+     */
+    private KernelDensityEstimator kernel;
+
+    /**
+     * Data dimensionality.
+     */
+    private int dim;
+
+    /**
+     * Constructor.
+     * 
+     * @param kernel Kernel density estimator
+     * @param dim Data dimensionality
+     */
+    protected OUTRESProcessor(KernelDensityEstimator kernel, int dim) {
+      super();
+      this.kernel = kernel;
+      this.dim = dim;
+    }
+
+    @Override
+    public Instance instantiate(Executor master) {
+      return new Instance(master.getInstance(output));
+    }
+
+    /**
+     * Instance
+     * 
+     * @author Erich Schubert
+     */
+    private class Instance extends AbstractDoubleProcessor.Instance {
+      /**
+       * Subspace buffer of this thread.
+       */
+      private long[] subspace = BitsUtil.zero(dim);
+
+      /**
+       * Constructor.
+       * 
+       * @param output Output variable
+       */
+      protected Instance(SharedDouble.Instance output) {
+        super(output);
+      }
+
+      @Override
+      public void map(DBIDRef id) {
+        BitsUtil.zeroI(subspace);
+        output.set(outresScore(0, subspace, id, kernel));
+      }
+    }
+  }
+
+  /**
+   * Parameterization class.
+   * 
+   * @author Erich Schubert
+   * 
+   * @apiviz.exclude
+   */
+  public static class Parameterizer<O extends NumberVector> extends OUTRES.Parameterizer<O> {
+    @Override
+    protected ParallelOUTRES<O> makeInstance() {
+      return new ParallelOUTRES<>(eps);
+    }
+  }
+}
@@ -0,0 +1,203 @@
+package de.lmu.ifi.dbs.elki.algorithm.outlier.subspace.parallel;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.lmu.ifi.dbs.elki.algorithm.outlier.subspace.SOD;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.query.similarity.SimilarityQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.similarityfunction.SimilarityFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.parallel.Executor;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
+import de.lmu.ifi.dbs.elki.parallel.processor.AbstractDoubleProcessor;
+import de.lmu.ifi.dbs.elki.parallel.processor.DoubleMinMaxProcessor;
+import de.lmu.ifi.dbs.elki.parallel.processor.WriteDoubleDataStoreProcessor;
+import de.lmu.ifi.dbs.elki.parallel.variables.SharedDouble;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Description;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Title;
+
+/**
+ * Parallel version of the Subspace Outlier Degree (SOD).
+ * 
+ * The shared nearest neighbor search, the subspace selection and the scoring
+ * of each object are independent of all other objects, and thus are
+ * distributed across all cores.
+ * 
+ * Reference:
+ * <p>
+ * H.-P. Kriegel, P. Kröger, E. Schubert, A. Zimek:<br />
+ * Outlier Detection in Axis-Parallel Subspaces of High Dimensional Data<br />
+ * In: Proceedings of the 13th Pacific-Asia Conference on Knowledge Discovery
+ * and Data Mining (PAKDD), Bangkok, Thailand, 2009
+ * </p>
+ * 
+ * @author Erich Schubert
+ * 
+ * @apiviz.has SODProcessor
+ * 
+ * @param <V> the type of NumberVector handled by this Algorithm
+ */
+@Title("SOD: Subspace outlier degree")
+@Description("Outlier Detection in Axis-Parallel Subspaces of High Dimensional Data, computed in parallel")
+@Reference(authors = "H.-P. Kriegel, P. Kröger, E. Schubert, A. Zimek", title = "Outlier Detection in Axis-Parallel Subspaces of High Dimensional Data", booktitle = "Proceedings of the 13th Pacific-Asia Conference on Knowledge Discovery and Data Mining (PAKDD), Bangkok, Thailand, 2009", url = "http://dx.doi.org/10.1007/978-3-642-01307-2")
+public class ParallelSOD<V extends NumberVector> extends SOD<V> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelSOD.class);
+
+  /**
+   * Constructor with parameters.
+   * 
+   * @param knn knn value
+   * @param alpha Alpha parameter
+   * @param similarityFunction Shared nearest neighbor similarity function
+   * @param models Report generated models
+   */
+  public ParallelSOD(int knn, double alpha, SimilarityFunction<V> similarityFunction, boolean models) {
+    super(knn, alpha, similarityFunction, models);
+  }
+
+  @Override
+  public OutlierResult run(Relation<V> relation) {
+    ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    SimilarityQuery<V> snnInstance = similarityFunction.instantiate(relation);
+    // Index-based similarities may initialize lazily; do this before threading.
+    DBIDIter first = ids.iter();
+    if(first.valid()) {
+      snnInstance.similarity(first, first);
+    }
+    WritableDoubleDataStore sod_scores = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_STATIC);
+    WritableDataStore<SODModel> sod_models = null;
+    if(models) { // Models requested
+      sod_models = DataStoreUtil.makeStorage(ids, DataStoreFactory.HINT_STATIC, SODModel.class);
+    }
+
+    SODProcessor sodm = new SODProcessor(relation, snnInstance, sod_models);
+    SharedDouble sodv = new SharedDouble();
+    DoubleMinMaxProcessor mmm = new DoubleMinMaxProcessor();
+    WriteDoubleDataStoreProcessor storesod = new WriteDoubleDataStoreProcessor(sod_scores);
+
+    sodm.connectOutput(sodv);
+    mmm.connectInput(sodv);
+    storesod.connectInput(sodv);
+    ParallelExecutor.run(ids, sodm, storesod, mmm);
+
+    return makeResult(relation, sod_scores, sod_models, mmm.getMinMax());
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Processor to compute the subspace outlier degree of each object.
+   * 
+   * @author Erich Schubert
+   * 
+   * @apiviz.has Instance
+   */
+  protected class SODProcessor extends AbstractDoubleProcessor {
+    /**
+     * Data relation.
+     */
+    private Relation<V> relation;
+
+    /**
+     * Similarity query.
+     */
+    private SimilarityQuery<V> snnInstance;
+
+    /**
+     * Model storage, may be {@code null}.
+     */
+    private WritableDataStore<SODModel> sod_models;
+
+    /**
+     * Constructor.
+     * 
+     * @param relation Data relation
+     * @param snnInstance Similarity query
+     * @param sod_models Model storage, may be {@code null}
+     */
+    protected SODProcessor(Relation<V> relation, SimilarityQuery<V> snnInstance, WritableDataStore<SODModel> sod_models) {
+      super();
+      this.relation = relation;
+      this.snnInstance = snnInstance;
+      this.sod_models = sod_models;
+    }
+
+    @Override
+    public Instance instantiate(Executor master) {
+      return new Instance(master.getInstance(output));
+    }
+
+    /**
+     * Instance
+     * 
+     * @author Erich Schubert
+     */
+    private class Instance extends AbstractDoubleProcessor.Instance {
+      /**
+       * Constructor.
+       * 
+       * @param output Output variable
+       */
+      protected Instance(SharedDouble.Instance output) {
+        super(output);
+      }
+
+      @Override
+      public void map(DBIDRef id) {
+        output.set(computeSOD(relation, snnInstance, id, sod_models));
+      }
+    }
+  }
+
+  /**
+   * Parameterization class.
+   * 
+   * @author Erich Schubert
+   * 
+   * @apiviz.exclude
+   */
+  public static class Parameterizer<V extends NumberVector> extends SOD.Parameterizer<V> {
+    @Override
+    protected ParallelSOD<V> makeInstance() {
+      return new ParallelSOD<>(knn, alpha, similarityFunction, models);
+    }
+  }
+}
@@ -31,11 +31,14 @@ import java.nio.channels.FileChannel;
 import de.lmu.ifi.dbs.elki.database.AbstractDatabase;
 import de.lmu.ifi.dbs.elki.datasource.DatabaseConnection;
 import de.lmu.ifi.dbs.elki.datasource.FileBasedDatabaseConnection;
+import de.lmu.ifi.dbs.elki.datasource.bundle.BlockBundleWriter;
 import de.lmu.ifi.dbs.elki.datasource.bundle.BundleWriter;
 import de.lmu.ifi.dbs.elki.datasource.bundle.MultipleObjectsBundle;
 import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.utilities.exceptions.UnableToComplyException;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.Flag;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
 
 /**
@@ -59,6 +62,16 @@ public class ConvertToBundleApplication extends AbstractApplication {
    */
   private File outfile;
 
+  /**
+   * Write the column-oriented block format.
+   */
+  private boolean blocks;
+
+  /**
+   * Compress numerical columns (block format only).
+   */
+  private boolean compress;
+
   /**
    * Constructor.
    * 
@@ -66,9 +79,23 @@ public class ConvertToBundleApplication extends AbstractApplication {
    * @param outfile Output filename
    */
   public ConvertToBundleApplication(DatabaseConnection input, File outfile) {
+    this(input, outfile, false, false);
+  }
+
+  /**
+   * Constructor.
+   * 
+   * @param input Data source configuration
+   * @param outfile Output filename
+   * @param blocks Write the column-oriented block format
+   * @param compress Compress numerical columns (block format only)
+   */
+  public ConvertToBundleApplication(DatabaseConnection input, File outfile, boolean blocks, boolean compress) {
     super();
     this.input = input;
     this.outfile = outfile;
+    this.blocks = blocks;
+    this.compress = compress;
   }
 
   @Override
@@ -80,12 +107,15 @@ public class ConvertToBundleApplication extends AbstractApplication {
     if(LOG.isVerbose()) {
       LOG.verbose("Serializing to output file: " + outfile.toString());
     }
-    // TODO: make configurable?
-    BundleWriter writer = new BundleWriter();
     try {
       FileOutputStream fos = new FileOutputStream(outfile);
       FileChannel channel = fos.getChannel();
-      writer.writeBundleStream(bundle.asStream(), channel);
+      if(blocks) {
+        new BlockBundleWriter(BlockBundleWriter.DEFAULT_BLOCKSIZE, compress).writeBundle(bundle, channel);
+      }
+      else {
+        new BundleWriter().writeBundleStream(bundle.asStream(), channel);
+      }
       channel.close();
       fos.close();
     }
@@ -102,6 +132,16 @@ public class ConvertToBundleApplication extends AbstractApplication {
    * @apiviz.exclude
    */
   public static class Parameterizer extends AbstractApplication.Parameterizer {
+    /**
+     * Flag to write the column-oriented block format.
+     */
+    public static final OptionID BLOCKS_ID = new OptionID("bundle.blocks", "Write the column-oriented block format, which supports random access and parallel loading.");
+
+    /**
+     * Flag to compress numerical columns.
+     */
+    public static final OptionID COMPRESS_ID = new OptionID("bundle.compress", "Use delta compression for numerical columns (block format only).");
+
     /**
      * The data input step.
      */
@@ -112,6 +152,16 @@ public class ConvertToBundleApplication extends AbstractApplication {
      */
     private File outfile;
 
+    /**
+     * Write the column-oriented block format.
+     */
+    private boolean blocks;
+
+    /**
+     * Compress numerical columns.
+     */
+    private boolean compress;
+
     @Override
     protected void makeOptions(Parameterization config) {
       super.makeOptions(config);
@@ -120,11 +170,19 @@ public class ConvertToBundleApplication extends AbstractApplication {
         input = inputP.instantiateClass(config);
       }
       outfile = super.getParameterOutputFile(config, "File name to serialize the bundle to.");
+      Flag blocksF = new Flag(BLOCKS_ID);
+      if(config.grab(blocksF)) {
+        blocks = blocksF.isTrue();
+      }
+      Flag compressF = new Flag(COMPRESS_ID);
+      if(config.grab(compressF)) {
+        compress = compressF.isTrue();
+      }
     }
 
     @Override
     protected ConvertToBundleApplication makeInstance() {
-      return new ConvertToBundleApplication(input, outfile);
+      return new ConvertToBundleApplication(input, outfile, blocks, compress);
     }
   }
 
@@ -34,37 +34,30 @@ import javax.xml.bind.DatatypeConverter;
 
 import de.lmu.ifi.dbs.elki.algorithm.AbstractAlgorithm;
 import de.lmu.ifi.dbs.elki.algorithm.outlier.anglebased.FastABOD;
-import de.lmu.ifi.dbs.elki.algorithm.outlier.distance.KNNOutlier;
-import de.lmu.ifi.dbs.elki.algorithm.outlier.distance.KNNWeightOutlier;
 import de.lmu.ifi.dbs.elki.algorithm.outlier.distance.ODIN;
 import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.INFLO;
 import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.KDEOS;
 import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.LDF;
 import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.LDOF;
-import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.LOF;
-import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.LoOP;
-import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.SimplifiedLOF;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.parallel.KNNGraphOutlierScores;
 import de.lmu.ifi.dbs.elki.algorithm.outlier.trivial.ByLabelOutlier;
 import de.lmu.ifi.dbs.elki.algorithm.outlier.trivial.TrivialAllOutlier;
 import de.lmu.ifi.dbs.elki.algorithm.outlier.trivial.TrivialNoOutlier;
 import de.lmu.ifi.dbs.elki.application.AbstractApplication;
 import de.lmu.ifi.dbs.elki.data.NumberVector;
 import de.lmu.ifi.dbs.elki.database.Database;
-import de.lmu.ifi.dbs.elki.database.QueryUtil;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
-import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
-import de.lmu.ifi.dbs.elki.database.query.knn.PreprocessorKNNQuery;
 import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
 import de.lmu.ifi.dbs.elki.database.relation.Relation;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
 import de.lmu.ifi.dbs.elki.distance.similarityfunction.kernel.PolynomialKernelFunction;
+import de.lmu.ifi.dbs.elki.index.preprocessed.knn.KNNGraphPreprocessor;
 import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.math.statistics.kernelfunctions.GaussianKernelDensityFunction;
 import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
-import de.lmu.ifi.dbs.elki.utilities.DatabaseUtil;
 import de.lmu.ifi.dbs.elki.utilities.FormatUtil;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
 import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
@@ -185,14 +178,11 @@ public class ComputeKNNOutlierScores<O extends NumberVector> extends AbstractApp
     final Database database = inputstep.getDatabase();
     final Relation<O> relation = database.getRelation(distf.getInputTypeRestriction());
 
-    // If there is no kNN preprocessor already, then precompute.
-    KNNQuery<O> knnq = DatabaseUtil.precomputedKNNQuery(database, relation, distf, maxk + 2);
-
-    // Test that we now get a proper index query
-    knnq = QueryUtil.getKNNQuery(relation, distf, maxk + 2);
-    if(!(knnq instanceof PreprocessorKNNQuery)) {
-      LOG.warning("Not using preprocessor knn query -- KNN queries using class: " + knnq.getClass());
-    }
+    // Materialize the kNN graph once, and share it with all methods.
+    final KNNGraphPreprocessor<O> preproc = new KNNGraphPreprocessor<>(relation, distf, maxk + 2);
+    preproc.initialize();
+    database.addIndex(preproc);
+    final KNNGraphOutlierScores multik = new KNNGraphOutlierScores(preproc.getGraph(), getKs());
 
     final DBIDs ids = relation.getDBIDs();
 
@@ -237,67 +227,27 @@ public class ComputeKNNOutlierScores<O extends NumberVector> extends AbstractApp
     // KNN
     if(disable == null || disable.matcher("KNN").matches()) {
       LOG.verbose("Running KNN");
-      runForEachK(new AlgRunner() {
-        @Override
-        public void run(int k, String kstr) {
-          KNNOutlier<O> knn = new KNNOutlier<>(distf, k);
-          OutlierResult knnresult = knn.run(database, relation);
-          writeResult(fout, ids, knnresult, scaling, "KNN-" + kstr);
-          database.getHierarchy().removeSubtree(knnresult);
-        }
-      });
+      writeResults(fout, ids, multik.knn(), scaling, "KNN-");
     }
     // KNN Weight
     if(disable == null || disable.matcher("KNNW").matches()) {
       LOG.verbose("Running KNNweight");
-      runForEachK(new AlgRunner() {
-        @Override
-        public void run(int k, String kstr) {
-          KNNWeightOutlier<O> knnw = new KNNWeightOutlier<>(distf, k);
-          OutlierResult knnresult = knnw.run(database, relation);
-          writeResult(fout, ids, knnresult, scaling, "KNNW-" + kstr);
-          database.getHierarchy().removeSubtree(knnresult);
-        }
-      });
+      writeResults(fout, ids, multik.knnWeight(), scaling, "KNNW-");
     }
     // Run LOF
     if(disable == null || disable.matcher("LOF").matches()) {
       LOG.verbose("Running LOF");
-      runForEachK(new AlgRunner() {
-        @Override
-        public void run(int k, String kstr) {
-          LOF<O> lof = new LOF<>(k, distf);
-          OutlierResult lofresult = lof.run(database, relation);
-          writeResult(fout, ids, lofresult, scaling, "LOF-" + kstr);
-          database.getHierarchy().removeSubtree(lofresult);
-        }
-      });
+      writeResults(fout, ids, multik.lof(), scaling, "LOF-");
     }
     // Run Simplified-LOF
     if(disable == null || disable.matcher("Simplified-LOF").matches()) {
       LOG.verbose("Running Simplified-LOF");
-      runForEachK(new AlgRunner() {
-        @Override
-        public void run(int k, String kstr) {
-          SimplifiedLOF<O> lof = new SimplifiedLOF<>(k, distf);
-          OutlierResult lofresult = lof.run(database, relation);
-          writeResult(fout, ids, lofresult, scaling, "Simplified-LOF-" + kstr);
-          database.getHierarchy().removeSubtree(lofresult);
-        }
-      });
+      writeResults(fout, ids, multik.simplifiedLOF(), scaling, "Simplified-LOF-");
     }
     // LoOP
     if(disable == null || disable.matcher("LOOP").matches()) {
       LOG.verbose("Running LoOP");
-      runForEachK(new AlgRunner() {
-        @Override
-        public void run(int k, String kstr) {
-          LoOP<O> loop = new LoOP<>(k, k, distf, distf, 1.0);
-          OutlierResult loopresult = loop.run(database, relation);
-          writeResult(fout, ids, loopresult, scaling, "LOOP-" + kstr);
-          database.getHierarchy().removeSubtree(loopresult);
-        }
-      });
+      writeResults(fout, ids, multik.loop(1.0), scaling, "LOOP-");
     }
     // LDOF
     if(disable == null || disable.matcher("LDOF").matches()) {
@@ -408,17 +358,55 @@ public class ComputeKNNOutlierScores<O extends NumberVector> extends AbstractApp
     out.append(FormatUtil.NEWLINE);
   }
 
+  /**
+   * Write the results for all values of k.
+   * 
+   * @param out Output stream
+   * @param ids DBIDs
+   * @param results Outlier results, one for each k
+   * @param scaling Scaling function
+   * @param prefix Label prefix
+   */
+  void writeResults(PrintStream out, DBIDs ids, OutlierResult[] results, ScalingFunction scaling, String prefix) {
+    final int[] ks = getKs();
+    for(int i = 0; i < ks.length; i++) {
+      writeResult(out, ids, results[i], scaling, prefix + formatK(ks[i]));
+    }
+  }
+
+  /**
+   * Get the values of k to evaluate.
+   * 
+   * @return k values
+   */
+  private int[] getKs() {
+    final int startk = (this.startk > 0) ? this.startk : this.stepk;
+    int[] ks = new int[Math.max(0, (maxk - startk) / stepk + 1)];
+    for(int i = 0, k = startk; k <= maxk; k += stepk, i++) {
+      ks[i] = k;
+    }
+    return ks;
+  }
+
+  /**
+   * Format a value of k for the output label.
+   * 
+   * @param k k value
+   * @return Label string
+   */
+  private String formatK(int k) {
+    final int digits = (int) Math.ceil(Math.log10(maxk));
+    return String.format("%0" + digits + "d", k);
+  }
+
   /**
    * Iterate over the k range.
    * 
    * @param runner Runner to run
    */
   private void runForEachK(AlgRunner runner) {
-    final int digits = (int) Math.ceil(Math.log10(maxk));
-    final int startk = (this.startk > 0) ? this.startk : this.stepk;
-    for(int k = startk; k <= maxk; k += stepk) {
-      String kstr = String.format("%0" + digits + "d", k);
-      runner.run(k, kstr);
+    for(int k : getKs()) {
+      runner.run(k, formatK(k));
     }
   }
 
@@ -0,0 +1,87 @@
+package de.lmu.ifi.dbs.elki.application.jsmap;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.lmu.ifi.dbs.elki.algorithm.outlier.GaussianModel;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.database.relation.RelationUtil;
+import de.lmu.ifi.dbs.elki.math.MathUtil;
+import de.lmu.ifi.dbs.elki.math.linearalgebra.CovarianceMatrix;
+import de.lmu.ifi.dbs.elki.math.linearalgebra.Matrix;
+import de.lmu.ifi.dbs.elki.math.linearalgebra.Vector;
+
+/**
+ * Score new objects by the probability density of a multivariate Gaussian
+ * fitted to the reference data, as in {@link GaussianModel}.
+ * 
+ * Low values indicate outliers.
+ * 
+ * @author Erich Schubert
+ */
+public class GaussianScoringModel implements OutlierScoringModel {
+  /**
+   * Small value to increment diagonally of a matrix in order to avoid
+   * singularity before building the inverse.
+   */
+  private static final double SINGULARITY_CHEAT = 1E-9;
+
+  /**
+   * Mean vector.
+   */
+  private Vector mean;
+
+  /**
+   * Inverse covariance matrix.
+   */
+  private Matrix covarianceTransposed;
+
+  /**
+   * Normalization factor of the Gaussian PDF.
+   */
+  private double fakt;
+
+  /**
+   * Constructor.
+   */
+  public GaussianScoringModel() {
+    super();
+  }
+
+  @Override
+  public void train(Relation<NumberVector> relation) {
+    CovarianceMatrix temp = CovarianceMatrix.make(relation);
+    mean = temp.getMeanVector();
+    Matrix covarianceMatrix = temp.destroyToNaiveMatrix();
+    covarianceTransposed = covarianceMatrix.cheatToAvoidSingularity(SINGULARITY_CHEAT).inverse();
+    fakt = (1.0 / (Math.sqrt(MathUtil.powi(MathUtil.TWOPI, RelationUtil.dimensionality(relation)) * covarianceMatrix.det())));
+  }
+
+  @Override
+  public double score(NumberVector vec) {
+    Vector x = vec.getColumnVector().minusEquals(mean);
+    final double mDist = x.transposeTimesTimes(covarianceTransposed, x);
+    return fakt * Math.exp(-mDist / 2.0);
+  }
+}
@@ -188,7 +188,7 @@ public class JSONBuffer {
     if(val instanceof Double) {
       buffer.append(val.toString());
     }
-    else if(val instanceof Integer) {
+    else if(val instanceof Integer || val instanceof Long) {
       buffer.append(val.toString());
     }
     else {
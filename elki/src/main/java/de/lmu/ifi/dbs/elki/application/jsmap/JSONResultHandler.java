@@ -32,6 +32,7 @@ import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraint
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.LessEqualConstraint;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
 
 /**
  * Handle results by serving them via a web server to mapping applications.
@@ -51,20 +52,36 @@ public class JSONResultHandler implements ResultHandler {
    */
   private int port;
 
+  /**
+   * Scoring model, may be {@code null}
+   */
+  private OutlierScoringModel model;
+
   /**
    * Constructor.
    * 
    * @param port Port to listen on
    */
   public JSONResultHandler(int port) {
+    this(port, null);
+  }
+
+  /**
+   * Constructor.
+   * 
+   * @param port Port to listen on
+   * @param model Scoring model to serve, may be {@code null}
+   */
+  public JSONResultHandler(int port, OutlierScoringModel model) {
     super();
     this.port = port;
+    this.model = model;
   }
 
   @Override
   public void processNewResult(HierarchicalResult baseResult, Result newResult) {
     if(server == null) {
-      server = new JSONWebServer(port, baseResult);
+      server = new JSONWebServer(port, baseResult, model);
     }
 
     // TODO: stop somehow. UI with stop button?
@@ -83,11 +100,21 @@ public class JSONResultHandler implements ResultHandler {
      */
     public static final OptionID PORT_ID = new OptionID("json.port", "Port for the JSON web server to listen on.");
 
+    /**
+     * Model to score new objects with
+     */
+    public static final OptionID SCORING_ID = new OptionID("json.scoring", "Outlier model to train on the database, and to score new objects posted to " + JSONWebServer.PATH_SCORE + " with.");
+
     /**
      * Our port
      */
     int port = 8080;
 
+    /**
+     * Scoring model
+     */
+    OutlierScoringModel model = null;
+
     @Override
     protected void makeOptions(Parameterization config) {
       super.makeOptions(config);
@@ -97,11 +124,16 @@ public class JSONResultHandler implements ResultHandler {
       if(config.grab(portP)) {
         this.port = portP.getValue();
       }
+      ObjectParameter<OutlierScoringModel> modelP = new ObjectParameter<>(SCORING_ID, OutlierScoringModel.class);
+      modelP.setOptional(true);
+      if(config.grab(modelP)) {
+        this.model = modelP.instantiateClass(config);
+      }
     }
 
     @Override
     protected JSONResultHandler makeInstance() {
-      return new JSONResultHandler(port);
+      return new JSONResultHandler(port, model);
     }
   }
 }
\ No newline at end of file
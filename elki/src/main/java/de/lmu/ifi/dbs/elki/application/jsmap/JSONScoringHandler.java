@@ -0,0 +1,190 @@
+package de.lmu.ifi.dbs.elki.application.jsmap;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.datasource.bundle.MultipleObjectsBundle;
+import de.lmu.ifi.dbs.elki.datasource.parser.NumberVectorLabelParser;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.statistics.DoubleStatistic;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
+
+/**
+ * Handler to score batches of new objects against a trained
+ * {@link OutlierScoringModel}.
+ * 
+ * A batch is posted as request body in the usual ELKI vector text format (one
+ * object per line, whitespace or comma separated, labels are ignored). The
+ * response contains the scores in input order, the latency of this batch, and
+ * the cumulative statistics of the handler. A GET request only returns the
+ * cumulative statistics.
+ * 
+ * @author Erich Schubert
+ * 
+ * @apiviz.uses OutlierScoringModel
+ * @apiviz.uses JSONBuffer
+ */
+public class JSONScoringHandler implements HttpHandler {
+  /**
+   * Our logger.
+   */
+  private static final Logging LOG = Logging.getLogger(JSONScoringHandler.class);
+
+  /**
+   * Trained model.
+   */
+  private OutlierScoringModel model;
+
+  /**
+   * Number of batches scored.
+   */
+  private AtomicLong batches = new AtomicLong();
+
+  /**
+   * Number of objects scored.
+   */
+  private AtomicLong objects = new AtomicLong();
+
+  /**
+   * Total scoring time, in nanoseconds.
+   */
+  private AtomicLong nanos = new AtomicLong();
+
+  /**
+   * Constructor.
+   * 
+   * @param model Trained model
+   */
+  public JSONScoringHandler(OutlierScoringModel model) {
+    super();
+    this.model = model;
+  }
+
+  @Override
+  public void handle(HttpExchange exchange) throws IOException {
+    StringBuilder response = new StringBuilder();
+    JSONBuffer jsonbuf = new JSONBuffer(response);
+    jsonbuf.startHash();
+    String requestMethod = exchange.getRequestMethod();
+    if(requestMethod.equalsIgnoreCase("POST")) {
+      try {
+        scoreBatch(jsonbuf, exchange.getRequestBody());
+      }
+      catch(RuntimeException e) {
+        LOG.exception("Exception occurred when scoring batch:", e);
+        response.setLength(0);
+        jsonbuf = new JSONBuffer(response);
+        jsonbuf.startHash();
+        jsonbuf.appendKeyValue("error", e.getMessage());
+      }
+    }
+    else if(!requestMethod.equalsIgnoreCase("GET")) {
+      jsonbuf.appendKeyValue("error", "unsupported method");
+    }
+    statisticsToJSON(jsonbuf);
+    jsonbuf.closeHash();
+
+    byte[] rbuf = response.toString().getBytes("UTF-8");
+    // Send
+    Headers responseHeaders = exchange.getResponseHeaders();
+    responseHeaders.set("Content-Type", "application/json");
+    exchange.sendResponseHeaders(200, rbuf.length);
+    OutputStream responseBody = exchange.getResponseBody();
+    responseBody.write(rbuf);
+    responseBody.close();
+  }
+
+  /**
+   * Parse and score a single batch.
+   * 
+   * @param re Buffer to serialize to
+   * @param in Request body
+   */
+  protected void scoreBatch(JSONBuffer re, InputStream in) {
+    MultipleObjectsBundle bundle = new NumberVectorLabelParser<>(DoubleVector.FACTORY).parse(in);
+    List<?> column = null;
+    for(int i = 0; i < bundle.metaLength(); i++) {
+      if(TypeUtil.NUMBER_VECTOR_FIELD.isAssignableFromType(bundle.meta(i))) {
+        column = bundle.getColumn(i);
+        break;
+      }
+    }
+    if(column == null) {
+      re.appendKeyValue("error", "No vectors found in request.");
+      return;
+    }
+    final int size = column.size();
+    double[] scores = new double[size];
+    final long start = System.nanoTime();
+    for(int i = 0; i < size; i++) {
+      scores[i] = model.score((NumberVector) column.get(i));
+    }
+    final long elapsed = System.nanoTime() - start;
+    batches.incrementAndGet();
+    objects.addAndGet(size);
+    nanos.addAndGet(elapsed);
+
+    re.appendKeyArray("scores");
+    for(int i = 0; i < size; i++) {
+      re.append(scores[i]);
+    }
+    re.closeArray();
+    re.appendKeyHash("batch");
+    re.appendKeyValue("size", size);
+    re.appendKeyValue("time", elapsed * 1e-6);
+    re.closeHash();
+    if(LOG.isStatistics()) {
+      final String key = this.getClass().getName();
+      LOG.statistics(new LongStatistic(key + ".batch.size", size));
+      LOG.statistics(new DoubleStatistic(key + ".batch.time", elapsed * 1e-6));
+    }
+  }
+
+  /**
+   * Serialize the cumulative statistics.
+   * 
+   * @param re Buffer to serialize to
+   */
+  protected void statisticsToJSON(JSONBuffer re) {
+    final long b = batches.get(), o = objects.get(), t = nanos.get();
+    re.appendKeyHash("total");
+    re.appendKeyValue("batches", b);
+    re.appendKeyValue("objects", o);
+    re.appendKeyValue("time", t * 1e-6);
+    re.appendKeyValue("mean", o > 0 ? t * 1e-6 / o : 0.);
+    re.closeHash();
+  }
+}
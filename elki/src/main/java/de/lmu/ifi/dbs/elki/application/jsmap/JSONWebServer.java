@@ -38,6 +38,7 @@ import de.lmu.ifi.dbs.elki.algorithm.outlier.spatial.neighborhood.NeighborSetPre
 import de.lmu.ifi.dbs.elki.data.NumberVector;
 import de.lmu.ifi.dbs.elki.data.spatial.Polygon;
 import de.lmu.ifi.dbs.elki.data.spatial.PolygonsObject;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
 import de.lmu.ifi.dbs.elki.database.Database;
 import de.lmu.ifi.dbs.elki.database.ids.DBID;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
@@ -64,6 +65,7 @@ import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
  * @author Erich Schubert
  * 
  * @apiviz.uses JSONBuffer
+ * @apiviz.composedOf JSONScoringHandler
  */
 public class JSONWebServer implements HttpHandler {
   /**
@@ -76,6 +78,11 @@ public class JSONWebServer implements HttpHandler {
    */
   public static final String PATH_JSON = "/json/";
 
+  /**
+   * The path new objects are scored at.
+   */
+  public static final String PATH_SCORE = "/score/";
+
   /**
    * Server instance.
    */
@@ -98,6 +105,18 @@ public class JSONWebServer implements HttpHandler {
    * @param result Result to serve
    */
   public JSONWebServer(int port, HierarchicalResult result) {
+    this(port, result, null);
+  }
+
+  /**
+   * Constructor.
+   * 
+   * @param port Port to listen on
+   * @param result Result to serve
+   * @param model Scoring model to train on the database and to serve, may be
+   *        {@code null}
+   */
+  public JSONWebServer(int port, HierarchicalResult result, OutlierScoringModel model) {
     super();
     this.result = result;
     assert (result != null) : "MapWebServer created with null result.";
@@ -108,15 +127,29 @@ public class JSONWebServer implements HttpHandler {
       server = HttpServer.create(addr, 0);
 
       server.createContext(PATH_JSON, this);
+      if (model != null) {
+        Relation<NumberVector> relation = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+        model.train(relation);
+        server.createContext(PATH_SCORE, new JSONScoringHandler(model));
+      }
       server.setExecutor(Executors.newCachedThreadPool());
       server.start();
 
-      LOG.verbose("Webserver started on port " + port + ".");
+      LOG.verbose("Webserver started on port " + getPort() + ".");
     } catch (IOException e) {
       throw new AbortException("Could not start mini web server.", e);
     }
   }
 
+  /**
+   * Get the port the server is listening on.
+   * 
+   * @return Port
+   */
+  public int getPort() {
+    return server.getAddress().getPort();
+  }
+
   /**
    * Stop the web server.
    */
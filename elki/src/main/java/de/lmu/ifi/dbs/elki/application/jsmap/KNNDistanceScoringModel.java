@@ -0,0 +1,130 @@
+package de.lmu.ifi.dbs.elki.application.jsmap;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.lmu.ifi.dbs.elki.algorithm.DistanceBasedAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.distance.KNNOutlier;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.database.QueryUtil;
+import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
+
+/**
+ * Score new objects by the distance to their k nearest neighbor in the
+ * reference data, as in {@link KNNOutlier}.
+ * 
+ * As new objects are not part of the reference data, the query point is not
+ * among its own neighbors, and the k nearest neighbors of the reference data
+ * are used as is.
+ * 
+ * The kNN query is obtained from the database, so a kNN index on the relation
+ * (if present) is used for scoring.
+ * 
+ * @author Erich Schubert
+ * 
+ * @apiviz.uses KNNQuery
+ */
+public class KNNDistanceScoringModel implements OutlierScoringModel {
+  /**
+   * Number of neighbors.
+   */
+  private int k;
+
+  /**
+   * Distance function.
+   */
+  private DistanceFunction<? super NumberVector> distanceFunction;
+
+  /**
+   * kNN query on the reference data.
+   */
+  private KNNQuery<NumberVector> knnq;
+
+  /**
+   * Constructor.
+   * 
+   * @param k Number of neighbors
+   * @param distanceFunction Distance function
+   */
+  public KNNDistanceScoringModel(int k, DistanceFunction<? super NumberVector> distanceFunction) {
+    super();
+    this.k = k;
+    this.distanceFunction = distanceFunction;
+  }
+
+  @Override
+  public void train(Relation<NumberVector> relation) {
+    knnq = QueryUtil.getKNNQuery(relation, distanceFunction, k);
+  }
+
+  @Override
+  public double score(NumberVector vec) {
+    return knnq.getKNNForObject(vec, k).getKNNDistance();
+  }
+
+  /**
+   * Parameterization class.
+   * 
+   * @author Erich Schubert
+   * 
+   * @apiviz.exclude
+   */
+  public static class Parameterizer extends AbstractParameterizer {
+    /**
+     * Number of neighbors.
+     */
+    protected int k;
+
+    /**
+     * Distance function.
+     */
+    protected DistanceFunction<? super NumberVector> distanceFunction;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      super.makeOptions(config);
+      ObjectParameter<DistanceFunction<? super NumberVector>> distP = new ObjectParameter<>(DistanceBasedAlgorithm.DISTANCE_FUNCTION_ID, DistanceFunction.class, EuclideanDistanceFunction.class);
+      if(config.grab(distP)) {
+        distanceFunction = distP.instantiateClass(config);
+      }
+      IntParameter kP = new IntParameter(KNNOutlier.Parameterizer.K_ID)//
+      .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(kP)) {
+        k = kP.getValue();
+      }
+    }
+
+    @Override
+    protected KNNDistanceScoringModel makeInstance() {
+      return new KNNDistanceScoringModel(k, distanceFunction);
+    }
+  }
+}
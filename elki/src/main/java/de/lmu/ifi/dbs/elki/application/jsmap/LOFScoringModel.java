@@ -0,0 +1,218 @@
+package de.lmu.ifi.dbs.elki.application.jsmap;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.lmu.ifi.dbs.elki.algorithm.DistanceBasedAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.LOF;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.database.QueryUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.math.MathUtil;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
+
+/**
+ * Score new objects by their {@link LOF} with respect to a fixed reference
+ * set.
+ * 
+ * The k-distances and local reachability densities of the reference objects
+ * are computed once during training, exactly as in {@link LOF}, i.e. using
+ * the k nearest neighbors excluding the object itself. A new object is then
+ * scored using its k nearest neighbors in the reference data only; it does not
+ * modify the densities of the reference objects.
+ * 
+ * @author Erich Schubert
+ * 
+ * @apiviz.uses KNNQuery
+ */
+public class LOFScoringModel implements OutlierScoringModel {
+  /**
+   * Number of neighbors.
+   */
+  private int k;
+
+  /**
+   * Distance function.
+   */
+  private DistanceFunction<? super NumberVector> distanceFunction;
+
+  /**
+   * kNN query on the reference data.
+   */
+  private KNNQuery<NumberVector> knnq;
+
+  /**
+   * k-distances of the reference objects.
+   */
+  private WritableDoubleDataStore kdists;
+
+  /**
+   * Local reachability densities of the reference objects.
+   */
+  private WritableDoubleDataStore lrds;
+
+  /**
+   * Constructor.
+   * 
+   * @param k Number of neighbors
+   * @param distanceFunction Distance function
+   */
+  public LOFScoringModel(int k, DistanceFunction<? super NumberVector> distanceFunction) {
+    super();
+    this.k = k;
+    this.distanceFunction = distanceFunction;
+  }
+
+  @Override
+  public void train(Relation<NumberVector> relation) {
+    // As in LOF, the query point itself is included in the kNN query.
+    final int kplus = k + 1;
+    knnq = QueryUtil.getKNNQuery(relation, distanceFunction, kplus);
+    DBIDs ids = relation.getDBIDs();
+    kdists = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_STATIC);
+    lrds = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_STATIC);
+    for(DBIDIter iter = ids.iter(); iter.valid(); iter.advance()) {
+      kdists.putDouble(iter, knnq.getKNNForDBID(iter, kplus).getKNNDistance());
+    }
+    for(DBIDIter iter = ids.iter(); iter.valid(); iter.advance()) {
+      final KNNList neighbors = knnq.getKNNForDBID(iter, kplus);
+      double sum = 0.0;
+      int count = 0;
+      for(DoubleDBIDListIter neighbor = neighbors.iter(); neighbor.valid(); neighbor.advance()) {
+        if(DBIDUtil.equal(neighbor, iter)) {
+          continue;
+        }
+        sum += MathUtil.max(neighbor.doubleValue(), kdists.doubleValue(neighbor));
+        count++;
+      }
+      // Avoid division by 0
+      lrds.putDouble(iter, (sum > 0) ? (count / sum) : Double.POSITIVE_INFINITY);
+    }
+  }
+
+  @Override
+  public double score(NumberVector vec) {
+    return score(knnq.getKNNForObject(vec, k), null);
+  }
+
+  /**
+   * Score a reference object, as {@link LOF} would.
+   * 
+   * @param id Reference object
+   * @return LOF score
+   */
+  double score(DBIDRef id) {
+    return score(knnq.getKNNForDBID(id, k + 1), id);
+  }
+
+  /**
+   * Compute the LOF score from the neighbors.
+   * 
+   * @param neighbors Neighbors
+   * @param self Object to skip in the neighbors, may be {@code null}
+   * @return LOF score
+   */
+  private double score(KNNList neighbors, DBIDRef self) {
+    double sum = 0.0;
+    int count = 0;
+    for(DoubleDBIDListIter neighbor = neighbors.iter(); neighbor.valid(); neighbor.advance()) {
+      if(self != null && DBIDUtil.equal(neighbor, self)) {
+        continue;
+      }
+      sum += MathUtil.max(neighbor.doubleValue(), kdists.doubleValue(neighbor));
+      count++;
+    }
+    if(!(sum > 0)) {
+      return 1.0; // Infinite density, as in LOF.
+    }
+    final double lrdp = count / sum;
+    double lrdsum = 0.;
+    count = 0;
+    for(DoubleDBIDListIter neighbor = neighbors.iter(); neighbor.valid(); neighbor.advance()) {
+      if(self != null && DBIDUtil.equal(neighbor, self)) {
+        continue;
+      }
+      final double val = lrds.doubleValue(neighbor);
+      lrdsum += val;
+      count++;
+      if(Double.isInfinite(val)) {
+        break;
+      }
+    }
+    return lrdsum / (lrdp * count);
+  }
+
+  /**
+   * Parameterization class.
+   * 
+   * @author Erich Schubert
+   * 
+   * @apiviz.exclude
+   */
+  public static class Parameterizer extends AbstractParameterizer {
+    /**
+     * Number of neighbors.
+     */
+    protected int k;
+
+    /**
+     * Distance function.
+     */
+    protected DistanceFunction<? super NumberVector> distanceFunction;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      super.makeOptions(config);
+      ObjectParameter<DistanceFunction<? super NumberVector>> distP = new ObjectParameter<>(DistanceBasedAlgorithm.DISTANCE_FUNCTION_ID, DistanceFunction.class, EuclideanDistanceFunction.class);
+      if(config.grab(distP)) {
+        distanceFunction = distP.instantiateClass(config);
+      }
+      IntParameter kP = new IntParameter(LOF.Parameterizer.K_ID)//
+      .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(kP)) {
+        k = kP.getValue();
+      }
+    }
+
+    @Override
+    protected LOFScoringModel makeInstance() {
+      return new LOFScoringModel(k, distanceFunction);
+    }
+  }
+}
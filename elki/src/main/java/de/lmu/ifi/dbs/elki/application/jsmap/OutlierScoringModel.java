@@ -0,0 +1,53 @@
+package de.lmu.ifi.dbs.elki.application.jsmap;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+
+/**
+ * Outlier model that is trained once on the served database, and then used to
+ * score new objects that are not part of the database.
+ * 
+ * Implementations must allow concurrent calls to {@link #score} after
+ * training, as the web server handles requests in multiple threads.
+ * 
+ * @author Erich Schubert
+ */
+public interface OutlierScoringModel {
+  /**
+   * Train the model on the reference data.
+   * 
+   * @param relation Reference data relation
+   */
+  void train(Relation<NumberVector> relation);
+
+  /**
+   * Score a new object against the trained model.
+   * 
+   * @param vec Object to score
+   * @return Outlier score
+   */
+  double score(NumberVector vec);
+}
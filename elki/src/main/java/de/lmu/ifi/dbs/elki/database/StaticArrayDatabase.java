@@ -25,10 +25,14 @@ package de.lmu.ifi.dbs.elki.database;
 
 import java.util.BitSet;
 import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
 
 import de.lmu.ifi.dbs.elki.data.type.SimpleTypeInformation;
+import de.lmu.ifi.dbs.elki.database.datastore.memory.ArrayListStore;
 import de.lmu.ifi.dbs.elki.database.ids.ArrayStaticDBIDs;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRange;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
 import de.lmu.ifi.dbs.elki.database.relation.DBIDView;
@@ -52,6 +56,10 @@ import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
  * dynamic insert, delete and update operations. However, array access is
  * expected to be faster and use less memory.
  * 
+ * When the DBIDs form a range, the columns of the loaded bundle are adopted
+ * as storage without copying them. Indexes are constructed one at a time, in
+ * the configured order, and may parallelize their construction internally.
+ * 
  * @author Arthur Zimek
  * @author Erich Schubert
  * 
@@ -141,21 +149,27 @@ public class StaticArrayDatabase extends AbstractDatabase {
       getHierarchy().add(this, idrep);
 
       // insert into db - note: DBIDs should have been prepared before this!
-      Relation<?>[] targets = alignColumns(objpackages);
-
-      DBIDIter newid = ids.iter();
-      for(int j = 0; j < numObjects; j++, newid.advance()) {
-        // insert object
-        for(int i = 0; i < targets.length; i++) {
-          @SuppressWarnings("unchecked")
-          final Relation<Object> relation = (Relation<Object>) targets[i];
-          relation.set(newid, objpackages.data(j, i));
+      // Columns adopted as storage do not need to be copied.
+      BitSet adopted = new BitSet();
+      Relation<?>[] targets = alignColumns(objpackages, adopted);
+      if(adopted.cardinality() < targets.length) {
+        DBIDIter newid = ids.iter();
+        for(int j = 0; j < numObjects; j++, newid.advance()) {
+          // insert object
+          for(int i = adopted.nextClearBit(0); i < targets.length; i = adopted.nextClearBit(i + 1)) {
+            @SuppressWarnings("unchecked")
+            final Relation<Object> relation = (Relation<Object>) targets[i];
+            relation.set(newid, objpackages.data(j, i));
+          }
         }
       }
 
+      // Instantiate indexes where appropriate.
+      // Indexes are built one at a time, in the configured order: an index may
+      // use the indexes added before (e.g. a kNN preprocessor using an R-tree),
+      // and the index constructions parallelize internally.
       for(Relation<?> relation : relations) {
         SimpleTypeInformation<?> meta = relation.getDataTypeInformation();
-        // Try to add indexes where appropriate
         for(IndexFactory<?, ?> factory : indexFactories) {
           if(factory.getInputTypeRestriction().isAssignableFromType(meta)) {
             @SuppressWarnings("unchecked")
@@ -196,6 +210,21 @@ public class StaticArrayDatabase extends AbstractDatabase {
    * @return Column mapping
    */
   protected Relation<?>[] alignColumns(ObjectBundle pack) {
+    return alignColumns(pack, null);
+  }
+
+  /**
+   * Find a mapping from package columns to database columns, eventually adding
+   * new database columns when needed.
+   * 
+   * If the DBIDs are a range, new database columns directly use the bundle
+   * columns for storage; these are then marked in {@code adopted}.
+   * 
+   * @param pack Package to process
+   * @param adopted Output: columns adopted as storage, may be {@code null}
+   * @return Column mapping
+   */
+  protected Relation<?>[] alignColumns(ObjectBundle pack, BitSet adopted) {
     // align representations.
     Relation<?>[] targets = new Relation<?>[pack.metaLength()];
     BitSet used = new BitSet(relations.size());
@@ -212,7 +241,14 @@ public class StaticArrayDatabase extends AbstractDatabase {
         }
       }
       if(targets[i] == null) {
-        targets[i] = addNewRelation(meta);
+        List<?> column = (adopted != null && pack instanceof MultipleObjectsBundle) ? ((MultipleObjectsBundle) pack).getColumn(i) : null;
+        if(ids instanceof DBIDRange && column instanceof RandomAccess && column.size() == ids.size()) {
+          targets[i] = addNewRelation(meta, column, (DBIDRange) ids);
+          adopted.set(i);
+        }
+        else {
+          targets[i] = addNewRelation(meta);
+        }
         used.set(relations.size() - 1);
       }
     }
@@ -234,6 +270,26 @@ public class StaticArrayDatabase extends AbstractDatabase {
     return relation;
   }
 
+  /**
+   * Add a new representation for the given meta, using an existing column as
+   * storage.
+   * 
+   * @param meta meta data
+   * @param column Data column
+   * @param range DBID range
+   * @return new representation
+   */
+  private Relation<?> addNewRelation(SimpleTypeInformation<?> meta, List<?> column, DBIDRange range) {
+    @SuppressWarnings("unchecked")
+    SimpleTypeInformation<Object> ometa = (SimpleTypeInformation<Object>) meta;
+    @SuppressWarnings("unchecked")
+    List<Object> ocolumn = (List<Object>) column;
+    Relation<?> relation = new MaterializedRelation<>(this, ometa, ids, null, new ArrayListStore<>(ocolumn, range));
+    relations.add(relation);
+    getHierarchy().add(this, relation);
+    return relation;
+  }
+
   @Override
   protected Logging getLogger() {
     return LOG;
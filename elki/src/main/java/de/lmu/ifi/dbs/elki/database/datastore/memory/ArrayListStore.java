@@ -0,0 +1,98 @@
+package de.lmu.ifi.dbs.elki.database.datastore.memory;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.util.List;
+
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreIDMap;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+
+/**
+ * A class to answer representation queries using an existing list, without
+ * copying the data. This is used by the database to adopt the columns of a
+ * bundle when loading data.
+ * 
+ * The list should support random access.
+ * 
+ * @author Erich Schubert
+ * 
+ * @apiviz.composedOf de.lmu.ifi.dbs.elki.database.datastore.DataStoreIDMap
+ * 
+ * @param <T> Representation object type
+ */
+public class ArrayListStore<T> implements WritableDataStore<T> {
+  /**
+   * Data list.
+   */
+  private List<T> data;
+
+  /**
+   * DBID to index map.
+   */
+  private DataStoreIDMap idmap;
+
+  /**
+   * Constructor.
+   * 
+   * @param data Data list
+   * @param idmap DBID to offset mapping
+   */
+  public ArrayListStore(List<T> data, DataStoreIDMap idmap) {
+    super();
+    this.data = data;
+    this.idmap = idmap;
+  }
+
+  @Override
+  public T get(DBIDRef id) {
+    return data.get(idmap.mapDBIDToOffset(id));
+  }
+
+  @Override
+  public T put(DBIDRef id, T value) {
+    return data.set(idmap.mapDBIDToOffset(id), value);
+  }
+
+  @Override
+  public void destroy() {
+    data = null;
+    idmap = null;
+  }
+
+  @Override
+  public void delete(DBIDRef id) {
+    throw new UnsupportedOperationException("Can't delete from a static array storage.");
+  }
+
+  @Override
+  public String getLongName() {
+    return "raw";
+  }
+
+  @Override
+  public String getShortName() {
+    return "raw";
+  }
+}
@@ -25,14 +25,18 @@ package de.lmu.ifi.dbs.elki.datasource;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.List;
 
+import de.lmu.ifi.dbs.elki.datasource.bundle.BlockBundleReader;
 import de.lmu.ifi.dbs.elki.datasource.bundle.BundleReader;
+import de.lmu.ifi.dbs.elki.datasource.bundle.BundleStreamSource;
 import de.lmu.ifi.dbs.elki.datasource.bundle.MultipleObjectsBundle;
 import de.lmu.ifi.dbs.elki.datasource.filter.ObjectFilter;
 import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
+import de.lmu.ifi.dbs.elki.utilities.io.ByteArrayUtil;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.FileParameter;
@@ -44,6 +48,11 @@ import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.FileParameter;
  * that parsing should be simpler, albeit the focus was on using it in on-disk
  * indexes.
  * 
+ * Both the stream format of {@link de.lmu.ifi.dbs.elki.datasource.bundle.BundleWriter}
+ * and the block format of
+ * {@link de.lmu.ifi.dbs.elki.datasource.bundle.BlockBundleWriter} are
+ * supported, and detected automatically.
+ * 
  * @author Erich Schubert
  * 
  * @apiviz.composedOf BundleStreamSource
@@ -75,7 +84,13 @@ public class BundleDatabaseConnection extends AbstractDatabaseConnection {
     try {
       FileInputStream fis = new FileInputStream(infile);
       FileChannel channel = fis.getChannel();
-      MultipleObjectsBundle bundle = invokeStreamFilters(new BundleReader(channel)).asMultipleObjectsBundle();
+      // Detect the file format by its magic number.
+      ByteBuffer magic = ByteBuffer.allocate(ByteArrayUtil.SIZE_INT);
+      channel.read(magic, 0);
+      magic.flip();
+      final boolean blocks = magic.remaining() == ByteArrayUtil.SIZE_INT && magic.getInt() == BlockBundleReader.MAGIC;
+      BundleStreamSource source = blocks ? new BlockBundleReader(channel) : new BundleReader(channel);
+      MultipleObjectsBundle bundle = invokeStreamFilters(source).asMultipleObjectsBundle();
       channel.close();
       fis.close();
       return bundle;
@@ -0,0 +1,399 @@
+package de.lmu.ifi.dbs.elki.datasource.bundle;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Arrays;
+import java.util.List;
+
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.type.SimpleTypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeInformationSerializer;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.data.type.VectorFieldTypeInformation;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayModifiableDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBID;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDVar;
+import de.lmu.ifi.dbs.elki.parallel.ParallelBlocks;
+import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
+import de.lmu.ifi.dbs.elki.utilities.io.ByteArrayUtil;
+import de.lmu.ifi.dbs.elki.utilities.io.ByteBufferSerializer;
+
+/**
+ * Read a block bundle file, as written by {@link BlockBundleWriter}.
+ * 
+ * Blocks are located using the block index, and memory-mapped individually, so
+ * files larger than a single mapping are supported, and single blocks can be
+ * read at random. When reading the complete file via
+ * {@link #asMultipleObjectsBundle()}, blocks are decoded in parallel, and the
+ * resulting columns can be adopted by the database without further copying.
+ * The reader can also be used as a (sequential) bundle stream.
+ * 
+ * @author Erich Schubert
+ * 
+ * @apiviz.uses MappedByteBuffer - - «reads»
+ * @apiviz.uses FileChannel - - «reads»
+ */
+public class BlockBundleReader implements BundleStreamSource {
+  /**
+   * Magic number, shared with {@link BlockBundleWriter}.
+   */
+  public static final int MAGIC = BlockBundleWriter.MAGIC;
+
+  /**
+   * Input channel.
+   */
+  FileChannel input;
+
+  /**
+   * Bundle metadata (without DBIDs).
+   */
+  BundleMeta meta = null;
+
+  /**
+   * Column types, including DBIDs.
+   */
+  SimpleTypeInformation<?>[] types;
+
+  /**
+   * Column encodings.
+   */
+  byte[] encodings;
+
+  /**
+   * Serializers to use.
+   */
+  ByteBufferSerializer<?>[] sers;
+
+  /**
+   * Dimensionality of numerical columns.
+   */
+  int[] dims;
+
+  /**
+   * Whether or not we have DBIDs.
+   */
+  boolean hasids = false;
+
+  /**
+   * Number of objects, and objects per block.
+   */
+  int size, blocksize;
+
+  /**
+   * Block index.
+   */
+  long[] offsets;
+
+  /**
+   * Streaming: current block, position in block.
+   */
+  int curblock = -1, curpos = 0;
+
+  /**
+   * Streaming: data of the current block.
+   */
+  List<?>[] current;
+
+  /**
+   * Constructor.
+   * 
+   * @param input Input channel
+   */
+  public BlockBundleReader(FileChannel input) {
+    super();
+    this.input = input;
+  }
+
+  /**
+   * Read the header and block index.
+   */
+  void open() {
+    try {
+      final long fsize = input.size();
+      if(fsize < BlockBundleWriter.TRAILER_SIZE) {
+        throw new AbortException("File is too short for a block bundle.");
+      }
+      ByteBuffer trailer = map(fsize - BlockBundleWriter.TRAILER_SIZE, BlockBundleWriter.TRAILER_SIZE);
+      final long indexpos = trailer.getLong();
+      final int headerlen = trailer.getInt();
+      if(trailer.getInt() != MAGIC) {
+        throw new AbortException("File does not end with expected magic.");
+      }
+      ByteBuffer header = map(0, headerlen);
+      if(header.getInt() != MAGIC) {
+        throw new AbortException("File does not start with expected magic.");
+      }
+      final int ncol = header.getInt();
+      types = new SimpleTypeInformation<?>[ncol];
+      encodings = new byte[ncol];
+      sers = new ByteBufferSerializer<?>[ncol];
+      dims = new int[ncol];
+      meta = new BundleMeta(ncol);
+      for(int i = 0; i < ncol; i++) {
+        types[i] = (SimpleTypeInformation<?>) TypeInformationSerializer.STATIC.fromByteBuffer(header);
+        encodings[i] = header.get();
+        sers[i] = types[i].getSerializer();
+        dims[i] = BlockBundleWriter.getNumericDimensionality(types[i]);
+        if(i == 0 && TypeUtil.DBID.isAssignableFromType(types[i])) {
+          hasids = true;
+        }
+        else {
+          meta.add(types[i]);
+        }
+      }
+      size = header.getInt();
+      blocksize = header.getInt();
+      final int nindex = numBlocks() * ncol + 1;
+      ByteBuffer index = map(indexpos, nindex * ByteArrayUtil.SIZE_LONG);
+      offsets = new long[nindex];
+      for(int i = 0; i < nindex; i++) {
+        offsets[i] = index.getLong();
+      }
+    }
+    catch(UnsupportedOperationException e) {
+      throw new AbortException("Deserialization failed: " + e.getMessage(), e);
+    }
+    catch(IOException e) {
+      throw new AbortException("IO error", e);
+    }
+  }
+
+  /**
+   * Map a region of the input file.
+   * 
+   * @param pos Start position
+   * @param len Length
+   * @return Mapped buffer
+   * @throws IOException on IO errors
+   */
+  private MappedByteBuffer map(long pos, long len) throws IOException {
+    return input.map(MapMode.READ_ONLY, pos, len);
+  }
+
+  @Override
+  public BundleMeta getMeta() {
+    if(meta == null) {
+      open();
+    }
+    return meta;
+  }
+
+  /**
+   * Number of objects in the file.
+   * 
+   * @return Size
+   */
+  public int size() {
+    getMeta();
+    return size;
+  }
+
+  /**
+   * Number of blocks in the file.
+   * 
+   * @return Number of blocks
+   */
+  public int numBlocks() {
+    return (size + blocksize - 1) / blocksize;
+  }
+
+  /**
+   * Read a single column of a block. Numerical vector fields are stored in
+   * column blocks, and are decoded directly from the mapped file region.
+   * 
+   * @param block Block number
+   * @param col Column number (DBIDs, if present, are column 0)
+   * @return Block contents
+   */
+  public List<?> readBlock(int block, int col) {
+    getMeta();
+    Object[] data = new Object[Math.min(blocksize, size - block * blocksize)];
+    readBlock(block, col, data, 0);
+    return Arrays.asList(data);
+  }
+
+  /**
+   * Read a single column of a block into an array.
+   * 
+   * @param block Block number
+   * @param col Column number (DBIDs, if present, are column 0)
+   * @param data Output array
+   * @param off Offset in the output array
+   */
+  private void readBlock(int block, int col, Object[] data, int off) {
+    final int k = block * types.length + col;
+    final int count = Math.min(blocksize, size - block * blocksize);
+    try {
+      MappedByteBuffer buffer = map(offsets[k], offsets[k + 1] - offsets[k]);
+      decodeBlock(buffer, count, col, data, off);
+      ByteArrayUtil.unmapByteBuffer(buffer);
+    }
+    catch(IOException e) {
+      throw new AbortException("IO error", e);
+    }
+  }
+
+  /**
+   * Decode a column block.
+   * 
+   * @param buffer Buffer
+   * @param count Number of objects
+   * @param col Column number
+   * @param data Output array for the decoded objects
+   * @param off Offset in the output array
+   * @throws IOException on deserialization errors
+   */
+  private void decodeBlock(ByteBuffer buffer, int count, int col, Object[] data, int off) throws IOException {
+    switch(encodings[col]){
+    case BlockBundleWriter.ENCODING_DOUBLE:
+    case BlockBundleWriter.ENCODING_DELTA: {
+      @SuppressWarnings("unchecked")
+      final NumberVector.Factory<?> factory = (NumberVector.Factory<?>) ((VectorFieldTypeInformation<?>) types[col]).getFactory();
+      final int dim = dims[col];
+      final boolean delta = encodings[col] == BlockBundleWriter.ENCODING_DELTA;
+      final long[] prev = delta ? new long[dim] : null;
+      double[] buf = new double[dim];
+      for(int j = 0; j < count; j++) {
+        for(int d = 0; d < dim; d++) {
+          if(delta) {
+            prev[d] ^= readXOR(buffer);
+            buf[d] = Double.longBitsToDouble(prev[d]);
+          }
+          else {
+            buf[d] = buffer.getDouble();
+          }
+        }
+        data[off + j] = factory.newNumberVector(buf);
+      }
+      break;
+    }
+    case BlockBundleWriter.ENCODING_SERIALIZED:
+      for(int j = 0; j < count; j++) {
+        data[off + j] = sers[col].fromByteBuffer(buffer);
+      }
+      break;
+    default:
+      throw new AbortException("Unknown column encoding: " + encodings[col]);
+    }
+  }
+
+  /**
+   * Read an XOR delta, see {@link BlockBundleWriter#writeXOR}.
+   * 
+   * @param buffer Input buffer
+   * @return XOR delta
+   */
+  static long readXOR(ByteBuffer buffer) {
+    final int h = ByteArrayUtil.readUnsignedVarint(buffer);
+    if(h == 0) {
+      return 0L;
+    }
+    final int lz = (h - 1) & 0x3F, len = ((h - 1) >>> 6) + 1;
+    long sig = 0L;
+    for(int s = (len + 7) >>> 3; s > 0; s--) {
+      sig = (sig << 8) | (buffer.get() & 0xFF);
+    }
+    return sig << (64 - lz - len);
+  }
+
+  @Override
+  public Event nextEvent() {
+    // Send initial meta
+    if(meta == null) {
+      open();
+      return Event.META_CHANGED;
+    }
+    if(current == null || ++curpos >= current[0].size()) {
+      if(++curblock >= numBlocks()) {
+        current = null;
+        return Event.END_OF_STREAM;
+      }
+      current = new List<?>[types.length];
+      for(int i = 0; i < types.length; i++) {
+        current[i] = readBlock(curblock, i);
+      }
+      curpos = 0;
+    }
+    return Event.NEXT_OBJECT;
+  }
+
+  @Override
+  public Object data(int rnum) {
+    return current[!hasids ? rnum : (rnum + 1)].get(curpos);
+  }
+
+  @Override
+  public boolean hasDBIDs() {
+    return hasids;
+  }
+
+  @Override
+  public boolean assignDBID(DBIDVar var) {
+    if(!hasids) {
+      return false;
+    }
+    var.set((DBID) current[0].get(curpos));
+    return true;
+  }
+
+  /**
+   * Read the complete file, decoding the blocks in parallel directly into the
+   * columns of the bundle.
+   */
+  @Override
+  public MultipleObjectsBundle asMultipleObjectsBundle() {
+    getMeta();
+    final int ncol = types.length, nblocks = numBlocks();
+    final Object[][] cols = new Object[ncol][size];
+    ParallelBlocks.run(nblocks, nblocks, new ParallelBlocks.Task<Void>() {
+      @Override
+      public Void run(int block, int begin, int end) {
+        for(int i = 0; i < ncol; i++) {
+          readBlock(block, i, cols[i], block * blocksize);
+        }
+        return null;
+      }
+    });
+
+    // The columns are random access, and can be adopted by the database.
+    MultipleObjectsBundle bundle = new MultipleObjectsBundle();
+    for(int i = hasids ? 1 : 0; i < ncol; i++) {
+      bundle.appendColumn(types[i], Arrays.asList(cols[i]));
+    }
+    if(hasids) {
+      ArrayModifiableDBIDs ids = DBIDUtil.newArray(size);
+      for(Object id : cols[0]) {
+        ids.add((DBID) id);
+      }
+      bundle.setDBIDs(ids);
+    }
+    return bundle;
+  }
+}
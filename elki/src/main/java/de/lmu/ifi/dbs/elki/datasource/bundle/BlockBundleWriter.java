@@ -0,0 +1,340 @@
+package de.lmu.ifi.dbs.elki.datasource.bundle;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.type.SimpleTypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeInformationSerializer;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.data.type.VectorFieldTypeInformation;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBID;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
+import de.lmu.ifi.dbs.elki.utilities.io.ByteArrayUtil;
+import de.lmu.ifi.dbs.elki.utilities.io.ByteBufferSerializer;
+
+/**
+ * Write an object bundle to a file channel, in a column-oriented block format
+ * with a block index for random access.
+ * 
+ * The data is cut into blocks of a fixed number of objects. Within each block,
+ * every column is stored separately, so that blocks can be located via the
+ * index, mapped and decoded independently (and thus in parallel) by the
+ * {@link BlockBundleReader}. Numerical vector fields are stored as raw
+ * doubles, or optionally using XOR-delta compression against the previous
+ * vector of the block. All other columns use their type serializer.
+ * 
+ * File layout: magic, header (types and encodings, number of objects, block
+ * size), column blocks, block index (offsets), and a trailer with the index
+ * position, header length and magic.
+ * 
+ * @author Erich Schubert
+ * 
+ * @apiviz.uses MultipleObjectsBundle - - «reads»
+ * @apiviz.uses FileChannel - - «writes»
+ */
+public class BlockBundleWriter {
+  /**
+   * Magic number, distinct from the {@link BundleWriter} stream format.
+   */
+  public static final int MAGIC = 0xa8123b13;
+
+  /**
+   * Default number of objects per block.
+   */
+  public static final int DEFAULT_BLOCKSIZE = 1 << 14;
+
+  /**
+   * Size of the file trailer.
+   */
+  static final int TRAILER_SIZE = ByteArrayUtil.SIZE_LONG + 2 * ByteArrayUtil.SIZE_INT;
+
+  /**
+   * Column encoding: use the type serializer.
+   */
+  static final byte ENCODING_SERIALIZED = 0;
+
+  /**
+   * Column encoding: raw double values.
+   */
+  static final byte ENCODING_DOUBLE = 1;
+
+  /**
+   * Column encoding: XOR-delta compressed double values.
+   */
+  static final byte ENCODING_DELTA = 2;
+
+  /**
+   * Initial buffer size.
+   */
+  private static final int INITIAL_BUFFER = 1 << 16;
+
+  /**
+   * Objects per block.
+   */
+  private int blocksize;
+
+  /**
+   * Use delta compression for numerical columns.
+   */
+  private boolean compress;
+
+  /**
+   * Constructor.
+   * 
+   * @param blocksize Number of objects per block
+   * @param compress Use delta compression for numerical columns
+   */
+  public BlockBundleWriter(int blocksize, boolean compress) {
+    super();
+    this.blocksize = blocksize;
+    this.compress = compress;
+  }
+
+  /**
+   * Constructor with default block size and no compression.
+   */
+  public BlockBundleWriter() {
+    this(DEFAULT_BLOCKSIZE, false);
+  }
+
+  /**
+   * Write a bundle to a file output channel.
+   * 
+   * @param bundle Data bundle
+   * @param output Output channel
+   * @throws IOException on IO errors
+   */
+  public void writeBundle(MultipleObjectsBundle bundle, FileChannel output) throws IOException {
+    final ArrayDBIDs ids = bundle.getDBIDs();
+    final int off = (ids != null) ? 1 : 0;
+    final int ncol = bundle.metaLength() + off;
+    final int size = bundle.dataLength();
+
+    // Collect columns, treating DBIDs as extra column as in BundleWriter.
+    List<?>[] cols = new List<?>[ncol];
+    SimpleTypeInformation<?>[] types = new SimpleTypeInformation<?>[ncol];
+    if(ids != null) {
+      List<DBID> idcol = new ArrayList<>(ids.size());
+      for(DBIDIter iter = ids.iter(); iter.valid(); iter.advance()) {
+        idcol.add(DBIDUtil.deref(iter));
+      }
+      cols[0] = idcol;
+      types[0] = TypeUtil.DBID;
+    }
+    for(int i = off; i < ncol; i++) {
+      cols[i] = bundle.getColumn(i - off);
+      types[i] = bundle.meta(i - off);
+    }
+
+    // Choose encodings.
+    byte[] encodings = new byte[ncol];
+    ByteBufferSerializer<?>[] sers = new ByteBufferSerializer<?>[ncol];
+    int[] dims = new int[ncol];
+    for(int i = 0; i < ncol; i++) {
+      dims[i] = getNumericDimensionality(types[i]);
+      if(dims[i] > 0) {
+        encodings[i] = compress ? ENCODING_DELTA : ENCODING_DOUBLE;
+        continue;
+      }
+      encodings[i] = ENCODING_SERIALIZED;
+      sers[i] = types[i].getSerializer();
+      if(sers[i] == null) {
+        throw new AbortException("Cannot serialize - no serializer found for type: " + types[i].toString());
+      }
+    }
+
+    // Header
+    final long start = output.position();
+    int hsize = 5 * ByteArrayUtil.SIZE_INT + ncol;
+    for(int i = 0; i < ncol; i++) {
+      hsize += TypeInformationSerializer.STATIC.getByteSize(types[i]);
+    }
+    ByteBuffer buffer = ByteBuffer.allocate(Math.max(INITIAL_BUFFER, hsize));
+    buffer.putInt(MAGIC);
+    buffer.putInt(ncol);
+    for(int i = 0; i < ncol; i++) {
+      TypeInformationSerializer.STATIC.toByteBuffer(buffer, types[i]);
+      buffer.put(encodings[i]);
+    }
+    buffer.putInt(size);
+    buffer.putInt(blocksize);
+    final int headerlen = buffer.position();
+    writeFully(buffer, output);
+
+    // Column blocks
+    final int nblocks = (size + blocksize - 1) / blocksize;
+    long[] offsets = new long[nblocks * ncol + 1];
+    for(int b = 0, k = 0; b < nblocks; b++) {
+      final int bstart = b * blocksize, bend = Math.min(bstart + blocksize, size);
+      for(int i = 0; i < ncol; i++, k++) {
+        offsets[k] = output.position() - start;
+        buffer = encodeBlock(cols[i], bstart, bend, encodings[i], dims[i], sers[i], buffer);
+        writeFully(buffer, output);
+      }
+    }
+    final long indexpos = output.position() - start;
+    offsets[offsets.length - 1] = indexpos;
+
+    // Block index and trailer
+    ByteBuffer index = ByteBuffer.allocate(offsets.length * ByteArrayUtil.SIZE_LONG + TRAILER_SIZE);
+    for(long o : offsets) {
+      index.putLong(o);
+    }
+    index.putLong(indexpos);
+    index.putInt(headerlen);
+    index.putInt(MAGIC);
+    writeFully(index, output);
+  }
+
+  /**
+   * Get the dimensionality of numerical vector field types.
+   * 
+   * @param type Type information
+   * @return Dimensionality, or -1 if not a numerical vector field.
+   */
+  static int getNumericDimensionality(SimpleTypeInformation<?> type) {
+    if(!(type instanceof VectorFieldTypeInformation) || !NumberVector.class.isAssignableFrom(type.getRestrictionClass())) {
+      return -1;
+    }
+    VectorFieldTypeInformation<?> vtype = (VectorFieldTypeInformation<?>) type;
+    return (vtype.mindim() == vtype.maxdim()) ? vtype.getDimensionality() : -1;
+  }
+
+  /**
+   * Encode a block of a column.
+   * 
+   * @param col Column data
+   * @param start First object
+   * @param end End of block (exclusive)
+   * @param encoding Encoding
+   * @param dim Dimensionality for numerical encodings
+   * @param ser Serializer for serialized encoding
+   * @param buffer Buffer to write to
+   * @return Buffer, eventually resized, ready to be written out
+   * @throws IOException on serialization errors
+   */
+  private ByteBuffer encodeBlock(List<?> col, int start, int end, byte encoding, int dim, ByteBufferSerializer<?> ser, ByteBuffer buffer) throws IOException {
+    buffer.clear();
+    switch(encoding){
+    case ENCODING_DOUBLE:
+      buffer = ensureBuffer(buffer, (end - start) * dim * ByteArrayUtil.SIZE_DOUBLE);
+      for(int j = start; j < end; j++) {
+        NumberVector vec = (NumberVector) col.get(j);
+        for(int d = 0; d < dim; d++) {
+          buffer.putDouble(vec.doubleValue(d));
+        }
+      }
+      break;
+    case ENCODING_DELTA: {
+      long[] prev = new long[dim];
+      for(int j = start; j < end; j++) {
+        // Worst case: varint header of two bytes, plus eight bytes.
+        buffer = ensureBuffer(buffer, dim * 10);
+        NumberVector vec = (NumberVector) col.get(j);
+        for(int d = 0; d < dim; d++) {
+          final long bits = Double.doubleToRawLongBits(vec.doubleValue(d));
+          writeXOR(buffer, bits ^ prev[d]);
+          prev[d] = bits;
+        }
+      }
+      break;
+    }
+    default: {
+      @SuppressWarnings("unchecked")
+      final ByteBufferSerializer<Object> oser = (ByteBufferSerializer<Object>) ser;
+      for(int j = start; j < end; j++) {
+        final Object obj = col.get(j);
+        buffer = ensureBuffer(buffer, oser.getByteSize(obj));
+        oser.toByteBuffer(buffer, obj);
+      }
+    }
+    }
+    return buffer;
+  }
+
+  /**
+   * Write an XOR delta: a varint header containing the number of leading
+   * zeros and the number of significant bits, followed by the significant
+   * bits in as few bytes as possible. Zero deltas take a single byte.
+   * 
+   * @param buffer Output buffer
+   * @param xor XOR delta
+   */
+  static void writeXOR(ByteBuffer buffer, long xor) {
+    if(xor == 0L) {
+      ByteArrayUtil.writeUnsignedVarint(buffer, 0);
+      return;
+    }
+    final int lz = Long.numberOfLeadingZeros(xor);
+    final int tz = Long.numberOfTrailingZeros(xor);
+    final int len = 64 - lz - tz;
+    ByteArrayUtil.writeUnsignedVarint(buffer, (((len - 1) << 6) | lz) + 1);
+    long sig = xor >>> tz;
+    for(int s = ((len + 7) >>> 3) - 1; s >= 0; s--) {
+      buffer.put((byte) (sig >>> (s << 3)));
+    }
+  }
+
+  /**
+   * Ensure the buffer has enough space remaining, keeping its contents.
+   * 
+   * @param buffer Buffer
+   * @param size Required size to add
+   * @return Buffer, eventually resized
+   */
+  private static ByteBuffer ensureBuffer(ByteBuffer buffer, int size) {
+    if(buffer.remaining() >= size) {
+      return buffer;
+    }
+    // Aggressively grow the buffer
+    ByteBuffer nbuf = ByteBuffer.allocate(Math.max(buffer.capacity() << 1, buffer.position() + size));
+    buffer.flip();
+    nbuf.put(buffer);
+    return nbuf;
+  }
+
+  /**
+   * Write the buffer contents completely.
+   * 
+   * @param buffer Buffer to write
+   * @param output Output channel
+   * @throws IOException on IO errors
+   */
+  private static void writeFully(ByteBuffer buffer, FileChannel output) throws IOException {
+    buffer.flip();
+    while(buffer.hasRemaining()) {
+      output.write(buffer);
+    }
+    buffer.clear();
+  }
+}
@@ -275,11 +275,12 @@ public class NumberVectorLabelParser<V extends NumberVector> extends AbstractStr
       }
     }
     // Maybe a label row?
-    if(getLineNumber() == 1 && attributes.size() == 0) {
+    if(isHeaderLine() && attributes.size() == 0) {
       columnnames = new ArrayList<>(labels);
       haslabels = false;
       curvec = null;
       curlbl = null;
+      labels.clear();
       return false;
     }
     // Pass outside via class variables
@@ -290,6 +291,15 @@ public class NumberVectorLabelParser<V extends NumberVector> extends AbstractStr
     return true;
   }
 
+  /**
+   * Test if the current line may contain the column names.
+   * 
+   * @return {@code true} for the first line of the input.
+   */
+  protected boolean isHeaderLine() {
+    return getLineNumber() == 1;
+  }
+
   /**
    * Creates a database object of type V.
    * 
@@ -318,7 +328,7 @@ public class NumberVectorLabelParser<V extends NumberVector> extends AbstractStr
       if(columnnames != null) {
         colnames = new String[mindim];
         int j = 0;
-        for(int i = 0; i < mindim; i++) {
+        for(int i = 0; i < mindim && i < columnnames.size(); i++) {
           if(!isLabelColumn(i)) {
             colnames[j] = columnnames.get(i);
             j++;
@@ -413,7 +423,7 @@ public class NumberVectorLabelParser<V extends NumberVector> extends AbstractStr
     }
 
     @Override
-    protected NumberVectorLabelParser<V> makeInstance() {
+    protected AbstractParser makeInstance() {
       return new NumberVectorLabelParser<>(colSep, quoteChars, comment, labelIndices, factory);
     }
   }
@@ -0,0 +1,322 @@
+package de.lmu.ifi.dbs.elki.datasource.parser;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+
+import de.lmu.ifi.dbs.elki.data.LabelList;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.datasource.bundle.MultipleObjectsBundle;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.parallel.ParallelCore;
+import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+
+/**
+ * Parallel variant of {@link NumberVectorLabelParser}, for large files.
+ * 
+ * The input is read in blocks that are cut at line boundaries. Each block is
+ * parsed concurrently by its own {@link NumberVectorLabelParser}, and the
+ * results are reassembled in input order into a single
+ * {@link MultipleObjectsBundle}. Only a bounded number of blocks is in flight
+ * at any time.
+ * 
+ * The accepted format is the same as for {@link NumberVectorLabelParser}.
+ * Since this parser is not streaming, stream filters will be applied to the
+ * resulting bundle instead.
+ * 
+ * @author Erich Schubert
+ * 
+ * @apiviz.has NumberVector
+ * @apiviz.uses NumberVectorLabelParser
+ * 
+ * @param <V> the type of NumberVector used
+ */
+public class ParallelNumberVectorLabelParser<V extends NumberVector> extends AbstractParser implements Parser {
+  /**
+   * Logging class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelNumberVectorLabelParser.class);
+
+  /**
+   * Default block size, in bytes.
+   */
+  public static final int DEFAULT_BLOCKSIZE = 1 << 22;
+
+  /**
+   * Column separator.
+   */
+  private Pattern colSep;
+
+  /**
+   * Quotation characters.
+   */
+  private String quoteChars;
+
+  /**
+   * Comment pattern.
+   */
+  private Pattern comment;
+
+  /**
+   * Keeps the indices of the attributes to be treated as a string label.
+   */
+  private BitSet labelIndices;
+
+  /**
+   * Vector factory class.
+   */
+  protected NumberVector.Factory<V> factory;
+
+  /**
+   * Block size, in bytes.
+   */
+  private int blocksize;
+
+  /**
+   * Constructor.
+   * 
+   * @param colSep Column separator
+   * @param quoteChars Quote character
+   * @param comment Comment pattern
+   * @param labelIndices Column indexes that are numeric.
+   * @param factory Vector factory
+   * @param blocksize Block size in bytes
+   */
+  public ParallelNumberVectorLabelParser(Pattern colSep, String quoteChars, Pattern comment, BitSet labelIndices, NumberVector.Factory<V> factory, int blocksize) {
+    super(colSep, quoteChars, comment);
+    this.colSep = colSep;
+    this.quoteChars = quoteChars;
+    this.comment = comment;
+    this.labelIndices = labelIndices;
+    this.factory = factory;
+    this.blocksize = blocksize;
+  }
+
+  /**
+   * Constructor with defaults.
+   * 
+   * @param factory Vector factory
+   */
+  public ParallelNumberVectorLabelParser(NumberVector.Factory<V> factory) {
+    this(Pattern.compile(DEFAULT_SEPARATOR), QUOTE_CHARS, Pattern.compile(COMMENT_PATTERN), null, factory, DEFAULT_BLOCKSIZE);
+  }
+
+  @Override
+  public MultipleObjectsBundle parse(InputStream in) {
+    List<V> vecs = new ArrayList<>();
+    List<LabelList> lbls = new ArrayList<>();
+    // Collects the dimensionality and column names of all blocks.
+    NumberVectorLabelParser<V> merged = new NumberVectorLabelParser<>(colSep, quoteChars, comment, labelIndices, factory);
+    merged.mindim = Integer.MAX_VALUE;
+    merged.maxdim = 0;
+
+    ParallelCore core = ParallelCore.getCore();
+    try {
+      core.connect();
+      final int maxpending = core.getParallelism() << 1;
+      ArrayDeque<Future<BlockParser>> pending = new ArrayDeque<>(maxpending + 1);
+      byte[] buf = new byte[blocksize];
+      int fill = 0;
+      boolean eof = false, first = true;
+      while(!eof) {
+        // Fill the buffer.
+        while(fill < buf.length) {
+          int r = in.read(buf, fill, buf.length - fill);
+          if(r < 0) {
+            eof = true;
+            break;
+          }
+          fill += r;
+        }
+        // Cut at the last line break, unless at the end of the input.
+        int cut = fill;
+        if(!eof) {
+          while(cut > 0 && buf[cut - 1] != '\n') {
+            --cut;
+          }
+          if(cut == 0) {
+            // Single line longer than the buffer - grow.
+            buf = Arrays.copyOf(buf, buf.length << 1);
+            continue;
+          }
+        }
+        if(cut > 0) {
+          pending.add(core.submit(new BlockParser(Arrays.copyOf(buf, cut), first)));
+          first = false;
+        }
+        // Move the remainder to the front.
+        System.arraycopy(buf, cut, buf, 0, fill - cut);
+        fill -= cut;
+        // Collect finished blocks in order, to bound memory.
+        while(pending.size() >= maxpending || (eof && !pending.isEmpty())) {
+          BlockParser block = pending.removeFirst().get();
+          vecs.addAll(block.vecs);
+          lbls.addAll(block.lbls);
+          merged.mindim = Math.min(merged.mindim, block.mindim);
+          merged.maxdim = Math.max(merged.maxdim, block.maxdim);
+          merged.haslabels |= block.haslabels;
+          if(block.columnnames != null) {
+            merged.columnnames = block.columnnames;
+          }
+        }
+      }
+    }
+    catch(IOException e) {
+      throw new AbortException("Error while reading input.", e);
+    }
+    catch(ExecutionException e) {
+      throw new AbortException("Error while parsing input.", e.getCause());
+    }
+    catch(InterruptedException e) {
+      throw new AbortException("Parsing interrupted.", e);
+    }
+    finally {
+      core.disconnect();
+    }
+
+    MultipleObjectsBundle bundle = new MultipleObjectsBundle();
+    bundle.appendColumn(merged.getTypeInformation(merged.mindim, merged.maxdim), vecs);
+    if(merged.haslabels) {
+      bundle.appendColumn(TypeUtil.LABELLIST, lbls);
+    }
+    return bundle;
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parse a single block of lines. Every block uses its own parser, so that
+   * blocks can be processed concurrently.
+   * 
+   * @author Erich Schubert
+   * 
+   * @apiviz.exclude
+   */
+  class BlockParser extends NumberVectorLabelParser<V> implements Callable<BlockParser> {
+    /**
+     * Block contents.
+     */
+    private byte[] data;
+
+    /**
+     * Whether this block starts at the first line of the input.
+     */
+    private boolean first;
+
+    /**
+     * Parsed vectors.
+     */
+    List<V> vecs = new ArrayList<>();
+
+    /**
+     * Parsed labels.
+     */
+    List<LabelList> lbls = new ArrayList<>();
+
+    /**
+     * Constructor.
+     * 
+     * @param data Block contents
+     * @param first Flag for the first block
+     */
+    BlockParser(byte[] data, boolean first) {
+      super(colSep, quoteChars, comment, labelIndices, ParallelNumberVectorLabelParser.this.factory);
+      this.data = data;
+      this.first = first;
+    }
+
+    @Override
+    protected boolean isHeaderLine() {
+      // Only the first line of the input may contain column names.
+      return first && super.isHeaderLine();
+    }
+
+    @Override
+    public BlockParser call() {
+      initStream(new ByteArrayInputStream(data));
+      data = null;
+      for(Event ev = nextEvent(); ev != Event.END_OF_STREAM; ev = nextEvent()) {
+        if(ev == Event.NEXT_OBJECT) {
+          vecs.add(curvec);
+          lbls.add(curlbl);
+        }
+      }
+      cleanup();
+      return this;
+    }
+  }
+
+  /**
+   * Parameterization class.
+   * 
+   * @author Erich Schubert
+   * 
+   * @apiviz.exclude
+   */
+  public static class Parameterizer<V extends NumberVector> extends NumberVectorLabelParser.Parameterizer<V> {
+    /**
+     * Block size for parallel parsing.
+     */
+    public static final OptionID BLOCKSIZE_ID = new OptionID("parser.blocksize", "Number of bytes to read per block for parallel parsing.");
+
+    /**
+     * Block size.
+     */
+    protected int blocksize = DEFAULT_BLOCKSIZE;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      super.makeOptions(config);
+      IntParameter blocksizeP = new IntParameter(BLOCKSIZE_ID, DEFAULT_BLOCKSIZE) //
+      .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(blocksizeP)) {
+        blocksize = blocksizeP.intValue();
+      }
+    }
+
+    @Override
+    protected ParallelNumberVectorLabelParser<V> makeInstance() {
+      return new ParallelNumberVectorLabelParser<>(colSep, quoteChars, comment, labelIndices, factory, blocksize);
+    }
+  }
+}
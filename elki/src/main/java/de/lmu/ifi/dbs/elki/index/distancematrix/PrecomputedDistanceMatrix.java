@@ -23,6 +23,17 @@ package de.lmu.ifi.dbs.elki.index.distancematrix;
  along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
 
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
 import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDRange;
@@ -37,21 +48,28 @@ import de.lmu.ifi.dbs.elki.index.IndexFactory;
 import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
 import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
+import de.lmu.ifi.dbs.elki.parallel.ParallelBlocks;
 import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
+import de.lmu.ifi.dbs.elki.utilities.io.ByteArrayUtil;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.FileParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.Flag;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
 
 /**
- * Distance matrix, for precomputing similarity for a small data set.
+ * Distance matrix, for precomputing similarity for a data set.
+ * 
+ * This class assumes symmetry as well as strictness, and only stores the lower
+ * triangle matrix (without the diagonal), i.e. n * (n-1) / 2 distance values.
+ * The rows are stored contiguously, and packed into chunks of complete rows,
+ * so the matrix is not limited by the maximum Java array size. Values can be
+ * stored in single precision to halve the memory requirements, and the chunks
+ * can be memory-mapped from a file instead of being kept on the Java heap.
  * 
- * This class uses a linear memory layout (not a ragged array), and assumes
- * symmetry as well as strictness. This way, it only stores the upper triangle
- * matrix with double precision. It has to store (n-1) * (n-2) distance values
- * in memory, requiring 8 * (n-1) * (n-2) bytes. Since Java has a size limit of
- * arrays of 31 bits (signed integer), we can store at most 2^16 objects
- * (precisely, 65536 objects) in a single array, which needs about 16 GB of RAM.
+ * The matrix is filled in parallel, by tiles of rows and columns such that the
+ * objects of a tile stay in the CPU cache.
  * 
  * @author Erich Schubert
  * 
@@ -65,6 +83,16 @@ public class PrecomputedDistanceMatrix<O> extends AbstractIndex<O> implements Di
    */
   private static final Logging LOG = Logging.getLogger(PrecomputedDistanceMatrix.class);
 
+  /**
+   * Maximum number of values in a chunk (1 GB in double precision).
+   */
+  private static final int CHUNK_SIZE = 1 << 27;
+
+  /**
+   * Tile size for filling the matrix.
+   */
+  private static final int TILE_SIZE = 256;
+
   /**
    * Nested distance function.
    */
@@ -75,10 +103,30 @@ public class PrecomputedDistanceMatrix<O> extends AbstractIndex<O> implements Di
    */
   protected DistanceQuery<O> distanceQuery;
 
+  /**
+   * Store single precision values.
+   */
+  private final boolean single;
+
+  /**
+   * File to memory-map, may be {@code null}.
+   */
+  private final File file;
+
   /**
    * Distance matrix.
    */
-  private double[] matrix = null;
+  private Storage matrix = null;
+
+  /**
+   * Chunk of each row.
+   */
+  private int[] rowchunk;
+
+  /**
+   * Start position of each row within its chunk.
+   */
+  private int[] rowstart;
 
   /**
    * DBID range.
@@ -89,7 +137,12 @@ public class PrecomputedDistanceMatrix<O> extends AbstractIndex<O> implements Di
    * Size of DBID range.
    */
   private int size;
-  
+
+  /**
+   * Maximum number of values in a chunk.
+   */
+  private final int chunksize;
+
   /**
    * Constructor.
    * 
@@ -97,8 +150,36 @@ public class PrecomputedDistanceMatrix<O> extends AbstractIndex<O> implements Di
    * @param distanceFunction Distance function
    */
   public PrecomputedDistanceMatrix(Relation<O> relation, DistanceFunction<? super O> distanceFunction) {
+    this(relation, distanceFunction, false, null);
+  }
+
+  /**
+   * Constructor.
+   * 
+   * @param relation Data relation
+   * @param distanceFunction Distance function
+   * @param single Store single precision values
+   * @param file File to memory-map, may be {@code null}
+   */
+  public PrecomputedDistanceMatrix(Relation<O> relation, DistanceFunction<? super O> distanceFunction, boolean single, File file) {
+    this(relation, distanceFunction, single, file, CHUNK_SIZE);
+  }
+
+  /**
+   * Constructor, with a custom chunk size (for testing).
+   * 
+   * @param relation Data relation
+   * @param distanceFunction Distance function
+   * @param single Store single precision values
+   * @param file File to memory-map, may be {@code null}
+   * @param chunksize Maximum number of values in a chunk
+   */
+  PrecomputedDistanceMatrix(Relation<O> relation, DistanceFunction<? super O> distanceFunction, boolean single, File file, int chunksize) {
     super(relation);
     this.distanceFunction = distanceFunction;
+    this.single = single;
+    this.file = file;
+    this.chunksize = chunksize;
 
     if(!distanceFunction.isSymmetric()) {
       throw new AbortException("Distance matrixes currently only support symmetric distance functions (Patches welcome).");
@@ -113,54 +194,112 @@ public class PrecomputedDistanceMatrix<O> extends AbstractIndex<O> implements Di
     }
     ids = (DBIDRange) rids;
     size = ids.size();
-    if(size > 65536) {
-      throw new AbortException("Distance matrixes currently have a limit of 65536 objects (~16 GB). After this, the array size exceeds the Java integer range, and a different data structure needs to be used.");
-    }
+    close();
 
     distanceQuery = distanceFunction.instantiate(relation);
 
-    int msize = triangleSize(size);
-    matrix = new double[msize];
-    DBIDArrayIter ix = ids.iter(), iy = ids.iter();
-
-    FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Precomputing distance matrix", msize, LOG) : null;
-    int pos = 0;
-    for(ix.seek(0); ix.valid(); ix.advance()) {
-      // y < x -- must match {@link #getOffset}!
-      for(iy.seek(0); iy.getOffset() < ix.getOffset(); iy.advance()) {
-        matrix[pos] = distanceQuery.distance(ix, iy);
-        pos++;
-        LOG.incrementProcessed(prog);
+    // Pack complete rows into chunks.
+    rowchunk = new int[size];
+    rowstart = new int[size];
+    List<Integer> chunks = new ArrayList<>();
+    int fill = 0;
+    for(int x = 0; x < size; x++) {
+      if(fill + x > chunksize) {
+        chunks.add(fill);
+        fill = 0;
       }
+      rowchunk[x] = chunks.size();
+      rowstart[x] = fill;
+      fill += x;
+    }
+    chunks.add(fill);
+    try {
+      matrix = single ? new FloatStorage(chunks, file) : new DoubleStorage(chunks, file);
+    }
+    catch(IOException e) {
+      throw new AbortException("Cannot map the distance matrix file.", e);
     }
+    fill();
+  }
+
+  /**
+   * Release the matrix, and unmap the file if memory-mapped.
+   * 
+   * The file itself is not deleted.
+   */
+  public void close() {
+    if(matrix != null) {
+      matrix.close();
+      matrix = null;
+    }
+  }
+
+  /**
+   * Fill the matrix in parallel, by tiles.
+   */
+  private void fill() {
+    final int tiles = (size + TILE_SIZE - 1) / TILE_SIZE;
+    final FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Precomputing distance matrix", tiles, LOG) : null;
+    // One block per tile row, largest first for load balancing:
+    ParallelBlocks.run(tiles, tiles, new ParallelBlocks.Task<Void>() {
+      @Override
+      public Void run(int block, int begin, int end) {
+        final int t = tiles - 1 - block;
+        fillTileRow(t * TILE_SIZE, Math.min((t + 1) * TILE_SIZE, size), ids.iter(), ids.iter());
+        LOG.incrementProcessed(prog);
+        return null;
+      }
+    });
     LOG.ensureCompleted(prog);
   }
 
   /**
-   * Compute the size of a complete x by x triangle (minus diagonal)
+   * Fill the rows of one tile row, tile by tile.
    * 
-   * @param x Offset
-   * @return Size of complete triangle
+   * @param begin First row
+   * @param end End row (exclusive)
+   * @param ix Iterator for the rows
+   * @param iy Iterator for the columns
+   */
+  private void fillTileRow(int begin, int end, DBIDArrayIter ix, DBIDArrayIter iy) {
+    for(int cbegin = 0; cbegin < end; cbegin += TILE_SIZE) {
+      final int cend = Math.min(cbegin + TILE_SIZE, end);
+      for(int x = begin; x < end; x++) {
+        ix.seek(x);
+        final int chunk = rowchunk[x], start = rowstart[x];
+        // y < x -- must match {@link #get}!
+        for(int y = cbegin, yend = Math.min(cend, x); y < yend; y++) {
+          matrix.put(chunk, start + y, distanceQuery.distance(ix, iy.seek(y)));
+        }
+      }
+    }
+  }
+
+  /**
+   * Get a value of the matrix.
+   * 
+   * @param x Row
+   * @param y Column, {@code y < x}
+   * @return Distance
    */
-  protected static int triangleSize(int x) {
-    return (x * (x - 1)) >>> 1;
+  private double get(int x, int y) {
+    return matrix.get(rowchunk[x], rowstart[x] + y);
   }
 
   /**
-   * Array offset computation.
+   * Compute the size of a complete x by x triangle (minus diagonal)
    * 
-   * @param x X parameter
-   * @param y Y parameter
-   * @return Array offset
+   * @param x Offset
+   * @return Size of complete triangle
    */
-  private int getOffset(int x, int y) {
-    return (y < x) ? (triangleSize(x) + y) : (triangleSize(y) + x);
+  protected static long triangleSize(int x) {
+    return (x * (long) (x - 1)) >>> 1;
   }
 
   @Override
   public void logStatistics() {
     if(matrix != null) {
-      LOG.statistics(new LongStatistic(this.getClass().getName() + ".matrix-size", matrix.length));
+      LOG.statistics(new LongStatistic(this.getClass().getName() + ".matrix-size", triangleSize(size)));
     }
   }
 
@@ -191,7 +330,7 @@ public class PrecomputedDistanceMatrix<O> extends AbstractIndex<O> implements Di
     @Override
     public double distance(DBIDRef id1, DBIDRef id2) {
       final int x = ids.getOffset(id1), y = ids.getOffset(id2);
-      return (x != y) ? matrix[getOffset(x, y)] : 0.;
+      return (x > y) ? get(x, y) : (x < y) ? get(y, x) : 0.;
     }
 
     @Override
@@ -220,6 +359,172 @@ public class PrecomputedDistanceMatrix<O> extends AbstractIndex<O> implements Di
     }
   }
 
+  /**
+   * Storage of the matrix values, in chunks.
+   * 
+   * @author Erich Schubert
+   * 
+   * @apiviz.exclude
+   */
+  private abstract static class Storage {
+    /**
+     * Memory-mapped buffers, may be {@code null}.
+     */
+    MappedByteBuffer[] maps = null;
+
+    /**
+     * Store a value.
+     * 
+     * @param chunk Chunk
+     * @param pos Position within the chunk
+     * @param val Value
+     */
+    abstract void put(int chunk, int pos, double val);
+
+    /**
+     * Get a value.
+     * 
+     * @param chunk Chunk
+     * @param pos Position within the chunk
+     * @return Value
+     */
+    abstract double get(int chunk, int pos);
+
+    /**
+     * Map the file, one buffer per chunk.
+     * 
+     * The mappings remain valid after the file is closed.
+     * 
+     * @param file File
+     * @param sizes Chunk sizes
+     * @param shift Bit shift for the value size
+     * @return Mapped buffers
+     * @throws IOException on errors
+     */
+    static MappedByteBuffer[] map(File file, List<Integer> sizes, int shift) throws IOException {
+      long total = 0L;
+      for(int s : sizes) {
+        total += s;
+      }
+      MappedByteBuffer[] maps = new MappedByteBuffer[sizes.size()];
+      try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+        raf.setLength(total << shift);
+        FileChannel channel = raf.getChannel();
+        long offset = 0L;
+        for(int i = 0; i < maps.length; i++) {
+          final long bytes = ((long) sizes.get(i)) << shift;
+          maps[i] = channel.map(FileChannel.MapMode.READ_WRITE, offset, bytes);
+          maps[i].order(ByteOrder.nativeOrder());
+          offset += bytes;
+        }
+      }
+      return maps;
+    }
+
+    /**
+     * Release the memory-mapped buffers, if any.
+     */
+    void close() {
+      if(maps == null) {
+        return;
+      }
+      for(MappedByteBuffer map : maps) {
+        ByteArrayUtil.unmapByteBuffer(map);
+      }
+      maps = null;
+    }
+  }
+
+  /**
+   * Double precision storage.
+   * 
+   * @author Erich Schubert
+   * 
+   * @apiviz.exclude
+   */
+  private static class DoubleStorage extends Storage {
+    /**
+     * Chunks.
+     */
+    final DoubleBuffer[] data;
+
+    /**
+     * Constructor.
+     * 
+     * @param sizes Chunk sizes
+     * @param file File to map, may be {@code null}
+     * @throws IOException on errors
+     */
+    DoubleStorage(List<Integer> sizes, File file) throws IOException {
+      data = new DoubleBuffer[sizes.size()];
+      if(file == null) {
+        for(int i = 0; i < data.length; i++) {
+          data[i] = DoubleBuffer.wrap(new double[sizes.get(i)]);
+        }
+        return;
+      }
+      maps = map(file, sizes, 3);
+      for(int i = 0; i < data.length; i++) {
+        data[i] = maps[i].asDoubleBuffer();
+      }
+    }
+
+    @Override
+    void put(int chunk, int pos, double val) {
+      data[chunk].put(pos, val);
+    }
+
+    @Override
+    double get(int chunk, int pos) {
+      return data[chunk].get(pos);
+    }
+  }
+
+  /**
+   * Single precision storage.
+   * 
+   * @author Erich Schubert
+   * 
+   * @apiviz.exclude
+   */
+  private static class FloatStorage extends Storage {
+    /**
+     * Chunks.
+     */
+    final FloatBuffer[] data;
+
+    /**
+     * Constructor.
+     * 
+     * @param sizes Chunk sizes
+     * @param file File to map, may be {@code null}
+     * @throws IOException on errors
+     */
+    FloatStorage(List<Integer> sizes, File file) throws IOException {
+      data = new FloatBuffer[sizes.size()];
+      if(file == null) {
+        for(int i = 0; i < data.length; i++) {
+          data[i] = FloatBuffer.wrap(new float[sizes.get(i)]);
+        }
+        return;
+      }
+      maps = map(file, sizes, 2);
+      for(int i = 0; i < data.length; i++) {
+        data[i] = maps[i].asFloatBuffer();
+      }
+    }
+
+    @Override
+    void put(int chunk, int pos, double val) {
+      data[chunk].put(pos, (float) val);
+    }
+
+    @Override
+    double get(int chunk, int pos) {
+      return data[chunk].get(pos);
+    }
+  }
+
   /**
    * Factory for the index.
    * 
@@ -235,19 +540,42 @@ public class PrecomputedDistanceMatrix<O> extends AbstractIndex<O> implements Di
      */
     final protected DistanceFunction<? super O> distanceFunction;
 
+    /**
+     * Store single precision values.
+     */
+    final protected boolean single;
+
+    /**
+     * File to memory-map, may be {@code null}.
+     */
+    final protected File file;
+
     /**
      * Constructor.
      * 
      * @param distanceFunction Distance function
      */
     public Factory(DistanceFunction<? super O> distanceFunction) {
+      this(distanceFunction, false, null);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param distanceFunction Distance function
+     * @param single Store single precision values
+     * @param file File to memory-map, may be {@code null}
+     */
+    public Factory(DistanceFunction<? super O> distanceFunction, boolean single, File file) {
       super();
       this.distanceFunction = distanceFunction;
+      this.single = single;
+      this.file = file;
     }
 
     @Override
     public PrecomputedDistanceMatrix<O> instantiate(Relation<O> relation) {
-      return new PrecomputedDistanceMatrix<>(relation, distanceFunction);
+      return new PrecomputedDistanceMatrix<>(relation, distanceFunction, single, file);
     }
 
     @Override
@@ -270,11 +598,31 @@ public class PrecomputedDistanceMatrix<O> extends AbstractIndex<O> implements Di
        */
       public static final OptionID DISTANCE_ID = new OptionID("matrix.distance", "Distance function for the precomputed distance matrix.");
 
+      /**
+       * Flag to store single precision values.
+       */
+      public static final OptionID FLOAT_ID = new OptionID("matrix.float", "Store the distances in single precision, to halve the memory requirements.");
+
+      /**
+       * File to memory-map the matrix to.
+       */
+      public static final OptionID FILE_ID = new OptionID("matrix.file", "Memory-map the distance matrix to this file, instead of keeping it on the heap. The file is not deleted afterwards.");
+
       /**
        * Nested distance function.
        */
       protected DistanceFunction<? super O> distanceFunction;
 
+      /**
+       * Store single precision values.
+       */
+      protected boolean single = false;
+
+      /**
+       * File to memory-map, may be {@code null}.
+       */
+      protected File file = null;
+
       @Override
       protected void makeOptions(Parameterization config) {
         super.makeOptions(config);
@@ -282,11 +630,19 @@ public class PrecomputedDistanceMatrix<O> extends AbstractIndex<O> implements Di
         if(config.grab(distanceP)) {
           distanceFunction = distanceP.instantiateClass(config);
         }
+        Flag floatF = new Flag(FLOAT_ID);
+        if(config.grab(floatF)) {
+          single = floatF.isTrue();
+        }
+        FileParameter fileP = new FileParameter(FILE_ID, FileParameter.FileType.OUTPUT_FILE, true);
+        if(config.grab(fileP)) {
+          file = fileP.getValue();
+        }
       }
 
       @Override
       protected Factory<O> makeInstance() {
-        return new Factory<>(distanceFunction);
+        return new Factory<>(distanceFunction, single, file);
       }
     }
   }
@@ -24,15 +24,14 @@ package de.lmu.ifi.dbs.elki.index.idistance;
  */
 
 import java.util.Arrays;
+import java.util.List;
 
 import de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans.initialization.KMedoidsInitialization;
 import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
 import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
-import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
 import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDList;
-import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
 import de.lmu.ifi.dbs.elki.database.ids.KNNHeap;
 import de.lmu.ifi.dbs.elki.database.ids.KNNList;
 import de.lmu.ifi.dbs.elki.database.ids.ModifiableDoubleDBIDList;
@@ -49,6 +48,8 @@ import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.logging.statistics.DoubleStatistic;
 import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
 import de.lmu.ifi.dbs.elki.math.MeanVarianceMinMax;
+import de.lmu.ifi.dbs.elki.parallel.ParallelBlocks;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.arrays.DoubleIntegerArrayQuickSort;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
@@ -65,9 +66,13 @@ import de.lmu.ifi.dbs.elki.utilities.pairs.DoubleIntPair;
  * <b>Important note:</b> we are currently using a different query strategy. The
  * original publication discusses queries based on repeated <em>radius</em>
  * queries. We use a strategy based on shrinking spheres, iteratively refined
- * starting with the closes reference point. We also do not use a B+-tree as
- * data structure, but simple in-memory lists. Therefore, we cannot report page
- * accesses needed.
+ * starting with the closes reference point. Instead of a B+-tree, the keys
+ * (distances to the reference point) are stored in a single array, sorted by
+ * partition and key, and scanned after a binary search. Therefore, we cannot
+ * report page accesses needed.
+ * 
+ * Assigning the objects to partitions, sorting the partitions and bulk kNN
+ * queries are run in parallel.
  * 
  * Feel free to contribute improved query strategies. All the code is
  * essentially here, you only need to query every reference point list, not just
@@ -119,9 +124,24 @@ public class InMemoryIDistanceIndex<O> extends AbstractRefiningIndex<O> implemen
   private ArrayDBIDs referencepoints;
 
   /**
-   * The actual index.
+   * Indexed object IDs.
+   */
+  private ArrayDBIDs ids;
+
+  /**
+   * Partition boundaries: partition i is {@code [start[i], start[i+1])}.
    */
-  private ModifiableDoubleDBIDList[] index;
+  private int[] start;
+
+  /**
+   * Distances to the partition reference point, sorted within each partition.
+   */
+  private double[] keys;
+
+  /**
+   * Offsets into {@link #ids}, in key order.
+   */
+  private int[] members;
 
   /**
    * Second reference, for documentation generation.
@@ -153,13 +173,56 @@ public class InMemoryIDistanceIndex<O> extends AbstractRefiningIndex<O> implemen
   public void initialize() {
     referencepoints = DBIDUtil.ensureArray(initialization.chooseInitialMedoids(numref, relation.getDBIDs(), distanceQuery));
     final int k = referencepoints.size(); // should be the same k anyway.
-    index = new ModifiableDoubleDBIDList[k];
+    ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    final int size = ids.size();
+    final int[] assignment = new int[size];
+    final double[] dists = new double[size];
+    // Assign objects to the closest reference point, in parallel.
+    ParallelBlocks.run(size, new ParallelBlocks.Task<Void>() {
+      @Override
+      public Void run(int block, int begin, int end) {
+        assign(begin, end, assignment, dists);
+        return null;
+      }
+    });
+    // Counting sort by partition:
+    start = new int[k + 1];
+    for(int i = 0; i < size; i++) {
+      ++start[assignment[i] + 1];
+    }
     for(int i = 0; i < k; i++) {
-      index[i] = DBIDUtil.newDistanceDBIDList(relation.size() / (2 * k));
+      start[i + 1] += start[i];
+    }
+    keys = new double[size];
+    members = new int[size];
+    int[] fill = Arrays.copyOf(start, k);
+    for(int i = 0; i < size; i++) {
+      final int pos = fill[assignment[i]]++;
+      keys[pos] = dists[i];
+      members[pos] = i;
     }
+    // Sort each partition by key, in parallel.
+    ParallelBlocks.run(k, k, new ParallelBlocks.Task<Void>() {
+      @Override
+      public Void run(int block, int begin, int end) {
+        DoubleIntegerArrayQuickSort.sort(keys, members, start[block], start[block + 1]);
+        return null;
+      }
+    });
+  }
+
+  /**
+   * Assign a block of objects to their closest reference point.
+   * 
+   * @param begin First object offset
+   * @param end End offset (exclusive)
+   * @param assignment Output: partition numbers
+   * @param dists Output: distances to the reference point
+   */
+  private void assign(int begin, int end, int[] assignment, double[] dists) {
     // TODO: add optimized codepath for primitive distances.
-    DBIDArrayIter riter = referencepoints.iter();
-    for(DBIDIter oiter = relation.iterDBIDs(); oiter.valid(); oiter.advance()) {
+    DBIDArrayIter oiter = ids.iter(), riter = referencepoints.iter();
+    for(oiter.seek(begin); oiter.getOffset() < end; oiter.advance()) {
       double bestd = Double.POSITIVE_INFINITY;
       int besti = -1;
       for(riter.seek(0); riter.valid(); riter.advance()) {
@@ -169,13 +232,9 @@ public class InMemoryIDistanceIndex<O> extends AbstractRefiningIndex<O> implemen
           besti = riter.getOffset();
         }
       }
-      assert (besti >= 0 && besti < k);
-      index[besti].add(bestd, oiter);
-    }
-
-    // Sort index.
-    for(int i = 0; i < k; i++) {
-      index[i].sort();
+      assert (besti >= 0 && besti < referencepoints.size());
+      assignment[oiter.getOffset()] = besti;
+      dists[oiter.getOffset()] = bestd;
     }
   }
 
@@ -239,8 +298,8 @@ public class InMemoryIDistanceIndex<O> extends AbstractRefiningIndex<O> implemen
   public void logStatistics() {
     super.logStatistics();
     MeanVarianceMinMax mm = new MeanVarianceMinMax();
-    for(int i = 0; i < index.length; i++) {
-      mm.put(index[i].size());
+    for(int i = 0; i + 1 < start.length; i++) {
+      mm.put(start[i + 1] - start[i]);
     }
     LOG.statistics(new LongStatistic(InMemoryIDistanceIndex.class.getName() + ".size.min", (int) mm.getMin()));
     LOG.statistics(new DoubleStatistic(InMemoryIDistanceIndex.class.getName() + ".size.mean", mm.getMean()));
@@ -268,33 +327,27 @@ public class InMemoryIDistanceIndex<O> extends AbstractRefiningIndex<O> implemen
   }
 
   /**
-   * Seek an iterator to the desired position, using binary search.
+   * Find the first position with a key larger than the given value, using
+   * binary search.
    * 
-   * @param index Index to search
-   * @param iter Iterator
+   * @param keys Sorted keys
+   * @param begin First position of the partition
+   * @param end End of the partition (exclusive)
    * @param val Distance to search to
+   * @return Position of the first larger key, or {@code end}
    */
-  protected static void binarySearch(ModifiableDoubleDBIDList index, DoubleDBIDListIter iter, double val) {
-    // Binary search. TODO: move this into the DoubleDBIDList class.
-    int left = 0, right = index.size();
+  protected static int binarySearch(double[] keys, int begin, int end, double val) {
+    int left = begin, right = end;
     while(left < right) {
       final int mid = (left + right) >>> 1;
-      final double curd = iter.seek(mid).doubleValue();
-      if(val < curd) {
+      if(val < keys[mid]) {
         right = mid;
       }
-      else if(val > curd) {
-        left = mid + 1;
-      }
       else {
-        left = mid;
-        break;
+        left = mid + 1;
       }
     }
-    if(left >= index.size()) {
-      --left;
-    }
-    iter.seek(left);
+    return left;
   }
 
   /**
@@ -316,27 +369,62 @@ public class InMemoryIDistanceIndex<O> extends AbstractRefiningIndex<O> implemen
 
     @Override
     public KNNList getKNNForObject(O obj, int k) {
-      DoubleIntPair[] priority = rankReferencePoints(distanceQuery, obj, referencepoints);
-      // Approximate kNN search. We do not check _every_ list.
       KNNHeap heap = DBIDUtil.newHeap(k);
+      incRefinements(search(obj, heap, ids.iter()));
+      return heap.toKNNList();
+    }
 
+    @Override
+    public List<? extends KNNList> getKNNForBulkDBIDs(final ArrayDBIDs qids, final int k) {
+      final int size = qids.size();
+      final KNNList[] result = new KNNList[size];
+      List<Integer> parts = ParallelBlocks.run(size, new ParallelBlocks.Task<Integer>() {
+        @Override
+        public Integer run(int block, int begin, int end) {
+          DBIDArrayIter qiter = qids.iter(), iter = ids.iter();
+          int refinements = 0;
+          for(qiter.seek(begin); qiter.getOffset() < end; qiter.advance()) {
+            KNNHeap heap = DBIDUtil.newHeap(k);
+            refinements += search(relation.get(qiter), heap, iter);
+            result[qiter.getOffset()] = heap.toKNNList();
+          }
+          return refinements;
+        }
+      });
+      int refinements = 0;
+      for(Integer r : parts) {
+        refinements += r;
+      }
+      incRefinements(refinements);
+      return Arrays.asList(result);
+    }
+
+    /**
+     * Search the kNN of an object, without modifying shared state.
+     * 
+     * @param obj Query object
+     * @param heap Output heap
+     * @param iter Iterator over the indexed IDs
+     * @return Number of refinements
+     */
+    private int search(O obj, KNNHeap heap, DBIDArrayIter iter) {
+      DoubleIntPair[] priority = rankReferencePoints(distanceQuery, obj, referencepoints);
+      int refinements = 0;
       for(DoubleIntPair pair : priority) {
-        final ModifiableDoubleDBIDList nindex = index[pair.second];
+        final int begin = start[pair.second], end = start[pair.second + 1];
         final double refd = pair.first;
 
-        final DoubleDBIDListIter ifwd = nindex.iter(), ibwd = nindex.iter();
-        binarySearch(nindex, ibwd, refd);
-        ifwd.seek(ibwd.getOffset() + 1);
+        int fwd = binarySearch(keys, begin, end, refd), bwd = fwd - 1;
 
         // This assumes a metric, as we exploit triangle inequality:
         // Lower bound for candidates further from the reference object:
         // d(candidate, reference) <= d(candidate, query) + d(query, reference)
         // d(candidate, reference) - d(query, reference) <= d(candidate, query)
-        double lbfwd = ifwd.valid() ? Math.abs(ifwd.doubleValue() - refd) : Double.NaN;
+        double lbfwd = fwd < end ? Math.abs(keys[fwd] - refd) : Double.NaN;
         // Lower bound for candidates closer to the reference object:
         // d(query, reference) <= d(query, candidate) + d(candidate, reference)
         // d(query, reference) - d(candidate, reference) <= d(query, candidate)
-        double lbbwd = ibwd.valid() ? Math.abs(ibwd.doubleValue() - refd) : Double.NaN;
+        double lbbwd = bwd >= begin ? Math.abs(keys[bwd] - refd) : Double.NaN;
         // Current query radius.
         double kdist = heap.getKNNDistance();
         while(true) {
@@ -346,29 +434,30 @@ public class InMemoryIDistanceIndex<O> extends AbstractRefiningIndex<O> implemen
           }
           // Careful: NaN handling: not NaN and not worse than fwd (may be NaN).
           if(lbfwd <= kdist && !(lbfwd > lbbwd)) {
-            final double dist = refine(ifwd, obj);
+            final double dist = distanceQuery.distance(obj, iter.seek(members[fwd]));
+            ++refinements;
             if(dist <= kdist) {
-              heap.insert(dist, ifwd);
+              heap.insert(dist, iter);
               kdist = heap.getKNNDistance();
             }
-            // Advance iterator:
-            ifwd.advance();
-            lbfwd = ifwd.valid() ? Math.abs(ifwd.doubleValue() - refd) : Double.NaN;
+            // Advance:
+            ++fwd;
+            lbfwd = fwd < end ? Math.abs(keys[fwd] - refd) : Double.NaN;
           }
           if(lbbwd <= kdist && !(lbbwd > lbfwd)) {
-            final double dist = refine(ibwd, obj);
+            final double dist = distanceQuery.distance(obj, iter.seek(members[bwd]));
+            ++refinements;
             if(dist <= kdist) {
-              heap.insert(dist, ibwd);
+              heap.insert(dist, iter);
               kdist = heap.getKNNDistance();
             }
-            // Retract iterator:
-            ibwd.retract();
-            lbbwd = ibwd.valid() ? Math.abs(ibwd.doubleValue() - refd) : Double.NaN;
+            // Retract:
+            --bwd;
+            lbbwd = bwd >= begin ? Math.abs(keys[bwd] - refd) : Double.NaN;
           }
         }
       }
-
-      return heap.toKNNList();
+      return refinements;
     }
   }
 
@@ -393,23 +482,22 @@ public class InMemoryIDistanceIndex<O> extends AbstractRefiningIndex<O> implemen
     public DoubleDBIDList getRangeForObject(O obj, double range) {
       DoubleIntPair[] priority = rankReferencePoints(distanceQuery, obj, referencepoints);
       ModifiableDoubleDBIDList result = DBIDUtil.newDistanceDBIDList();
+      DBIDArrayIter iter = ids.iter();
       for(DoubleIntPair pair : priority) {
-        final ModifiableDoubleDBIDList nindex = index[pair.second];
+        final int begin = start[pair.second], end = start[pair.second + 1];
         final double refd = pair.first;
 
-        DoubleDBIDListIter ifwd = nindex.iter(), ibwd = nindex.iter();
-        binarySearch(nindex, ibwd, refd);
-        ifwd.seek(ibwd.getOffset() + 1);
+        int fwd = binarySearch(keys, begin, end, refd), bwd = fwd - 1;
 
         // This assumes a metric, as we exploit triangle inequality:
         // Lower bound for candidates further from the reference object:
         // d(candidate, reference) <= d(candidate, query) + d(query, reference)
         // d(candidate, reference) - d(query, reference) <= d(candidate, query)
-        double lbfwd = ifwd.valid() ? Math.abs(ifwd.doubleValue() - refd) : Double.NaN;
+        double lbfwd = fwd < end ? Math.abs(keys[fwd] - refd) : Double.NaN;
         // Lower bound for candidates closer to the reference object:
         // d(query, reference) <= d(query, candidate) + d(candidate, reference)
         // d(query, reference) - d(candidate, reference) <= d(query, candidate)
-        double lbbwd = ibwd.valid() ? Math.abs(ibwd.doubleValue() - refd) : Double.NaN;
+        double lbbwd = bwd >= begin ? Math.abs(keys[bwd] - refd) : Double.NaN;
         while(true) {
           // Handle NaN carefully.
           if(!(lbfwd <= range) && !(lbbwd <= range)) {
@@ -417,22 +505,22 @@ public class InMemoryIDistanceIndex<O> extends AbstractRefiningIndex<O> implemen
           }
           // Careful: NaN handling: not NaN and not worse than fwd (may be NaN).
           if(lbfwd <= range && !(lbfwd > lbbwd)) {
-            final double dist = refine(ifwd, obj);
+            final double dist = refine(iter.seek(members[fwd]), obj);
             if(dist <= range) {
-              result.add(dist, ifwd);
+              result.add(dist, iter);
             }
-            // Advance iterator:
-            ifwd.advance();
-            lbfwd = ifwd.valid() ? Math.abs(ifwd.doubleValue() - refd) : Double.NaN;
+            // Advance:
+            ++fwd;
+            lbfwd = fwd < end ? Math.abs(keys[fwd] - refd) : Double.NaN;
           }
           if(lbbwd <= range && !(lbbwd > lbfwd)) {
-            final double dist = refine(ibwd, obj);
+            final double dist = refine(iter.seek(members[bwd]), obj);
             if(dist <= range) {
-              result.add(dist, ibwd);
+              result.add(dist, iter);
             }
-            // Retract iterator:
-            ibwd.retract();
-            lbbwd = ibwd.valid() ? Math.abs(ibwd.doubleValue() - refd) : Double.NaN;
+            // Retract:
+            --bwd;
+            lbbwd = bwd >= begin ? Math.abs(keys[bwd] - refd) : Double.NaN;
           }
         }
       }
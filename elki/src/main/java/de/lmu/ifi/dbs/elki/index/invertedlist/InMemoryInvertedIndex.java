@@ -22,21 +22,21 @@ package de.lmu.ifi.dbs.elki.index.invertedlist;
  You should have received a copy of the GNU Affero General Public License
  along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
+
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import de.lmu.ifi.dbs.elki.data.NumberVector;
 import de.lmu.ifi.dbs.elki.data.SparseNumberVector;
 import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
 import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
-import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
-import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
-import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
-import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
 import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDList;
-import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
-import de.lmu.ifi.dbs.elki.database.ids.HashSetModifiableDBIDs;
 import de.lmu.ifi.dbs.elki.database.ids.KNNHeap;
 import de.lmu.ifi.dbs.elki.database.ids.KNNList;
 import de.lmu.ifi.dbs.elki.database.ids.ModifiableDoubleDBIDList;
@@ -55,15 +55,37 @@ import de.lmu.ifi.dbs.elki.index.KNNIndex;
 import de.lmu.ifi.dbs.elki.index.RangeIndex;
 import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.logging.statistics.DoubleStatistic;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
+import de.lmu.ifi.dbs.elki.parallel.ParallelBlocks;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.io.ByteArrayUtil;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
 
 /**
  * Simple index using inverted lists.
  * 
+ * The postings of each dimension are stored compressed: the object offsets are
+ * delta and varint coded, the weights are normalized by the object length. The
+ * largest weight of each list gives an upper bound of its score contribution,
+ * which is used for MaxScore dynamic pruning: lists that cannot lift an object
+ * above the current k-th best score on their own are only probed for objects
+ * found in the other lists. Bulk kNN queries are processed in parallel.
+ * 
+ * Reference:
+ * <p>
+ * H. Turtle, J. Flood<br />
+ * Query evaluation: strategies and optimizations<br />
+ * Information Processing & Management, 31(6)
+ * </p>
+ * 
  * @author Erich Schubert
  * 
  * @param <V> Vector type
  */
+@Reference(authors = "H. Turtle, J. Flood", //
+title = "Query evaluation: strategies and optimizations", //
+booktitle = "Information Processing & Management, 31(6)", //
+url = "http://dx.doi.org/10.1016/0306-4573(95)00020-H")
 public class InMemoryInvertedIndex<V extends NumberVector> extends AbstractIndex<V> implements KNNIndex<V>, RangeIndex<V> {
   /**
    * Class logger.
@@ -71,14 +93,24 @@ public class InMemoryInvertedIndex<V extends NumberVector> extends AbstractIndex
   private static final Logging LOG = Logging.getLogger(InMemoryInvertedIndex.class);
 
   /**
-   * Inverted index.
+   * Object IDs; the postings refer to offsets in this array.
+   */
+  ArrayDBIDs ids;
+
+  /**
+   * Compressed postings: delta and varint coded offsets, per dimension.
    */
-  ArrayList<ModifiableDoubleDBIDList> index;
+  byte[][] postings;
 
   /**
-   * Length storage.
+   * Posting weights, normalized by the object length, per dimension.
    */
-  WritableDoubleDataStore length;
+  double[][] weights;
+
+  /**
+   * Largest and smallest weight of each list, for bounding the scores.
+   */
+  double[] maxweight, minweight;
 
   /**
    * Constructor.
@@ -91,168 +123,168 @@ public class InMemoryInvertedIndex<V extends NumberVector> extends AbstractIndex
 
   @Override
   public void initialize() {
-    if(index != null) {
+    if(postings != null) {
       LOG.warning("Index was already initialized!");
     }
-    index = new ArrayList<>();
-    length = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_DB);
-    for(DBIDIter iter = relation.iterDBIDs(); iter.valid(); iter.advance()) {
-      V obj = relation.get(iter);
-      if(obj instanceof SparseNumberVector) {
-        indexSparse(iter, (SparseNumberVector) obj);
+    ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    int[][] docs = new int[0][];
+    double[][] wts = new double[0][];
+    int[] fill = new int[0];
+    Terms terms = new Terms();
+    for(DBIDArrayIter iter = ids.iter(); iter.valid(); iter.advance()) {
+      terms.load(relation.get(iter));
+      if(terms.size == 0) {
+        continue;
       }
-      else {
-        indexDense(iter, obj);
+      final double len = Math.sqrt(terms.len);
+      for(int j = 0; j < terms.size; j++) {
+        final int dim = terms.dims[j];
+        if(dim >= docs.length) {
+          final int newlen = Math.max(dim + 1, docs.length << 1);
+          docs = Arrays.copyOf(docs, newlen);
+          wts = Arrays.copyOf(wts, newlen);
+          fill = Arrays.copyOf(fill, newlen);
+        }
+        final int pos = fill[dim]++;
+        if(docs[dim] == null || pos == docs[dim].length) {
+          final int newlen = Math.max(8, pos << 1);
+          docs[dim] = docs[dim] == null ? new int[newlen] : Arrays.copyOf(docs[dim], newlen);
+          wts[dim] = wts[dim] == null ? new double[newlen] : Arrays.copyOf(wts[dim], newlen);
+        }
+        docs[dim][pos] = iter.getOffset();
+        wts[dim][pos] = terms.vals[j] / len;
       }
     }
-    // Sort indexes
+    // Compress the postings.
+    final int dims = docs.length;
+    postings = new byte[dims][];
+    weights = new double[dims][];
+    maxweight = new double[dims];
+    minweight = new double[dims];
     long count = 0L;
-    for(ModifiableDoubleDBIDList column : index) {
-      column.sort();
-      count += column.size();
+    for(int dim = 0; dim < dims; dim++) {
+      final int size = fill[dim];
+      count += size;
+      int bytes = 0;
+      for(int i = 0, prev = 0; i < size; i++) {
+        bytes += ByteArrayUtil.getUnsignedVarintSize(docs[dim][i] - prev);
+        prev = docs[dim][i];
+      }
+      postings[dim] = new byte[bytes];
+      ByteBuffer buffer = ByteBuffer.wrap(postings[dim]);
+      for(int i = 0, prev = 0; i < size; i++) {
+        ByteArrayUtil.writeUnsignedVarint(buffer, docs[dim][i] - prev);
+        prev = docs[dim][i];
+      }
+      weights[dim] = size > 0 ? Arrays.copyOf(wts[dim], size) : new double[0];
+      double max = Double.NEGATIVE_INFINITY, min = Double.POSITIVE_INFINITY;
+      for(double w : weights[dim]) {
+        max = w > max ? w : max;
+        min = w < min ? w : min;
+      }
+      maxweight[dim] = max;
+      minweight[dim] = min;
+      docs[dim] = null; // Free memory early
+      wts[dim] = null;
     }
-    double sparsity = count / (index.size() * (double) relation.size());
+    double sparsity = count / (dims * (double) relation.size());
     if(sparsity > .2) {
       LOG.warning("Inverted list indexes only perform well for very sparse data. Your data set has a sparsity of " + sparsity);
     }
   }
 
   /**
-   * Index a single (sparse) instance.
+   * Document-at-a-time query evaluation with MaxScore pruning.
    * 
-   * @param ref Object reference
-   * @param obj Object to index.
-   */
-  private void indexSparse(DBIDRef ref, SparseNumberVector obj) {
-    double len = 0.;
-    for(int iter = obj.iter(); obj.iterValid(iter); iter = obj.iterAdvance(iter)) {
-      final int dim = obj.iterDim(iter);
-      final double val = obj.iterDoubleValue(iter);
-      if(val == 0. || val != val) {
-        continue;
-      }
-      len += val * val;
-      getOrCreateColumn(dim).add(val, ref);
-    }
-    length.put(ref, len);
-  }
-
-  /**
-   * Index a single (dense) instance.
+   * The lists are sorted by their maximum score contribution. The longest
+   * prefix of lists whose contributions sum to less than the current threshold
+   * is "non-essential": an object only found in these lists cannot qualify, so
+   * they are only probed for objects found in the other lists, and only as
+   * long as the object can still reach the threshold.
    * 
-   * @param ref Object reference
-   * @param obj Object to index.
+   * @param obj Query object
+   * @param collector Result collector
    */
-  private void indexDense(DBIDRef ref, V obj) {
-    double len = 0.;
-    for(int dim = 0, max = obj.getDimensionality(); dim < max; dim++) {
-      final double val = obj.doubleValue(dim);
-      if(val == 0. || val != val) {
+  private void maxScore(V obj, Collector collector) {
+    Terms terms = new Terms();
+    terms.load(obj);
+    if(terms.size == 0) {
+      return;
+    }
+    // Length of query object, for normalization.
+    final double len = Math.sqrt(terms.len);
+    ArrayList<Cursor> cursors = new ArrayList<>(terms.size);
+    for(int j = 0; j < terms.size; j++) {
+      final int dim = terms.dims[j];
+      // No matching documents in index:
+      if(dim >= postings.length || weights[dim].length == 0) {
         continue;
       }
-      len += val * val;
-      getOrCreateColumn(dim).add(val, ref);
+      final double q = terms.vals[j] / len;
+      final double bound = Math.max(0., Math.max(q * maxweight[dim], q * minweight[dim]));
+      cursors.add(new Cursor(postings[dim], weights[dim], q, bound));
     }
-    length.put(ref, Math.sqrt(len));
-  }
-
-  /**
-   * Get (or create) a column.
-   * 
-   * @param dim Dimension
-   * @return Column
-   */
-  private ModifiableDoubleDBIDList getOrCreateColumn(int dim) {
-    while(dim >= index.size()) {
-      index.add(DBIDUtil.newDistanceDBIDList());
+    final int n = cursors.size();
+    Cursor[] cs = cursors.toArray(new Cursor[n]);
+    Arrays.sort(cs);
+    // Cumulative bounds of the non-essential lists:
+    double[] cum = new double[n];
+    for(int i = 0; i < n; i++) {
+      cum[i] = (i > 0 ? cum[i - 1] : 0.) + cs[i].bound;
+      cs[i].next();
     }
-    return index.get(dim);
-  }
-
-  /**
-   * Query the most similar objects, sparse version.
-   * 
-   * @param obj Query object
-   * @param scores Score storage
-   * @param cands Non-zero objects set
-   * @return Result
-   */
-  private double naiveQuerySparse(SparseNumberVector obj, WritableDoubleDataStore scores, HashSetModifiableDBIDs cands) {
-    double len = 0.; // Length of query object, for final normalization
-    for(int iter = obj.iter(); obj.iterValid(iter); iter = obj.iterAdvance(iter)) {
-      final int dim = obj.iterDim(iter);
-      final double val = obj.iterDoubleValue(iter);
-      if(val == 0. || val != val) {
-        continue;
-      }
-      len += val * val;
-      // No matching documents in index:
-      if(dim >= index.size()) {
-        continue;
+    DBIDArrayIter iter = ids.iter();
+    double threshold = collector.threshold();
+    int ess = 0;
+    while(ess < n && cum[ess] < threshold) {
+      ++ess;
+    }
+    while(true) {
+      int doc = Integer.MAX_VALUE;
+      for(int i = ess; i < n; i++) {
+        doc = cs[i].doc < doc ? cs[i].doc : doc;
       }
-      ModifiableDoubleDBIDList column = index.get(dim);
-      for(DoubleDBIDListIter n = column.iter(); n.valid(); n.advance()) {
-        scores.increment(n, n.doubleValue() * val);
-        cands.add(n);
+      if(doc == Integer.MAX_VALUE) {
+        break;
       }
-    }
-    return Math.sqrt(len);
-  }
-
-  /**
-   * Query the most similar objects, dense version.
-   * 
-   * @param obj Query object
-   * @param scores Score storage
-   * @param cands Non-zero objects set
-   * @return Result
-   */
-  private double naiveQueryDense(NumberVector obj, WritableDoubleDataStore scores, HashSetModifiableDBIDs cands) {
-    double len = 0.; // Length of query object, for final normalization
-    for(int dim = 0, max = obj.getDimensionality(); dim < max; dim++) {
-      final double val = obj.doubleValue(dim);
-      if(val == 0. || val != val) {
-        continue;
+      double score = 0.;
+      for(int i = ess; i < n; i++) {
+        if(cs[i].doc == doc) {
+          score += cs[i].score();
+          cs[i].next();
+        }
       }
-      len += val * val;
-      // No matching documents in index:
-      if(dim >= index.size()) {
-        continue;
+      boolean pruned = false;
+      for(int i = ess - 1; i >= 0; i--) {
+        if(score + cum[i] < threshold) {
+          pruned = true;
+          break;
+        }
+        cs[i].advance(doc);
+        if(cs[i].doc == doc) {
+          score += cs[i].score();
+        }
       }
-      ModifiableDoubleDBIDList column = index.get(dim);
-      for(DoubleDBIDListIter n = column.iter(); n.valid(); n.advance()) {
-        scores.increment(n, n.doubleValue() * val);
-        cands.add(n);
+      if(!pruned && score >= threshold) {
+        collector.collect(score, iter.seek(doc));
+        threshold = collector.threshold();
+        while(ess < n && cum[ess] < threshold) {
+          ++ess;
+        }
       }
     }
-    return Math.sqrt(len);
-  }
-
-  /**
-   * Query the most similar objects, abstract version.
-   * 
-   * @param obj Query object
-   * @param scores Score storage (must be initialized with zeros!)
-   * @param cands Non-zero objects set (must be empty)
-   * @return Result
-   */
-  private double naiveQuery(V obj, WritableDoubleDataStore scores, HashSetModifiableDBIDs cands) {
-    if(obj instanceof SparseNumberVector) {
-      return naiveQuerySparse((SparseNumberVector) obj, scores, cands);
-    }
-    else {
-      return naiveQueryDense(obj, scores, cands);
-    }
   }
 
   @Override
   public void logStatistics() {
-    long count = 0L;
-    for(ModifiableDoubleDBIDList column : index) {
-      count += column.size();
+    long count = 0L, bytes = 0L;
+    for(int dim = 0; dim < postings.length; dim++) {
+      count += weights[dim].length;
+      bytes += postings[dim].length;
     }
-    double sparsity = count / (index.size() * (double) relation.size());
+    double sparsity = count / (postings.length * (double) relation.size());
     LOG.statistics(new DoubleStatistic(this.getClass().getName() + ".sparsity", sparsity));
+    LOG.statistics(new LongStatistic(this.getClass().getName() + ".postings-bytes", bytes));
   }
 
   @Override
@@ -289,6 +321,188 @@ public class InMemoryInvertedIndex<V extends NumberVector> extends AbstractIndex
     return "inverted-lists";
   }
 
+  /**
+   * Non-zero values of a vector.
+   * 
+   * @author Erich Schubert
+   * 
+   * @apiviz.exclude
+   */
+  private static class Terms {
+    /**
+     * Dimensions.
+     */
+    int[] dims = new int[16];
+
+    /**
+     * Values.
+     */
+    double[] vals = new double[16];
+
+    /**
+     * Number of non-zero values.
+     */
+    int size;
+
+    /**
+     * Squared length.
+     */
+    double len;
+
+    /**
+     * Load the non-zero values of a vector.
+     * 
+     * @param obj Vector
+     */
+    void load(NumberVector obj) {
+      size = 0;
+      len = 0.;
+      if(obj instanceof SparseNumberVector) {
+        SparseNumberVector sobj = (SparseNumberVector) obj;
+        for(int iter = sobj.iter(); sobj.iterValid(iter); iter = sobj.iterAdvance(iter)) {
+          add(sobj.iterDim(iter), sobj.iterDoubleValue(iter));
+        }
+      }
+      else {
+        for(int dim = 0, max = obj.getDimensionality(); dim < max; dim++) {
+          add(dim, obj.doubleValue(dim));
+        }
+      }
+    }
+
+    /**
+     * Add a value, unless it is zero or NaN.
+     * 
+     * @param dim Dimension
+     * @param val Value
+     */
+    private void add(int dim, double val) {
+      if(val == 0. || val != val) {
+        return;
+      }
+      if(size == dims.length) {
+        dims = Arrays.copyOf(dims, size << 1);
+        vals = Arrays.copyOf(vals, size << 1);
+      }
+      dims[size] = dim;
+      vals[size++] = val;
+      len += val * val;
+    }
+  }
+
+  /**
+   * Cursor on a compressed posting list.
+   * 
+   * @author Erich Schubert
+   * 
+   * @apiviz.exclude
+   */
+  private static class Cursor implements Comparable<Cursor> {
+    /**
+     * Compressed offsets.
+     */
+    final ByteBuffer data;
+
+    /**
+     * Weights.
+     */
+    final double[] weights;
+
+    /**
+     * Query weight, and upper bound of the score contribution.
+     */
+    final double q, bound;
+
+    /**
+     * Current position in the list.
+     */
+    int pos = -1;
+
+    /**
+     * Current object offset, {@link Integer#MAX_VALUE} when exhausted.
+     */
+    int doc = 0;
+
+    /**
+     * Constructor.
+     * 
+     * @param data Compressed offsets
+     * @param weights Weights
+     * @param q Query weight
+     * @param bound Upper bound of the score contribution
+     */
+    Cursor(byte[] data, double[] weights, double q, double bound) {
+      this.data = ByteBuffer.wrap(data);
+      this.weights = weights;
+      this.q = q;
+      this.bound = bound;
+    }
+
+    /**
+     * Advance to the next posting.
+     */
+    void next() {
+      if(doc == Integer.MAX_VALUE) {
+        return;
+      }
+      if(++pos < weights.length) {
+        doc += ByteArrayUtil.readUnsignedVarint(data);
+      }
+      else {
+        doc = Integer.MAX_VALUE;
+      }
+    }
+
+    /**
+     * Advance to the first posting with an offset of at least {@code target}.
+     * 
+     * @param target Target offset
+     */
+    void advance(int target) {
+      while(doc < target) {
+        next();
+      }
+    }
+
+    /**
+     * Score contribution of the current posting.
+     * 
+     * @return Score
+     */
+    double score() {
+      return q * weights[pos];
+    }
+
+    @Override
+    public int compareTo(Cursor o) {
+      return Double.compare(bound, o.bound);
+    }
+  }
+
+  /**
+   * Collector for query results.
+   * 
+   * @author Erich Schubert
+   * 
+   * @apiviz.exclude
+   */
+  private interface Collector {
+    /**
+     * Minimum similarity an object must have to be collected.
+     * 
+     * @return Similarity threshold
+     */
+    double threshold();
+
+    /**
+     * Collect an object.
+     * 
+     * @param sim Cosine similarity
+     * @param id Object
+     */
+    void collect(double sim, DBIDRef id);
+  }
+
   /**
    * kNN query object, for cosine distance.
    * 
@@ -307,22 +521,38 @@ public class InMemoryInvertedIndex<V extends NumberVector> extends AbstractIndex
     }
 
     @Override
-    public KNNList getKNNForObject(V obj, int k) {
-      HashSetModifiableDBIDs cands = DBIDUtil.newHashSet();
-      WritableDoubleDataStore scores = DataStoreUtil.makeDoubleStorage(cands, //
-          DataStoreFactory.HINT_TEMP | DataStoreFactory.HINT_HOT, 0.);
-      double len = naiveQuery(obj, scores, cands);
-      // TODO: delay the division by len!
-      KNNHeap heap = DBIDUtil.newHeap(k);
-      for(DBIDIter n = cands.iter(); n.valid(); n.advance()) {
-        double dist = 1. - scores.doubleValue(n) / (length.doubleValue(n) * len);
-        if(heap.getKNNDistance() >= dist) {
-          heap.insert(dist, n);
+    public KNNList getKNNForObject(V obj, final int k) {
+      final KNNHeap heap = DBIDUtil.newHeap(k);
+      maxScore(obj, new Collector() {
+        @Override
+        public double threshold() {
+          return heap.size() >= k ? 1. - heap.getKNNDistance() : Double.NEGATIVE_INFINITY;
         }
-      }
 
+        @Override
+        public void collect(double sim, DBIDRef id) {
+          heap.insert(1. - sim, id);
+        }
+      });
       return heap.toKNNList();
     }
+
+    @Override
+    public List<? extends KNNList> getKNNForBulkDBIDs(final ArrayDBIDs qids, final int k) {
+      final int size = qids.size();
+      final KNNList[] result = new KNNList[size];
+      ParallelBlocks.run(size, new ParallelBlocks.Task<Void>() {
+        @Override
+        public Void run(int block, int begin, int end) {
+          DBIDArrayIter qiter = qids.iter();
+          for(qiter.seek(begin); qiter.getOffset() < end; qiter.advance()) {
+            result[qiter.getOffset()] = getKNNForDBID(qiter, k);
+          }
+          return null;
+        }
+      });
+      return Arrays.asList(result);
+    }
   }
 
   /**
@@ -332,7 +562,7 @@ public class InMemoryInvertedIndex<V extends NumberVector> extends AbstractIndex
    * 
    * @apiviz.exclude
    */
-  protected class ArcCosineKNNQuery extends AbstractDistanceKNNQuery<V> {
+  protected class ArcCosineKNNQuery extends CosineKNNQuery {
     /**
      * Constructor.
      * 
@@ -343,20 +573,19 @@ public class InMemoryInvertedIndex<V extends NumberVector> extends AbstractIndex
     }
 
     @Override
-    public KNNList getKNNForObject(V obj, int k) {
-      HashSetModifiableDBIDs cands = DBIDUtil.newHashSet();
-      WritableDoubleDataStore scores = DataStoreUtil.makeDoubleStorage(cands, //
-          DataStoreFactory.HINT_TEMP | DataStoreFactory.HINT_HOT, 0.);
-      double len = naiveQuery(obj, scores, cands);
-      // TODO: delay the division by len and acos!
-      KNNHeap heap = DBIDUtil.newHeap(k);
-      for(DBIDIter n = cands.iter(); n.valid(); n.advance()) {
-        double dist = Math.acos(scores.doubleValue(n) / (length.doubleValue(n) * len));
-        if(heap.getKNNDistance() >= dist) {
-          heap.insert(dist, n);
+    public KNNList getKNNForObject(V obj, final int k) {
+      final KNNHeap heap = DBIDUtil.newHeap(k);
+      maxScore(obj, new Collector() {
+        @Override
+        public double threshold() {
+          return heap.size() >= k ? Math.cos(heap.getKNNDistance()) : Double.NEGATIVE_INFINITY;
         }
-      }
 
+        @Override
+        public void collect(double sim, DBIDRef id) {
+          heap.insert(Math.acos(Math.min(1., sim)), id);
+        }
+      });
       return heap.toKNNList();
     }
   }
@@ -380,19 +609,20 @@ public class InMemoryInvertedIndex<V extends NumberVector> extends AbstractIndex
 
     @Override
     public DoubleDBIDList getRangeForObject(V obj, double range) {
-      HashSetModifiableDBIDs cands = DBIDUtil.newHashSet();
-      WritableDoubleDataStore scores = DataStoreUtil.makeDoubleStorage(cands, //
-          DataStoreFactory.HINT_TEMP | DataStoreFactory.HINT_HOT, 0.);
-      double len = naiveQuery(obj, scores, cands);
-      ModifiableDoubleDBIDList list = DBIDUtil.newDistanceDBIDList();
-      // dist = 1 - sim/len <-> sim = len * (1-dist)
-      double simrange = (1. - range) * len;
-      for(DBIDIter n = cands.iter(); n.valid(); n.advance()) {
-        double sim = scores.doubleValue(n) / length.doubleValue(n);
-        if(sim >= simrange) {
-          list.add(1. - sim / len, n);
+      final ModifiableDoubleDBIDList list = DBIDUtil.newDistanceDBIDList();
+      // dist = 1 - sim <-> sim = 1 - dist
+      final double simrange = 1. - range;
+      maxScore(obj, new Collector() {
+        @Override
+        public double threshold() {
+          return simrange;
         }
-      }
+
+        @Override
+        public void collect(double sim, DBIDRef id) {
+          list.add(1. - sim, id);
+        }
+      });
       list.sort();
       return list;
     }
@@ -417,19 +647,20 @@ public class InMemoryInvertedIndex<V extends NumberVector> extends AbstractIndex
 
     @Override
     public DoubleDBIDList getRangeForObject(V obj, double range) {
-      HashSetModifiableDBIDs cands = DBIDUtil.newHashSet();
-      WritableDoubleDataStore scores = DataStoreUtil.makeDoubleStorage(cands, //
-          DataStoreFactory.HINT_TEMP | DataStoreFactory.HINT_HOT, 0.);
-      double len = naiveQuery(obj, scores, cands);
-      // dist = acos(sim/len) <-> sim = cos(dist)*len
-      double simrange = Math.cos(range) * len;
-      ModifiableDoubleDBIDList list = DBIDUtil.newDistanceDBIDList();
-      for(DBIDIter n = cands.iter(); n.valid(); n.advance()) {
-        double sim = scores.doubleValue(n) / length.doubleValue(n);
-        if(sim >= simrange) {
-          list.add(Math.acos(sim / len), n);
+      final ModifiableDoubleDBIDList list = DBIDUtil.newDistanceDBIDList();
+      // dist = acos(sim) <-> sim = cos(dist)
+      final double simrange = Math.cos(range);
+      maxScore(obj, new Collector() {
+        @Override
+        public double threshold() {
+          return simrange;
         }
-      }
+
+        @Override
+        public void collect(double sim, DBIDRef id) {
+          list.add(Math.acos(Math.min(1., sim)), id);
+        }
+      });
       list.sort();
       return list;
     }
@@ -22,16 +22,13 @@ package de.lmu.ifi.dbs.elki.index.lsh;
  You should have received a copy of the GNU Affero General Public License
  along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
-import gnu.trove.iterator.TIntObjectIterator;
-import gnu.trove.map.TIntObjectMap;
-import gnu.trove.map.hash.TIntObjectHashMap;
-
 import java.util.ArrayList;
 
 import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
-import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
 import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDList;
 import de.lmu.ifi.dbs.elki.database.ids.KNNHeap;
 import de.lmu.ifi.dbs.elki.database.ids.KNNList;
@@ -49,9 +46,11 @@ import de.lmu.ifi.dbs.elki.index.KNNIndex;
 import de.lmu.ifi.dbs.elki.index.RangeIndex;
 import de.lmu.ifi.dbs.elki.index.lsh.hashfamilies.LocalitySensitiveHashFunctionFamily;
 import de.lmu.ifi.dbs.elki.index.lsh.hashfunctions.LocalitySensitiveHashFunction;
+import de.lmu.ifi.dbs.elki.index.lsh.hashfunctions.MultiProbeLocalitySensitiveHashFunction;
 import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
 import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
+import de.lmu.ifi.dbs.elki.parallel.ParallelBlocks;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
@@ -62,6 +61,21 @@ import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
 /**
  * Locality Sensitive Hashing.
  * 
+ * Each hash table is stored in compressed sparse row format: the members of
+ * all buckets are stored in a single array of object offsets, ordered by
+ * bucket, with a second array holding the start of each bucket. The tables are
+ * built in parallel.
+ * 
+ * If the hash functions support it, queries probe additional neighboring
+ * buckets (multi-probe LSH), which gives a higher recall with fewer tables.
+ * 
+ * Reference (multi-probe):
+ * <p>
+ * Q. Lv, W. Josephson, Z. Wang, M. Charikar, K. Li<br />
+ * Multi-probe LSH: efficient indexing for high-dimensional similarity search<br />
+ * Proc. 33rd International Conference on Very Large Data Bases (VLDB'07)
+ * </p>
+ * 
  * @author Erich Schubert
  * 
  * @apiviz.has LocalitySensitiveHashFunctionFamily
@@ -90,6 +104,11 @@ public class InMemoryLSHIndex<V> implements IndexFactory<V, InMemoryLSHIndex<V>.
    */
   int numberOfBuckets;
 
+  /**
+   * Number of additional buckets to probe in each table.
+   */
+  int probes;
+
   /**
    * Constructor.
    * 
@@ -98,10 +117,23 @@ public class InMemoryLSHIndex<V> implements IndexFactory<V, InMemoryLSHIndex<V>.
    * @param numberOfBuckets Number of buckets to use.
    */
   public InMemoryLSHIndex(LocalitySensitiveHashFunctionFamily<? super V> family, int l, int numberOfBuckets) {
+    this(family, l, numberOfBuckets, 0);
+  }
+
+  /**
+   * Constructor.
+   * 
+   * @param family Projection family
+   * @param l Number of hash tables to use
+   * @param numberOfBuckets Number of buckets to use.
+   * @param probes Number of additional buckets to probe in each table.
+   */
+  public InMemoryLSHIndex(LocalitySensitiveHashFunctionFamily<? super V> family, int l, int numberOfBuckets, int probes) {
     super();
     this.family = family;
     this.l = l;
     this.numberOfBuckets = numberOfBuckets;
+    this.probes = probes;
   }
 
   @Override
@@ -128,9 +160,20 @@ public class InMemoryLSHIndex<V> implements IndexFactory<V, InMemoryLSHIndex<V>.
     ArrayList<? extends LocalitySensitiveHashFunction<? super V>> hashfunctions;
 
     /**
-     * The actual table
+     * Object IDs, the tables store offsets into this array.
+     */
+    ArrayDBIDs ids;
+
+    /**
+     * Start of each bucket, for each table. The last entry is the end of the
+     * last bucket.
      */
-    ArrayList<TIntObjectMap<DBIDs>> hashtables;
+    int[][] bucketStart;
+
+    /**
+     * Object offsets, ordered by bucket, for each table.
+     */
+    int[][] members;
 
     /**
      * Number of buckets to use.
@@ -162,46 +205,29 @@ public class InMemoryLSHIndex<V> implements IndexFactory<V, InMemoryLSHIndex<V>.
     @Override
     public void initialize() {
       final int numhash = hashfunctions.size();
-      hashtables = new ArrayList<>(numhash);
-      for(int i = 0; i < numhash; i++) {
-        hashtables.add(new TIntObjectHashMap<DBIDs>(numberOfBuckets));
-      }
-
-      FiniteProgress progress = LOG.isVerbose() ? new FiniteProgress("Building LSH index.", relation.size(), LOG) : null;
-      int expect = Math.max(2, (int) Math.ceil(relation.size() / (double) numberOfBuckets));
-      for(DBIDIter iter = relation.getDBIDs().iter(); iter.valid(); iter.advance()) {
-        V obj = relation.get(iter);
-        for(int i = 0; i < numhash; i++) {
-          final TIntObjectMap<DBIDs> table = hashtables.get(i);
-          final LocalitySensitiveHashFunction<? super V> hashfunc = hashfunctions.get(i);
-          // Get the initial (unbounded) hash code:
-          int hash = hashfunc.hashObject(obj);
-          // Reduce to hash table size
-          int bucket = hash % numberOfBuckets;
-          DBIDs cur = table.get(bucket);
-          if(cur == null) {
-            table.put(bucket, DBIDUtil.deref(iter));
-          }
-          else if(cur.size() > 1) {
-            ((ModifiableDBIDs) cur).add(iter);
-          }
-          else {
-            ModifiableDBIDs newbuck = DBIDUtil.newArray(expect);
-            newbuck.addDBIDs(cur);
-            newbuck.add(iter);
-            table.put(bucket, newbuck);
-          }
+      ids = DBIDUtil.ensureArray(relation.getDBIDs());
+      bucketStart = new int[numhash][];
+      members = new int[numhash][];
+
+      final FiniteProgress progress = LOG.isVerbose() ? new FiniteProgress("Building LSH index.", numhash, LOG) : null;
+      ParallelBlocks.run(numhash, numhash, new ParallelBlocks.Task<Void>() {
+        @Override
+        public Void run(int block, int begin, int end) {
+          buildTable(block);
+          LOG.incrementProcessed(progress);
+          return null;
         }
-        LOG.incrementProcessed(progress);
-      }
+      });
       LOG.ensureCompleted(progress);
       if(LOG.isStatistics()) {
         int min = Integer.MAX_VALUE, max = 0;
         for(int i = 0; i < numhash; i++) {
-          final TIntObjectMap<DBIDs> table = hashtables.get(i);
-          for(TIntObjectIterator<DBIDs> iter = table.iterator(); iter.hasNext();) {
-            iter.advance();
-            int size = iter.value().size();
+          final int[] start = bucketStart[i];
+          for(int b = 0; b < numberOfBuckets; b++) {
+            int size = start[b + 1] - start[b];
+            if(size == 0) {
+              continue;
+            }
             if(size < min) {
               min = size;
             }
@@ -212,7 +238,79 @@ public class InMemoryLSHIndex<V> implements IndexFactory<V, InMemoryLSHIndex<V>.
         }
         LOG.statistics(new LongStatistic(this.getClass().getName() + ".fill.min", min));
         LOG.statistics(new LongStatistic(this.getClass().getName() + ".fill.max", max));
-        LOG.statistics(new LongStatistic(this.getClass().getName() + ".hashtables", hashtables.size()));
+        LOG.statistics(new LongStatistic(this.getClass().getName() + ".hashtables", numhash));
+      }
+    }
+
+    /**
+     * Build a single hash table.
+     * 
+     * @param table Table number
+     */
+    private void buildTable(int table) {
+      final LocalitySensitiveHashFunction<? super V> hashfunc = hashfunctions.get(table);
+      final int size = ids.size();
+      // Bucket of each object, and bucket sizes:
+      int[] bucketOf = new int[size];
+      int[] start = new int[numberOfBuckets + 1];
+      DBIDArrayIter iter = ids.iter();
+      for(int j = 0; j < size; j++, iter.advance()) {
+        final int bucket = bucket(hashfunc.hashObject(relation.get(iter)));
+        bucketOf[j] = bucket;
+        ++start[bucket + 1];
+      }
+      // Cumulative sum, start[b] is now the beginning of bucket b:
+      for(int b = 0; b < numberOfBuckets; b++) {
+        start[b + 1] += start[b];
+      }
+      int[] fill = new int[numberOfBuckets];
+      System.arraycopy(start, 0, fill, 0, numberOfBuckets);
+      int[] mem = new int[size];
+      for(int j = 0; j < size; j++) {
+        mem[fill[bucketOf[j]]++] = j;
+      }
+      bucketStart[table] = start;
+      members[table] = mem;
+    }
+
+    /**
+     * Reduce a hash code to the hash table size.
+     * 
+     * @param hash Hash code
+     * @return Bucket number
+     */
+    private int bucket(int hash) {
+      final int bucket = hash % numberOfBuckets;
+      return bucket < 0 ? bucket + numberOfBuckets : bucket;
+    }
+
+    /**
+     * Collect the candidates from all tables.
+     * 
+     * @param obj Query object
+     * @param candidates Output candidates
+     */
+    @SuppressWarnings("unchecked")
+    private void collectCandidates(V obj, ModifiableDBIDs candidates) {
+      DBIDArrayIter iter = ids.iter();
+      final int numhash = hashfunctions.size();
+      for(int i = 0; i < numhash; i++) {
+        final LocalitySensitiveHashFunction<? super V> hashfunc = hashfunctions.get(i);
+        final int[] start = bucketStart[i], mem = members[i];
+        if(probes > 0 && hashfunc instanceof MultiProbeLocalitySensitiveHashFunction) {
+          for(int hash : ((MultiProbeLocalitySensitiveHashFunction<? super V>) hashfunc).hashProbes(obj, probes)) {
+            final int bucket = bucket(hash);
+            for(int p = start[bucket], end = start[bucket + 1]; p < end; p++) {
+              candidates.add(iter.seek(mem[p]));
+            }
+          }
+        }
+        else {
+          final int bucket = bucket(hashfunc.hashObject(obj));
+          for(int p = start[bucket], end = start[bucket + 1]; p < end; p++) {
+            candidates.add(iter.seek(mem[p]));
+          }
+        }
       }
     }
 
@@ -268,26 +366,8 @@ public class InMemoryLSHIndex<V> implements IndexFactory<V, InMemoryLSHIndex<V>.
 
       @Override
       public KNNList getKNNForObject(V obj, int k) {
-        ModifiableDBIDs candidates = null;
-        final int numhash = hashtables.size();
-        for(int i = 0; i < numhash; i++) {
-          final TIntObjectMap<DBIDs> table = hashtables.get(i);
-          final LocalitySensitiveHashFunction<? super V> hashfunc = hashfunctions.get(i);
-          // Get the initial (unbounded) hash code:
-          int hash = hashfunc.hashObject(obj);
-          // Reduce to hash table size
-          int bucket = hash % numberOfBuckets;
-          DBIDs cur = table.get(bucket);
-          if(cur != null) {
-            if(candidates == null) {
-              candidates = DBIDUtil.newHashSet(cur.size() * numhash + k);
-            }
-            candidates.addDBIDs(cur);
-          }
-        }
-        if(candidates == null) {
-          candidates = DBIDUtil.newArray();
-        }
+        ModifiableDBIDs candidates = DBIDUtil.newHashSet();
+        collectCandidates(obj, candidates);
 
         // Refine.
         KNNHeap heap = DBIDUtil.newHeap(k);
@@ -320,19 +400,7 @@ public class InMemoryLSHIndex<V> implements IndexFactory<V, InMemoryLSHIndex<V>.
       @Override
       public DoubleDBIDList getRangeForObject(V obj, double range) {
         ModifiableDBIDs candidates = DBIDUtil.newHashSet();
-        final int numhash = hashtables.size();
-        for(int i = 0; i < numhash; i++) {
-          final TIntObjectMap<DBIDs> table = hashtables.get(i);
-          final LocalitySensitiveHashFunction<? super V> hashfunc = hashfunctions.get(i);
-          // Get the initial (unbounded) hash code:
-          int hash = hashfunc.hashObject(obj);
-          // Reduce to hash table size
-          int bucket = hash % numberOfBuckets;
-          DBIDs cur = table.get(bucket);
-          if(cur != null) {
-            candidates.addDBIDs(cur);
-          }
-        }
+        collectCandidates(obj, candidates);
 
         // Refine.
         ModifiableDoubleDBIDList result = DBIDUtil.newDistanceDBIDList();
@@ -371,6 +439,11 @@ public class InMemoryLSHIndex<V> implements IndexFactory<V, InMemoryLSHIndex<V>.
      */
     public static final OptionID BUCKETS_ID = new OptionID("lsh.buckets", "Number of hash buckets to use.");
 
+    /**
+     * Number of additional buckets to probe in each table.
+     */
+    public static final OptionID PROBES_ID = new OptionID("lsh.probes", "Number of additional buckets to probe in each hash table (multi-probe LSH).");
+
     /**
      * LSH hash function family to use.
      */
@@ -386,6 +459,11 @@ public class InMemoryLSHIndex<V> implements IndexFactory<V, InMemoryLSHIndex<V>.
      */
     int numberOfBuckets;
 
+    /**
+     * Number of additional buckets to probe.
+     */
+    int probes;
+
     @Override
     protected void makeOptions(Parameterization config) {
       super.makeOptions(config);
@@ -406,11 +484,17 @@ public class InMemoryLSHIndex<V> implements IndexFactory<V, InMemoryLSHIndex<V>.
       if(config.grab(bucketsP)) {
         numberOfBuckets = bucketsP.intValue();
       }
+
+      IntParameter probesP = new IntParameter(PROBES_ID, 0);
+      probesP.addConstraint(CommonConstraints.GREATER_EQUAL_ZERO_INT);
+      if(config.grab(probesP)) {
+        probes = probesP.intValue();
+      }
     }
 
     @Override
     protected InMemoryLSHIndex<V> makeInstance() {
-      return new InMemoryLSHIndex<>(family, l, numberOfBuckets);
+      return new InMemoryLSHIndex<>(family, l, numberOfBuckets, probes);
     }
   }
 }
@@ -26,6 +26,7 @@ package de.lmu.ifi.dbs.elki.index.lsh.hashfunctions;
 import de.lmu.ifi.dbs.elki.data.NumberVector;
 import de.lmu.ifi.dbs.elki.math.linearalgebra.randomprojections.RandomProjectionFamily;
 import de.lmu.ifi.dbs.elki.math.linearalgebra.randomprojections.RandomProjectionFamily.Projection;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.arrays.DoubleIntegerArrayQuickSort;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
 
 /**
@@ -44,7 +45,7 @@ import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
 title = "Similarity estimation techniques from rounding algorithms", //
 booktitle = "Proc. 34th ACM Symposium on Theory of computing, STOC'02", //
 url = "https://dx.doi.org/10.1145%2F509907.509965")
-public class CosineLocalitySensitiveHashFunction implements LocalitySensitiveHashFunction<NumberVector> {
+public class CosineLocalitySensitiveHashFunction implements MultiProbeLocalitySensitiveHashFunction<NumberVector> {
   /**
    * Projection function.
    */
@@ -70,4 +71,33 @@ public class CosineLocalitySensitiveHashFunction implements LocalitySensitiveHas
     }
     return hashValue;
   }
+
+  @Override
+  public int[] hashProbes(NumberVector obj, int probes) {
+    double[] projectionResult = projection.project(obj);
+    final int num = projectionResult.length;
+    int hashValue = 0;
+    // Cost of flipping each bit: squared distance to the hyperplane.
+    double[] costs = new double[num];
+    int[] bits = new int[num];
+    for(int i = 0; i < num; i++) {
+      if(projectionResult[i] > 0) {
+        hashValue = hashValue + (1 << i);
+      }
+      costs[i] = projectionResult[i] * projectionResult[i];
+      bits[i] = i;
+    }
+    DoubleIntegerArrayQuickSort.sort(costs, bits, num);
+    int[][] sets = ProbeSequence.generate(costs, null, probes);
+    int[] hashes = new int[sets.length + 1];
+    hashes[0] = hashValue;
+    for(int s = 0; s < sets.length; s++) {
+      int h = hashValue;
+      for(int j : sets[s]) {
+        h ^= 1 << bits[j];
+      }
+      hashes[s + 1] = h;
+    }
+    return hashes;
+  }
 }
@@ -0,0 +1,55 @@
+package de.lmu.ifi.dbs.elki.index.lsh.hashfunctions;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Hash functions that support multi-probe LSH, i.e. that can enumerate the
+ * buckets neighboring the bucket of a query object, in the order of their
+ * likelihood of containing near neighbors.
+ * 
+ * Reference:
+ * <p>
+ * Q. Lv, W. Josephson, Z. Wang, M. Charikar, K. Li<br />
+ * Multi-probe LSH: efficient indexing for high-dimensional similarity search<br />
+ * Proc. 33rd International Conference on Very Large Data Bases (VLDB'07)
+ * </p>
+ * 
+ * @author Erich Schubert
+ * 
+ * @apiviz.uses ProbeSequence
+ * 
+ * @param <V> Data type to hash.
+ */
+public interface MultiProbeLocalitySensitiveHashFunction<V> extends LocalitySensitiveHashFunction<V> {
+  /**
+   * Compute the hash value of an object, and of the most promising
+   * perturbations.
+   * 
+   * @param obj Object to hash
+   * @param probes Number of additional buckets to probe
+   * @return Hash values; the first is the same as {@link #hashObject}. There
+   *         may be fewer than {@code probes + 1} values.
+   */
+  int[] hashProbes(V obj, int probes);
+}
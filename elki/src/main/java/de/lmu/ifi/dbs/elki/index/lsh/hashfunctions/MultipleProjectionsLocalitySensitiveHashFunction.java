@@ -26,12 +26,16 @@ import java.util.Random;
 
 import de.lmu.ifi.dbs.elki.data.NumberVector;
 import de.lmu.ifi.dbs.elki.math.linearalgebra.randomprojections.RandomProjectionFamily;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.arrays.DoubleIntegerArrayQuickSort;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
 
 /**
  * LSH hash function for vector space data. Depending on the choice of random
  * vectors, it can be appropriate for Manhattan and Euclidean distances.
  * 
+ * For multi-probe queries, the neighboring bins along each projection are
+ * ranked by the squared distance of the query to the bin boundary.
+ * 
  * Reference:
  * <p>
  * Locality-sensitive hashing scheme based on p-stable distributions<br />
@@ -45,7 +49,7 @@ import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
 title = "Locality-sensitive hashing scheme based on p-stable distributions", //
 booktitle = "Proc. 20th annual symposium on Computational geometry", //
 url = "http://dx.doi.org/10.1145/997817.997857")
-public class MultipleProjectionsLocalitySensitiveHashFunction implements LocalitySensitiveHashFunction<NumberVector> {
+public class MultipleProjectionsLocalitySensitiveHashFunction implements MultiProbeLocalitySensitiveHashFunction<NumberVector> {
   /**
    * Projection matrix.
    */
@@ -107,6 +111,44 @@ public class MultipleProjectionsLocalitySensitiveHashFunction implements Localit
     return fastModPrime(t1sum);
   }
 
+  @Override
+  public int[] hashProbes(NumberVector vec, int probes) {
+    long t1sum = 0L;
+    final double[] proj = projection.project(vec);
+    final int num = shift.length;
+    // Costs of moving to the left (even) or right (odd) neighbor bin.
+    double[] costs = new double[num << 1];
+    int[] perturbations = new int[num << 1];
+    for(int i = 0; i < num; i++) {
+      final double pos = (proj[i] + shift[i]) * iwidth;
+      final double floor = Math.floor(pos);
+      t1sum += (randoms1[i] & MASK32) * (int) floor; // unsigned math!
+      final double frac = pos - floor;
+      costs[i << 1] = frac * frac;
+      costs[(i << 1) + 1] = (1 - frac) * (1 - frac);
+      perturbations[i << 1] = i << 1;
+      perturbations[(i << 1) + 1] = (i << 1) + 1;
+    }
+    DoubleIntegerArrayQuickSort.sort(costs, perturbations, costs.length);
+    int[] groups = new int[perturbations.length];
+    for(int j = 0; j < perturbations.length; j++) {
+      groups[j] = perturbations[j] >>> 1;
+    }
+    int[][] sets = ProbeSequence.generate(costs, groups, probes);
+    int[] hashes = new int[sets.length + 1];
+    hashes[0] = fastModPrime(t1sum);
+    for(int s = 0; s < sets.length; s++) {
+      long sum = t1sum;
+      for(int j : sets[s]) {
+        final int p = perturbations[j];
+        final long r = randoms1[p >>> 1] & MASK32;
+        sum += ((p & 1) == 0) ? -r : r;
+      }
+      hashes[s + 1] = fastModPrime(sum);
+    }
+    return hashes;
+  }
+
   /**
    * Fast modulo operation for the largest unsigned integer prime.
    * 
@@ -0,0 +1,161 @@
+package de.lmu.ifi.dbs.elki.index.lsh.hashfunctions;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.ComparableMinHeap;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+
+/**
+ * Generate the perturbation sets for multi-probe LSH.
+ * 
+ * Given the costs of the individual perturbations, sorted in ascending order,
+ * the sets of perturbations are generated in ascending order of their total
+ * cost, using the shift and expand operations of Lv et al. Perturbations of
+ * the same group (e.g. moving to the left and to the right along the same
+ * projection) are mutually exclusive.
+ * 
+ * Reference:
+ * <p>
+ * Q. Lv, W. Josephson, Z. Wang, M. Charikar, K. Li<br />
+ * Multi-probe LSH: efficient indexing for high-dimensional similarity search<br />
+ * Proc. 33rd International Conference on Very Large Data Bases (VLDB'07)
+ * </p>
+ * 
+ * @author Erich Schubert
+ */
+@Reference(authors = "Q. Lv, W. Josephson, Z. Wang, M. Charikar, K. Li", //
+title = "Multi-probe LSH: efficient indexing for high-dimensional similarity search", //
+booktitle = "Proc. 33rd International Conference on Very Large Data Bases (VLDB'07)", //
+url = "http://www.vldb.org/conf/2007/papers/research/p950-lv.pdf")
+public final class ProbeSequence {
+  /**
+   * Fake constructor: do not instantiate.
+   */
+  private ProbeSequence() {
+    // Do not instantiate.
+  }
+
+  /**
+   * Generate the perturbation sets.
+   * 
+   * @param costs Perturbation costs, sorted ascending
+   * @param groups Group of each perturbation, may be {@code null} if all
+   *        perturbations can be combined.
+   * @param probes Maximum number of sets to generate
+   * @return Perturbation sets, as indexes into the costs array
+   */
+  public static int[][] generate(double[] costs, int[] groups, int probes) {
+    final int m = costs.length;
+    if(m == 0 || probes <= 0) {
+      return new int[0][];
+    }
+    int[][] result = new int[probes][];
+    int found = 0;
+    ComparableMinHeap<Candidate> heap = new ComparableMinHeap<>();
+    heap.add(new Candidate(new int[] { 0 }, costs[0]));
+    while(found < probes && !heap.isEmpty()) {
+      Candidate cand = heap.poll();
+      final int[] set = cand.set;
+      final int last = set[set.length - 1];
+      if(last + 1 < m) {
+        // Shift: replace the last element by its successor.
+        int[] shift = set.clone();
+        shift[set.length - 1] = last + 1;
+        heap.add(new Candidate(shift, cand.cost - costs[last] + costs[last + 1]));
+        // Expand: add the successor of the last element.
+        int[] expand = new int[set.length + 1];
+        System.arraycopy(set, 0, expand, 0, set.length);
+        expand[set.length] = last + 1;
+        heap.add(new Candidate(expand, cand.cost + costs[last + 1]));
+      }
+      if(isValid(set, groups)) {
+        result[found++] = set;
+      }
+    }
+    if(found < probes) {
+      int[][] trimmed = new int[found][];
+      System.arraycopy(result, 0, trimmed, 0, found);
+      return trimmed;
+    }
+    return result;
+  }
+
+  /**
+   * Test whether a perturbation set contains two perturbations of the same
+   * group.
+   * 
+   * @param set Perturbation set
+   * @param groups Perturbation groups, may be {@code null}
+   * @return {@code true} when valid
+   */
+  private static boolean isValid(int[] set, int[] groups) {
+    if(groups == null) {
+      return true;
+    }
+    for(int i = 1; i < set.length; i++) {
+      final int g = groups[set[i]];
+      for(int j = 0; j < i; j++) {
+        if(groups[set[j]] == g) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Candidate perturbation set.
+   * 
+   * @author Erich Schubert
+   * 
+   * @apiviz.exclude
+   */
+  private static class Candidate implements Comparable<Candidate> {
+    /**
+     * Perturbations, ascending.
+     */
+    final int[] set;
+
+    /**
+     * Total cost.
+     */
+    final double cost;
+
+    /**
+     * Constructor.
+     * 
+     * @param set Perturbations
+     * @param cost Total cost
+     */
+    Candidate(int[] set, double cost) {
+      this.set = set;
+      this.cost = cost;
+    }
+
+    @Override
+    public int compareTo(Candidate o) {
+      return Double.compare(cost, o.cost);
+    }
+  }
+}
@@ -0,0 +1,549 @@
+package de.lmu.ifi.dbs.elki.index.preprocessed.knn;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.util.List;
+
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableIntegerDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRange;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDPair;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.database.query.LinearScanQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
+import de.lmu.ifi.dbs.elki.parallel.ParallelBlocks;
+import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
+
+/**
+ * Compact in-memory k nearest neighbor graph.
+ *
+ * The neighbors of all objects are stored in a compressed sparse row layout:
+ * one array of row start positions, one array of neighbor offsets (positions
+ * in the DBID array) and one array of distances. Each row is sorted by
+ * distance, includes the query object itself (as returned by kNN queries), and
+ * contains all neighbors tied with the k-th neighbor.
+ *
+ * Because the graph is stored for the maximum k, it can answer queries for any
+ * smaller k as well, and can be shared by many algorithms and parameter
+ * settings without recomputing neighborhoods.
+ *
+ * @author Erich Schubert
+ *
+ * @apiviz.has KNNList
+ */
+public class KNNGraph {
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(KNNGraph.class);
+
+  /**
+   * Object IDs, in row order.
+   */
+  private final ArrayDBIDs ids;
+
+  /**
+   * Offset lookup, when the IDs are a range.
+   */
+  private final DBIDRange range;
+
+  /**
+   * Offset lookup, for arbitrary IDs.
+   */
+  private final WritableIntegerDataStore offsets;
+
+  /**
+   * Maximum k (including the query object) stored.
+   */
+  private final int k;
+
+  /**
+   * Row start positions; row i is {@code [start[i], start[i+1])}.
+   */
+  private final int[] start;
+
+  /**
+   * Neighbor offsets.
+   */
+  private int[] neighbors;
+
+  /**
+   * Neighbor distances.
+   */
+  private double[] distances;
+
+  /**
+   * Constructor.
+   *
+   * @param ids Object IDs, in row order
+   * @param k Maximum k
+   * @param start Row start positions, of length {@code ids.size() + 1}
+   * @param neighbors Neighbor offsets
+   * @param distances Neighbor distances
+   */
+  public KNNGraph(ArrayDBIDs ids, int k, int[] start, int[] neighbors, double[] distances) {
+    super();
+    this.ids = ids;
+    this.k = k;
+    this.start = start;
+    this.neighbors = neighbors;
+    this.distances = distances;
+    if(ids instanceof DBIDRange) {
+      this.range = (DBIDRange) ids;
+      this.offsets = null;
+    }
+    else {
+      this.range = null;
+      this.offsets = DataStoreUtil.makeIntegerStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP, -1);
+      int i = 0;
+      for(DBIDIter iter = ids.iter(); iter.valid(); iter.advance(), i++) {
+        offsets.putInt(iter, i);
+      }
+    }
+  }
+
+  /**
+   * Build the kNN graph.
+   *
+   * Linear scan queries are run in parallel. Index-based queries are run
+   * sequentially, as the indexes (page caches, statistics) are not thread
+   * safe.
+   *
+   * @param ids Object IDs
+   * @param knnq kNN query
+   * @param k Number of neighbors to retrieve (including the query object)
+   * @return kNN graph
+   */
+  public static KNNGraph build(ArrayDBIDs ids, KNNQuery<?> knnq, int k) {
+    final int size = ids.size();
+    FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Materializing kNN graph (k=" + k + ")", size, LOG) : null;
+    KNNGraph graph = new KNNGraph(ids, k, new int[size + 1], null, null);
+    final int nblocks = knnq instanceof LinearScanQuery ? ParallelBlocks.numBlocks(size) : 1;
+    List<Row[]> blocks = ParallelBlocks.run(size, nblocks, new KNNRunner(graph, knnq, prog));
+    LOG.ensureCompleted(prog);
+    return graph.pack(blocks);
+  }
+
+  /**
+   * Concatenate the rows computed during construction.
+   *
+   * @param blocks Blocks of rows, in order
+   * @return {@code this}
+   */
+  private KNNGraph pack(List<Row[]> blocks) {
+    // Compute row start positions:
+    final int size = ids.size();
+    long total = 0L;
+    for(Row[] block : blocks) {
+      for(Row row : block) {
+        total += row.offs.length;
+      }
+    }
+    if(total > Integer.MAX_VALUE) {
+      throw new AbortException("Too many edges for the kNN graph: " + total + " edges of " + size + " objects exceed the maximum array size.");
+    }
+    int pos = 0, i = 0;
+    for(Row[] block : blocks) {
+      for(Row row : block) {
+        start[i++] = pos;
+        pos += row.offs.length;
+      }
+    }
+    start[size] = pos;
+    // Concatenate rows:
+    neighbors = new int[pos];
+    distances = new double[pos];
+    i = 0;
+    for(Row[] block : blocks) {
+      for(Row row : block) {
+        System.arraycopy(row.offs, 0, neighbors, start[i], row.offs.length);
+        System.arraycopy(row.dists, 0, distances, start[i], row.dists.length);
+        ++i;
+      }
+    }
+    return this;
+  }
+
+  /**
+   * Object IDs, in row order.
+   *
+   * @return IDs
+   */
+  public ArrayDBIDs getDBIDs() {
+    return ids;
+  }
+
+  /**
+   * Number of rows (objects).
+   *
+   * @return Size
+   */
+  public int size() {
+    return ids.size();
+  }
+
+  /**
+   * Maximum k stored (including the query object).
+   *
+   * @return k
+   */
+  public int getK() {
+    return k;
+  }
+
+  /**
+   * Get the row number of an object.
+   *
+   * @param id Object
+   * @return Row number
+   */
+  public int getOffset(DBIDRef id) {
+    return (range != null) ? range.getOffset(id) : offsets.intValue(id);
+  }
+
+  /**
+   * First position of a row.
+   *
+   * @param row Row number
+   * @return Start position
+   */
+  public int rowStart(int row) {
+    return start[row];
+  }
+
+  /**
+   * End position (exclusive) of the first {@code k} neighbors of a row,
+   * including ties.
+   *
+   * @param row Row number
+   * @param k Number of neighbors (including the query object)
+   * @return End position
+   */
+  public int rowEnd(int row, int k) {
+    final int end = start[row + 1];
+    int pos = start[row] + k;
+    if(pos >= end) {
+      return end;
+    }
+    final double kdist = distances[pos - 1];
+    while(pos < end && distances[pos] <= kdist) {
+      ++pos;
+    }
+    return pos;
+  }
+
+  /**
+   * Distance to the k-th neighbor (including the query object).
+   *
+   * @param row Row number
+   * @param k Number of neighbors
+   * @return k-distance, or infinity if there are less than k neighbors.
+   */
+  public double kDistance(int row, int k) {
+    final int pos = start[row] + k - 1;
+    return (pos < start[row + 1]) ? distances[pos] : Double.POSITIVE_INFINITY;
+  }
+
+  /**
+   * Row number of the neighbor at the given position.
+   *
+   * @param pos Position
+   * @return Row number of the neighbor
+   */
+  public int neighbor(int pos) {
+    return neighbors[pos];
+  }
+
+  /**
+   * Distance of the neighbor at the given position.
+   *
+   * @param pos Position
+   * @return Distance
+   */
+  public double distance(int pos) {
+    return distances[pos];
+  }
+
+  /**
+   * Get the k nearest neighbors of an object, as view of the graph.
+   *
+   * @param id Object
+   * @param k Number of neighbors (including the query object)
+   * @return Neighbors, including ties
+   */
+  public KNNList getKNN(DBIDRef id, int k) {
+    final int row = getOffset(id);
+    return new Neighbors(start[row], rowEnd(row, k), k);
+  }
+
+  /**
+   * Compute the kNN for a block of objects.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  private static class KNNRunner implements ParallelBlocks.Task<Row[]> {
+    /**
+     * Graph to build (for the offset lookup).
+     */
+    private final KNNGraph graph;
+
+    /**
+     * kNN query.
+     */
+    private final KNNQuery<?> knnq;
+
+    /**
+     * Progress, may be {@code null}.
+     */
+    private final FiniteProgress prog;
+
+    /**
+     * Constructor.
+     *
+     * @param graph Graph under construction
+     * @param knnq kNN query
+     * @param prog Progress
+     */
+    public KNNRunner(KNNGraph graph, KNNQuery<?> knnq, FiniteProgress prog) {
+      this.graph = graph;
+      this.knnq = knnq;
+      this.prog = prog;
+    }
+
+    @Override
+    public Row[] run(int block, int begin, int end) {
+      Row[] rows = new Row[end - begin];
+      DBIDArrayIter iter = graph.ids.iter();
+      for(int i = begin; i < end; i++) {
+        KNNList knn = knnq.getKNNForDBID(iter.seek(i), graph.k);
+        Row row = new Row(knn.size());
+        int j = 0;
+        for(DoubleDBIDListIter it = knn.iter(); it.valid(); it.advance(), j++) {
+          row.offs[j] = graph.getOffset(it);
+          row.dists[j] = it.doubleValue();
+        }
+        rows[i - begin] = row;
+        LOG.incrementProcessed(prog);
+      }
+      return rows;
+    }
+  }
+
+  /**
+   * Temporary row storage during construction.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  private static class Row {
+    /**
+     * Neighbor offsets.
+     */
+    final int[] offs;
+
+    /**
+     * Neighbor distances.
+     */
+    final double[] dists;
+
+    /**
+     * Constructor.
+     *
+     * @param size Number of neighbors
+     */
+    Row(int size) {
+      offs = new int[size];
+      dists = new double[size];
+    }
+  }
+
+  /**
+   * View of a part of a row as kNN list.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  private class Neighbors implements KNNList {
+    /**
+     * Row range.
+     */
+    private final int begin, end;
+
+    /**
+     * Requested k.
+     */
+    private final int k;
+
+    /**
+     * Constructor.
+     *
+     * @param begin First position
+     * @param end End position
+     * @param k Requested k
+     */
+    Neighbors(int begin, int end, int k) {
+      this.begin = begin;
+      this.end = end;
+      this.k = k;
+    }
+
+    @Override
+    public int size() {
+      return end - begin;
+    }
+
+    @Override
+    public int getK() {
+      return k;
+    }
+
+    @Override
+    public DoubleDBIDPair get(int index) {
+      return DBIDUtil.newPair(distances[begin + index], ids.iter().seek(neighbors[begin + index]));
+    }
+
+    @Override
+    public double getKNNDistance() {
+      return (begin + k <= end) ? distances[begin + k - 1] : Double.POSITIVE_INFINITY;
+    }
+
+    @Override
+    public DoubleDBIDListIter iter() {
+      return new Itr();
+    }
+
+    @Override
+    public boolean contains(DBIDRef o) {
+      final int off = getOffset(o);
+      for(int i = begin; i < end; i++) {
+        if(neighbors[i] == off) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return end == begin;
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder buf = new StringBuilder();
+      buf.append("kNNList[");
+      DBIDArrayIter it = ids.iter();
+      for(int i = begin; i < end; i++) {
+        buf.append(i > begin ? "," : "").append(distances[i]).append(':').append(DBIDUtil.toString(it.seek(neighbors[i])));
+      }
+      return buf.append(']').toString();
+    }
+
+    /**
+     * Iterator over the view.
+     *
+     * @author Erich Schubert
+     *
+     * @apiviz.exclude
+     */
+    private class Itr implements DoubleDBIDListIter {
+      /**
+       * Current position.
+       */
+      private int pos = begin;
+
+      /**
+       * Iterator over the IDs, to resolve offsets.
+       */
+      private final DBIDArrayIter iditer = ids.iter();
+
+      @Override
+      public boolean valid() {
+        return pos < end && pos >= begin;
+      }
+
+      @Override
+      public Itr advance() {
+        ++pos;
+        return this;
+      }
+
+      @Override
+      public double doubleValue() {
+        return distances[pos];
+      }
+
+      @Override
+      public DoubleDBIDPair getPair() {
+        return DBIDUtil.newPair(distances[pos], iditer.seek(neighbors[pos]));
+      }
+
+      @Override
+      public int internalGetIndex() {
+        return iditer.seek(neighbors[pos]).internalGetIndex();
+      }
+
+      @Override
+      public int getOffset() {
+        return pos - begin;
+      }
+
+      @Override
+      public Itr advance(int count) {
+        pos += count;
+        return this;
+      }
+
+      @Override
+      public Itr retract() {
+        --pos;
+        return this;
+      }
+
+      @Override
+      public Itr seek(int off) {
+        pos = begin + off;
+        return this;
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "KNNGraph[k=" + k + ", size=" + size() + ", edges=" + neighbors.length + "]";
+  }
+}
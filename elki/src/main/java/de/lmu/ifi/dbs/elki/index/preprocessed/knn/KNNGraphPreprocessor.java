@@ -0,0 +1,281 @@
+package de.lmu.ifi.dbs.elki.index.preprocessed.knn;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.database.query.DatabaseQuery;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.PreprocessorKNNQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.statistics.Duration;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Description;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Title;
+
+/**
+ * Preprocessor that materializes the k nearest neighbors of all objects as a
+ * compact {@link KNNGraph}, computed in parallel.
+ *
+ * Contrary to {@link MaterializeKNNPreprocessor}, no list object is kept per
+ * database object; the neighbors are stored in primitive arrays and kNN lists
+ * are returned as lightweight views. Queries for any k up to the materialized
+ * k are answered from the same graph, so that all the LOF-family algorithms
+ * (and multiple values of k) can share a single neighborhood computation.
+ *
+ * @author Erich Schubert
+ *
+ * @apiviz.has KNNGraph
+ *
+ * @param <O> the type of database objects the preprocessor can be applied to
+ */
+@Title("Materialize kNN graph preprocessor")
+@Description("Materializes the k nearest neighbors of objects of a database as compact graph.")
+public class KNNGraphPreprocessor<O> extends AbstractMaterializeKNNPreprocessor<O> {
+  /**
+   * Logger to use.
+   */
+  private static final Logging LOG = Logging.getLogger(KNNGraphPreprocessor.class);
+
+  /**
+   * KNNQuery instance to use.
+   */
+  protected final KNNQuery<O> knnQuery;
+
+  /**
+   * The materialized graph.
+   */
+  protected KNNGraph graph = null;
+
+  /**
+   * Constructor.
+   *
+   * @param relation Relation to preprocess
+   * @param distanceFunction the distance function to use
+   * @param k query k
+   */
+  public KNNGraphPreprocessor(Relation<O> relation, DistanceFunction<? super O> distanceFunction, int k) {
+    super(relation, distanceFunction, k);
+    this.knnQuery = relation.getDatabase().getKNNQuery(distanceQuery, k, DatabaseQuery.HINT_BULK, DatabaseQuery.HINT_HEAVY_USE, DatabaseQuery.HINT_NO_CACHE);
+  }
+
+  /**
+   * Constructor for subclasses that build the graph without a kNN query.
+   *
+   * @param relation Relation to preprocess
+   * @param distanceFunction the distance function to use
+   * @param k query k
+   * @param knnQuery kNN query used for building the graph, may be {@code null}
+   */
+  protected KNNGraphPreprocessor(Relation<O> relation, DistanceFunction<? super O> distanceFunction, int k, KNNQuery<O> knnQuery) {
+    super(relation, distanceFunction, k);
+    this.knnQuery = knnQuery;
+  }
+
+  @Override
+  protected void preprocess() {
+    if(LOG.isStatistics()) {
+      LOG.statistics(new LongStatistic(this.getClass().getName() + ".k", k));
+    }
+    Duration duration = LOG.isStatistics() ? LOG.newDuration(this.getClass().getName() + ".precomputation-time").begin() : null;
+    graph = KNNGraph.build(DBIDUtil.ensureArray(relation.getDBIDs()), knnQuery, k);
+    if(duration != null) {
+      LOG.statistics(duration.end());
+    }
+  }
+
+  @Override
+  public void initialize() {
+    if(graph != null) {
+      throw new UnsupportedOperationException("Preprocessor already ran.");
+    }
+    if(relation.size() > 0) {
+      preprocess();
+    }
+  }
+
+  /**
+   * Get the materialized graph.
+   *
+   * @return kNN graph
+   */
+  public KNNGraph getGraph() {
+    if(graph == null) {
+      preprocess();
+    }
+    return graph;
+  }
+
+  @Override
+  public KNNList get(DBIDRef id) {
+    return getGraph().getKNN(id, k);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public KNNQuery<O> getKNNQuery(DistanceQuery<O> distQ, Object... hints) {
+    if(!this.distanceFunction.equals(distQ.getDistanceFunction())) {
+      return null;
+    }
+    // k max supported?
+    for(Object hint : hints) {
+      if(hint instanceof Integer) {
+        if(((Integer) hint) > k) {
+          return null;
+        }
+        break;
+      }
+    }
+    // To make compilers happy:
+    KNNGraphPreprocessor<?> tmp = this;
+    return new GraphKNNQuery<>(relation, (KNNGraphPreprocessor<O>) tmp);
+  }
+
+  @Override
+  public String getLongName() {
+    return "kNN Graph Preprocessor";
+  }
+
+  @Override
+  public String getShortName() {
+    return "knn graph preprocessor";
+  }
+
+  @Override
+  public void logStatistics() {
+    if(graph != null && LOG.isStatistics()) {
+      LOG.statistics(new LongStatistic(this.getClass().getName() + ".edges", graph.rowStart(graph.size())));
+    }
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * kNN query answered from the graph, for any k up to the materialized k.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   *
+   * @param <O> Object type
+   */
+  public static class GraphKNNQuery<O> extends PreprocessorKNNQuery<O> {
+    /**
+     * Graph preprocessor.
+     */
+    private final KNNGraphPreprocessor<O> preprocessor;
+
+    /**
+     * Warn only once.
+     */
+    private volatile boolean warned = false;
+
+    /**
+     * Constructor.
+     *
+     * @param relation Relation to query
+     * @param preprocessor Preprocessor instance to use
+     */
+    public GraphKNNQuery(Relation<O> relation, KNNGraphPreprocessor<O> preprocessor) {
+      super(relation, preprocessor);
+      this.preprocessor = preprocessor;
+    }
+
+    @Override
+    public KNNList getKNNForDBID(DBIDRef id, int k) {
+      if(!warned && k > preprocessor.getK()) {
+        LOG.warning("Requested more neighbors than preprocessed!");
+        warned = true;
+      }
+      return preprocessor.getGraph().getKNN(id, k);
+    }
+
+    @Override
+    public List<KNNList> getKNNForBulkDBIDs(ArrayDBIDs ids, int k) {
+      if(!warned && k > preprocessor.getK()) {
+        LOG.warning("Requested more neighbors than preprocessed!");
+        warned = true;
+      }
+      final KNNGraph graph = preprocessor.getGraph();
+      List<KNNList> result = new ArrayList<>(ids.size());
+      for(DBIDIter iter = ids.iter(); iter.valid(); iter.advance()) {
+        result.add(graph.getKNN(iter, k));
+      }
+      return result;
+    }
+  }
+
+  /**
+   * The parameterizable factory.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.stereotype factory
+   * @apiviz.uses KNNGraphPreprocessor oneway - - «create»
+   *
+   * @param <O> The object type
+   */
+  public static class Factory<O> extends AbstractMaterializeKNNPreprocessor.Factory<O> {
+    /**
+     * Index factory.
+     *
+     * @param k k parameter
+     * @param distanceFunction distance function
+     */
+    public Factory(int k, DistanceFunction<? super O> distanceFunction) {
+      super(k, distanceFunction);
+    }
+
+    @Override
+    public KNNGraphPreprocessor<O> instantiate(Relation<O> relation) {
+      return new KNNGraphPreprocessor<>(relation, distanceFunction, k);
+    }
+
+    /**
+     * Parameterization class.
+     *
+     * @author Erich Schubert
+     *
+     * @apiviz.exclude
+     */
+    public static class Parameterizer<O> extends AbstractMaterializeKNNPreprocessor.Factory.Parameterizer<O> {
+      @Override
+      protected Factory<O> makeInstance() {
+        return new Factory<>(k, distanceFunction);
+      }
+    }
+  }
+}
@@ -0,0 +1,872 @@
+package de.lmu.ifi.dbs.elki.index.preprocessed.knn;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.KNNHeap;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.database.query.DatabaseQuery;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.progress.IndefiniteProgress;
+import de.lmu.ifi.dbs.elki.logging.statistics.Duration;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
+import de.lmu.ifi.dbs.elki.math.random.RandomFactory;
+import de.lmu.ifi.dbs.elki.parallel.ParallelBlocks;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.arrays.DoubleIntegerArrayQuickSort;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.DoubleIntegerHeap;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.DoubleIntegerMaxHeap;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.DoubleIntegerMinHeap;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Description;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Title;
+import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.DoubleParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.RandomParameter;
+
+/**
+ * Approximate kNN graph, built with NN-descent.
+ *
+ * Starting from random neighbors, the graph is refined by repeatedly comparing
+ * the neighbors of neighbors ("local join"), exploiting that a neighbor of a
+ * neighbor is likely also a neighbor. The local joins run in parallel; each
+ * row is a bounded max-heap, updated under a lock on the row. Construction
+ * stops when less than {@code delta * n * k} entries changed in an iteration.
+ *
+ * The result is stored as a {@link KNNGraph}, so kNN queries for database
+ * objects are answered from the graph directly. Queries for other objects use
+ * a best-first search on the graph, keeping a candidate list of size
+ * {@code ef}: larger values increase recall at the cost of more distance
+ * computations.
+ *
+ * Reference:
+ * <p>
+ * W. Dong, C. Moses, K. Li<br />
+ * Efficient k-nearest neighbor graph construction for generic similarity
+ * measures<br />
+ * In Proc. 20th Int. Conf. on World Wide Web (WWW 2011)
+ * </p>
+ *
+ * @author Erich Schubert
+ *
+ * @apiviz.has KNNGraph
+ *
+ * @param <O> the type of database objects the preprocessor can be applied to
+ */
+@Title("NN-descent kNN graph")
+@Description("Approximate kNN graph, built by iteratively joining the neighbors of neighbors.")
+@Reference(authors = "W. Dong, C. Moses, K. Li", //
+title = "Efficient k-nearest neighbor graph construction for generic similarity measures", //
+booktitle = "Proc. 20th Int. Conf. on World Wide Web (WWW 2011)", //
+url = "http://dx.doi.org/10.1145/1963405.1963487")
+public class NNDescentKNNPreprocessor<O> extends KNNGraphPreprocessor<O> {
+  /**
+   * Logger to use.
+   */
+  private static final Logging LOG = Logging.getLogger(NNDescentKNNPreprocessor.class);
+
+  /**
+   * Number of rows per block. The blocks, and thus the random seeds, do not
+   * depend on the number of threads, so results are reproducible.
+   */
+  private static final int BLOCKSIZE = 256;
+
+  /**
+   * Sample rate.
+   */
+  private final double rho;
+
+  /**
+   * Early termination threshold.
+   */
+  private final double delta;
+
+  /**
+   * Maximum number of iterations.
+   */
+  private final int maxiter;
+
+  /**
+   * Search width for object queries.
+   */
+  private final int ef;
+
+  /**
+   * Random generator.
+   */
+  private final RandomFactory rnd;
+
+  /**
+   * Constructor.
+   *
+   * @param relation Relation to preprocess
+   * @param distanceFunction the distance function to use
+   * @param k query k
+   * @param rho Sample rate
+   * @param delta Early termination threshold
+   * @param maxiter Maximum number of iterations
+   * @param ef Search width for object queries
+   * @param rnd Random generator
+   */
+  public NNDescentKNNPreprocessor(Relation<O> relation, DistanceFunction<? super O> distanceFunction, int k, double rho, double delta, int maxiter, int ef, RandomFactory rnd) {
+    super(relation, distanceFunction, k, null);
+    this.rho = rho;
+    this.delta = delta;
+    this.maxiter = maxiter;
+    this.ef = ef;
+    this.rnd = rnd;
+  }
+
+  @Override
+  protected void preprocess() {
+    if(LOG.isStatistics()) {
+      LOG.statistics(new LongStatistic(this.getClass().getName() + ".k", k));
+    }
+    Duration duration = LOG.isStatistics() ? LOG.newDuration(this.getClass().getName() + ".precomputation-time").begin() : null;
+    graph = new Builder(DBIDUtil.ensureArray(relation.getDBIDs())).build();
+    if(duration != null) {
+      LOG.statistics(duration.end());
+    }
+  }
+
+  /**
+   * Approximate kNN search for an object not necessarily in the database.
+   *
+   * Best-first search on the graph, starting from {@code ef} evenly spaced
+   * entry points and expanding the closest unexpanded candidate until none of
+   * the {@code ef} best candidates improves.
+   *
+   * @param obj Query object
+   * @param k Number of neighbors
+   * @return Approximate kNN
+   */
+  public KNNList search(O obj, int k) {
+    final KNNGraph g = getGraph();
+    final int n = g.size();
+    final int width = Math.min(n, Math.max(ef, k));
+    DBIDArrayIter it = g.getDBIDs().iter();
+    BitSet visited = new BitSet(n);
+    DoubleIntegerMinHeap candidates = new DoubleIntegerMinHeap(width);
+    DoubleIntegerMaxHeap best = new DoubleIntegerMaxHeap(width);
+    for(int e = 0; e < width; e++) {
+      final int row = (int) ((long) e * n / width);
+      visited.set(row);
+      final double d = distanceQuery.distance(obj, it.seek(row));
+      candidates.add(d, row);
+      best.add(d, row, width);
+    }
+    while(!candidates.isEmpty()) {
+      final double cd = candidates.peekKey();
+      final int row = candidates.peekValue();
+      candidates.poll();
+      if(best.size() >= width && cd > best.peekKey()) {
+        break;
+      }
+      for(int pos = g.rowStart(row), end = g.rowStart(row + 1); pos < end; pos++) {
+        final int nb = g.neighbor(pos);
+        if(visited.get(nb)) {
+          continue;
+        }
+        visited.set(nb);
+        final double d = distanceQuery.distance(obj, it.seek(nb));
+        if(best.size() < width || d < best.peekKey()) {
+          candidates.add(d, nb);
+          best.add(d, nb, width);
+        }
+      }
+    }
+    KNNHeap heap = DBIDUtil.newHeap(k);
+    for(DoubleIntegerHeap.UnsortedIter iter = best.unsortedIter(); iter.valid(); iter.advance()) {
+      heap.insert(iter.getKey(), it.seek(iter.getValue()));
+    }
+    return heap.toKNNList();
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public KNNQuery<O> getKNNQuery(DistanceQuery<O> distQ, Object... hints) {
+    if(!this.distanceFunction.equals(distQ.getDistanceFunction())) {
+      return null;
+    }
+    for(Object hint : hints) {
+      if(DatabaseQuery.HINT_EXACT.equals(hint)) {
+        return null;
+      }
+    }
+    // k max supported?
+    for(Object hint : hints) {
+      if(hint instanceof Integer) {
+        if(((Integer) hint) > k) {
+          return null;
+        }
+        break;
+      }
+    }
+    // To make compilers happy:
+    NNDescentKNNPreprocessor<?> tmp = this;
+    return new NNDescentKNNQuery<>(relation, (NNDescentKNNPreprocessor<O>) tmp);
+  }
+
+  @Override
+  public String getLongName() {
+    return "NN-descent kNN Graph";
+  }
+
+  @Override
+  public String getShortName() {
+    return "nn-descent";
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Graph construction state.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  private class Builder {
+    /**
+     * Object IDs.
+     */
+    final ArrayDBIDs ids;
+
+    /**
+     * Number of objects, and number of neighbors (excluding the object
+     * itself) to find.
+     */
+    final int size, knum;
+
+    /**
+     * Number of new neighbors to sample per object and iteration.
+     */
+    final int samples;
+
+    /**
+     * Neighbor heaps, also used as row locks.
+     */
+    final int[][] nbrs;
+
+    /**
+     * Neighbor distances, in heap order.
+     */
+    final double[][] dists;
+
+    /**
+     * Flags for neighbors not yet used in a local join.
+     */
+    final boolean[][] fresh;
+
+    /**
+     * Current heap sizes.
+     */
+    final int[] counts;
+
+    /**
+     * Constructor.
+     *
+     * @param ids Object IDs
+     */
+    Builder(ArrayDBIDs ids) {
+      this.ids = ids;
+      this.size = ids.size();
+      this.knum = Math.min(k - 1, size - 1);
+      final long edges = size * (long) (knum + 1);
+      if(edges > Integer.MAX_VALUE) {
+        throw new AbortException("Too many edges for the kNN graph: " + edges + " edges of " + size + " objects exceed the maximum array size.");
+      }
+      this.samples = Math.max(1, (int) Math.ceil(rho * knum));
+      this.nbrs = new int[size][knum];
+      this.dists = new double[size][knum];
+      this.fresh = new boolean[size][knum];
+      this.counts = new int[size];
+    }
+
+    /**
+     * Run NN-descent.
+     *
+     * @return kNN graph
+     */
+    KNNGraph build() {
+      if(knum > 0) {
+        final Random random = rnd.getSingleThreadedRandom();
+        IndefiniteProgress prog = LOG.isVerbose() ? new IndefiniteProgress("NN-descent iterations", LOG) : null;
+        parallel(new Task() {
+          @Override
+          int process(int begin, int end, Random r) {
+            initialize(begin, end, r);
+            return 0;
+          }
+        }, random);
+        final long threshold = (long) (delta * size * knum);
+        int iter = 0;
+        while(iter < maxiter) {
+          ++iter;
+          final int[][] newn = new int[size][], oldn = new int[size][];
+          parallel(new Task() {
+            @Override
+            int process(int begin, int end, Random r) {
+              sample(begin, end, r, newn, oldn);
+              return 0;
+            }
+          }, random);
+          final int[][] rnewn = reverse(newn, random), roldn = reverse(oldn, random);
+          final int updates = parallel(new Task() {
+            @Override
+            int process(int begin, int end, Random r) {
+              return join(begin, end, newn, oldn, rnewn, roldn);
+            }
+          }, random);
+          if(LOG.isStatistics()) {
+            LOG.statistics(new LongStatistic(NNDescentKNNPreprocessor.class.getName() + ".updates." + iter, updates));
+          }
+          LOG.incrementProcessed(prog);
+          if(updates <= threshold) {
+            break;
+          }
+        }
+        if(LOG.isStatistics()) {
+          LOG.statistics(new LongStatistic(NNDescentKNNPreprocessor.class.getName() + ".iterations", iter));
+        }
+        LOG.setCompleted(prog);
+      }
+      // Convert into a graph, with the object itself as first neighbor.
+      final int rowsize = knum + 1;
+      int[] start = new int[size + 1];
+      int[] neighbors = new int[size * rowsize];
+      double[] distances = new double[size * rowsize];
+      for(int i = 0, pos = 0; i < size; i++) {
+        start[i] = pos;
+        neighbors[pos] = i;
+        distances[pos] = 0.;
+        System.arraycopy(nbrs[i], 0, neighbors, pos + 1, knum);
+        System.arraycopy(dists[i], 0, distances, pos + 1, knum);
+        DoubleIntegerArrayQuickSort.sort(distances, neighbors, pos + 1, pos + rowsize);
+        pos += rowsize;
+      }
+      start[size] = size * rowsize;
+      return new KNNGraph(ids, k, start, neighbors, distances);
+    }
+
+    /**
+     * Initialize with random neighbors.
+     *
+     * @param begin First row
+     * @param end End row (exclusive)
+     * @param r Random generator
+     */
+    void initialize(int begin, int end, Random r) {
+      DBIDArrayIter a = ids.iter(), b = ids.iter();
+      for(int i = begin; i < end; i++) {
+        a.seek(i);
+        while(counts[i] < knum) {
+          final int j = r.nextInt(size);
+          if(j != i) {
+            update(i, j, distanceQuery.distance(a, b.seek(j)));
+          }
+        }
+      }
+    }
+
+    /**
+     * Split the neighbors into a sample of the new neighbors (which are then
+     * marked as old) and the old neighbors.
+     *
+     * @param begin First row
+     * @param end End row (exclusive)
+     * @param r Random generator
+     * @param newn Output: new neighbors
+     * @param oldn Output: old neighbors
+     */
+    void sample(int begin, int end, Random r, int[][] newn, int[][] oldn) {
+      int[] buf = new int[knum];
+      for(int i = begin; i < end; i++) {
+        final int[] nbr = nbrs[i];
+        final boolean[] fre = fresh[i];
+        int nnew = 0, nold = 0;
+        for(int p = 0; p < knum; p++) {
+          if(fre[p]) {
+            buf[nnew++] = p;
+          }
+          else {
+            ++nold;
+          }
+        }
+        int[] old = new int[nold];
+        for(int p = 0, q = 0; p < knum; p++) {
+          if(!fre[p]) {
+            old[q++] = nbr[p];
+          }
+        }
+        // Partial Fisher-Yates shuffle of the new neighbor positions:
+        final int take = Math.min(nnew, samples);
+        int[] sel = new int[take];
+        for(int q = 0; q < take; q++) {
+          final int s = q + r.nextInt(nnew - q);
+          final int p = buf[s];
+          buf[s] = buf[q];
+          buf[q] = p;
+          sel[q] = nbr[p];
+          fre[p] = false;
+        }
+        newn[i] = sel;
+        oldn[i] = old;
+      }
+    }
+
+    /**
+     * Build the sampled reverse neighbor lists.
+     *
+     * @param lists Forward lists
+     * @param r Random generator
+     * @return Reverse lists, with at most {@code samples} entries each
+     */
+    int[][] reverse(int[][] lists, Random r) {
+      int[] cnt = new int[size];
+      for(int[] list : lists) {
+        for(int j : list) {
+          ++cnt[j];
+        }
+      }
+      int[][] rev = new int[size][];
+      for(int j = 0; j < size; j++) {
+        rev[j] = new int[cnt[j]];
+        cnt[j] = 0;
+      }
+      for(int i = 0; i < size; i++) {
+        for(int j : lists[i]) {
+          rev[j][cnt[j]++] = i;
+        }
+      }
+      for(int j = 0; j < size; j++) {
+        final int[] list = rev[j];
+        if(list.length > samples) {
+          for(int q = 0; q < samples; q++) {
+            final int s = q + r.nextInt(list.length - q);
+            final int t = list[s];
+            list[s] = list[q];
+            list[q] = t;
+          }
+          rev[j] = Arrays.copyOf(list, samples);
+        }
+      }
+      return rev;
+    }
+
+    /**
+     * Local join: compare new neighbors with each other, and with the old
+     * neighbors.
+     *
+     * @param begin First row
+     * @param end End row (exclusive)
+     * @param newn New neighbors
+     * @param oldn Old neighbors
+     * @param rnewn Reverse new neighbors
+     * @param roldn Reverse old neighbors
+     * @return Number of updates
+     */
+    int join(int begin, int end, int[][] newn, int[][] oldn, int[][] rnewn, int[][] roldn) {
+      DBIDArrayIter a = ids.iter(), b = ids.iter();
+      int updates = 0;
+      for(int i = begin; i < end; i++) {
+        final int[] nn = merge(newn[i], rnewn[i]), on = merge(oldn[i], roldn[i]);
+        for(int p = 0; p < nn.length; p++) {
+          final int u = nn[p];
+          a.seek(u);
+          for(int q = p + 1; q < nn.length; q++) {
+            final int v = nn[q];
+            final double d = distanceQuery.distance(a, b.seek(v));
+            updates += update(u, v, d) + update(v, u, d);
+          }
+          for(int v : on) {
+            if(v != u) {
+              final double d = distanceQuery.distance(a, b.seek(v));
+              updates += update(u, v, d) + update(v, u, d);
+            }
+          }
+        }
+      }
+      return updates;
+    }
+
+    /**
+     * Merge two neighbor lists, removing duplicates.
+     *
+     * @param a First list
+     * @param b Second list
+     * @return Sorted union
+     */
+    int[] merge(int[] a, int[] b) {
+      int[] all = new int[a.length + b.length];
+      System.arraycopy(a, 0, all, 0, a.length);
+      System.arraycopy(b, 0, all, a.length, b.length);
+      Arrays.sort(all);
+      int len = 0;
+      for(int p = 0; p < all.length; p++) {
+        if(len == 0 || all[len - 1] != all[p]) {
+          all[len++] = all[p];
+        }
+      }
+      return len < all.length ? Arrays.copyOf(all, len) : all;
+    }
+
+    /**
+     * Offer a neighbor to a row.
+     *
+     * @param i Row
+     * @param j Candidate neighbor
+     * @param d Distance
+     * @return 1 if the row was modified, 0 otherwise
+     */
+    int update(int i, int j, double d) {
+      final int[] nbr = nbrs[i];
+      final double[] dist = dists[i];
+      final boolean[] fre = fresh[i];
+      synchronized(nbr) {
+        final int c = counts[i];
+        if(c == knum && d >= dist[0]) {
+          return 0;
+        }
+        for(int p = 0; p < c; p++) {
+          if(nbr[p] == j) {
+            return 0;
+          }
+        }
+        if(c < knum) {
+          // Heapify up
+          int pos = c;
+          while(pos > 0) {
+            final int parent = (pos - 1) >>> 1;
+            if(dist[parent] >= d) {
+              break;
+            }
+            nbr[pos] = nbr[parent];
+            dist[pos] = dist[parent];
+            fre[pos] = fre[parent];
+            pos = parent;
+          }
+          nbr[pos] = j;
+          dist[pos] = d;
+          fre[pos] = true;
+          counts[i] = c + 1;
+          return 1;
+        }
+        // Replace the top element, heapify down
+        int pos = 0;
+        while(true) {
+          int child = (pos << 1) + 1;
+          if(child >= c) {
+            break;
+          }
+          if(child + 1 < c && dist[child + 1] > dist[child]) {
+            ++child;
+          }
+          if(dist[child] <= d) {
+            break;
+          }
+          nbr[pos] = nbr[child];
+          dist[pos] = dist[child];
+          fre[pos] = fre[child];
+          pos = child;
+        }
+        nbr[pos] = j;
+        dist[pos] = d;
+        fre[pos] = true;
+        return 1;
+      }
+    }
+
+    /**
+     * Run a task on blocks of rows in parallel.
+     *
+     * @param task Task to run
+     * @param random Random generator for seeding the blocks
+     * @return Sum of the task results
+     */
+    int parallel(final Task task, Random random) {
+      final int nblocks = Math.max(1, (size + BLOCKSIZE - 1) / BLOCKSIZE);
+      final long[] seeds = new long[nblocks];
+      for(int b = 0; b < nblocks; b++) {
+        seeds[b] = random.nextLong();
+      }
+      List<Integer> results = ParallelBlocks.run(size, nblocks, new ParallelBlocks.Task<Integer>() {
+        @Override
+        public Integer run(int block, int start, int end) {
+          return task.process(start, end, new Random(seeds[block]));
+        }
+      });
+      int sum = 0;
+      for(Integer updates : results) {
+        sum += updates;
+      }
+      return sum;
+    }
+  }
+
+  /**
+   * Task processing a block of rows.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  private abstract static class Task {
+    /**
+     * Process a block of rows.
+     *
+     * @param begin First row
+     * @param end End row (exclusive)
+     * @param r Random generator for this block
+     * @return Number of updates
+     */
+    abstract int process(int begin, int end, Random r);
+  }
+
+  /**
+   * kNN query answered from the graph for database objects, and by graph
+   * search for other objects.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   *
+   * @param <O> Object type
+   */
+  public static class NNDescentKNNQuery<O> extends GraphKNNQuery<O> {
+    /**
+     * Graph preprocessor.
+     */
+    private final NNDescentKNNPreprocessor<O> preprocessor;
+
+    /**
+     * Constructor.
+     *
+     * @param relation Relation to query
+     * @param preprocessor Preprocessor instance to use
+     */
+    public NNDescentKNNQuery(Relation<O> relation, NNDescentKNNPreprocessor<O> preprocessor) {
+      super(relation, preprocessor);
+      this.preprocessor = preprocessor;
+    }
+
+    @Override
+    public KNNList getKNNForObject(O obj, int k) {
+      return preprocessor.search(obj, k);
+    }
+  }
+
+  /**
+   * The parameterizable factory.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.stereotype factory
+   * @apiviz.uses NNDescentKNNPreprocessor oneway - - «create»
+   *
+   * @param <O> The object type
+   */
+  public static class Factory<O> extends KNNGraphPreprocessor.Factory<O> {
+    /**
+     * Sample rate.
+     */
+    private final double rho;
+
+    /**
+     * Early termination threshold.
+     */
+    private final double delta;
+
+    /**
+     * Maximum number of iterations.
+     */
+    private final int maxiter;
+
+    /**
+     * Search width for object queries.
+     */
+    private final int ef;
+
+    /**
+     * Random generator.
+     */
+    private final RandomFactory rnd;
+
+    /**
+     * Index factory.
+     *
+     * @param k k parameter
+     * @param distanceFunction distance function
+     * @param rho Sample rate
+     * @param delta Early termination threshold
+     * @param maxiter Maximum number of iterations
+     * @param ef Search width for object queries
+     * @param rnd Random generator
+     */
+    public Factory(int k, DistanceFunction<? super O> distanceFunction, double rho, double delta, int maxiter, int ef, RandomFactory rnd) {
+      super(k, distanceFunction);
+      this.rho = rho;
+      this.delta = delta;
+      this.maxiter = maxiter;
+      this.ef = ef;
+      this.rnd = rnd;
+    }
+
+    @Override
+    public NNDescentKNNPreprocessor<O> instantiate(Relation<O> relation) {
+      return new NNDescentKNNPreprocessor<>(relation, distanceFunction, k, rho, delta, maxiter, ef, rnd);
+    }
+
+    /**
+     * Parameterization class.
+     *
+     * @author Erich Schubert
+     *
+     * @apiviz.exclude
+     */
+    public static class Parameterizer<O> extends AbstractMaterializeKNNPreprocessor.Factory.Parameterizer<O> {
+      /**
+       * Sample rate of new neighbors used in each local join.
+       *
+       * <p>
+       * Key: {@code -nndescent.rho}
+       * </p>
+       */
+      public static final OptionID RHO_ID = new OptionID("nndescent.rho", "Sample rate of the neighbors used in each local join.");
+
+      /**
+       * Early termination threshold, relative to {@code n * k}.
+       *
+       * <p>
+       * Key: {@code -nndescent.delta}
+       * </p>
+       */
+      public static final OptionID DELTA_ID = new OptionID("nndescent.delta", "Stop when less than delta * n * k neighbors changed in an iteration.");
+
+      /**
+       * Maximum number of iterations.
+       *
+       * <p>
+       * Key: {@code -nndescent.iterations}
+       * </p>
+       */
+      public static final OptionID ITER_ID = new OptionID("nndescent.iterations", "Maximum number of NN-descent iterations.");
+
+      /**
+       * Search width for queries of objects not in the database.
+       *
+       * <p>
+       * Key: {@code -nndescent.ef}
+       * </p>
+       */
+      public static final OptionID EF_ID = new OptionID("nndescent.ef", "Number of candidates kept during graph search; larger values increase recall.");
+
+      /**
+       * Random number generator seed.
+       *
+       * <p>
+       * Key: {@code -nndescent.seed}
+       * </p>
+       */
+      public static final OptionID SEED_ID = new OptionID("nndescent.seed", "The random number seed.");
+
+      /**
+       * Sample rate.
+       */
+      private double rho;
+
+      /**
+       * Early termination threshold.
+       */
+      private double delta;
+
+      /**
+       * Maximum number of iterations.
+       */
+      private int maxiter;
+
+      /**
+       * Search width.
+       */
+      private int ef;
+
+      /**
+       * Random generator.
+       */
+      private RandomFactory rnd;
+
+      @Override
+      protected void makeOptions(Parameterization config) {
+        super.makeOptions(config);
+        DoubleParameter rhoP = new DoubleParameter(RHO_ID, 1.);
+        rhoP.addConstraint(CommonConstraints.GREATER_THAN_ZERO_DOUBLE);
+        rhoP.addConstraint(CommonConstraints.LESS_EQUAL_ONE_DOUBLE);
+        if(config.grab(rhoP)) {
+          rho = rhoP.getValue();
+        }
+        DoubleParameter deltaP = new DoubleParameter(DELTA_ID, 0.001);
+        deltaP.addConstraint(CommonConstraints.GREATER_EQUAL_ZERO_DOUBLE);
+        if(config.grab(deltaP)) {
+          delta = deltaP.getValue();
+        }
+        IntParameter iterP = new IntParameter(ITER_ID, 20);
+        iterP.addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+        if(config.grab(iterP)) {
+          maxiter = iterP.getValue();
+        }
+        IntParameter efP = new IntParameter(EF_ID, 50);
+        efP.addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+        if(config.grab(efP)) {
+          ef = efP.getValue();
+        }
+        RandomParameter rndP = new RandomParameter(SEED_ID);
+        if(config.grab(rndP)) {
+          rnd = rndP.getValue();
+        }
+      }
+
+      @Override
+      protected Factory<O> makeInstance() {
+        return new Factory<>(k, distanceFunction, rho, delta, maxiter, ef, rnd);
+      }
+    }
+  }
+}
@@ -24,8 +24,10 @@ package de.lmu.ifi.dbs.elki.index.tree.metrical.mtreevariants;
  */
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 
 import de.lmu.ifi.dbs.elki.database.ids.DBID;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
@@ -37,9 +39,15 @@ import de.lmu.ifi.dbs.elki.index.tree.metrical.MetricalIndexTree;
 import de.lmu.ifi.dbs.elki.index.tree.metrical.mtreevariants.strategies.split.Assignments;
 import de.lmu.ifi.dbs.elki.index.tree.metrical.mtreevariants.strategies.split.DistanceEntry;
 import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.statistics.AtomicLongCounter;
 import de.lmu.ifi.dbs.elki.logging.statistics.Counter;
 import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
+import de.lmu.ifi.dbs.elki.parallel.ParallelBlocks;
+import de.lmu.ifi.dbs.elki.parallel.ParallelCore;
 import de.lmu.ifi.dbs.elki.persistent.PageFile;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.arrays.DoubleIntegerArrayQuickSort;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
 import de.lmu.ifi.dbs.elki.utilities.pairs.DoubleIntPair;
 
 /**
@@ -63,6 +71,11 @@ public abstract class AbstractMTree<O, N extends AbstractMTreeNode<O, N, E>, E e
    */
   protected static final boolean EXTRA_INTEGRITY_CHECKS = false;
 
+  /**
+   * Target fill of the nodes when bulk loading.
+   */
+  private static final double BULK_FILL = 0.75;
+
   /**
    * Tree settings.
    */
@@ -205,11 +218,310 @@ public abstract class AbstractMTree<O, N extends AbstractMTreeNode<O, N, E>, E e
     if(!initialized && entries.size() > 0) {
       initialize(entries.get(0));
     }
+    if(canBulkLoad(entries)) {
+      bulkLoad(entries);
+      return;
+    }
     for(E entry : entries) {
       insert(entry, false);
     }
   }
 
+  /**
+   * Test whether the entries can be bulk loaded, i.e. bulk loading is enabled
+   * and the tree is still empty.
+   * 
+   * @param entries Entries to insert
+   * @return {@code true} if {@link #bulkLoad} can be used
+   */
+  protected boolean canBulkLoad(List<E> entries) {
+    if(!settings.bulk || entries.isEmpty()) {
+      return false;
+    }
+    N root = getRoot();
+    return root.isLeaf() && root.getNumEntries() == 0;
+  }
+
+  /**
+   * Bulk load the empty tree.
+   * 
+   * The entries are partitioned top-down: on each level, a random sample of
+   * routing objects is drawn, and each entry is assigned to the closest routing
+   * object whose subtree still has room, such that the resulting tree is
+   * balanced. The partitioning is computed in parallel, and the nodes are
+   * written afterwards.
+   * 
+   * Reference:
+   * <p>
+   * P. Ciaccia, M. Patella<br />
+   * Bulk loading the M-tree<br />
+   * Proc. 9th Australasian Database Conference (ADC'98)
+   * </p>
+   * 
+   * @param entries Leaf entries to load
+   */
+  @Reference(authors = "P. Ciaccia, M. Patella", title = "Bulk loading the M-tree", booktitle = "Proc. 9th Australasian Database Conference (ADC'98)")
+  protected void bulkLoad(List<E> entries) {
+    if(dirCapacity < 3) {
+      // With a single child per directory node, the tree would not grow.
+      throw new AbortException("Bulk loading needs at least two entries per directory node, but the page size allows only " + (dirCapacity - 1) + ".");
+    }
+    final int size = entries.size();
+    int[] members = new int[size];
+    for(int i = 0; i < size; i++) {
+      members[i] = i;
+    }
+    double[] dists = new double[size];
+    Arrays.fill(dists, Double.NaN);
+    int height = 0;
+    while(bulkCapacity(height) < size) {
+      height++;
+    }
+
+    BulkNode plan = bulkPartition(entries, members, dists, -1, 0., height, settings.bulkRandom.getSingleThreadedRandom());
+
+    N root;
+    if(plan.children == null) {
+      root = getRoot();
+      for(int i = 0; i < size; i++) {
+        E entry = entries.get(plan.members[i]);
+        entry.setParentDistance(plan.dists[i]);
+        root.addLeafEntry(entry);
+      }
+    }
+    else {
+      root = createNewDirectoryNode();
+      for(BulkNode child : plan.children) {
+        root.addDirectoryEntry(bulkWrite(entries, child));
+      }
+      root.setPageID(getRootID());
+    }
+    writeNode(root);
+
+    if(EXTRA_INTEGRITY_CHECKS) {
+      getRoot().integrityCheck(this, getRootEntry());
+    }
+  }
+
+  /**
+   * Maximum number of entries in a subtree of the given height.
+   * 
+   * @param height Height of the subtree, 0 for a leaf
+   * @return Capacity
+   */
+  private double bulkCapacity(int height) {
+    double capacity = leafCapacity - 1;
+    for(int i = 0; i < height; i++) {
+      capacity *= dirCapacity - 1;
+    }
+    return capacity;
+  }
+
+  /**
+   * Partition a set of entries recursively.
+   * 
+   * @param entries All entries
+   * @param members Entries in this subtree (offsets into {@code entries})
+   * @param dists Distances of the members to the routing object
+   * @param routing Routing object (offset into {@code entries}), or -1
+   * @param parentDistance Distance of the routing object to the parent
+   * @param height Height of the subtree
+   * @param rnd Random generator
+   * @return Partitioning plan
+   */
+  private BulkNode bulkPartition(final List<E> entries, final int[] members, final double[] dists, final int routing, double parentDistance, final int height, Random rnd) {
+    final int size = members.length;
+    if(height == 0) {
+      return new BulkNode(routing, parentDistance, members, dists, null);
+    }
+    final double capacity = bulkCapacity(height - 1);
+    final int m = Math.min(Math.min(dirCapacity - 1, size), (int) Math.ceil(size / (BULK_FILL * capacity)));
+    if(m <= 1) {
+      // Single child, with the same routing object.
+      BulkNode child = bulkPartition(entries, members, dists, routing, 0., height - 1, rnd);
+      return new BulkNode(routing, parentDistance, null, null, new BulkNode[] { child });
+    }
+
+    // Sample the routing objects of the children.
+    final int[] seeds = new int[m];
+    final DBID[] sids = new DBID[m];
+    {
+      int[] perm = new int[size];
+      for(int i = 0; i < size; i++) {
+        perm[i] = i;
+      }
+      for(int j = 0; j < m; j++) {
+        int r = j + rnd.nextInt(size - j);
+        seeds[j] = perm[r];
+        perm[r] = perm[j];
+        sids[j] = entries.get(members[seeds[j]]).getRoutingObjectID();
+      }
+    }
+
+    // Assign each member to the nearest routing object.
+    final int[] assign = new int[size];
+    final double[] adist = new double[size];
+    ParallelBlocks.run(size, new ParallelBlocks.Task<Void>() {
+      @Override
+      public Void run(int block, int begin, int end) {
+        bulkAssign(entries, members, sids, assign, adist, begin, end);
+        return null;
+      }
+    });
+
+    // Move the farthest members of overfull children to the next child.
+    final int maxfill = (int) Math.min(capacity, Integer.MAX_VALUE);
+    final int[] counts = new int[m];
+    for(int p = 0; p < size; p++) {
+      counts[assign[p]]++;
+    }
+    boolean overfull = false;
+    for(int j = 0; j < m; j++) {
+      if(counts[j] <= maxfill) {
+        continue;
+      }
+      double[] keys = new double[counts[j]];
+      int[] pos = new int[counts[j]];
+      for(int p = 0, c = 0; p < size; p++) {
+        if(assign[p] == j) {
+          keys[c] = adist[p];
+          pos[c++] = p;
+        }
+      }
+      DoubleIntegerArrayQuickSort.sort(keys, pos, counts[j]);
+      for(int c = maxfill; c < pos.length; c++) {
+        assign[pos[c]] = -1;
+      }
+      counts[j] = maxfill;
+      overfull = true;
+    }
+    if(overfull) {
+      double[] keys = new double[m];
+      int[] cand = new int[m];
+      for(int p = 0; p < size; p++) {
+        if(assign[p] >= 0) {
+          continue;
+        }
+        DBID id = entries.get(members[p]).getRoutingObjectID();
+        for(int j = 0; j < m; j++) {
+          keys[j] = distance(id, sids[j]);
+          cand[j] = j;
+        }
+        DoubleIntegerArrayQuickSort.sort(keys, cand, m);
+        for(int c = 0; c < m; c++) {
+          if(counts[cand[c]] < maxfill) {
+            assign[p] = cand[c];
+            adist[p] = keys[c];
+            counts[cand[c]]++;
+            break;
+          }
+        }
+      }
+    }
+
+    // Group the members by child, and partition the children.
+    final int[] start = new int[m + 1];
+    for(int j = 0; j < m; j++) {
+      start[j + 1] = start[j] + counts[j];
+    }
+    final int[] cmembers = new int[size];
+    final double[] cdists = new double[size];
+    {
+      int[] fill = Arrays.copyOf(start, m);
+      for(int p = 0; p < size; p++) {
+        int q = fill[assign[p]]++;
+        cmembers[q] = members[p];
+        cdists[q] = adist[p];
+      }
+    }
+    // With enough children, build the subtrees in parallel. Otherwise, only
+    // parallelize the assignment within each subtree.
+    final long[] cseeds = new long[m];
+    for(int j = 0; j < m; j++) {
+      // Children without members only occur with duplicate routing objects.
+      cseeds[j] = counts[j] > 0 ? rnd.nextLong() : 0L;
+    }
+    final BulkNode[] children = new BulkNode[m];
+    final int nblocks = m >= ParallelCore.getCore().getParallelism() ? m : 1;
+    ParallelBlocks.run(m, nblocks, new ParallelBlocks.Task<Void>() {
+      @Override
+      public Void run(int block, int begin, int end) {
+        for(int j = begin; j < end; j++) {
+          if(counts[j] == 0) {
+            continue;
+          }
+          int[] mem = Arrays.copyOfRange(cmembers, start[j], start[j + 1]);
+          double[] dis = Arrays.copyOfRange(cdists, start[j], start[j + 1]);
+          double pd = routing < 0 ? 0. : dists[seeds[j]];
+          children[j] = bulkPartition(entries, mem, dis, members[seeds[j]], pd, height - 1, new Random(cseeds[j]));
+        }
+        return null;
+      }
+    });
+    List<BulkNode> nonempty = new ArrayList<>(m);
+    for(BulkNode child : children) {
+      if(child != null) {
+        nonempty.add(child);
+      }
+    }
+    return new BulkNode(routing, parentDistance, null, null, nonempty.toArray(new BulkNode[nonempty.size()]));
+  }
+
+  /**
+   * Assign members to their nearest routing object.
+   * 
+   * @param entries All entries
+   * @param members Members to assign
+   * @param sids Routing objects
+   * @param assign Output: assigned routing object
+   * @param adist Output: distance to the assigned routing object
+   * @param begin First member to assign
+   * @param end End of members to assign (exclusive)
+   */
+  private void bulkAssign(List<E> entries, int[] members, DBID[] sids, int[] assign, double[] adist, int begin, int end) {
+    for(int p = begin; p < end; p++) {
+      DBID id = entries.get(members[p]).getRoutingObjectID();
+      int best = 0;
+      double bestd = distance(id, sids[0]);
+      for(int j = 1; j < sids.length; j++) {
+        double d = distance(id, sids[j]);
+        if(d < bestd) {
+          best = j;
+          bestd = d;
+        }
+      }
+      assign[p] = best;
+      adist[p] = bestd;
+    }
+  }
+
+  /**
+   * Write the nodes of a bulk loading plan.
+   * 
+   * @param entries All entries
+   * @param plan Plan of the subtree
+   * @return Directory entry of the subtree
+   */
+  private E bulkWrite(List<E> entries, BulkNode plan) {
+    N node;
+    if(plan.children == null) {
+      node = createNewLeafNode();
+      for(int i = 0; i < plan.members.length; i++) {
+        E entry = entries.get(plan.members[i]);
+        entry.setParentDistance(plan.dists[i]);
+        node.addLeafEntry(entry);
+      }
+    }
+    else {
+      node = createNewDirectoryNode();
+      for(BulkNode child : plan.children) {
+        node.addDirectoryEntry(bulkWrite(entries, child));
+      }
+    }
+    writeNode(node);
+    return createNewDirectoryEntry(node, entries.get(plan.routing).getRoutingObjectID(), plan.parentDistance);
+  }
+
   @Override
   protected final void createEmptyRoot(E exampleLeaf) {
     N root = createNewLeafNode();
@@ -485,6 +797,57 @@ public abstract class AbstractMTree<O, N extends AbstractMTreeNode<O, N, E>, E e
     }
   }
 
+  /**
+   * Node of a bulk loading plan.
+   * 
+   * @author Erich Schubert
+   * 
+   * @apiviz.exclude
+   */
+  private static class BulkNode {
+    /**
+     * Routing object (offset into the entries), or -1 for the root.
+     */
+    final int routing;
+
+    /**
+     * Distance of the routing object to the parent routing object.
+     */
+    final double parentDistance;
+
+    /**
+     * Leaf members (offsets into the entries), {@code null} for directories.
+     */
+    final int[] members;
+
+    /**
+     * Distances of the leaf members to the routing object.
+     */
+    final double[] dists;
+
+    /**
+     * Child nodes, {@code null} for leaves.
+     */
+    final BulkNode[] children;
+
+    /**
+     * Constructor.
+     * 
+     * @param routing Routing object
+     * @param parentDistance Parent distance
+     * @param members Leaf members
+     * @param dists Distances of the leaf members
+     * @param children Child nodes
+     */
+    BulkNode(int routing, double parentDistance, int[] members, double[] dists, BulkNode[] children) {
+      this.routing = routing;
+      this.parentDistance = parentDistance;
+      this.members = members;
+      this.dists = dists;
+      this.children = children;
+    }
+  }
+
   /**
    * Class for tracking some statistics.
    * 
@@ -494,7 +857,8 @@ public abstract class AbstractMTree<O, N extends AbstractMTreeNode<O, N, E>, E e
    */
   public class Statistics {
     /**
-     * For counting the number of distance computations.
+     * For counting the number of distance computations. Thread-safe, as bulk
+     * loading computes distances in parallel.
      */
     protected final Counter distanceCalcs;
 
@@ -514,7 +878,7 @@ public abstract class AbstractMTree<O, N extends AbstractMTreeNode<O, N, E>, E e
     public Statistics() {
       super();
       Logging log = getLogger();
-      distanceCalcs = log.isStatistics() ? log.newCounter(this.getClass().getName() + ".distancecalcs") : null;
+      distanceCalcs = log.isStatistics() ? new AtomicLongCounter(this.getClass().getName() + ".distancecalcs") : null;
       knnQueries = log.isStatistics() ? log.newCounter(this.getClass().getName() + ".knnqueries") : null;
       rangeQueries = log.isStatistics() ? log.newCounter(this.getClass().getName() + ".rangequeries") : null;
     }
@@ -35,7 +35,9 @@ import de.lmu.ifi.dbs.elki.index.tree.metrical.mtreevariants.strategies.split.MT
 import de.lmu.ifi.dbs.elki.persistent.PageFileFactory;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.Flag;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.RandomParameter;
 
 /**
  * Abstract factory for various MTrees
@@ -111,6 +113,22 @@ public abstract class AbstractMTreeFactory<O, N extends AbstractMTreeNode<O, N,
      */
     public static final OptionID INSERT_STRATEGY_ID = new OptionID("mtree.insert", "Insertion strategy to use for constructing the M-tree.");
 
+    /**
+     * Flag to build the tree by bulk loading.
+     * <p>
+     * Key: {@code -mtree.bulk}
+     * </p>
+     */
+    public static final OptionID BULK_ID = new OptionID("mtree.bulk", "Build the M-tree by bulk loading instead of inserting the objects one-by-one.");
+
+    /**
+     * Random generator seed for bulk loading.
+     * <p>
+     * Key: {@code -mtree.bulk.seed}
+     * </p>
+     */
+    public static final OptionID BULK_SEED_ID = new OptionID("mtree.bulk.seed", "Random generator seed for sampling the routing objects when bulk loading.");
+
     /**
      * Tree settings.
      */
@@ -132,6 +150,16 @@ public abstract class AbstractMTreeFactory<O, N extends AbstractMTreeNode<O, N,
       if (config.grab(insertStrategyP)) {
         settings.insertStrategy = insertStrategyP.instantiateClass(config);
       }
+      Flag bulkF = new Flag(BULK_ID);
+      if (config.grab(bulkF)) {
+        settings.bulk = bulkF.isTrue();
+      }
+      if (settings.bulk) {
+        RandomParameter randomP = new RandomParameter(BULK_SEED_ID);
+        if (config.grab(randomP)) {
+          settings.bulkRandom = randomP.getValue();
+        }
+      }
     }
 
     abstract protected S makeSettings();
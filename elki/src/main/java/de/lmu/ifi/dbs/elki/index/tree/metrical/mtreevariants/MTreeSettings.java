@@ -26,6 +26,7 @@ package de.lmu.ifi.dbs.elki.index.tree.metrical.mtreevariants;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
 import de.lmu.ifi.dbs.elki.index.tree.metrical.mtreevariants.strategies.insert.MTreeInsert;
 import de.lmu.ifi.dbs.elki.index.tree.metrical.mtreevariants.strategies.split.MTreeSplit;
+import de.lmu.ifi.dbs.elki.math.random.RandomFactory;
 
 /**
  * Class to store the MTree settings.
@@ -51,4 +52,14 @@ public class MTreeSettings<O, N extends AbstractMTreeNode<O, N, E>, E extends MT
    * Insertion strategy.
    */
   protected MTreeInsert<O, N, E> insertStrategy;
+
+  /**
+   * Build the tree by bulk loading.
+   */
+  protected boolean bulk = false;
+
+  /**
+   * Random generator for bulk loading.
+   */
+  protected RandomFactory bulkRandom = RandomFactory.DEFAULT;
 }
@@ -82,11 +82,17 @@ public abstract class AbstractMkTreeUnified<O, N extends AbstractMTreeNode<O, N,
 
     ModifiableDBIDs ids = DBIDUtil.newArray(entries.size());
 
-    // insert sequentially
     for (E entry : entries) {
       ids.add(entry.getRoutingObjectID());
-      // insert the object
-      super.insert(entry, false);
+    }
+    if (canBulkLoad(entries)) {
+      bulkLoad(entries);
+    }
+    else {
+      // insert sequentially
+      for (E entry : entries) {
+        super.insert(entry, false);
+      }
     }
 
     // do batch nn
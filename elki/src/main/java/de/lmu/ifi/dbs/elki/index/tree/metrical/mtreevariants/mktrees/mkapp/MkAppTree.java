@@ -114,11 +114,17 @@ public class MkAppTree<O> extends AbstractMkTree<O, MkAppTreeNode<O>, MkAppEntry
 
     ModifiableDBIDs ids = DBIDUtil.newArray(entries.size());
 
-    // insert
     for(MkAppEntry entry : entries) {
       ids.add(entry.getRoutingObjectID());
-      // insert the object
-      super.insert(entry, false);
+    }
+    if(canBulkLoad(entries)) {
+      bulkLoad(entries);
+    }
+    else {
+      // insert
+      for(MkAppEntry entry : entries) {
+        super.insert(entry, false);
+      }
     }
 
     // do batch nn
@@ -98,10 +98,9 @@ public class MkMaxTreeIndex<O> extends MkMaxTree<O> implements RangeIndex<O>, KN
   @Override
   public void insertAll(DBIDs ids) {
     List<MkMaxEntry> objs = new ArrayList<>(ids.size());
+    // The kNN distances are computed by the batch adjustment after insertion.
     for (DBIDIter iter = ids.iter(); iter.valid(); iter.advance()) {
-      DBID id = DBIDUtil.deref(iter);
-      final O object = relation.get(id);
-      objs.add(createNewLeafEntry(id, object, Double.NaN));
+      objs.add(new MkMaxLeafEntry(DBIDUtil.deref(iter), Double.NaN, Double.NaN));
     }
     insertAll(objs);
   }
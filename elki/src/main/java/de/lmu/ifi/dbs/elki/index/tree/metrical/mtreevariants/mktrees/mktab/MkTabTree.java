@@ -141,10 +141,11 @@ public class MkTabTree<O> extends AbstractMkTreeUnified<O, MkTabTreeNode<O>, MkT
     if(node.isLeaf()) {
       for(int i = 0; i < node.getNumEntries(); i++) {
         MkTabEntry leafEntry = node.getEntry(i);
-        KNNList knns = knnLists.get(getPageID(leafEntry));
-        double[] distances = new double[knns.size()];
+        KNNList knns = knnLists.get(leafEntry.getRoutingObjectID());
+        // The list may contain more than k_max neighbors, due to ties.
+        double[] distances = new double[getKmax()];
         int j = 0;
-        for(DoubleDBIDListIter iter = knns.iter(); iter.valid(); iter.advance(), j++) {
+        for(DoubleDBIDListIter iter = knns.iter(); iter.valid() && j < distances.length; iter.advance(), j++) {
           distances[j] = iter.doubleValue();
         }
         leafEntry.setKnnDistances(distances);
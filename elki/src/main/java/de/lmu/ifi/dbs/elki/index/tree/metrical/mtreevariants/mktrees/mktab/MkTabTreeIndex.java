@@ -103,10 +103,9 @@ public class MkTabTreeIndex<O> extends MkTabTree<O> implements RangeIndex<O>, KN
   public void initialize() {
     super.initialize();
     List<MkTabEntry> objs = new ArrayList<>(relation.size());
+    // The kNN distances are computed by the batch adjustment after insertion.
     for (DBIDIter iter = relation.iterDBIDs(); iter.valid(); iter.advance()) {
-      DBID id = DBIDUtil.deref(iter); // FIXME: expensive
-      final O object = relation.get(id);
-      objs.add(createNewLeafEntry(id, object, Double.NaN));
+      objs.add(new MkTabLeafEntry(DBIDUtil.deref(iter), Double.NaN, new double[getKmax()]));
     }
     insertAll(objs);
   }
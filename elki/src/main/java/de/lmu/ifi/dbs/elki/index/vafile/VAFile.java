@@ -23,14 +23,15 @@ package de.lmu.ifi.dbs.elki.index.vafile;
  along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
 import de.lmu.ifi.dbs.elki.data.NumberVector;
 import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
 import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
 import de.lmu.ifi.dbs.elki.database.ids.DBID;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
 import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDList;
@@ -51,14 +52,17 @@ import de.lmu.ifi.dbs.elki.index.IndexFactory;
 import de.lmu.ifi.dbs.elki.index.KNNIndex;
 import de.lmu.ifi.dbs.elki.index.RangeIndex;
 import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.parallel.ParallelBlocks;
 import de.lmu.ifi.dbs.elki.persistent.AbstractPageFileFactory;
 import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.DoubleMaxHeap;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Title;
+import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.Flag;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
 
 /**
@@ -71,6 +75,11 @@ import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
  * in: Report TR1997b, ETH Zentrum, Zurich, Switzerland
  * </p>
  * 
+ * The approximations are bit-packed into a single {@code long[]} array, and
+ * queries sum up per-query lookup tables of the distance bounds, such that the
+ * scan is a sequential pass over primitive arrays. The filter step can
+ * optionally run in parallel.
+ * 
  * @author Thomas Bernecker
  * @author Erich Schubert
  * 
@@ -92,9 +101,25 @@ public class VAFile<V extends NumberVector> extends AbstractRefiningIndex<V> imp
   private static final Logging LOG = Logging.getLogger(VAFile.class);
 
   /**
-   * Approximation index.
+   * Object IDs, in approximation order.
+   */
+  private ArrayDBIDs ids;
+
+  /**
+   * Bit-packed approximations, {@link #words} longs per vector. Cells do not
+   * cross word boundaries, so decoding is a shift and a mask.
+   */
+  private long[] codes;
+
+  /**
+   * Bits per cell, cells per word, and words per vector.
+   */
+  private int bits, perword, words;
+
+  /**
+   * Run the filter step in parallel.
    */
-  private List<VectorApproximation> vectorApprox;
+  private boolean parallel;
 
   /**
    * Number of partitions.
@@ -122,21 +147,35 @@ public class VAFile<V extends NumberVector> extends AbstractRefiningIndex<V> imp
    * @param pageSize Page size of simulated index
    * @param relation Relation to index
    * @param partitions Number of partitions for each dimension.
+   * @param parallel Run the filter step in parallel
    */
-  public VAFile(int pageSize, Relation<V> relation, int partitions) {
+  public VAFile(int pageSize, Relation<V> relation, int partitions, boolean parallel) {
     super(relation);
     this.partitions = partitions;
     this.pageSize = pageSize;
+    this.parallel = parallel;
     this.scans = 0;
-    this.vectorApprox = new ArrayList<>();
   }
 
   @Override
   public void initialize() {
     setPartitions(relation);
-    for(DBIDIter iter = relation.iterDBIDs(); iter.valid(); iter.advance()) {
-      DBID id = DBIDUtil.deref(iter);
-      vectorApprox.add(calculateApproximation(id, relation.get(id)));
+    final int dimensions = splitPositions.length;
+    bits = Math.max(1, Integer.numberOfTrailingZeros(partitions));
+    perword = Long.SIZE / bits;
+    words = (dimensions + perword - 1) / perword;
+    ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    final long ncodes = ids.size() * (long) words;
+    if(ncodes > Integer.MAX_VALUE) {
+      throw new AbortException("Too many objects for the VA-file: " + ids.size() + " approximations of " + words + " words each exceed the maximum array size.");
+    }
+    codes = new long[(int) ncodes];
+    int base = 0;
+    for(DBIDIter iter = ids.iter(); iter.valid(); iter.advance(), base += words) {
+      final V vec = relation.get(iter);
+      for(int d = 0; d < dimensions; d++) {
+        codes[base + d / perword] |= ((long) findCell(d, vec.doubleValue(d), true)) << ((d % perword) * bits);
+      }
     }
   }
 
@@ -183,32 +222,96 @@ public class VAFile<V extends NumberVector> extends AbstractRefiningIndex<V> imp
   public VectorApproximation calculateApproximation(DBID id, V dv) {
     int approximation[] = new int[dv.getDimensionality()];
     for(int d = 0; d < splitPositions.length; d++) {
-      final double val = dv.doubleValue(d);
-      final int lastBorderIndex = splitPositions[d].length - 1;
-
-      // Value is below data grid
-      if(val < splitPositions[d][0]) {
-        approximation[d] = 0;
-        if(id != null) {
-          LOG.warning("Vector outside of VAFile grid!");
-        }
-      } // Value is above data grid
-      else if(val > splitPositions[d][lastBorderIndex]) {
-        approximation[d] = lastBorderIndex - 1;
-        if(id != null) {
-          LOG.warning("Vector outside of VAFile grid!");
-        }
-      } // normal case
-      else {
-        // Search grid position
-        int pos = Arrays.binarySearch(splitPositions[d], val);
-        pos = (pos >= 0) ? pos : ((-pos) - 2);
-        approximation[d] = pos;
-      }
+      approximation[d] = findCell(d, dv.doubleValue(d), id != null);
     }
     return new VectorApproximation(id, approximation);
   }
 
+  /**
+   * Find the grid cell of a value.
+   * 
+   * @param d Dimension
+   * @param val Value
+   * @param warn Warn when the value is outside of the grid
+   * @return Cell number
+   */
+  private int findCell(int d, double val, boolean warn) {
+    final double[] split = splitPositions[d];
+    final int lastBorderIndex = split.length - 1;
+    // Value is below data grid
+    if(val < split[0]) {
+      if(warn) {
+        LOG.warning("Vector outside of VAFile grid!");
+      }
+      return 0;
+    }
+    // Value is above data grid
+    if(val > split[lastBorderIndex]) {
+      if(warn) {
+        LOG.warning("Vector outside of VAFile grid!");
+      }
+      return lastBorderIndex - 1;
+    }
+    // Search grid position
+    int pos = Arrays.binarySearch(split, val);
+    pos = (pos >= 0) ? pos : ((-pos) - 2);
+    return Math.min(pos, lastBorderIndex - 1);
+  }
+
+  /**
+   * Sum up the lookup table entries for the cells of one packed vector.
+   * 
+   * @param table Lookup table, {@code partitions} entries per dimension
+   * @param base Position of the vector in {@link #codes}
+   * @return Sum of the table entries
+   */
+  private double sum(double[] table, int base) {
+    final long mask = (1L << bits) - 1;
+    double sum = 0.;
+    for(int w = 0, off = 0; w < words; w++) {
+      long word = codes[base + w];
+      for(int j = 0; j < perword && off < table.length; j++, off += partitions) {
+        sum += table[off + (int) (word & mask)];
+        word >>>= bits;
+      }
+    }
+    return sum;
+  }
+
+  /**
+   * Run a filter over all approximations, in parallel blocks if enabled.
+   * 
+   * @param filter Filter to run
+   * @return Candidates of each block
+   */
+  private List<ModifiableDoubleDBIDList> filter(final Filter filter) {
+    final int size = ids.size();
+    return ParallelBlocks.run(size, parallel ? ParallelBlocks.numBlocks(size) : 1, new ParallelBlocks.Task<ModifiableDoubleDBIDList>() {
+      @Override
+      public ModifiableDoubleDBIDList run(int block, int begin, int end) {
+        return filter.filter(begin, end);
+      }
+    });
+  }
+
+  /**
+   * Filter step on a block of approximations.
+   * 
+   * @author Erich Schubert
+   * 
+   * @apiviz.exclude
+   */
+  private interface Filter {
+    /**
+     * Filter a block of approximations.
+     * 
+     * @param begin First vector
+     * @param end End (exclusive)
+     * @return Candidates
+     */
+    ModifiableDoubleDBIDList filter(int begin, int end);
+  }
+
   /**
    * Get the number of scanned bytes.
    * 
@@ -216,7 +319,7 @@ public class VAFile<V extends NumberVector> extends AbstractRefiningIndex<V> imp
    */
   public long getScannedPages() {
     int vacapacity = pageSize / VectorApproximation.byteOnDisk(splitPositions.length, partitions);
-    int vasize = (int) Math.ceil((vectorApprox.size()) / (1.0 * vacapacity));
+    int vasize = (int) Math.ceil((ids.size()) / (1.0 * vacapacity));
     return vasize * scans;
   }
 
@@ -300,27 +403,40 @@ public class VAFile<V extends NumberVector> extends AbstractRefiningIndex<V> imp
 
       // Approximative distance function
       VALPNormDistance vadist = new VALPNormDistance(p, splitPositions, query, queryApprox);
+      final double[] minTable = vadist.getMinDistTable();
+      // Compare before taking the p-th root:
+      final double epsp = Math.pow(eps, p);
 
       // Count a VA file scan
       scans += 1;
 
-      ModifiableDoubleDBIDList result = DBIDUtil.newDistanceDBIDList();
       // Approximation step
-      for(int i = 0; i < vectorApprox.size(); i++) {
-        VectorApproximation va = vectorApprox.get(i);
-        double minDist = vadist.getMinDist(va);
-
-        if(minDist > eps) {
-          continue;
+      List<ModifiableDoubleDBIDList> blocks = filter(new Filter() {
+        @Override
+        public ModifiableDoubleDBIDList filter(int begin, int end) {
+          ModifiableDoubleDBIDList candidates = DBIDUtil.newDistanceDBIDList();
+          DBIDArrayIter iter = ids.iter();
+          for(int i = begin, base = begin * words; i < end; i++, base += words) {
+            final double minDist = sum(minTable, base);
+            if(minDist <= epsp) {
+              candidates.add(minDist, iter.seek(i));
+            }
+          }
+          return candidates;
         }
+      });
 
-        // TODO: we don't need to refine always (maxDist < eps), if we are
-        // interested in the DBID only! But this needs an API change.
+      // TODO: we don't need to refine always (maxDist < eps), if we are
+      // interested in the DBID only! But this needs an API change.
 
-        // refine the next element
-        final double dist = refine(va.id, query);
-        if(dist <= eps) {
-          result.add(dist, va.id);
+      ModifiableDoubleDBIDList result = DBIDUtil.newDistanceDBIDList();
+      for(ModifiableDoubleDBIDList candidates : blocks) {
+        for(DoubleDBIDListIter iter = candidates.iter(); iter.valid(); iter.advance()) {
+          // refine the next element
+          final double dist = refine(iter, query);
+          if(dist <= eps) {
+            result.add(dist, iter);
+          }
         }
       }
       result.sort();
@@ -351,38 +467,53 @@ public class VAFile<V extends NumberVector> extends AbstractRefiningIndex<V> imp
     }
 
     @Override
-    public KNNList getKNNForObject(V query, int k) {
+    public KNNList getKNNForObject(V query, final int k) {
       // generate query approximation and lookup table
       VectorApproximation queryApprox = calculateApproximation(null, query);
 
       // Approximative distance function
       VALPNormDistance vadist = new VALPNormDistance(p, splitPositions, query, queryApprox);
-
-      // Heap for the kth smallest maximum distance (yes, we need a max heap!)
-      DoubleMaxHeap minMaxHeap = new DoubleMaxHeap(k + 1);
-      double minMaxDist = Double.POSITIVE_INFINITY;
-      // Candidates with minDist <= kth maxDist
-      ModifiableDoubleDBIDList candidates = DBIDUtil.newDistanceDBIDList(vectorApprox.size());
+      final double[] minTable = vadist.getMinDistTable(), maxTable = vadist.getMaxDistTable();
+      final double onebyp = 1. / p;
 
       // Count a VA file scan
       scans += 1;
 
       // Approximation step
-      for(int i = 0; i < vectorApprox.size(); i++) {
-        VectorApproximation va = vectorApprox.get(i);
-        double minDist = vadist.getMinDist(va);
-        double maxDist = vadist.getMaxDist(va);
-
-        // Skip excess candidate generation:
-        if(minDist > minMaxDist) {
-          continue;
+      List<ModifiableDoubleDBIDList> blocks = filter(new Filter() {
+        @Override
+        public ModifiableDoubleDBIDList filter(int begin, int end) {
+          // Heap for the kth smallest maximum distance (yes, we need a max
+          // heap!). Bounds are compared before taking the p-th root.
+          DoubleMaxHeap minMaxHeap = new DoubleMaxHeap(k + 1);
+          double minMaxDist = Double.POSITIVE_INFINITY;
+          // Candidates with minDist <= kth maxDist
+          ModifiableDoubleDBIDList candidates = DBIDUtil.newDistanceDBIDList();
+          DBIDArrayIter iter = ids.iter();
+          for(int i = begin, base = begin * words; i < end; i++, base += words) {
+            final double minDist = sum(minTable, base);
+            // Skip excess candidate generation:
+            if(minDist > minMaxDist) {
+              continue;
+            }
+            candidates.add(Math.pow(minDist, onebyp), iter.seek(i));
+
+            // Update candidate pruning heap
+            minMaxHeap.add(sum(maxTable, base), k);
+            if(minMaxHeap.size() >= k) {
+              minMaxDist = minMaxHeap.peek();
+            }
+          }
+          return candidates;
         }
-        candidates.add(minDist, va.id);
-
-        // Update candidate pruning heap
-        minMaxHeap.add(maxDist, k);
-        if(minMaxHeap.size() >= k) {
-          minMaxDist = minMaxHeap.peek();
+      });
+      ModifiableDoubleDBIDList candidates = blocks.get(0);
+      if(blocks.size() > 1) {
+        candidates = DBIDUtil.newDistanceDBIDList();
+        for(ModifiableDoubleDBIDList block : blocks) {
+          for(DoubleDBIDListIter iter = block.iter(); iter.valid(); iter.advance()) {
+            candidates.add(iter.doubleValue(), iter);
+          }
         }
       }
       // sort candidates by lower bound (minDist)
@@ -408,7 +539,7 @@ public class VAFile<V extends NumberVector> extends AbstractRefiningIndex<V> imp
       }
       if(LOG.isDebuggingFinest()) {
         LOG.finest("query = (" + query + ")");
-        LOG.finest("database: " + vectorApprox.size() + ", candidates: " + candidates.size() + ", results: " + result.size());
+        LOG.finest("database: " + ids.size() + ", candidates: " + candidates.size() + ", results: " + result.size());
       }
 
       return result.toKNNList();
@@ -435,6 +566,15 @@ public class VAFile<V extends NumberVector> extends AbstractRefiningIndex<V> imp
      */
     public static final OptionID PARTITIONS_ID = new OptionID("vafile.partitions", "Number of partitions to use in each dimension.");
 
+    /**
+     * Flag to run the filter step in parallel.
+     * 
+     * <pre>
+     * -vafile.parallel
+     * </pre>
+     */
+    public static final OptionID PARALLEL_ID = new OptionID("vafile.parallel", "Scan the approximations in parallel.");
+
     /**
      * Page size.
      */
@@ -445,21 +585,28 @@ public class VAFile<V extends NumberVector> extends AbstractRefiningIndex<V> imp
      */
     int numpart = 2;
 
+    /**
+     * Parallel filtering.
+     */
+    boolean parallel = false;
+
     /**
      * Constructor.
      * 
      * @param pagesize Page size
      * @param numpart Number of partitions
+     * @param parallel Run the filter step in parallel
      */
-    public Factory(int pagesize, int numpart) {
+    public Factory(int pagesize, int numpart, boolean parallel) {
       super();
       this.pagesize = pagesize;
       this.numpart = numpart;
+      this.parallel = parallel;
     }
 
     @Override
     public VAFile<V> instantiate(Relation<V> relation) {
-      return new VAFile<>(pagesize, relation, numpart);
+      return new VAFile<>(pagesize, relation, numpart, parallel);
     }
 
     @Override
@@ -485,6 +632,11 @@ public class VAFile<V extends NumberVector> extends AbstractRefiningIndex<V> imp
        */
       int numpart = 2;
 
+      /**
+       * Parallel filtering.
+       */
+      boolean parallel = false;
+
       @Override
       protected void makeOptions(Parameterization config) {
         super.makeOptions(config);
@@ -498,11 +650,15 @@ public class VAFile<V extends NumberVector> extends AbstractRefiningIndex<V> imp
         if(config.grab(partitionsP)) {
           numpart = partitionsP.getValue();
         }
+        Flag parallelF = new Flag(Factory.PARALLEL_ID);
+        if(config.grab(parallelF)) {
+          parallel = parallelF.isTrue();
+        }
       }
 
       @Override
       protected Factory<?> makeInstance() {
-        return new Factory<>(pagesize, numpart);
+        return new Factory<>(pagesize, numpart, parallel);
       }
     }
   }
@@ -133,6 +133,41 @@ public class VALPNormDistance {
     return Math.pow(maxDist, onebyp);
   }
 
+  /**
+   * Flat lookup table of the minimum distance contributions: entry
+   * {@code d * partitions + c} is the contribution of cell {@code c} in
+   * dimension {@code d}, before taking the p-th root.
+   * 
+   * @return Lookup table
+   */
+  public double[] getMinDistTable() {
+    final int dim = lookup.length, partitions = lookup[0].length - 1;
+    double[] table = new double[dim * partitions];
+    for(int d = 0, t = 0; d < dim; d++) {
+      for(int c = 0; c < partitions; c++, t++) {
+        table[t] = getPartialMinDist(d, c);
+      }
+    }
+    return table;
+  }
+
+  /**
+   * Flat lookup table of the maximum distance contributions, laid out as
+   * {@link #getMinDistTable()}.
+   * 
+   * @return Lookup table
+   */
+  public double[] getMaxDistTable() {
+    final int dim = lookup.length, partitions = lookup[0].length - 1;
+    double[] table = new double[dim * partitions];
+    for(int d = 0, t = 0; d < dim; d++) {
+      for(int c = 0; c < partitions; c++, t++) {
+        table[t] = getPartialMaxDist(d, c);
+      }
+    }
+    return table;
+  }
+
   /**
    * Get the maximum distance.
    * 
@@ -162,7 +197,7 @@ public class VALPNormDistance {
     for(int d = 0; d < dimensions; d++) {
       final double val = query.doubleValue(d);
       for(int i = 0; i < bordercount; i++) {
-        lookup[d][i] = Math.pow(splitPositions[d][i] - val, p);
+        lookup[d][i] = Math.pow(Math.abs(splitPositions[d][i] - val), p);
       }
     }
   }
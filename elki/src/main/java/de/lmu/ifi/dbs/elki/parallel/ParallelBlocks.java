@@ -0,0 +1,173 @@
+package de.lmu.ifi.dbs.elki.parallel;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
+
+/**
+ * Run a task on consecutive blocks of an index range, in parallel.
+ * 
+ * The range is split into blocks of (almost) equal size, which are processed
+ * by the threads of the {@link ParallelCore}. By default, several blocks per
+ * thread are used, for load balancing. The results of the blocks are returned
+ * in block order, so they can be merged deterministically.
+ * 
+ * When called from within a block, the nested blocks are processed in the
+ * calling thread: waiting for the pool from within the pool may deadlock.
+ * 
+ * @author Erich Schubert
+ * 
+ * @apiviz.uses ParallelCore
+ * @apiviz.has Task
+ */
+public final class ParallelBlocks {
+  /**
+   * Flag for threads currently processing a block.
+   */
+  private static final ThreadLocal<Boolean> NESTED = new ThreadLocal<>();
+
+  /**
+   * Fake constructor: do not instantiate.
+   */
+  private ParallelBlocks() {
+    // Static methods only.
+  }
+
+  /**
+   * Choose the number of blocks to split a range into.
+   * 
+   * @param size Range size
+   * @return Number of blocks
+   */
+  public static int numBlocks(int size) {
+    // Use more blocks than threads, for load balancing.
+    return Math.max(1, Math.min(ParallelCore.getCore().getParallelism() << 2, size));
+  }
+
+  /**
+   * Run a task on blocks of a range, in parallel, with the default number of
+   * blocks.
+   * 
+   * @param size Range size
+   * @param task Task to run on each block
+   * @param <T> Result type
+   * @return Results of the blocks, in block order
+   */
+  public static <T> List<T> run(int size, Task<T> task) {
+    return run(size, numBlocks(size), task);
+  }
+
+  /**
+   * Run a task on blocks of a range, in parallel.
+   * 
+   * The block boundaries only depend on the size and the number of blocks.
+   * 
+   * @param size Range size
+   * @param nblocks Number of blocks, see {@link #numBlocks}
+   * @param task Task to run on each block
+   * @param <T> Result type
+   * @return Results of the blocks, in block order
+   */
+  public static <T> List<T> run(final int size, final int nblocks, final Task<T> task) {
+    List<T> results = new ArrayList<>(nblocks);
+    if(nblocks <= 1 || Boolean.TRUE.equals(NESTED.get())) {
+      for(int b = 0; b < nblocks; b++) {
+        results.add(task.run(b, start(b, size, nblocks), start(b + 1, size, nblocks)));
+      }
+      return results;
+    }
+    ParallelCore core = ParallelCore.getCore();
+    try {
+      core.connect();
+      List<Future<T>> parts = new ArrayList<>(nblocks);
+      for(int b = 0; b < nblocks; b++) {
+        final int block = b, start = start(b, size, nblocks), end = start(b + 1, size, nblocks);
+        parts.add(core.submit(new Callable<T>() {
+          @Override
+          public T call() {
+            NESTED.set(Boolean.TRUE);
+            try {
+              return task.run(block, start, end);
+            }
+            finally {
+              NESTED.remove();
+            }
+          }
+        }));
+      }
+      for(Future<T> fut : parts) {
+        results.add(fut.get());
+      }
+    }
+    catch(ExecutionException e) {
+      throw new AbortException("Parallel execution failed.", e.getCause());
+    }
+    catch(InterruptedException e) {
+      throw new AbortException("Parallel execution interrupted.", e);
+    }
+    finally {
+      core.disconnect();
+    }
+    return results;
+  }
+
+  /**
+   * Start of a block.
+   * 
+   * @param block Block number
+   * @param size Range size
+   * @param nblocks Number of blocks
+   * @return Start position
+   */
+  private static int start(int block, int size, int nblocks) {
+    return (int) (block * (long) size / nblocks);
+  }
+
+  /**
+   * Task working on a block of a range.
+   * 
+   * @author Erich Schubert
+   * 
+   * @apiviz.exclude
+   * 
+   * @param <T> Result type
+   */
+  public static interface Task<T> {
+    /**
+     * Process a block.
+     * 
+     * @param block Block number
+     * @param start First position
+     * @param end End position (exclusive)
+     * @return Result of the block
+     */
+    T run(int block, int start, int end);
+  }
+}
@@ -64,7 +64,7 @@ public class ParallelExecutor {
       core.connect();
       int numparts = core.getParallelism();
       // TODO: are there better heuristics for choosing this?
-      numparts = (size > numparts * numparts * 16) ? numparts * numparts - 1 : numparts;
+      numparts = (numparts > 1 && size > numparts * numparts * 16) ? numparts * numparts - 1 : numparts;
 
       final int blocksize = (size + (numparts - 1)) / numparts;
       List<Future<ArrayDBIDs>> parts = new ArrayList<>(numparts);
@@ -769,7 +769,7 @@ public final class ByteArrayUtil {
    * @return Byte size
    */
   public static int getStringSize(String s) {
-    return STRING_SERIALIZER.getByteSize(s);
+    return (s != null) ? STRING_SERIALIZER.getByteSize(s) : getUnsignedVarintSize(0);
   }
 
   /**
@@ -0,0 +1,65 @@
+package de.lmu.ifi.dbs.elki.algorithm.clustering;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.JUnit4Test;
+import de.lmu.ifi.dbs.elki.algorithm.AbstractSimpleAlgorithmTest;
+import de.lmu.ifi.dbs.elki.data.Clustering;
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.model.MeanModel;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.utilities.ClassGenericsUtil;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.ListParameterization;
+
+/**
+ * Performs a full binned mean-shift run, and compares the result with a
+ * clustering derived from the data set labels. This test ensures that the
+ * performance doesn't unexpectedly drop on this data set (and also ensures
+ * that the algorithms work, as a side effect).
+ *
+ * @author Erich Schubert
+ */
+public class TestBinnedMeanShiftClustering extends AbstractSimpleAlgorithmTest implements JUnit4Test {
+  /**
+   * Run mean-shift with fixed parameters and compare the result to a golden
+   * standard.
+   */
+  @Test
+  public void testBinnedMeanShiftResults() {
+    Database db = makeSimpleDatabase(UNITTEST + "3clusters-and-noise-2d.csv", 330);
+
+    // setup algorithm
+    ListParameterization params = new ListParameterization();
+    params.addParameter(NaiveMeanShiftClustering.Parameterizer.RANGE_ID, 0.2);
+    BinnedMeanShiftClustering<DoubleVector> meanshift = ClassGenericsUtil.parameterizeOrAbort(BinnedMeanShiftClustering.class, params);
+    testParameterizationOk(params);
+
+    // run mean-shift on database
+    Clustering<MeanModel> result = meanshift.run(db);
+    testFMeasure(db, result, 0.943331);
+    testClusterSizes(result, new int[] { 1, 2, 2, 2, 4, 56, 110, 153 });
+  }
+}
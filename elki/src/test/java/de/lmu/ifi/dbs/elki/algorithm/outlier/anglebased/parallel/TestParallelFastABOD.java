@@ -0,0 +1,75 @@
+package de.lmu.ifi.dbs.elki.algorithm.outlier.anglebased.parallel;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.JUnit4Test;
+import de.lmu.ifi.dbs.elki.algorithm.AbstractSimpleAlgorithmTest;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.anglebased.FastABOD;
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.utilities.ClassGenericsUtil;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.ListParameterization;
+
+/**
+ * Test the parallel Fast-ABOD algorithm against the serial implementation.
+ *
+ * @author Erich Schubert
+ */
+public class TestParallelFastABOD extends AbstractSimpleAlgorithmTest implements JUnit4Test {
+  @Test
+  public void testParallelFastABOD() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
+
+    // Parameterization
+    ListParameterization params = new ListParameterization();
+    params.addParameter(FastABOD.Parameterizer.K_ID, 5);
+
+    // setup Algorithm
+    ParallelFastABOD<DoubleVector> abod = ClassGenericsUtil.parameterizeOrAbort(ParallelFastABOD.class, params);
+    testParameterizationOk(params);
+
+    // run ABOD on database
+    OutlierResult result = abod.run(db);
+
+    testAUC(db, "Noise", result, 0.963259259259);
+    testSingleScore(result, 945, 0.68723169783);
+
+    // Compare to the serial version. The summation order may differ.
+    params = new ListParameterization();
+    params.addParameter(FastABOD.Parameterizer.K_ID, 5);
+    FastABOD<DoubleVector> serial = ClassGenericsUtil.parameterizeOrAbort(FastABOD.class, params);
+    DoubleRelation e = serial.run(db).getScores(), a = result.getScores();
+    for(DBIDIter iter = e.iterDBIDs(); iter.valid(); iter.advance()) {
+      final double exp = e.doubleValue(iter);
+      assertEquals("Score differs.", exp, a.doubleValue(iter), 1e-10 * Math.abs(exp));
+    }
+  }
+}
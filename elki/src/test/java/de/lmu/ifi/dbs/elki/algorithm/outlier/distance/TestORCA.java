@@ -0,0 +1,143 @@
+package de.lmu.ifi.dbs.elki.algorithm.outlier.distance;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.JUnit4Test;
+import de.lmu.ifi.dbs.elki.algorithm.AbstractSimpleAlgorithmTest;
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.StaticArrayDatabase;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.index.tree.spatial.rstarvariants.rstar.RStarTreeFactory;
+import de.lmu.ifi.dbs.elki.math.random.RandomFactory;
+import de.lmu.ifi.dbs.elki.persistent.AbstractPageFileFactory;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.utilities.ClassGenericsUtil;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.ListParameterization;
+
+/**
+ * Tests the ORCA top-n outlier detection algorithm.
+ *
+ * @author Erich Schubert
+ */
+public class TestORCA extends AbstractSimpleAlgorithmTest implements JUnit4Test {
+  @Test
+  public void testORCA() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
+
+    // Parameterization
+    ListParameterization params = new ListParameterization();
+    params.addParameter(ORCA.Parameterizer.K_ID, 1);
+    params.addParameter(ORCA.Parameterizer.N_ID, 40);
+    params.addParameter(ORCA.Parameterizer.BLOCKSIZE_ID, 50);
+    params.addParameter(ORCA.Parameterizer.SEED_ID, 0L);
+
+    // setup Algorithm
+    ORCA<DoubleVector> orca = ClassGenericsUtil.parameterizeOrAbort(ORCA.class, params);
+    testParameterizationOk(params);
+
+    // run ORCA on database
+    OutlierResult result = orca.run(db);
+
+    Relation<DoubleVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    assertSameTopN(new KNNOutlier<DoubleVector>(EuclideanDistanceFunction.STATIC, 1).run(db, rel), result, 40);
+  }
+
+  @Test
+  public void testORCAWeighted() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
+    Relation<DoubleVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    EuclideanDistanceFunction distf = EuclideanDistanceFunction.STATIC;
+
+    OutlierResult result = new ORCA<DoubleVector>(distf, 4, 25, true, 100, RandomFactory.get(1L)).run(db, rel);
+    testSingleScore(result, 945, 2.384117261027324);
+    assertSameTopN(new KNNWeightOutlier<DoubleVector>(distf, 4).run(db, rel), result, 25);
+  }
+
+  @Test
+  public void testORCAIndexed() {
+    ListParameterization indexparams = new ListParameterization();
+    indexparams.addParameter(StaticArrayDatabase.Parameterizer.INDEX_ID, RStarTreeFactory.class);
+    indexparams.addParameter(AbstractPageFileFactory.Parameterizer.PAGE_SIZE_ID, 300);
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960, indexparams, null);
+    Relation<DoubleVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    EuclideanDistanceFunction distf = EuclideanDistanceFunction.STATIC;
+
+    assertSameTopN(new KNNOutlier<DoubleVector>(distf, 5).run(db, rel), new ORCA<DoubleVector>(distf, 5, 30, false, 100, RandomFactory.get(0L)).run(db, rel), 30);
+    assertSameTopN(new KNNWeightOutlier<DoubleVector>(distf, 5).run(db, rel), new ORCA<DoubleVector>(distf, 5, 30, true, 100, RandomFactory.get(0L)).run(db, rel), 30);
+  }
+
+  @Test
+  public void testFewerThanKNeighbors() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
+    ListParameterization indexparams = new ListParameterization();
+    indexparams.addParameter(StaticArrayDatabase.Parameterizer.INDEX_ID, RStarTreeFactory.class);
+    indexparams.addParameter(AbstractPageFileFactory.Parameterizer.PAGE_SIZE_ID, 300);
+    Database idb = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960, indexparams, null);
+    EuclideanDistanceFunction distf = EuclideanDistanceFunction.STATIC;
+
+    // With k >= size, no object has k neighbors, in both processing modes.
+    for(Database d : new Database[] { db, idb }) {
+      Relation<DoubleVector> rel = d.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+      for(boolean weighted : new boolean[] { false, true }) {
+        DoubleRelation scores = new ORCA<DoubleVector>(distf, 960, 10, weighted, 100, RandomFactory.get(0L)).run(d, rel).getScores();
+        for(DBIDIter iter = scores.iterDBIDs(); iter.valid(); iter.advance()) {
+          assertEquals("Score with fewer than k neighbors.", Double.POSITIVE_INFINITY, scores.doubleValue(iter), 0.);
+        }
+      }
+    }
+  }
+
+  /**
+   * Compare the top-n of two outlier results.
+   *
+   * @param expected Expected result
+   * @param actual Actual result
+   * @param n Number of outliers to compare
+   */
+  private void assertSameTopN(OutlierResult expected, OutlierResult actual, int n) {
+    ArrayDBIDs e = expected.getOrdering().order(expected.getScores().getDBIDs());
+    ArrayDBIDs a = actual.getOrdering().order(actual.getScores().getDBIDs());
+    DoubleRelation es = expected.getScores(), as = actual.getScores();
+    DBIDArrayIter ei = e.iter(), ai = a.iter();
+    for(int i = 0; i < n; i++, ei.advance(), ai.advance()) {
+      final double exp = es.doubleValue(ei);
+      assertEquals("Score of top-" + (i + 1) + " differs.", exp, as.doubleValue(ai), 1e-12 * exp);
+      assertEquals("Top-n score differs.", exp, as.doubleValue(ei), 1e-12 * exp);
+    }
+    // The next score must not exceed the top-n.
+    assertTrue("Ranking beyond top-n is wrong.", as.doubleValue(ai) <= as.doubleValue(e.iter().seek(n - 1)));
+  }
+}
@@ -0,0 +1,106 @@
+package de.lmu.ifi.dbs.elki.algorithm.outlier.distance.parallel;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.JUnit4Test;
+import de.lmu.ifi.dbs.elki.algorithm.AbstractSimpleAlgorithmTest;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.distance.HilOut;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.distance.KNNWeightOutlier;
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.utilities.ClassGenericsUtil;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.ListParameterization;
+
+/**
+ * Tests the parallel HilOut algorithm.
+ * 
+ * @author Erich Schubert
+ */
+public class TestParallelHilOut extends AbstractSimpleAlgorithmTest implements JUnit4Test {
+  @Test
+  public void testParallelHilOut() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
+    Relation<DoubleVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+
+    // Parameterization
+    ListParameterization params = new ListParameterization();
+    params.addParameter(HilOut.Parameterizer.K_ID, 5);
+    params.addParameter(HilOut.Parameterizer.N_ID, 10);
+
+    // setup Algorithm
+    ParallelHilOut<DoubleVector> hilout = ClassGenericsUtil.parameterizeOrAbort(ParallelHilOut.class, params);
+    testParameterizationOk(params);
+
+    // run HilOut on database
+    OutlierResult result = hilout.run(db);
+
+    // HilOut does not count the query point, KNNWeightOutlier does not either.
+    // The strongest outliers are exact.
+    assertSameTopN(new KNNWeightOutlier<DoubleVector>(EuclideanDistanceFunction.STATIC, 4).run(db, rel), result, 5);
+
+    params = new ListParameterization();
+    params.addParameter(HilOut.Parameterizer.K_ID, 5);
+    params.addParameter(HilOut.Parameterizer.N_ID, 10);
+    HilOut<DoubleVector> serial = ClassGenericsUtil.parameterizeOrAbort(HilOut.class, params);
+    assertSameTopN(serial.run(db), result, 10);
+    // Also report upper bounds for all objects.
+    params = new ListParameterization();
+    params.addParameter(HilOut.Parameterizer.K_ID, 5);
+    params.addParameter(HilOut.Parameterizer.N_ID, 10);
+    params.addParameter(HilOut.Parameterizer.TN_ID, HilOut.ScoreType.All);
+    hilout = ClassGenericsUtil.parameterizeOrAbort(ParallelHilOut.class, params);
+    testParameterizationOk(params);
+    assertSameTopN(serial.run(db), hilout.run(db), 10);
+  }
+
+  /**
+   * Compare the top-n of two outlier results.
+   * 
+   * @param expected Expected result
+   * @param actual Actual result
+   * @param n Number of outliers to compare
+   */
+  private void assertSameTopN(OutlierResult expected, OutlierResult actual, int n) {
+    ArrayDBIDs e = expected.getOrdering().order(expected.getScores().getDBIDs());
+    ArrayDBIDs a = actual.getOrdering().order(actual.getScores().getDBIDs());
+    DoubleRelation es = expected.getScores(), as = actual.getScores();
+    DBIDArrayIter ei = e.iter(), ai = a.iter();
+    for(int i = 0; i < n; i++, ei.advance(), ai.advance()) {
+      final double exp = es.doubleValue(ei);
+      assertEquals("Score of top-" + (i + 1) + " differs.", exp, as.doubleValue(ai), 1e-10 * exp);
+      assertEquals("Top-n score differs.", exp, as.doubleValue(ei), 1e-10 * exp);
+    }
+  }
+}
@@ -0,0 +1,116 @@
+package de.lmu.ifi.dbs.elki.algorithm.outlier.distance.parallel;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.JUnit4Test;
+import de.lmu.ifi.dbs.elki.algorithm.AbstractSimpleAlgorithmTest;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.distance.ReferenceBasedOutlierDetection;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.utilities.ClassGenericsUtil;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.ListParameterization;
+import de.lmu.ifi.dbs.elki.utilities.referencepoints.GridBasedReferencePoints;
+import de.lmu.ifi.dbs.elki.utilities.referencepoints.RandomSampleReferencePoints;
+
+/**
+ * Tests the parallel ReferenceBasedOutlierDetection algorithm.
+ * 
+ * @author Erich Schubert
+ */
+public class TestParallelReferenceBasedOutlierDetection extends AbstractSimpleAlgorithmTest implements JUnit4Test {
+  @Test
+  public void testParallelReferenceBasedOutlierDetection() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
+
+    // Parameterization
+    ListParameterization params = makeParameters(false);
+
+    // setup Algorithm
+    ParallelReferenceBasedOutlierDetection algorithm = ClassGenericsUtil.parameterizeOrAbort(ParallelReferenceBasedOutlierDetection.class, params);
+    testParameterizationOk(params);
+
+    // run ParallelReferenceBasedOutlierDetection on database
+    OutlierResult result = algorithm.run(db);
+
+    testAUC(db, "Noise", result, 0.941814814815);
+  }
+
+  @Test
+  public void testGridReferencePoints() {
+    compareToSerial(false);
+  }
+
+  @Test
+  public void testManyReferencePoints() {
+    compareToSerial(true);
+  }
+
+  /**
+   * Make the algorithm parameters.
+   * 
+   * @param many Use many random reference points
+   * @return Parameterization
+   */
+  private ListParameterization makeParameters(boolean many) {
+    ListParameterization params = new ListParameterization();
+    params.addParameter(ReferenceBasedOutlierDetection.Parameterizer.K_ID, 11);
+    if(many) {
+      params.addParameter(ReferenceBasedOutlierDetection.Parameterizer.REFP_ID, RandomSampleReferencePoints.class);
+      params.addParameter(RandomSampleReferencePoints.Parameterizer.N_ID, 100);
+      params.addParameter(RandomSampleReferencePoints.Parameterizer.RANDOM_ID, 0L);
+    }
+    else {
+      params.addParameter(GridBasedReferencePoints.Parameterizer.GRID_ID, 3);
+    }
+    return params;
+  }
+
+  /**
+   * Run the serial and the parallel algorithm, and compare the scores.
+   * 
+   * @param many Use many random reference points
+   */
+  private void compareToSerial(boolean many) {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
+
+    ListParameterization params = makeParameters(many);
+    ReferenceBasedOutlierDetection serial = ClassGenericsUtil.parameterizeOrAbort(ReferenceBasedOutlierDetection.class, params);
+    testParameterizationOk(params);
+    params = makeParameters(many);
+    ParallelReferenceBasedOutlierDetection parallel = ClassGenericsUtil.parameterizeOrAbort(ParallelReferenceBasedOutlierDetection.class, params);
+    testParameterizationOk(params);
+
+    DoubleRelation e = serial.run(db).getScores(), a = parallel.run(db).getScores();
+    for(DBIDIter iter = e.iterDBIDs(); iter.valid(); iter.advance()) {
+      final double ev = e.doubleValue(iter);
+      assertEquals("Score differs.", ev, a.doubleValue(iter), 1e-12);
+    }
+  }
+}
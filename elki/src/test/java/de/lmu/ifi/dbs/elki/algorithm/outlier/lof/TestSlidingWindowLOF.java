@@ -0,0 +1,165 @@
+package de.lmu.ifi.dbs.elki.algorithm.outlier.lof;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import gnu.trove.map.hash.TLongDoubleHashMap;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.JUnit4Test;
+import de.lmu.ifi.dbs.elki.algorithm.AbstractSimpleAlgorithmTest;
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.StaticArrayDatabase;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.datasource.ArrayAdapterDatabaseConnection;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.utilities.ClassGenericsUtil;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.ListParameterization;
+
+/**
+ * Test the sliding window LOF against static LOF on the window contents.
+ *
+ * @author Erich Schubert
+ */
+public class TestSlidingWindowLOF extends AbstractSimpleAlgorithmTest implements JUnit4Test {
+  @Test
+  public void testWindowMatchesLOF() {
+    final int k = 7, window = 150, dim = 3;
+    final Random rnd = new Random(0L);
+    double[][] data = new double[1000][dim];
+    for(int i = 0; i < data.length; i++) {
+      // Drifting cluster, with occasional outliers.
+      final double scale = (i % 97 == 0) ? 5. : 1.;
+      for(int d = 0; d < dim; d++) {
+        data[i][d] = i * .01 + rnd.nextGaussian() * scale;
+      }
+    }
+    final TLongDoubleHashMap reported = new TLongDoubleHashMap();
+    SlidingWindowLOF<NumberVector> swlof = new SlidingWindowLOF<>(EuclideanDistanceFunction.STATIC, k, window, Long.MAX_VALUE, 1, 0.);
+    SlidingWindowLOF<NumberVector>.Window win = swlof.newWindow(new SlidingWindowLOF.ScoreListener() {
+      @Override
+      public void scoreChanged(long id, double oldscore, double newscore) {
+        reported.put(id, newscore);
+      }
+
+      @Override
+      public void removed(long id, double score) {
+        reported.remove(id);
+      }
+    });
+    int pos = 0;
+    for(int batch : new int[] { 1, 5, 1, 20, 3 }) {
+      for(int end = pos + 200; pos < end; pos++) {
+        win.insert(new DoubleVector(data[pos]), pos);
+        if(win.getPendingCount() >= batch) {
+          win.flush();
+        }
+      }
+      win.flush();
+      assertEquals("Window size", window, win.size());
+      assertEquals("Reported scores", window, reported.size());
+      // Compare to static LOF on the window contents.
+      double[][] wdata = new double[window][];
+      System.arraycopy(data, pos - window, wdata, 0, window);
+      Database db = new StaticArrayDatabase(new ArrayAdapterDatabaseConnection(wdata), null);
+      db.initialize();
+      Relation<NumberVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+      OutlierResult result = new LOF<NumberVector>(k, EuclideanDistanceFunction.STATIC).run(db, rel);
+      DoubleRelation scores = result.getScores();
+      DBIDArrayIter it = DBIDUtil.ensureArray(rel.getDBIDs()).iter();
+      for(long seq = pos - window; it.valid(); it.advance(), seq++) {
+        assertEquals("Score differs.", scores.doubleValue(it), win.getScore(seq), 1e-12);
+        assertEquals("Reported score differs.", scores.doubleValue(it), reported.get(seq), 1e-12);
+      }
+    }
+  }
+
+  @Test
+  public void testTimeHorizon() {
+    SlidingWindowLOF<NumberVector> swlof = new SlidingWindowLOF<>(EuclideanDistanceFunction.STATIC, 3, 1000, 10, 1, 0.);
+    SlidingWindowLOF<NumberVector>.Window win = swlof.newWindow(null);
+    for(int i = 0; i < 100; i++) {
+      win.insert(new DoubleVector(new double[] { i, i % 7 }), i / 2);
+    }
+    win.flush();
+    // Time stamps 40..49 are within the horizon.
+    assertEquals("Window size", 20, win.size());
+    assertTrue("Expired object has a score.", Double.isNaN(win.getScore(79)));
+    assertTrue("Object not scored.", win.getScore(80) > 0.);
+    win.advanceTime(55);
+    win.flush();
+    assertEquals("Window size", 8, win.size());
+  }
+
+  @Test
+  public void testReplay() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
+    Relation<DoubleVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+
+    ListParameterization params = new ListParameterization();
+    params.addParameter(SlidingWindowLOF.Parameterizer.K_ID, 10);
+    params.addParameter(SlidingWindowLOF.Parameterizer.WINDOW_ID, 500);
+    params.addParameter(SlidingWindowLOF.Parameterizer.BATCH_ID, 10);
+    SlidingWindowLOF<DoubleVector> swlof = ClassGenericsUtil.parameterizeOrAbort(SlidingWindowLOF.class, params);
+    testParameterizationOk(params);
+
+    OutlierResult result = swlof.run(rel);
+    DoubleRelation scores = result.getScores();
+    for(DBIDArrayIter it = DBIDUtil.ensureArray(rel.getDBIDs()).iter(); it.valid(); it.advance()) {
+      assertTrue("Object not scored.", scores.doubleValue(it) > 0.);
+    }
+  }
+
+  @Test
+  public void testReplayShortHorizon() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
+    Relation<DoubleVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+
+    ListParameterization params = new ListParameterization();
+    params.addParameter(SlidingWindowLOF.Parameterizer.K_ID, 10);
+    params.addParameter(SlidingWindowLOF.Parameterizer.WINDOW_ID, 500);
+    params.addParameter(SlidingWindowLOF.Parameterizer.HORIZON_ID, 20);
+    params.addParameter(SlidingWindowLOF.Parameterizer.BATCH_ID, 50);
+    SlidingWindowLOF<DoubleVector> swlof = ClassGenericsUtil.parameterizeOrAbort(SlidingWindowLOF.class, params);
+    testParameterizationOk(params);
+
+    OutlierResult result = swlof.run(rel);
+    DoubleRelation scores = result.getScores();
+    for(DBIDArrayIter it = DBIDUtil.ensureArray(rel.getDBIDs()).iter(); it.valid(); it.advance()) {
+      assertTrue("Object not scored.", scores.doubleValue(it) > 0.);
+    }
+    assertTrue("Score range not finite.", result.getOutlierMeta().getActualMaximum() < Double.POSITIVE_INFINITY);
+  }
+}
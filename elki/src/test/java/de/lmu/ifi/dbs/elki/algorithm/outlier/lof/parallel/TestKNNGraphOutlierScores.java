@@ -0,0 +1,106 @@
+package de.lmu.ifi.dbs.elki.algorithm.outlier.lof.parallel;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.JUnit4Test;
+import de.lmu.ifi.dbs.elki.algorithm.AbstractSimpleAlgorithmTest;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.distance.KNNOutlier;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.distance.KNNWeightOutlier;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.LOF;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.LoOP;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.SimplifiedLOF;
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.index.preprocessed.knn.KNNGraphPreprocessor;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+
+/**
+ * Test the multi-k outlier scores computed from a shared kNN graph against the
+ * individual algorithms.
+ * 
+ * @author Erich Schubert
+ */
+public class TestKNNGraphOutlierScores extends AbstractSimpleAlgorithmTest implements JUnit4Test {
+  @Test
+  public void testKNNGraphOutlierScores() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-axis-subspaces-6d.ascii", 1345);
+    Relation<DoubleVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    EuclideanDistanceFunction distf = EuclideanDistanceFunction.STATIC;
+
+    final int[] ks = { 1, 3, 10 };
+    KNNGraphPreprocessor<DoubleVector> preproc = new KNNGraphPreprocessor<>(rel, distf, 12);
+    preproc.initialize();
+    KNNGraphOutlierScores scores = new KNNGraphOutlierScores(preproc.getGraph(), ks);
+    OutlierResult[] knn = scores.knn(), knnw = scores.knnWeight();
+    OutlierResult[] lof = scores.lof(), slof = scores.simplifiedLOF();
+    OutlierResult[] loop = scores.loop(1.0);
+
+    for(int i = 0; i < ks.length; i++) {
+      final int k = ks[i];
+      assertSameScores(new KNNOutlier<DoubleVector>(distf, k).run(db, rel), knn[i]);
+      assertSameScores(new KNNWeightOutlier<DoubleVector>(distf, k).run(db, rel), knnw[i]);
+      assertSameScores(new LOF<DoubleVector>(k, distf).run(db, rel), lof[i]);
+      assertSameScores(new SimplifiedLOF<DoubleVector>(k, distf).run(db, rel), slof[i]);
+      assertSameScores(new LoOP<DoubleVector>(k, k, distf, distf, 1.0).run(db, rel), loop[i]);
+    }
+    testSingleScore(lof[2], 1293, 1.1945314199156365);
+  }
+
+  @Test
+  public void testSharedIndex() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-axis-subspaces-6d.ascii", 1345);
+    Relation<DoubleVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    KNNGraphPreprocessor<DoubleVector> preproc = new KNNGraphPreprocessor<>(rel, EuclideanDistanceFunction.STATIC, 20);
+    preproc.initialize();
+    db.addIndex(preproc);
+
+    // LOF with a smaller k uses the shared graph.
+    OutlierResult result = new LOF<DoubleVector>(10, EuclideanDistanceFunction.STATIC).run(db, rel);
+    testSingleScore(result, 1293, 1.1945314199156365);
+    testAUC(db, "Noise", result, 0.8921680672268908);
+  }
+
+  /**
+   * Compare two outlier results.
+   * 
+   * @param expected Expected result
+   * @param actual Actual result
+   */
+  private void assertSameScores(OutlierResult expected, OutlierResult actual) {
+    DoubleRelation e = expected.getScores(), a = actual.getScores();
+    for(DBIDIter iter = e.iterDBIDs(); iter.valid(); iter.advance()) {
+      assertEquals("Score differs.", e.doubleValue(iter), a.doubleValue(iter), 1e-12);
+    }
+    assertEquals("Maximum differs.", expected.getOutlierMeta().getActualMaximum(), actual.getOutlierMeta().getActualMaximum(), 1e-12);
+  }
+}
@@ -0,0 +1,92 @@
+package de.lmu.ifi.dbs.elki.algorithm.outlier.lof.parallel;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.JUnit4Test;
+import de.lmu.ifi.dbs.elki.algorithm.AbstractSimpleAlgorithmTest;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.LOCI;
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.utilities.ClassGenericsUtil;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.ListParameterization;
+
+/**
+ * Tests the parallel LOCI algorithm.
+ *
+ * @author Erich Schubert
+ */
+public class TestParallelLOCI extends AbstractSimpleAlgorithmTest implements JUnit4Test {
+  @Test
+  public void testParallelLOCI() {
+    Database db = makeSimpleDatabase(UNITTEST + "3clusters-and-noise-2d.csv", 330);
+
+    // Parameterization
+    ListParameterization params = new ListParameterization();
+    params.addParameter(LOCI.RMAX_ID, 0.5);
+
+    // setup Algorithm
+    ParallelLOCI<DoubleVector> loci = ClassGenericsUtil.parameterizeOrAbort(ParallelLOCI.class, params);
+    testParameterizationOk(params);
+
+    // run LOCI on database
+    OutlierResult result = loci.run(db);
+
+    testAUC(db, "Noise", result, 0.982444);
+    testSingleScore(result, 146, 3.8054382);
+  }
+
+  @Test
+  public void testSameAsLOCI() {
+    Database db = makeSimpleDatabase(UNITTEST + "3clusters-and-noise-2d.csv", 330);
+    Relation<DoubleVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    EuclideanDistanceFunction distf = EuclideanDistanceFunction.STATIC;
+
+    assertSameScores(new LOCI<DoubleVector>(distf, .5, 20, .5).run(db, rel), new ParallelLOCI<DoubleVector>(distf, .5, 20, .5).run(db, rel));
+    // Alpha of 1 does not add scaled radii; large nmin leaves objects unscored.
+    assertSameScores(new LOCI<DoubleVector>(distf, .3, 50, 1.).run(db, rel), new ParallelLOCI<DoubleVector>(distf, .3, 50, 1.).run(db, rel));
+  }
+
+  /**
+   * Compare two outlier results.
+   *
+   * @param expected Expected result
+   * @param actual Actual result
+   */
+  private void assertSameScores(OutlierResult expected, OutlierResult actual) {
+    DoubleRelation e = expected.getScores(), a = actual.getScores();
+    for(DBIDIter iter = e.iterDBIDs(); iter.valid(); iter.advance()) {
+      assertEquals("Score differs.", e.doubleValue(iter), a.doubleValue(iter), 0.);
+    }
+  }
+}
@@ -0,0 +1,126 @@
+package de.lmu.ifi.dbs.elki.algorithm.outlier.lof.parallel;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.JUnit4Test;
+import de.lmu.ifi.dbs.elki.algorithm.AbstractSimpleAlgorithmTest;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.COF;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.INFLO;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.KDEOS;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.LDF;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.LoOP;
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.math.statistics.kernelfunctions.EpanechnikovKernelDensityFunction;
+import de.lmu.ifi.dbs.elki.math.statistics.kernelfunctions.GaussianKernelDensityFunction;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+
+/**
+ * Test the parallel variants of the LOF family against the serial
+ * implementations.
+ *
+ * @author Erich Schubert
+ */
+public class TestParallelLOFVariants extends AbstractSimpleAlgorithmTest implements JUnit4Test {
+  @Test
+  public void testParallelLoOP() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
+    Relation<DoubleVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    EuclideanDistanceFunction distf = EuclideanDistanceFunction.STATIC;
+
+    OutlierResult result = new ParallelLoOP<DoubleVector>(distf, 14, 14, 2.0).run(db, rel);
+    testSingleScore(result, 945, 0.39805457858293325);
+    testAUC(db, "Noise", result, 0.9443796296296296);
+    assertSameScores(new LoOP<DoubleVector>(14, 14, distf, distf, 2.0).run(db, rel), result);
+    // Different neighborhood sizes for density and comparison.
+    assertSameScores(new LoOP<DoubleVector>(7, 20, distf, distf, 1.0).run(db, rel), new ParallelLoOP<DoubleVector>(distf, 7, 20, 1.0).run(db, rel));
+  }
+
+  @Test
+  public void testParallelINFLO() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
+    Relation<DoubleVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    EuclideanDistanceFunction distf = EuclideanDistanceFunction.STATIC;
+
+    assertSameScores(new INFLO<DoubleVector>(distf, 1.0, 30).run(db, rel), new ParallelINFLO<DoubleVector>(distf, 1.0, 30).run(db, rel));
+    // Stronger pruning.
+    assertSameScores(new INFLO<DoubleVector>(distf, 0.5, 10).run(db, rel), new ParallelINFLO<DoubleVector>(distf, 0.5, 10).run(db, rel));
+  }
+
+  @Test
+  public void testParallelCOF() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-axis-subspaces-6d.ascii", 1345);
+    Relation<DoubleVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    EuclideanDistanceFunction distf = EuclideanDistanceFunction.STATIC;
+
+    assertSameScores(new COF<DoubleVector>(15, distf).run(db, rel), new ParallelCOF<DoubleVector>(distf, 15).run(db, rel));
+  }
+
+  @Test
+  public void testParallelLDF() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-axis-subspaces-6d.ascii", 1345);
+    Relation<DoubleVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    EuclideanDistanceFunction distf = EuclideanDistanceFunction.STATIC;
+
+    GaussianKernelDensityFunction kernel = GaussianKernelDensityFunction.KERNEL;
+    assertSameScores(new LDF<DoubleVector>(8, distf, kernel, 1., .1).run(db, rel), new ParallelLDF<DoubleVector>(8, distf, kernel, 1., .1).run(db, rel));
+  }
+
+  @Test
+  public void testParallelKDEOS() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-axis-subspaces-6d.ascii", 1345);
+    Relation<DoubleVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    EuclideanDistanceFunction distf = EuclideanDistanceFunction.STATIC;
+
+    GaussianKernelDensityFunction gauss = GaussianKernelDensityFunction.KERNEL;
+    assertSameScores(new KDEOS<DoubleVector>(distf, 5, 20, gauss, 0., .5, -1).run(db, rel), new ParallelKDEOS<DoubleVector>(distf, 5, 20, gauss, 0., .5, -1).run(db, rel));
+    // Kernel with bounded support, to exercise the density cutoff.
+    EpanechnikovKernelDensityFunction epan = EpanechnikovKernelDensityFunction.KERNEL;
+    assertSameScores(new KDEOS<DoubleVector>(distf, 3, 10, epan, 1e-3, .25, 2).run(db, rel), new ParallelKDEOS<DoubleVector>(distf, 3, 10, epan, 1e-3, .25, 2).run(db, rel));
+  }
+
+  /**
+   * Compare two outlier results.
+   *
+   * @param expected Expected result
+   * @param actual Actual result
+   */
+  private void assertSameScores(OutlierResult expected, OutlierResult actual) {
+    DoubleRelation e = expected.getScores(), a = actual.getScores();
+    for(DBIDIter iter = e.iterDBIDs(); iter.valid(); iter.advance()) {
+      assertEquals("Score differs.", e.doubleValue(iter), a.doubleValue(iter), 1e-12);
+    }
+    assertEquals("Minimum differs.", expected.getOutlierMeta().getActualMinimum(), actual.getOutlierMeta().getActualMinimum(), 1e-12);
+    assertEquals("Maximum differs.", expected.getOutlierMeta().getActualMaximum(), actual.getOutlierMeta().getActualMaximum(), 1e-12);
+  }
+}
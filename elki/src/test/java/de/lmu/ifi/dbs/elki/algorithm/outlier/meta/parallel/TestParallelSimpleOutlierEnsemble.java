@@ -0,0 +1,84 @@
+package de.lmu.ifi.dbs.elki.algorithm.outlier.meta.parallel;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.JUnit4Test;
+import de.lmu.ifi.dbs.elki.algorithm.AbstractSimpleAlgorithmTest;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.OutlierAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.distance.KNNOutlier;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.LOF;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.meta.SimpleOutlierEnsemble;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.utilities.ensemble.EnsembleVoting;
+import de.lmu.ifi.dbs.elki.utilities.ensemble.EnsembleVotingMean;
+import de.lmu.ifi.dbs.elki.utilities.ensemble.EnsembleVotingMedian;
+
+/**
+ * Tests the parallel simple outlier ensemble.
+ * 
+ * @author Erich Schubert
+ */
+public class TestParallelSimpleOutlierEnsemble extends AbstractSimpleAlgorithmTest implements JUnit4Test {
+  @Test
+  public void testSameAsSerial() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
+
+    List<OutlierAlgorithm> algorithms = new ArrayList<>();
+    for(int k = 5; k <= 25; k += 5) {
+      algorithms.add(new LOF<NumberVector>(k, EuclideanDistanceFunction.STATIC));
+      algorithms.add(new KNNOutlier<NumberVector>(EuclideanDistanceFunction.STATIC, k));
+    }
+    assertSameScores(db, algorithms, new EnsembleVotingMean());
+    assertSameScores(db, algorithms, new EnsembleVotingMedian(.5));
+  }
+
+  /**
+   * Compare the parallel ensemble to the serial one.
+   * 
+   * @param db Database
+   * @param algorithms Ensemble members
+   * @param voting Voting strategy
+   */
+  private void assertSameScores(Database db, List<OutlierAlgorithm> algorithms, EnsembleVoting voting) {
+    OutlierResult expected = new SimpleOutlierEnsemble(algorithms, voting).run(db);
+    OutlierResult actual = new ParallelSimpleOutlierEnsemble(algorithms, voting, 3).run(db);
+    DoubleRelation e = expected.getScores(), a = actual.getScores();
+    assertEquals("Number of scores differs.", e.size(), a.size());
+    for(DBIDIter iter = e.iterDBIDs(); iter.valid(); iter.advance()) {
+      assertEquals("Score differs.", e.doubleValue(iter), a.doubleValue(iter), 0.);
+    }
+  }
+}
@@ -0,0 +1,81 @@
+package de.lmu.ifi.dbs.elki.algorithm.outlier.parallel;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.JUnit4Test;
+import de.lmu.ifi.dbs.elki.algorithm.AbstractSimpleAlgorithmTest;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.GaussianUniformMixture;
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.utilities.ClassGenericsUtil;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.ListParameterization;
+
+/**
+ * Tests the parallel GaussianUniformMixture algorithm.
+ * 
+ * @author Erich Schubert
+ */
+public class TestParallelGaussianUniformMixture extends AbstractSimpleAlgorithmTest implements JUnit4Test {
+  @Test
+  public void testParallelGaussianUniformMixture() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-fire.ascii", 1025);
+
+    // Parameterization
+    ListParameterization params = new ListParameterization();
+
+    // setup Algorithm
+    ParallelGaussianUniformMixture<DoubleVector> algorithm = ClassGenericsUtil.parameterizeOrAbort(ParallelGaussianUniformMixture.class, params);
+    testParameterizationOk(params);
+
+    // run ParallelGaussianUniformMixture on database
+    OutlierResult result = algorithm.run(db);
+
+    testSingleScore(result, 1025, -20.2862041);
+    testAUC(db, "Noise", result, 0.94404102);
+  }
+
+  @Test
+  public void testSameAsSerial() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-fire.ascii", 1025);
+    Relation<DoubleVector> rel = db.getRelation(TypeUtil.DOUBLE_VECTOR_FIELD);
+
+    ListParameterization params = new ListParameterization();
+    GaussianUniformMixture<DoubleVector> serial = ClassGenericsUtil.parameterizeOrAbort(GaussianUniformMixture.class, params);
+    ParallelGaussianUniformMixture<DoubleVector> parallel = ClassGenericsUtil.parameterizeOrAbort(ParallelGaussianUniformMixture.class, params);
+    DoubleRelation e = serial.run(rel).getScores(), a = parallel.run(rel).getScores();
+    for(DBIDIter iter = e.iterDBIDs(); iter.valid(); iter.advance()) {
+      final double ev = e.doubleValue(iter);
+      assertEquals("Score differs.", ev, a.doubleValue(iter), Math.abs(ev) * 1e-6 + 1e-9);
+    }
+  }
+}
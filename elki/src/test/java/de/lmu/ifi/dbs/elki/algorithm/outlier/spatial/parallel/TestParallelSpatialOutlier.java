@@ -0,0 +1,129 @@
+package de.lmu.ifi.dbs.elki.algorithm.outlier.spatial.parallel;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.JUnit4Test;
+import de.lmu.ifi.dbs.elki.algorithm.AbstractAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.AbstractSimpleAlgorithmTest;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.spatial.AbstractNeighborhoodOutlier;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.spatial.CTLuMedianAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.spatial.CTLuZTestOutlier;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.spatial.SLOM;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.spatial.SOF;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.spatial.neighborhood.ExtendedNeighborhood;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.spatial.neighborhood.PrecomputedKNearestNeighborNeighborhood;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
+import de.lmu.ifi.dbs.elki.datasource.filter.typeconversions.SplitNumberVectorFilter;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.utilities.ClassGenericsUtil;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.ListParameterization;
+
+/**
+ * Tests the parallel spatial outlier detection algorithms against their serial
+ * versions.
+ * 
+ * @author Erich Schubert
+ */
+public class TestParallelSpatialOutlier extends AbstractSimpleAlgorithmTest implements JUnit4Test {
+  @Test
+  public void testParallelCTLuMedianAlgorithm() {
+    compareToSerial(CTLuMedianAlgorithm.class, ParallelCTLuMedianAlgorithm.class, false);
+  }
+
+  @Test
+  public void testParallelCTLuZTestOutlier() {
+    compareToSerial(CTLuZTestOutlier.class, ParallelCTLuZTestOutlier.class, false);
+  }
+
+  @Test
+  public void testParallelSLOM() {
+    compareToSerial(SLOM.class, ParallelSLOM.class, false);
+  }
+
+  @Test
+  public void testParallelSOF() {
+    compareToSerial(SOF.class, ParallelSOF.class, false);
+  }
+
+  @Test
+  public void testExtendedNeighborhood() {
+    compareToSerial(CTLuZTestOutlier.class, ParallelCTLuZTestOutlier.class, true);
+  }
+
+  /**
+   * Run the serial and the parallel algorithm, and compare the scores.
+   * 
+   * @param serialc Serial algorithm class
+   * @param parallelc Parallel algorithm class
+   * @param extended Use an extended neighborhood
+   */
+  private void compareToSerial(Class<?> serialc, Class<?> parallelc, boolean extended) {
+    ListParameterization dbparams = new ListParameterization();
+    dbparams.addParameter(SplitNumberVectorFilter.Parameterizer.SELECTED_ATTRIBUTES_ID, "0,1");
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960, dbparams, new Class<?>[] { SplitNumberVectorFilter.class });
+
+    ListParameterization params = makeParameters(extended);
+    AbstractAlgorithm<?> serial = ClassGenericsUtil.parameterizeOrAbort(serialc, params);
+    testParameterizationOk(params);
+    params = makeParameters(extended);
+    AbstractAlgorithm<?> parallel = ClassGenericsUtil.parameterizeOrAbort(parallelc, params);
+    testParameterizationOk(params);
+
+    DoubleRelation e = ((OutlierResult) serial.run(db)).getScores();
+    DoubleRelation a = ((OutlierResult) parallel.run(db)).getScores();
+    assertEquals("Result size differs.", e.size(), a.size());
+    for(DBIDIter iter = e.iterDBIDs(); iter.valid(); iter.advance()) {
+      final double ev = e.doubleValue(iter);
+      assertEquals("Score differs.", ev, a.doubleValue(iter), Math.abs(ev) * 1e-12);
+    }
+  }
+
+  /**
+   * Make the algorithm parameters.
+   * 
+   * @param extended Use an extended neighborhood
+   * @return Parameterization
+   */
+  private ListParameterization makeParameters(boolean extended) {
+    ListParameterization params = new ListParameterization();
+    if(extended) {
+      params.addParameter(AbstractNeighborhoodOutlier.NEIGHBORHOOD_ID, ExtendedNeighborhood.Factory.class);
+      params.addParameter(ExtendedNeighborhood.Factory.Parameterizer.NEIGHBORHOOD_ID, PrecomputedKNearestNeighborNeighborhood.Factory.class);
+      params.addParameter(ExtendedNeighborhood.Factory.Parameterizer.STEPS_ID, 2);
+    }
+    else {
+      params.addParameter(AbstractNeighborhoodOutlier.NEIGHBORHOOD_ID, PrecomputedKNearestNeighborNeighborhood.Factory.class);
+    }
+    params.addParameter(PrecomputedKNearestNeighborNeighborhood.Factory.Parameterizer.K_ID, 10);
+    params.addParameter(PrecomputedKNearestNeighborNeighborhood.Factory.Parameterizer.DISTANCEFUNCTION_ID, EuclideanDistanceFunction.class);
+    return params;
+  }
+}
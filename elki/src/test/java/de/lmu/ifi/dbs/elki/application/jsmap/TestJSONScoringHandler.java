@@ -0,0 +1,198 @@
+package de.lmu.ifi.dbs.elki.application.jsmap;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.JUnit4Test;
+import de.lmu.ifi.dbs.elki.algorithm.AbstractSimpleAlgorithmTest;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.GaussianModel;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.LOF;
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+
+/**
+ * Tests the batch scoring endpoint of the JSON web server.
+ * 
+ * @author Erich Schubert
+ */
+public class TestJSONScoringHandler extends AbstractSimpleAlgorithmTest implements JUnit4Test {
+  /**
+   * Batch to score.
+   */
+  private static final double[][] BATCH = { { 0.5, 0.5, 0.5 }, { 0.1, 0.9, 0.3 }, { 5., 5., 5. } };
+
+  @Test
+  public void testKNNDistance() throws IOException {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
+    Relation<NumberVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    final int k = 5;
+    JSONWebServer server = new JSONWebServer(0, db, new KNNDistanceScoringModel(k, EuclideanDistanceFunction.STATIC));
+    try {
+      double[] scores = post(server, BATCH);
+      assertEquals("Number of scores", BATCH.length, scores.length);
+      for(int i = 0; i < BATCH.length; i++) {
+        assertEquals("kNN distance differs.", linearScanKNNDistance(rel, new DoubleVector(BATCH[i]), k), scores[i], 1e-15);
+      }
+      // Statistics must include the batch.
+      String stats = request(server, "GET", null);
+      assertTrue("Statistics missing: " + stats, stats.contains("\"objects\":" + BATCH.length));
+    }
+    finally {
+      server.stop();
+    }
+  }
+
+  @Test
+  public void testLOF() throws IOException {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
+    Relation<NumberVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    final int k = 10;
+    LOFScoringModel model = new LOFScoringModel(k, EuclideanDistanceFunction.STATIC);
+    JSONWebServer server = new JSONWebServer(0, db, model);
+    try {
+      // The training data must be scored exactly as by LOF.
+      DoubleRelation expected = new LOF<NumberVector>(k, EuclideanDistanceFunction.STATIC).run(db, rel).getScores();
+      for(DBIDIter iter = rel.iterDBIDs(); iter.valid(); iter.advance()) {
+        assertEquals("LOF score differs.", expected.doubleValue(iter), model.score(iter), 1e-15);
+      }
+      double[] scores = post(server, BATCH);
+      assertEquals("Number of scores", BATCH.length, scores.length);
+      for(int i = 0; i < BATCH.length; i++) {
+        assertEquals("Batch score differs.", model.score(new DoubleVector(BATCH[i])), scores[i], 1e-15);
+      }
+    }
+    finally {
+      server.stop();
+    }
+  }
+
+  @Test
+  public void testGaussian() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
+    Relation<NumberVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    GaussianScoringModel model = new GaussianScoringModel();
+    model.train(rel);
+    OutlierResult result = new GaussianModel<NumberVector>(false).run(rel);
+    DoubleRelation expected = result.getScores();
+    for(DBIDIter iter = rel.iterDBIDs(); iter.valid(); iter.advance()) {
+      final double e = expected.doubleValue(iter);
+      assertEquals("Gaussian density differs.", e, model.score(rel.get(iter)), e * 1e-10);
+    }
+  }
+
+  /**
+   * Brute force kNN distance.
+   * 
+   * @param rel Relation
+   * @param v Query vector
+   * @param k Number of neighbors
+   * @return kNN distance
+   */
+  private static double linearScanKNNDistance(Relation<NumberVector> rel, NumberVector v, int k) {
+    double[] dists = new double[rel.size()];
+    int i = 0;
+    for(DBIDIter iter = rel.iterDBIDs(); iter.valid(); iter.advance(), i++) {
+      dists[i] = EuclideanDistanceFunction.STATIC.distance(v, rel.get(iter));
+    }
+    Arrays.sort(dists);
+    return dists[k - 1];
+  }
+
+  /**
+   * Post a batch to the server, and parse the scores.
+   * 
+   * @param server Server
+   * @param batch Vectors to post
+   * @return Scores
+   */
+  private static double[] post(JSONWebServer server, double[][] batch) throws IOException {
+    StringBuilder buf = new StringBuilder();
+    for(double[] row : batch) {
+      for(int j = 0; j < row.length; j++) {
+        buf.append(j > 0 ? " " : "").append(row[j]);
+      }
+      buf.append('\n');
+    }
+    String response = request(server, "POST", buf.toString());
+    Matcher m = Pattern.compile("\"scores\":\\[([^\\]]*)\\]").matcher(response);
+    assertTrue("No scores in response: " + response, m.find());
+    String[] parts = m.group(1).split(",");
+    double[] scores = new double[parts.length];
+    for(int i = 0; i < parts.length; i++) {
+      scores[i] = Double.parseDouble(parts[i]);
+    }
+    return scores;
+  }
+
+  /**
+   * Perform a request on the scoring endpoint.
+   * 
+   * @param server Server
+   * @param method Request method
+   * @param body Request body, may be {@code null}
+   * @return Response
+   */
+  private static String request(JSONWebServer server, String method, String body) throws IOException {
+    URL url = new URL("http://localhost:" + server.getPort() + JSONWebServer.PATH_SCORE);
+    HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+    conn.setRequestMethod(method);
+    if(body != null) {
+      conn.setDoOutput(true);
+      OutputStream out = conn.getOutputStream();
+      out.write(body.getBytes("UTF-8"));
+      out.close();
+    }
+    assertEquals("HTTP status", 200, conn.getResponseCode());
+    InputStream in = conn.getInputStream();
+    ByteArrayOutputStream res = new ByteArrayOutputStream();
+    byte[] b = new byte[4096];
+    for(int n; (n = in.read(b)) > 0;) {
+      res.write(b, 0, n);
+    }
+    in.close();
+    conn.disconnect();
+    return res.toString("UTF-8");
+  }
+}
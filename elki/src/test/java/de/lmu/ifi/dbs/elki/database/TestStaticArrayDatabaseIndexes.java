@@ -0,0 +1,155 @@
+package de.lmu.ifi.dbs.elki.database;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans.initialization.FarthestPointsInitialMeans;
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.query.LinearScanQuery;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.datasource.FileBasedDatabaseConnection;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.index.Index;
+import de.lmu.ifi.dbs.elki.index.IndexFactory;
+import de.lmu.ifi.dbs.elki.index.idistance.InMemoryIDistanceIndex;
+import de.lmu.ifi.dbs.elki.index.preprocessed.knn.AbstractMaterializeKNNPreprocessor;
+import de.lmu.ifi.dbs.elki.index.preprocessed.knn.KNNGraphPreprocessor;
+import de.lmu.ifi.dbs.elki.index.tree.spatial.rstarvariants.rstar.RStarTreeFactory;
+import de.lmu.ifi.dbs.elki.utilities.ClassGenericsUtil;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.ListParameterization;
+
+/**
+ * Test the construction of multiple indexes in {@link StaticArrayDatabase}.
+ * 
+ * @author Erich Schubert
+ */
+public class TestStaticArrayDatabaseIndexes {
+  /**
+   * Test data set.
+   */
+  private static final String DATASET = "data/testdata/unittests/hierarchical-3d2d1d.csv";
+
+  /**
+   * kNN query obtained by the last {@link ProbeIndex}.
+   */
+  static KNNQuery<?> probed = null;
+
+  /**
+   * Indexes must be able to use the indexes configured before them.
+   */
+  @Test
+  public void testIndexOrder() {
+    probed = null;
+    ListParameterization params = new ListParameterization();
+    params.addParameter(FileBasedDatabaseConnection.Parameterizer.INPUT_ID, DATASET);
+    params.addParameter(StaticArrayDatabase.Parameterizer.INDEX_ID, Arrays.asList(RStarTreeFactory.class, ProbeIndex.Factory.class));
+    Database db = ClassGenericsUtil.parameterizeOrAbort(StaticArrayDatabase.class, params);
+    db.initialize();
+    assertNotNull("Probe index was not instantiated.", probed);
+    assertFalse("Index did not see the R*-tree.", probed instanceof LinearScanQuery);
+  }
+
+  /**
+   * Multiple indexes that parallelize their construction internally.
+   */
+  @Test(timeout = 60000)
+  public void testParallelIndexes() {
+    ListParameterization params = new ListParameterization();
+    params.addParameter(FileBasedDatabaseConnection.Parameterizer.INPUT_ID, DATASET);
+    params.addParameter(StaticArrayDatabase.Parameterizer.INDEX_ID, Arrays.asList(InMemoryIDistanceIndex.Factory.class, KNNGraphPreprocessor.Factory.class));
+    params.addParameter(InMemoryIDistanceIndex.Factory.Parameterizer.K_ID, 4);
+    params.addParameter(InMemoryIDistanceIndex.Factory.Parameterizer.DISTANCE_ID, EuclideanDistanceFunction.class);
+    params.addParameter(InMemoryIDistanceIndex.Factory.Parameterizer.REFERENCE_ID, FarthestPointsInitialMeans.class);
+    params.addParameter(AbstractMaterializeKNNPreprocessor.Factory.K_ID, 10);
+    params.addParameter(AbstractMaterializeKNNPreprocessor.Factory.DISTANCE_FUNCTION_ID, EuclideanDistanceFunction.class);
+    Database db = ClassGenericsUtil.parameterizeOrAbort(StaticArrayDatabase.class, params);
+    db.initialize();
+    Relation<DoubleVector> rel = db.getRelation(TypeUtil.DOUBLE_VECTOR_FIELD);
+    DistanceQuery<DoubleVector> dq = db.getDistanceQuery(rel, EuclideanDistanceFunction.STATIC);
+    KNNQuery<DoubleVector> knnq = db.getKNNQuery(dq, 10);
+    assertFalse("No index used.", knnq instanceof LinearScanQuery);
+    for(DBIDIter iter = rel.iterDBIDs(); iter.valid(); iter.advance()) {
+      assertEquals(10, knnq.getKNNForDBID(iter, 10).size());
+    }
+  }
+
+  /**
+   * Index that obtains a kNN query when instantiated, like the kNN
+   * preprocessors do.
+   * 
+   * @author Erich Schubert
+   */
+  public static class ProbeIndex implements Index {
+    @Override
+    public void initialize() {
+      // Nothing to do.
+    }
+
+    @Override
+    public void logStatistics() {
+      // Nothing to log.
+    }
+
+    @Override
+    public String getLongName() {
+      return "Probe index";
+    }
+
+    @Override
+    public String getShortName() {
+      return "probe-index";
+    }
+
+    /**
+     * Factory for the probe index.
+     * 
+     * @author Erich Schubert
+     */
+    public static class Factory implements IndexFactory<DoubleVector, ProbeIndex> {
+      @Override
+      public ProbeIndex instantiate(Relation<DoubleVector> relation) {
+        DistanceQuery<DoubleVector> dq = relation.getDatabase().getDistanceQuery(relation, EuclideanDistanceFunction.STATIC);
+        probed = relation.getDatabase().getKNNQuery(dq, 10);
+        return new ProbeIndex();
+      }
+
+      @Override
+      public TypeInformation getInputTypeRestriction() {
+        return TypeUtil.DOUBLE_VECTOR_FIELD;
+      }
+    }
+  }
+}
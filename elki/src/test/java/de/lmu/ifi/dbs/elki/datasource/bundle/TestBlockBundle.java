@@ -0,0 +1,98 @@
+package de.lmu.ifi.dbs.elki.datasource.bundle;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.JUnit4Test;
+import de.lmu.ifi.dbs.elki.algorithm.AbstractSimpleAlgorithmTest;
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.datasource.parser.NumberVectorLabelParser;
+
+/**
+ * Test writing and reading the block bundle format.
+ * 
+ * @author Erich Schubert
+ */
+public class TestBlockBundle implements JUnit4Test {
+  /** Test data set to use. */
+  public static String DATA = AbstractSimpleAlgorithmTest.UNITTEST + "3clusters-and-noise-2d.csv";
+
+  @Test
+  public void testRoundtrip() throws IOException {
+    MultipleObjectsBundle expected;
+    try (InputStream in = new FileInputStream(DATA)) {
+      NumberVectorLabelParser<DoubleVector> parser = new NumberVectorLabelParser<>(DoubleVector.FACTORY);
+      expected = parser.parse(in);
+      parser.cleanup();
+    }
+    for(boolean compress : new boolean[] { false, true }) {
+      File tmp = File.createTempFile("elki-test", ".bundle");
+      tmp.deleteOnExit();
+      try (FileOutputStream fos = new FileOutputStream(tmp); FileChannel channel = fos.getChannel()) {
+        // Small blocks, to have a partial last block.
+        new BlockBundleWriter(100, compress).writeBundle(expected, channel);
+      }
+      try (FileInputStream fis = new FileInputStream(tmp); FileChannel channel = fis.getChannel()) {
+        BlockBundleReader reader = new BlockBundleReader(channel);
+        assertEquals("Number of blocks.", 4, (reader.size() + 99) / 100);
+        assertBundleEquals(expected, reader.asMultipleObjectsBundle());
+        // Random access to a single block:
+        List<?> block = reader.readBlock(2, 0);
+        assertEquals("Block size.", 100, block.size());
+        assertEquals("Random access.", expected.data(215, 0).toString(), block.get(15).toString());
+        // As stream:
+        assertBundleEquals(expected, MultipleObjectsBundle.fromStream(new BlockBundleReader(channel)));
+      }
+      tmp.delete();
+    }
+  }
+
+  /**
+   * Compare two bundles.
+   * 
+   * @param expected Expected bundle
+   * @param bundle Actual bundle
+   */
+  private void assertBundleEquals(MultipleObjectsBundle expected, MultipleObjectsBundle bundle) {
+    assertEquals("Number of columns differs.", expected.metaLength(), bundle.metaLength());
+    assertEquals("Number of objects differs.", expected.dataLength(), bundle.dataLength());
+    for(int c = 0; c < expected.metaLength(); c++) {
+      assertEquals("Column type differs.", expected.meta(c).toString(), bundle.meta(c).toString());
+      for(int i = 0; i < expected.dataLength(); i++) {
+        assertEquals("Object " + i + " differs.", expected.data(i, c).toString(), bundle.data(i, c).toString());
+      }
+    }
+  }
+}
@@ -0,0 +1,93 @@
+package de.lmu.ifi.dbs.elki.datasource.parser;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.JUnit4Test;
+import de.lmu.ifi.dbs.elki.algorithm.AbstractSimpleAlgorithmTest;
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.datasource.bundle.MultipleObjectsBundle;
+
+/**
+ * Test that the parallel parser produces the same result as the streaming
+ * parser, also when lines are split across many blocks.
+ * 
+ * @author Erich Schubert
+ */
+public class TestParallelNumberVectorLabelParser implements JUnit4Test {
+  /** Test data set to use. */
+  public static String DATA = AbstractSimpleAlgorithmTest.UNITTEST + "3clusters-and-noise-2d.csv";
+
+  @Test
+  public void testSameAsStreaming() throws IOException {
+    assertSameAsStreaming(Files.readAllBytes(Paths.get(DATA)));
+  }
+
+  /**
+   * Only the first line of the input may be a header, even if later blocks
+   * start with a line without numbers.
+   */
+  @Test
+  public void testHeaderAndLabelRows() throws IOException {
+    String data = "x y name\n1 2 a\n3 4 b\nc\n5 6 d\n7 8\ne\n9 10 f\n";
+    assertSameAsStreaming(data.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Parse the data with both parsers, and compare the results.
+   * 
+   * @param data Input data
+   */
+  private void assertSameAsStreaming(byte[] data) {
+    NumberVectorLabelParser<DoubleVector> sparser = new NumberVectorLabelParser<>(DoubleVector.FACTORY);
+    MultipleObjectsBundle expected = sparser.parse(new ByteArrayInputStream(data));
+    sparser.cleanup();
+    // Use a tiny block size, to force many blocks.
+    for(int blocksize : new int[] { 1, 7, 100, ParallelNumberVectorLabelParser.DEFAULT_BLOCKSIZE }) {
+      ParallelNumberVectorLabelParser<DoubleVector> parser = new ParallelNumberVectorLabelParser<>(Pattern.compile(AbstractParser.DEFAULT_SEPARATOR), AbstractParser.QUOTE_CHARS, Pattern.compile(AbstractParser.COMMENT_PATTERN), null, DoubleVector.FACTORY, blocksize);
+      MultipleObjectsBundle bundle = parser.parse(new ByteArrayInputStream(data));
+      parser.cleanup();
+      assertEquals("Number of columns differs.", expected.metaLength(), bundle.metaLength());
+      assertEquals("Number of objects differs.", expected.dataLength(), bundle.dataLength());
+      for(int c = 0; c < expected.metaLength(); c++) {
+        assertEquals("Column type differs.", expected.meta(c).toString(), bundle.meta(c).toString());
+        List<?> ecol = expected.getColumn(c), col = bundle.getColumn(c);
+        for(int i = 0; i < ecol.size(); i++) {
+          assertEquals("Object " + i + " differs.", ecol.get(i).toString(), col.get(i).toString());
+        }
+      }
+    }
+  }
+}
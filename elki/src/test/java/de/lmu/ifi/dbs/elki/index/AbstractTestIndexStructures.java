@@ -25,20 +25,32 @@ package de.lmu.ifi.dbs.elki.index;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
 import de.lmu.ifi.dbs.elki.JUnit4Test;
 import de.lmu.ifi.dbs.elki.data.DoubleVector;
 import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
 import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.QueryUtil;
 import de.lmu.ifi.dbs.elki.database.StaticArrayDatabase;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
 import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDList;
 import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
 import de.lmu.ifi.dbs.elki.database.ids.KNNList;
 import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
 import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.LinearScanDistanceKNNQuery;
 import de.lmu.ifi.dbs.elki.database.query.range.RangeQuery;
+import de.lmu.ifi.dbs.elki.database.query.rknn.LinearScanRKNNQuery;
+import de.lmu.ifi.dbs.elki.database.query.rknn.RKNNQuery;
 import de.lmu.ifi.dbs.elki.database.relation.Relation;
 import de.lmu.ifi.dbs.elki.datasource.FileBasedDatabaseConnection;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.CosineDistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.PrimitiveDistanceFunction;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
 import de.lmu.ifi.dbs.elki.utilities.ClassGenericsUtil;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.ListParameterization;
@@ -223,4 +235,66 @@ public abstract class AbstractTestIndexStructures implements JUnit4Test {
       }
     }
   }
+
+  /**
+   * Test the reverse kNN queries against a linear scan, for every object.
+   * 
+   * @param inputparams Parameters
+   * @param expectRKNNQuery Expected query class
+   * @param k Number of neighbors
+   */
+  protected void testRKNNEuclidean(ListParameterization inputparams, Class<?> expectRKNNQuery, int k) {
+    inputparams.addParameter(FileBasedDatabaseConnection.Parameterizer.INPUT_ID, dataset);
+
+    // get database
+    Database db = ClassGenericsUtil.parameterizeOrAbort(StaticArrayDatabase.class, inputparams);
+    db.initialize();
+    Relation<DoubleVector> rep = db.getRelation(TypeUtil.DOUBLE_VECTOR_FIELD);
+    DistanceQuery<DoubleVector> dist = db.getDistanceQuery(rep, EuclideanDistanceFunction.STATIC);
+
+    RKNNQuery<DoubleVector> rknnq = db.getRKNNQuery(dist, k);
+    assertTrue("Returned rknn query is not of expected class: expected " + expectRKNNQuery + " got " + rknnq.getClass(), expectRKNNQuery.isAssignableFrom(rknnq.getClass()));
+    LinearScanRKNNQuery<DoubleVector> linq = new LinearScanRKNNQuery<>(dist, new LinearScanDistanceKNNQuery<>(dist), k);
+
+    ArrayDBIDs ids = DBIDUtil.ensureArray(rep.getDBIDs());
+    List<? extends DoubleDBIDList> expect = linq.getRKNNForBulkDBIDs(ids, k);
+    DBIDArrayIter iter = ids.iter();
+    for(int i = 0; i < ids.size(); i++, iter.advance()) {
+      DBIDs e = DBIDUtil.newHashSet(expect.get(i)), r = DBIDUtil.newHashSet(rknnq.getRKNNForDBID(iter, k));
+      assertEquals("RkNN size does not match.", e.size(), r.size());
+      assertEquals("RkNN do not match.", e.size(), DBIDUtil.intersectionSize(e, r));
+    }
+  }
+
+  /**
+   * Test the bulk kNN queries against a linear scan, for every object.
+   * 
+   * @param inputparams Parameters
+   * @param df Distance function
+   * @param expectKNNQuery Expected query class
+   * @param delta Tolerance for the kNN distances
+   */
+  protected void testBulkKNN(ListParameterization inputparams, PrimitiveDistanceFunction<? super DoubleVector> df, Class<?> expectKNNQuery, double delta) {
+    inputparams.addParameter(FileBasedDatabaseConnection.Parameterizer.INPUT_ID, dataset);
+
+    // get database
+    Database db = ClassGenericsUtil.parameterizeOrAbort(StaticArrayDatabase.class, inputparams);
+    db.initialize();
+    Relation<DoubleVector> rep = db.getRelation(TypeUtil.DOUBLE_VECTOR_FIELD);
+    DistanceQuery<DoubleVector> dist = db.getDistanceQuery(rep, df);
+
+    KNNQuery<DoubleVector> knnq = db.getKNNQuery(dist, k);
+    assertTrue("Returned knn query is not of expected class: expected " + expectKNNQuery + " got " + knnq.getClass(), expectKNNQuery.isAssignableFrom(knnq.getClass()));
+    KNNQuery<DoubleVector> linq = QueryUtil.getLinearScanKNNQuery(dist);
+
+    ArrayDBIDs ids = DBIDUtil.ensureArray(rep.getDBIDs());
+    List<? extends KNNList> bulk = knnq.getKNNForBulkDBIDs(ids, k);
+    assertEquals("Bulk result size does not match.", ids.size(), bulk.size());
+    DBIDArrayIter iter = ids.iter();
+    for(int i = 0; i < ids.size(); i++, iter.advance()) {
+      double expect = linq.getKNNForDBID(iter, k).getKNNDistance();
+      assertEquals("Bulk kNN distance does not match.", expect, bulk.get(i).getKNNDistance(), delta);
+      assertEquals("kNN distance does not match.", expect, knnq.getKNNForDBID(iter, k).getKNNDistance(), delta);
+    }
+  }
 }
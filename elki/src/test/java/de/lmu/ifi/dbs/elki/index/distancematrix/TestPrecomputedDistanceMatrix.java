@@ -0,0 +1,164 @@
+package de.lmu.ifi.dbs.elki.index.distancematrix;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.StaticArrayDatabase;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.datasource.FileBasedDatabaseConnection;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.utilities.ClassGenericsUtil;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.ListParameterization;
+
+/**
+ * Unit test for the precomputed distance matrix.
+ * 
+ * @author Erich Schubert
+ */
+public class TestPrecomputedDistanceMatrix {
+  /**
+   * Test data set.
+   */
+  private static final String DATASET = "data/testdata/unittests/hierarchical-3d2d1d.csv";
+
+  /**
+   * Test the double precision matrix on the heap.
+   */
+  @Test
+  public void testDouble() {
+    ListParameterization params = new ListParameterization();
+    testMatrix(params, 0.);
+  }
+
+  /**
+   * Test the single precision matrix on the heap.
+   */
+  @Test
+  public void testFloat() {
+    ListParameterization params = new ListParameterization();
+    params.addFlag(PrecomputedDistanceMatrix.Factory.Parameterizer.FLOAT_ID);
+    testMatrix(params, 1e-6);
+  }
+
+  /**
+   * Test the memory-mapped matrix.
+   * 
+   * @throws IOException on errors creating the temporary file
+   */
+  @Test
+  public void testMapped() throws IOException {
+    File file = File.createTempFile("elki-matrix", ".bin");
+    file.deleteOnExit();
+    ListParameterization params = new ListParameterization();
+    params.addParameter(PrecomputedDistanceMatrix.Factory.Parameterizer.FILE_ID, file);
+    testMatrix(params, 0.);
+  }
+
+  /**
+   * Test a matrix split into many small chunks.
+   * 
+   * @throws IOException on errors creating the temporary file
+   */
+  @Test
+  public void testChunked() throws IOException {
+    ListParameterization params = new ListParameterization();
+    params.addParameter(FileBasedDatabaseConnection.Parameterizer.INPUT_ID, DATASET);
+    Database db = ClassGenericsUtil.parameterizeOrAbort(StaticArrayDatabase.class, params);
+    db.initialize();
+    Relation<DoubleVector> rel = db.getRelation(TypeUtil.DOUBLE_VECTOR_FIELD);
+    // 600 objects, 179700 values: at least 18 chunks.
+    final int chunksize = 10000;
+    File file = File.createTempFile("elki-matrix", ".bin");
+    file.deleteOnExit();
+    testChunked(rel, false, null, chunksize, 0.);
+    testChunked(rel, true, null, chunksize, 1e-6);
+    testChunked(rel, false, file, chunksize, 0.);
+    testChunked(rel, true, file, chunksize, 1e-6);
+    file.delete();
+  }
+
+  /**
+   * Test a chunked matrix built directly on a relation.
+   * 
+   * @param rel Relation
+   * @param single Single precision flag
+   * @param file File to map, may be {@code null}
+   * @param chunksize Chunk size
+   * @param tolerance Relative tolerance
+   */
+  private void testChunked(Relation<DoubleVector> rel, boolean single, File file, int chunksize, double tolerance) {
+    PrecomputedDistanceMatrix<DoubleVector> matrix = new PrecomputedDistanceMatrix<>(rel, EuclideanDistanceFunction.STATIC, single, file, chunksize);
+    matrix.initialize();
+    DistanceQuery<DoubleVector> dq = matrix.getDistanceQuery(EuclideanDistanceFunction.STATIC);
+    assertEquals("Matrix not used.", PrecomputedDistanceMatrix.class, dq.getClass().getEnclosingClass());
+    compareDistances(rel, dq, tolerance);
+    matrix.close();
+  }
+
+  /**
+   * Compare the precomputed distances to the distance function.
+   * 
+   * @param params Matrix parameters
+   * @param tolerance Relative tolerance
+   */
+  private void testMatrix(ListParameterization params, double tolerance) {
+    params.addParameter(FileBasedDatabaseConnection.Parameterizer.INPUT_ID, DATASET);
+    params.addParameter(StaticArrayDatabase.Parameterizer.INDEX_ID, PrecomputedDistanceMatrix.Factory.class);
+    params.addParameter(PrecomputedDistanceMatrix.Factory.Parameterizer.DISTANCE_ID, EuclideanDistanceFunction.class);
+    Database db = ClassGenericsUtil.parameterizeOrAbort(StaticArrayDatabase.class, params);
+    db.initialize();
+    Relation<DoubleVector> rel = db.getRelation(TypeUtil.DOUBLE_VECTOR_FIELD);
+    DistanceQuery<DoubleVector> dq = db.getDistanceQuery(rel, EuclideanDistanceFunction.STATIC);
+    assertEquals("Matrix not used.", PrecomputedDistanceMatrix.class, dq.getClass().getEnclosingClass());
+    compareDistances(rel, dq, tolerance);
+  }
+
+  /**
+   * Compare the distances of a query to the distance function.
+   * 
+   * @param rel Relation
+   * @param dq Distance query
+   * @param tolerance Relative tolerance
+   */
+  private void compareDistances(Relation<DoubleVector> rel, DistanceQuery<DoubleVector> dq, double tolerance) {
+    EuclideanDistanceFunction df = EuclideanDistanceFunction.STATIC;
+    for(DBIDIter ix = rel.iterDBIDs(); ix.valid(); ix.advance()) {
+      for(DBIDIter iy = rel.iterDBIDs(); iy.valid(); iy.advance()) {
+        final double exp = df.distance(rel.get(ix), rel.get(iy));
+        assertEquals("Distance does not match.", exp, dq.distance(ix, iy), exp * tolerance);
+      }
+    }
+  }
+}
@@ -49,4 +49,17 @@ public class TestIDistance extends AbstractTestIndexStructures {
     spatparams.addParameter(InMemoryIDistanceIndex.Factory.Parameterizer.REFERENCE_ID, FarthestPointsInitialMeans.class);
     testExactEuclidean(spatparams, InMemoryIDistanceIndex.IDistanceKNNQuery.class, InMemoryIDistanceIndex.IDistanceRangeQuery.class);
   }
+
+  /**
+   * Test the parallel bulk kNN queries against a linear scan.
+   */
+  @Test
+  public void testBulkKNN() {
+    ListParameterization params = new ListParameterization();
+    params.addParameter(StaticArrayDatabase.Parameterizer.INDEX_ID, InMemoryIDistanceIndex.Factory.class);
+    params.addParameter(InMemoryIDistanceIndex.Factory.Parameterizer.K_ID, 4);
+    params.addParameter(InMemoryIDistanceIndex.Factory.Parameterizer.DISTANCE_ID, EuclideanDistanceFunction.class);
+    params.addParameter(InMemoryIDistanceIndex.Factory.Parameterizer.REFERENCE_ID, FarthestPointsInitialMeans.class);
+    testBulkKNN(params, EuclideanDistanceFunction.STATIC, InMemoryIDistanceIndex.IDistanceKNNQuery.class, 1e-15);
+  }
 }
@@ -23,10 +23,38 @@ package de.lmu.ifi.dbs.elki.index.invertedlist;
  along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
 import org.junit.Test;
 
+import de.lmu.ifi.dbs.elki.data.SparseDoubleVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.data.type.VectorTypeInformation;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.QueryUtil;
 import de.lmu.ifi.dbs.elki.database.StaticArrayDatabase;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDList;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
+import de.lmu.ifi.dbs.elki.database.query.range.RangeQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.datasource.DatabaseConnection;
+import de.lmu.ifi.dbs.elki.datasource.bundle.MultipleObjectsBundle;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.ArcCosineDistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.CosineDistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.PrimitiveDistanceFunction;
 import de.lmu.ifi.dbs.elki.index.AbstractTestIndexStructures;
+import de.lmu.ifi.dbs.elki.index.IndexFactory;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.ListParameterization;
 
 /**
@@ -44,4 +72,101 @@ public class TestInMemoryInvertedIndex extends AbstractTestIndexStructures {
     spatparams.addParameter(StaticArrayDatabase.Parameterizer.INDEX_ID, InMemoryInvertedIndex.Factory.class);
     testExactCosine(spatparams, InMemoryInvertedIndex.CosineKNNQuery.class, InMemoryInvertedIndex.CosineRangeQuery.class);
   }
+
+  /**
+   * Test the pruned (bulk) kNN queries against a linear scan.
+   */
+  @Test
+  public void testBulkKNN() {
+    ListParameterization params = new ListParameterization();
+    params.addParameter(StaticArrayDatabase.Parameterizer.INDEX_ID, InMemoryInvertedIndex.Factory.class);
+    testBulkKNN(params, CosineDistanceFunction.STATIC, InMemoryInvertedIndex.CosineKNNQuery.class, 1e-7);
+    params = new ListParameterization();
+    params.addParameter(StaticArrayDatabase.Parameterizer.INDEX_ID, InMemoryInvertedIndex.Factory.class);
+    testBulkKNN(params, ArcCosineDistanceFunction.STATIC, InMemoryInvertedIndex.ArcCosineKNNQuery.class, 1e-7);
+  }
+
+  /**
+   * Test kNN and range queries on sparse, TF-IDF weighted vectors against a
+   * linear scan. The frequent terms have small weights, and thus become
+   * non-essential lists that are only probed, or pruned.
+   */
+  @Test
+  public void testSparseTFIDF() {
+    final int size = 2000, vocab = 500;
+    Random rnd = new Random(0L);
+    int[][] terms = new int[size][];
+    int[] df = new int[vocab];
+    for(int i = 0; i < size; i++) {
+      BitSet seen = new BitSet();
+      for(int j = 0, len = 3 + rnd.nextInt(10); j < len; j++) {
+        // Skewed term distribution: small term numbers are frequent.
+        seen.set((int) (vocab * Math.pow(rnd.nextDouble(), 3)));
+      }
+      terms[i] = new int[seen.cardinality()];
+      for(int t = seen.nextSetBit(0), j = 0; t >= 0; t = seen.nextSetBit(t + 1), j++) {
+        terms[i][j] = t;
+        df[t]++;
+      }
+    }
+    final List<SparseDoubleVector> vecs = new ArrayList<>(size);
+    for(int i = 0; i < size; i++) {
+      double[] vals = new double[terms[i].length];
+      for(int j = 0; j < vals.length; j++) {
+        vals[j] = (1 + rnd.nextInt(3)) * Math.log(size / (double) df[terms[i][j]]);
+      }
+      // Sparse vectors with their own dimensionality, as produced by parsers.
+      vecs.add(new SparseDoubleVector(terms[i], vals, terms[i][terms[i].length - 1] + 1));
+    }
+    Database db = new StaticArrayDatabase(new DatabaseConnection() {
+      @Override
+      public MultipleObjectsBundle loadData() {
+        return MultipleObjectsBundle.makeSimple(new VectorTypeInformation<>(SparseDoubleVector.FACTORY, SparseDoubleVector.VARIABLE_SERIALIZER, 1, vocab), vecs);
+      }
+    }, Arrays.<IndexFactory<?, ?>> asList(new InMemoryInvertedIndex.Factory<SparseDoubleVector>()));
+    db.initialize();
+    Relation<SparseDoubleVector> rel = db.getRelation(TypeUtil.SPARSE_VECTOR_VARIABLE_LENGTH);
+    checkSparse(db, rel, CosineDistanceFunction.STATIC, InMemoryInvertedIndex.CosineKNNQuery.class, InMemoryInvertedIndex.CosineRangeQuery.class, 10);
+    checkSparse(db, rel, ArcCosineDistanceFunction.STATIC, InMemoryInvertedIndex.ArcCosineKNNQuery.class, InMemoryInvertedIndex.ArcCosineRangeQuery.class, 10);
+  }
+
+  /**
+   * Compare kNN and range queries to a linear scan, for every object.
+   * 
+   * @param db Database
+   * @param rel Relation
+   * @param df Distance function
+   * @param expectKNNQuery Expected kNN query class
+   * @param expectRangeQuery Expected range query class
+   * @param k Number of neighbors
+   */
+  private void checkSparse(Database db, Relation<SparseDoubleVector> rel, PrimitiveDistanceFunction<? super SparseDoubleVector> df, Class<?> expectKNNQuery, Class<?> expectRangeQuery, int k) {
+    DistanceQuery<SparseDoubleVector> dist = db.getDistanceQuery(rel, df);
+    KNNQuery<SparseDoubleVector> knnq = db.getKNNQuery(dist, k);
+    RangeQuery<SparseDoubleVector> rangeq = db.getRangeQuery(dist);
+    assertTrue("Returned knn query is not of expected class: expected " + expectKNNQuery + " got " + knnq.getClass(), expectKNNQuery.isInstance(knnq));
+    assertTrue("Returned range query is not of expected class: expected " + expectRangeQuery + " got " + rangeq.getClass(), expectRangeQuery.isInstance(rangeq));
+    KNNQuery<SparseDoubleVector> linknn = QueryUtil.getLinearScanKNNQuery(dist);
+    RangeQuery<SparseDoubleVector> linrange = QueryUtil.getLinearScanRangeQuery(dist);
+    for(DBIDIter iter = rel.iterDBIDs(); iter.valid(); iter.advance()) {
+      KNNList expect = linknn.getKNNForDBID(iter, k + 1), knn = knnq.getKNNForDBID(iter, k);
+      assertEquals("kNN size does not match.", k, knn.size());
+      DoubleDBIDListIter ei = expect.iter(), ki = knn.iter();
+      for(; ki.valid(); ei.advance(), ki.advance()) {
+        assertEquals("kNN distance does not match.", ei.doubleValue(), ki.doubleValue(), 1e-7);
+      }
+      // Range query between the k-th and the (k+1)-th neighbor:
+      final double kdist = expect.getKNNDistance(), next = ei.doubleValue();
+      if(next - kdist < 1e-6) {
+        continue; // Ties at the radius, rounding may differ.
+      }
+      final double range = (kdist + next) * .5;
+      DoubleDBIDList lin = linrange.getRangeForDBID(iter, range), res = rangeq.getRangeForDBID(iter, range);
+      assertEquals("Range query size does not match.", lin.size(), res.size());
+      DoubleDBIDListIter li = lin.iter(), ri = res.iter();
+      for(; ri.valid(); li.advance(), ri.advance()) {
+        assertEquals("Range distance does not match.", li.doubleValue(), ri.doubleValue(), 1e-7);
+      }
+    }
+  }
 }
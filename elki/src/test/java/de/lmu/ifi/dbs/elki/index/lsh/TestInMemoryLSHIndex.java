@@ -0,0 +1,133 @@
+package de.lmu.ifi.dbs.elki.index.lsh;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.JUnit4Test;
+import de.lmu.ifi.dbs.elki.algorithm.AbstractSimpleAlgorithmTest;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.QueryUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.index.lsh.hashfamilies.EuclideanHashFunctionFamily;
+import de.lmu.ifi.dbs.elki.index.lsh.hashfunctions.LocalitySensitiveHashFunction;
+import de.lmu.ifi.dbs.elki.index.lsh.hashfunctions.MultiProbeLocalitySensitiveHashFunction;
+import de.lmu.ifi.dbs.elki.index.lsh.hashfunctions.ProbeSequence;
+import de.lmu.ifi.dbs.elki.math.random.RandomFactory;
+
+/**
+ * Test the in-memory LSH index, and multi-probe querying.
+ * 
+ * @author Erich Schubert
+ */
+public class TestInMemoryLSHIndex extends AbstractSimpleAlgorithmTest implements JUnit4Test {
+  /**
+   * Number of neighbors to query.
+   */
+  private static final int K = 10;
+
+  @Test
+  public void testProbeSequence() {
+    double[] costs = { .1, .2, .4, .8 };
+    int[][] sets = ProbeSequence.generate(costs, null, 5);
+    assertEquals(5, sets.length);
+    assertArrayEquals(new int[] { 0 }, sets[0]);
+    assertArrayEquals(new int[] { 1 }, sets[1]);
+    assertArrayEquals(new int[] { 0, 1 }, sets[2]);
+    assertArrayEquals(new int[] { 2 }, sets[3]);
+    assertArrayEquals(new int[] { 0, 2 }, sets[4]);
+    // Perturbations 0 and 1 are mutually exclusive:
+    sets = ProbeSequence.generate(costs, new int[] { 0, 0, 1, 2 }, 4);
+    assertArrayEquals(new int[] { 0 }, sets[0]);
+    assertArrayEquals(new int[] { 1 }, sets[1]);
+    assertArrayEquals(new int[] { 2 }, sets[2]);
+    assertArrayEquals(new int[] { 0, 2 }, sets[3]);
+  }
+
+  @Test
+  public void testMultiProbeRecall() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
+    Relation<NumberVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    DistanceQuery<NumberVector> dq = QueryUtil.getDistanceQuery(db, EuclideanDistanceFunction.STATIC);
+    KNNQuery<NumberVector> exact = QueryUtil.getLinearScanKNNQuery(dq);
+
+    double single = recall(rel, dq, exact, 0);
+    double multi = recall(rel, dq, exact, 20);
+    assertTrue("Multi-probe recall " + multi + " not better than " + single, multi > single);
+  }
+
+  @Test
+  public void testFirstProbeIsHash() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
+    Relation<NumberVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    EuclideanHashFunctionFamily family = new EuclideanHashFunctionFamily(RandomFactory.get(0L), .5, 3);
+    ArrayList<? extends LocalitySensitiveHashFunction<? super NumberVector>> hfs = family.generateHashFunctions(rel, 1);
+    @SuppressWarnings("unchecked")
+    MultiProbeLocalitySensitiveHashFunction<? super NumberVector> hf = (MultiProbeLocalitySensitiveHashFunction<? super NumberVector>) hfs.get(0);
+    for(DBIDIter iter = rel.iterDBIDs(); iter.valid(); iter.advance()) {
+      NumberVector vec = rel.get(iter);
+      int[] probes = hf.hashProbes(vec, 5);
+      assertEquals(6, probes.length);
+      assertEquals(hf.hashObject(vec), probes[0]);
+    }
+  }
+
+  /**
+   * Compute the average kNN recall of the LSH index.
+   * 
+   * @param rel Relation
+   * @param dq Distance query
+   * @param exact Exact kNN query
+   * @param probes Number of additional probes
+   * @return Average recall
+   */
+  private double recall(Relation<NumberVector> rel, DistanceQuery<NumberVector> dq, KNNQuery<NumberVector> exact, int probes) {
+    EuclideanHashFunctionFamily family = new EuclideanHashFunctionFamily(RandomFactory.get(0L), .5, 3);
+    InMemoryLSHIndex<NumberVector>.Instance index = new InMemoryLSHIndex<NumberVector>(family, 2, 7919, probes).instantiate(rel);
+    index.initialize();
+    KNNQuery<NumberVector> knnq = index.getKNNQuery(dq, K);
+    int found = 0, total = 0;
+    for(DBIDIter iter = rel.iterDBIDs(); iter.valid(); iter.advance()) {
+      KNNList approx = knnq.getKNNForDBID(iter, K);
+      KNNList truth = exact.getKNNForDBID(iter, K);
+      found += DBIDUtil.intersectionSize(approx, truth);
+      total += truth.size();
+    }
+    return found / (double) total;
+  }
+}
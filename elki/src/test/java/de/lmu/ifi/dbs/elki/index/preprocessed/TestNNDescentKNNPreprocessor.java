@@ -0,0 +1,95 @@
+package de.lmu.ifi.dbs.elki.index.preprocessed;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.JUnit4Test;
+import de.lmu.ifi.dbs.elki.algorithm.AbstractSimpleAlgorithmTest;
+import de.lmu.ifi.dbs.elki.algorithm.benchmark.ValidateApproximativeKNNIndex;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.QueryUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.database.query.DatabaseQuery;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.index.preprocessed.knn.NNDescentKNNPreprocessor;
+import de.lmu.ifi.dbs.elki.math.random.RandomFactory;
+
+/**
+ * Test the NN-descent approximate kNN graph.
+ * 
+ * @author Erich Schubert
+ */
+public class TestNNDescentKNNPreprocessor extends AbstractSimpleAlgorithmTest implements JUnit4Test {
+  /**
+   * Number of neighbors to query.
+   */
+  private static final int K = 10;
+
+  @Test
+  public void testRecall() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
+    Relation<NumberVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    DistanceQuery<NumberVector> dq = QueryUtil.getDistanceQuery(db, EuclideanDistanceFunction.STATIC);
+    KNNQuery<NumberVector> exact = QueryUtil.getLinearScanKNNQuery(dq);
+
+    NNDescentKNNPreprocessor<NumberVector> index = new NNDescentKNNPreprocessor<>(rel, EuclideanDistanceFunction.STATIC, K, 1., 0.001, 20, 50, RandomFactory.get(0L));
+    index.initialize();
+    KNNQuery<NumberVector> knnq = index.getKNNQuery(dq, K);
+    assertNotNull(knnq);
+    assertNull(index.getKNNQuery(dq, K, DatabaseQuery.HINT_EXACT));
+
+    int found = 0, ofound = 0, total = 0;
+    for(DBIDIter iter = rel.iterDBIDs(); iter.valid(); iter.advance()) {
+      KNNList truth = exact.getKNNForDBID(iter, K);
+      found += DBIDUtil.intersectionSize(knnq.getKNNForDBID(iter, K), truth);
+      ofound += DBIDUtil.intersectionSize(knnq.getKNNForObject(rel.get(iter), K), truth);
+      total += truth.size();
+    }
+    assertTrue("Graph recall too low: " + found / (double) total, found >= .95 * total);
+    assertTrue("Search recall too low: " + ofound / (double) total, ofound >= .95 * total);
+  }
+
+  @Test
+  public void testValidateApproximativeKNNIndex() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
+    Relation<NumberVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    NNDescentKNNPreprocessor<NumberVector> index = new NNDescentKNNPreprocessor.Factory<NumberVector>(K, EuclideanDistanceFunction.STATIC, .5, 0.001, 20, 50, RandomFactory.get(0L)).instantiate(rel);
+    index.initialize();
+    db.addIndex(index);
+    // Fails if the index is not used:
+    new ValidateApproximativeKNNIndex<NumberVector>(EuclideanDistanceFunction.STATIC, K, null, 1., true, RandomFactory.get(0L), null).run(db, rel);
+  }
+}
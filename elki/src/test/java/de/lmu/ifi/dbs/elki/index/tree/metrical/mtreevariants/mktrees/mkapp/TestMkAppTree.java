@@ -0,0 +1,127 @@
+package de.lmu.ifi.dbs.elki.index.tree.metrical.mtreevariants.mktrees.mkapp;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.StaticArrayDatabase;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRange;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDList;
+import de.lmu.ifi.dbs.elki.database.query.rknn.RKNNQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.datasource.FileBasedDatabaseConnection;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.index.AbstractTestIndexStructures;
+import de.lmu.ifi.dbs.elki.index.tree.metrical.mtreevariants.AbstractMTreeFactory;
+import de.lmu.ifi.dbs.elki.index.tree.metrical.mtreevariants.query.MetricalIndexKNNQuery;
+import de.lmu.ifi.dbs.elki.index.tree.metrical.mtreevariants.query.MetricalIndexRangeQuery;
+import de.lmu.ifi.dbs.elki.index.tree.metrical.mtreevariants.query.MkTreeRKNNQuery;
+import de.lmu.ifi.dbs.elki.persistent.AbstractPageFileFactory;
+import de.lmu.ifi.dbs.elki.utilities.ClassGenericsUtil;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.ListParameterization;
+
+/**
+ * Unit test for the MkApp-tree.
+ * 
+ * @author Erich Schubert
+ */
+public class TestMkAppTree extends AbstractTestIndexStructures {
+  /**
+   * Data set, as used by {@link AbstractTestIndexStructures}.
+   */
+  private static final String DATASET = "data/testdata/unittests/hierarchical-3d2d1d.csv";
+
+  /**
+   * Test the bulk loaded {@link MkAppTree}.
+   * 
+   * The reverse kNN are only approximated, so they are compared to the tree
+   * built by insertion instead of a linear scan.
+   */
+  @Test
+  public void testBulkLoad() {
+    testExactEuclidean(makeParameters(true), MetricalIndexKNNQuery.class, MetricalIndexRangeQuery.class);
+
+    int[][] bulk = computeRKNN(makeParameters(true));
+    int[][] ins = computeRKNN(makeParameters(false));
+    for(int i = 0; i < ins.length; i++) {
+      assertArrayEquals("RkNN do not match.", ins[i], bulk[i]);
+    }
+  }
+
+  /**
+   * Load the database, and compute the reverse kNN of every object.
+   * 
+   * @param params Parameters
+   * @return Sorted offsets of the reverse kNN, for each object
+   */
+  private int[][] computeRKNN(ListParameterization params) {
+    params.addParameter(FileBasedDatabaseConnection.Parameterizer.INPUT_ID, DATASET);
+    Database db = ClassGenericsUtil.parameterizeOrAbort(StaticArrayDatabase.class, params);
+    db.initialize();
+    Relation<DoubleVector> rel = db.getRelation(TypeUtil.DOUBLE_VECTOR_FIELD);
+    RKNNQuery<DoubleVector> rknnq = db.getRKNNQuery(db.getDistanceQuery(rel, EuclideanDistanceFunction.STATIC), 10);
+    assertTrue("Returned rknn query is not of expected class: " + rknnq.getClass(), rknnq instanceof MkTreeRKNNQuery);
+    DBIDRange ids = (DBIDRange) rel.getDBIDs();
+    int[][] result = new int[ids.size()][];
+    for(DBIDIter iter = ids.iter(); iter.valid(); iter.advance()) {
+      DoubleDBIDList rknn = rknnq.getRKNNForDBID(iter, 10);
+      int[] offsets = new int[rknn.size()];
+      int j = 0;
+      for(DBIDIter it = rknn.iter(); it.valid(); it.advance()) {
+        offsets[j++] = ids.getOffset(it);
+      }
+      Arrays.sort(offsets);
+      result[ids.getOffset(iter)] = offsets;
+    }
+    return result;
+  }
+
+  /**
+   * Parameters for the tree.
+   * 
+   * @param bulk Bulk load the tree
+   * @return Parameters
+   */
+  private ListParameterization makeParameters(boolean bulk) {
+    ListParameterization params = new ListParameterization();
+    params.addParameter(StaticArrayDatabase.Parameterizer.INDEX_ID, MkAppTreeFactory.class);
+    params.addParameter(AbstractPageFileFactory.Parameterizer.PAGE_SIZE_ID, 600);
+    params.addParameter(MkAppTreeFactory.K_ID, 10);
+    params.addParameter(MkAppTreeFactory.P_ID, 2);
+    if(bulk) {
+      params.addFlag(AbstractMTreeFactory.Parameterizer.BULK_ID);
+      params.addParameter(AbstractMTreeFactory.Parameterizer.BULK_SEED_ID, 0L);
+    }
+    return params;
+  }
+}
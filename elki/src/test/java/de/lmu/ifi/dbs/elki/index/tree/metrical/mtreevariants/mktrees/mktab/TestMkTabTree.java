@@ -0,0 +1,67 @@
+package de.lmu.ifi.dbs.elki.index.tree.metrical.mtreevariants.mktrees.mktab;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2014
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.database.StaticArrayDatabase;
+import de.lmu.ifi.dbs.elki.index.AbstractTestIndexStructures;
+import de.lmu.ifi.dbs.elki.index.tree.metrical.mtreevariants.AbstractMTreeFactory;
+import de.lmu.ifi.dbs.elki.index.tree.metrical.mtreevariants.mktrees.AbstractMkTreeUnifiedFactory;
+import de.lmu.ifi.dbs.elki.index.tree.metrical.mtreevariants.query.MetricalIndexKNNQuery;
+import de.lmu.ifi.dbs.elki.index.tree.metrical.mtreevariants.query.MetricalIndexRangeQuery;
+import de.lmu.ifi.dbs.elki.index.tree.metrical.mtreevariants.query.MkTreeRKNNQuery;
+import de.lmu.ifi.dbs.elki.persistent.AbstractPageFileFactory;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.ListParameterization;
+
+/**
+ * Unit test for the MkTab-tree.
+ * 
+ * @author Erich Schubert
+ */
+public class TestMkTabTree extends AbstractTestIndexStructures {
+  /**
+   * Test the bulk loaded {@link MkTabTree}.
+   */
+  @Test
+  public void testBulkLoad() {
+    testExactEuclidean(makeBulkParameters(), MetricalIndexKNNQuery.class, MetricalIndexRangeQuery.class);
+    testRKNNEuclidean(makeBulkParameters(), MkTreeRKNNQuery.class, 10);
+  }
+
+  /**
+   * Parameters for a bulk loaded tree.
+   * 
+   * @return Parameters
+   */
+  private ListParameterization makeBulkParameters() {
+    ListParameterization params = new ListParameterization();
+    params.addParameter(StaticArrayDatabase.Parameterizer.INDEX_ID, MkTabTreeFactory.class);
+    params.addParameter(AbstractPageFileFactory.Parameterizer.PAGE_SIZE_ID, 600);
+    params.addParameter(AbstractMkTreeUnifiedFactory.Parameterizer.K_MAX_ID, 10);
+    params.addFlag(AbstractMTreeFactory.Parameterizer.BULK_ID);
+    params.addParameter(AbstractMTreeFactory.Parameterizer.BULK_SEED_ID, 0L);
+    return params;
+  }
+}
@@ -23,10 +23,28 @@ package de.lmu.ifi.dbs.elki.index.vafile;
  along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
 import org.junit.Test;
 
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
 import de.lmu.ifi.dbs.elki.database.StaticArrayDatabase;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.LinearScanDistanceKNNQuery;
+import de.lmu.ifi.dbs.elki.database.query.range.LinearScanDistanceRangeQuery;
+import de.lmu.ifi.dbs.elki.database.query.range.RangeQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.datasource.FileBasedDatabaseConnection;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.LPNormDistanceFunction;
 import de.lmu.ifi.dbs.elki.index.AbstractTestIndexStructures;
+import de.lmu.ifi.dbs.elki.utilities.ClassGenericsUtil;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.ListParameterization;
 
 /**
@@ -45,4 +63,63 @@ public class TestVAFile extends AbstractTestIndexStructures {
     spatparams.addParameter(VAFile.Factory.PARTITIONS_ID, 4);
     testExactEuclidean(spatparams, VAFile.VAFileKNNQuery.class, VAFile.VAFileRangeQuery.class);
   }
+
+  /**
+   * Test {@link VAFile} with parallel scanning.
+   */
+  @Test
+  public void testParallelVAFile() {
+    ListParameterization spatparams = new ListParameterization();
+    spatparams.addParameter(StaticArrayDatabase.Parameterizer.INDEX_ID, VAFile.Factory.class);
+    spatparams.addParameter(VAFile.Factory.PARTITIONS_ID, 4);
+    spatparams.addFlag(VAFile.Factory.PARALLEL_ID);
+    testExactEuclidean(spatparams, VAFile.VAFileKNNQuery.class, VAFile.VAFileRangeQuery.class);
+  }
+
+  /**
+   * Test {@link VAFile} with an odd Lp norm, where the sign of the differences
+   * matters, serial and parallel.
+   */
+  @Test
+  public void testOddLPNorm() {
+    testLPNorm(3., false);
+    testLPNorm(3., true);
+  }
+
+  /**
+   * Compare kNN and range queries of the VA-file to a linear scan.
+   * 
+   * @param p Norm parameter
+   * @param parallel Parallel scanning
+   */
+  private void testLPNorm(double p, boolean parallel) {
+    ListParameterization params = new ListParameterization();
+    params.addParameter(StaticArrayDatabase.Parameterizer.INDEX_ID, VAFile.Factory.class);
+    params.addParameter(VAFile.Factory.PARTITIONS_ID, 4);
+    if(parallel) {
+      params.addFlag(VAFile.Factory.PARALLEL_ID);
+    }
+    params.addParameter(FileBasedDatabaseConnection.Parameterizer.INPUT_ID, "data/testdata/unittests/hierarchical-3d2d1d.csv");
+    Database db = ClassGenericsUtil.parameterizeOrAbort(StaticArrayDatabase.class, params);
+    db.initialize();
+    Relation<DoubleVector> rel = db.getRelation(TypeUtil.DOUBLE_VECTOR_FIELD);
+    DistanceQuery<DoubleVector> dq = db.getDistanceQuery(rel, new LPNormDistanceFunction(p));
+
+    KNNQuery<DoubleVector> knnq = db.getKNNQuery(dq, 10);
+    RangeQuery<DoubleVector> rq = db.getRangeQuery(dq);
+    assertTrue("Not a VA-file kNN query: " + knnq.getClass(), knnq instanceof VAFile.VAFileKNNQuery);
+    assertTrue("Not a VA-file range query: " + rq.getClass(), rq instanceof VAFile.VAFileRangeQuery);
+    KNNQuery<DoubleVector> linknn = new LinearScanDistanceKNNQuery<>(dq);
+    RangeQuery<DoubleVector> linrq = new LinearScanDistanceRangeQuery<>(dq);
+
+    for(DBIDIter iter = rel.iterDBIDs(); iter.valid(); iter.advance()) {
+      KNNList expect = linknn.getKNNForDBID(iter, 10), knn = knnq.getKNNForDBID(iter, 10);
+      assertEquals("kNN sizes do not agree.", expect.size(), knn.size());
+      for(DoubleDBIDListIter e = expect.iter(), r = knn.iter(); e.valid(); e.advance(), r.advance()) {
+        assertEquals("kNN distances do not agree.", e.doubleValue(), r.doubleValue(), 1e-15);
+      }
+      final double eps = expect.getKNNDistance();
+      assertEquals("Range query sizes do not agree.", linrq.getRangeForDBID(iter, eps).size(), rq.getRangeForDBID(iter, eps).size());
+    }
+  }
 }